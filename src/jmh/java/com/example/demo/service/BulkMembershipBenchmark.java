@@ -0,0 +1,70 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.standin.InMemoryAdServer;
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * メンバーの一括追加・削除のベンチマーク
+ * 毎回同じグループを空に戻すため、追加と削除を1回の呼び出しで続けて計測します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BulkMembershipBenchmark {
+
+    private static final String GROUP = "bench-bulk";
+
+    @Param({"100", "1000", "10000"})
+    public int users;
+
+    private StandinEnvironment environment;
+    private GroupMembershipService service;
+    private List<String> userCNs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws LDAPException {
+        environment = StandinEnvironment.start(users, server -> server.addGroup(GROUP, 0));
+        service = environment.getBean(GroupMembershipService.class);
+        userCNs = new ArrayList<>(users);
+        for (int i = 1; i <= users; i++) {
+            userCNs.add(InMemoryAdServer.userCn(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public BulkOperationResult addThenRemove() throws NamingException {
+        BulkOperationResult added = service.addMultipleUsersToGroup(userCNs, GROUP);
+        if (!added.failed().isEmpty()) {
+            throw new IllegalStateException("一括追加に失敗しました: " + added.failed().size() + "件");
+        }
+        return service.removeMultipleUsersFromGroup(userCNs, GROUP);
+    }
+}
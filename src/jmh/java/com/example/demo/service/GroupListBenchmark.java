@@ -0,0 +1,56 @@
+package com.example.demo.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * グループ一覧の取得のベンチマーク
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupListBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int groups;
+
+    private StandinEnvironment environment;
+    private GroupLookupService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws LDAPException {
+        environment = StandinEnvironment.start(10, server -> server.addGroups("bench", groups, 10));
+        service = environment.getBean(GroupLookupService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public List<String> listGroups() throws NamingException {
+        return service.listGroups();
+    }
+}
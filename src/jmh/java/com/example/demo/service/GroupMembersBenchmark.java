@@ -0,0 +1,63 @@
+package com.example.demo.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * グループのメンバー一覧・メンバー数の取得（MaxValRange=1500の範囲指定取得）のベンチマーク
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupMembersBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int members;
+
+    private StandinEnvironment environment;
+    private GroupManagementService service;
+    private String groupCN;
+
+    @Setup(Level.Trial)
+    public void setUp() throws LDAPException {
+        groupCN = "bench-" + members;
+        environment = StandinEnvironment.start(members, server -> server.addGroup(groupCN, members));
+        service = environment.getBean(GroupManagementService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public List<String> getGroupMembers() throws NamingException {
+        return service.getGroupMembers(groupCN);
+    }
+
+    @Benchmark
+    public int getGroupMemberCount() throws NamingException {
+        return service.getGroupMemberCount(groupCN);
+    }
+}
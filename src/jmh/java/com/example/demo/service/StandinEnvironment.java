@@ -0,0 +1,78 @@
+package com.example.demo.service;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.standin.InMemoryAdServer;
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * ベンチマーク用にインメモリLDAPを起動し、そこへ接続するアプリケーションコンテキストを作成する
+ * キャッシュは無効にするため、各操作は毎回LDAPへの往復を含みます。
+ */
+final class StandinEnvironment implements AutoCloseable {
+
+    static final String BASE_DN = "DC=bench,DC=local";
+    static final String USERS_OU = "CN=Users";
+    static final String ADMIN_DN = "CN=Administrator,CN=Users,DC=bench,DC=local";
+    static final String PASSWORD = "bench";
+
+    /**
+     * ユーザーの投入後に、ベンチマークに必要なグループ等を投入する
+     */
+    @FunctionalInterface
+    interface Seeder {
+        void seed(InMemoryAdServer server) throws LDAPException;
+    }
+
+    private final InMemoryAdServer server;
+    private final ConfigurableApplicationContext context;
+
+    private StandinEnvironment(InMemoryAdServer server, ConfigurableApplicationContext context) {
+        this.server = server;
+        this.context = context;
+    }
+
+    /**
+     * @param users 投入する合成ユーザー数
+     * @param seeder 追加で投入するデータ
+     */
+    static StandinEnvironment start(int users, Seeder seeder) throws LDAPException {
+        InMemoryAdServer server = new InMemoryAdServer(BASE_DN, USERS_OU, ADMIN_DN, PASSWORD, 0);
+        server.start();
+        server.addUsers(users);
+        seeder.seed(server);
+
+        // application.ymlより優先させるためコマンドライン引数で渡す
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--ad.host=localhost",
+                        "--ad.port=" + server.getPort(),
+                        "--ad.ssl=false",
+                        "--ad.base-dn=" + BASE_DN,
+                        "--ad.users-ou=" + USERS_OU,
+                        "--ad.admin-principal=" + ADMIN_DN,
+                        "--ad.password=" + PASSWORD,
+                        "--ad.cache.enabled=false");
+        return new StandinEnvironment(server, context);
+    }
+
+    InMemoryAdServer getServer() {
+        return server;
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        server.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.standin.InMemoryAdServer;
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * 複数ユーザーのCN→DN一括解決（OR条件の検索を500件ごと）のベンチマーク
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserResolveBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"1", "10", "100", "500", "2000"})
+    public int batchSize;
+
+    private StandinEnvironment environment;
+    private GroupMembershipService service;
+    private List<String> userCNs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws LDAPException {
+        environment = StandinEnvironment.start(USERS, server -> { });
+        service = environment.getBean(GroupMembershipService.class);
+
+        // ディレクトリ全体に散らばったユーザーを選ぶ
+        userCNs = new ArrayList<>(batchSize);
+        int step = USERS / batchSize;
+        for (int i = 0; i < batchSize; i++) {
+            userCNs.add(InMemoryAdServer.userCn(1 + i * step));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public Map<String, String> resolveUserDNs() throws NamingException {
+        return service.resolveUserDNs(userCNs);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.util;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 成功する操作に対するRetryUtilのオーバーヘッドのベンチマーク
+ * リトライ予算は全操作で共有されロックを取るため、並行時の計測も行います。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetryUtilBenchmark {
+
+    private final RetryPolicy withoutBudget = new RetryPolicy("bench", 3, Duration.ofMillis(100),
+            Duration.ofSeconds(1), Duration.ofSeconds(10), null);
+
+    private final RetryPolicy withBudget = new RetryPolicy("bench", 3, Duration.ofMillis(100),
+            Duration.ofSeconds(1), Duration.ofSeconds(10), new RetryBudget(100, 0.1));
+
+    private final Long value = 42L;
+
+    private final RetryUtil.RetryableOperation<Long> operation = () -> value;
+
+    @Benchmark
+    public Long direct() throws Exception {
+        return operation.get();
+    }
+
+    @Benchmark
+    public Long retryOnError() {
+        return RetryUtil.retryOnError(withoutBudget, operation);
+    }
+
+    @Benchmark
+    public Long retryOnErrorWithBudget() {
+        return RetryUtil.retryOnError(withBudget, operation);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Long retryOnErrorWithBudgetContended() {
+        return RetryUtil.retryOnError(withBudget, operation);
+    }
+}
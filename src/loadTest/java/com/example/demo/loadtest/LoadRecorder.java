@@ -0,0 +1,81 @@
+package com.example.demo.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * 操作ごとの応答時間（マイクロ秒）とエラー数を記録する
+ * ウォームアップ中は記録せず、start()からstop()までの要求だけを集計します。
+ */
+final class LoadRecorder {
+
+    // 60秒を超える応答は60秒として記録する
+    private static final long HIGHEST_MICROS = TimeUnit.SECONDS.toMicros(60);
+
+    private final Map<Operation, ConcurrentHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    private volatile boolean recording;
+    private long startNanos;
+    private long stopNanos;
+
+    LoadRecorder() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(HIGHEST_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+        recording = true;
+    }
+
+    void stop() {
+        recording = false;
+        stopNanos = System.nanoTime();
+    }
+
+    void record(Operation operation, long nanos, boolean success) {
+        if (!recording) {
+            return;
+        }
+        latencies.get(operation).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_MICROS));
+        if (!success) {
+            errors.get(operation).increment();
+        }
+    }
+
+    /**
+     * 計測した時間（秒）
+     */
+    double elapsedSeconds() {
+        return (stopNanos - startNanos) / 1e9;
+    }
+
+    Histogram latencies(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    long errors(Operation operation) {
+        return errors.get(operation).sum();
+    }
+
+    /**
+     * 全操作を合わせた応答時間
+     */
+    Histogram totalLatencies() {
+        Histogram total = new Histogram(HIGHEST_MICROS, 3);
+        latencies.values().forEach(total::add);
+        return total;
+    }
+
+    long totalErrors() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+}
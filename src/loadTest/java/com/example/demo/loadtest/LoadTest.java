@@ -0,0 +1,179 @@
+package com.example.demo.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.DemoApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * AdControllerのエンドポイントに対する負荷試験
+ * standinプロファイルでアプリケーションを起動し、仮想ユーザーが読み取り中心の操作を送り続けます。
+ * 結果（p50/p99/p999、スループット、エラー率、スレッド数・ヒープ使用量）を出力し、
+ * 閾値を指定した場合は超過時に終了コード1で終了するため、リリース前の判定に使えます。
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+
+        // application-standin.ymlより優先させるためコマンドライン引数で渡す
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .profiles("standin")
+                .logStartupInfo(false)
+                .run("--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--server.port=0",
+                        "--ad.standin.users=" + options.users(),
+                        "--ad.standin.groups=" + options.groups(),
+                        "--ad.standin.members-per-group=" + options.membersPerGroup(),
+                        "--ad.standin.large-groups=" + options.largeGroup(),
+                        "--ad.standin.latency=" + options.latency().toMillis() + "ms",
+                        "--ad.standin.fault-rate=" + options.faultRate());
+        boolean passed;
+        try {
+            URI baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            passed = run(options, baseUri);
+        } finally {
+            context.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(LoadTestOptions options, URI baseUri) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        LoadRecorder recorder = new LoadRecorder();
+
+        List<VirtualUser> users = new ArrayList<>();
+        for (int i = 1; i <= options.concurrency(); i++) {
+            VirtualUser user = new VirtualUser(i, client, baseUri, options, recorder);
+            user.prepare();
+            users.add(user);
+        }
+
+        Map<String, Object> resources;
+        // 負荷生成側は仮想スレッドで動かし、プラットフォームスレッド数の計測に混ざらないようにする
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             ResourceSampler sampler = new ResourceSampler()) {
+            long endNanos = System.nanoTime() + options.warmup().toNanos() + options.duration().toNanos();
+            users.forEach(user -> executor.execute(() -> user.run(endNanos)));
+            Thread.sleep(options.warmup().toMillis());
+            recorder.start();
+            sampler.start();
+            Thread.sleep(options.duration().toMillis());
+            recorder.stop();
+            resources = sampler.summary();
+        }
+
+        Map<String, Object> report = report(options, recorder, resources);
+        Files.createDirectories(options.report().toAbsolutePath().getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(options.report().toFile(), report);
+        print(recorder, resources);
+        System.out.println("結果: " + options.report().toAbsolutePath());
+
+        @SuppressWarnings("unchecked")
+        List<String> violations = (List<String>) report.get("violations");
+        violations.forEach(v -> System.out.println("閾値超過: " + v));
+        return violations.isEmpty();
+    }
+
+    private static Map<String, Object> report(LoadTestOptions options, LoadRecorder recorder,
+                                              Map<String, Object> resources) {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("durationSeconds", options.duration().toSeconds());
+        settings.put("warmupSeconds", options.warmup().toSeconds());
+        settings.put("concurrency", options.concurrency());
+        settings.put("users", options.users());
+        settings.put("groups", options.groups());
+        settings.put("membersPerGroup", options.membersPerGroup());
+        settings.put("largeGroup", options.largeGroup());
+        settings.put("latencyMillis", options.latency().toMillis());
+        settings.put("faultRate", options.faultRate());
+
+        double seconds = recorder.elapsedSeconds();
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            operations.put(operation.label(),
+                    stats(recorder.latencies(operation), recorder.errors(operation), seconds));
+        }
+        Map<String, Object> total = stats(recorder.totalLatencies(), recorder.totalErrors(), seconds);
+
+        List<String> violations = new ArrayList<>();
+        double p99 = (double) total.get("p99Millis");
+        double throughput = (double) total.get("throughput");
+        double errorRate = (double) total.get("errorRate");
+        if (options.maxP99Millis() > 0 && p99 > options.maxP99Millis()) {
+            violations.add(String.format(Locale.ROOT, "p99 %.1fms > %dms", p99, options.maxP99Millis()));
+        }
+        if (options.minThroughput() > 0 && throughput < options.minThroughput()) {
+            violations.add(String.format(Locale.ROOT, "throughput %.1f/s < %.1f/s", throughput, options.minThroughput()));
+        }
+        if (errorRate > options.maxErrorRate()) {
+            violations.add(String.format(Locale.ROOT, "error rate %.4f > %.4f", errorRate, options.maxErrorRate()));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings);
+        report.put("elapsedSeconds", seconds);
+        report.put("total", total);
+        report.put("operations", operations);
+        report.put("resources", resources);
+        report.put("violations", violations);
+        return report;
+    }
+
+    private static Map<String, Object> stats(Histogram latencies, long errors, double seconds) {
+        long count = latencies.getTotalCount();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", count);
+        stats.put("errors", errors);
+        stats.put("errorRate", count > 0 ? (double) errors / count : 0.0);
+        stats.put("throughput", seconds > 0 ? count / seconds : 0.0);
+        stats.put("p50Millis", millis(latencies, 50.0));
+        stats.put("p99Millis", millis(latencies, 99.0));
+        stats.put("p999Millis", millis(latencies, 99.9));
+        stats.put("maxMillis", latencies.getMaxValue() / 1000.0);
+        return stats;
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static void print(LoadRecorder recorder, Map<String, Object> resources) {
+        double seconds = recorder.elapsedSeconds();
+        System.out.printf(Locale.ROOT, "%-20s %9s %8s %10s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        for (Operation operation : Operation.values()) {
+            printRow(operation.label(), recorder.latencies(operation), recorder.errors(operation), seconds);
+        }
+        printRow("total", recorder.totalLatencies(), recorder.totalErrors(), seconds);
+        System.out.println("resources: " + resources);
+    }
+
+    private static void printRow(String label, Histogram latencies, long errors, double seconds) {
+        System.out.printf(Locale.ROOT, "%-20s %9d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                label, latencies.getTotalCount(), errors, latencies.getTotalCount() / seconds,
+                millis(latencies, 50.0), millis(latencies, 99.0), millis(latencies, 99.9),
+                latencies.getMaxValue() / 1000.0);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * 負荷試験の設定
+ * 引数は key=value 形式で指定します（gradlew loadTest -PloadTestArgs="duration=5m concurrency=64" 等）。
+ *
+ * @param duration 計測時間
+ * @param warmup 計測前のウォームアップ時間（この間の結果は集計しない）
+ * @param concurrency 同時に要求を送る仮想ユーザー数（クローズドループ）
+ * @param users スタンドインに投入するユーザー数
+ * @param groups スタンドインに投入する通常のグループ数
+ * @param membersPerGroup 通常のグループ1つあたりのメンバー数
+ * @param largeGroup 大規模グループのメンバー数
+ * @param latency スタンドインが各操作に加える遅延
+ * @param faultRate スタンドインが操作を失敗させる割合
+ * @param report 結果を書き出すJSONファイル
+ * @param maxP99Millis 全体のp99の上限（ミリ秒、0の場合は判定しない）
+ * @param minThroughput 全体のスループットの下限（件/秒、0の場合は判定しない）
+ * @param maxErrorRate 全体のエラー率の上限（0.0〜1.0）
+ */
+record LoadTestOptions(Duration duration, Duration warmup, int concurrency,
+                       int users, int groups, int membersPerGroup, int largeGroup,
+                       Duration latency, double faultRate, Path report,
+                       long maxP99Millis, double minThroughput, double maxErrorRate) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("引数は key=value 形式で指定してください: " + arg);
+            }
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "60s")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "15s")),
+                Integer.parseInt(values.getOrDefault("concurrency", "32")),
+                Integer.parseInt(values.getOrDefault("users", "5000")),
+                Integer.parseInt(values.getOrDefault("groups", "100")),
+                Integer.parseInt(values.getOrDefault("membersPerGroup", "50")),
+                Integer.parseInt(values.getOrDefault("largeGroup", "5000")),
+                DurationStyle.detectAndParse(values.getOrDefault("latency", "0ms")),
+                Double.parseDouble(values.getOrDefault("faultRate", "0.0")),
+                Path.of(values.getOrDefault("report", "build/reports/load-test/report.json")),
+                Long.parseLong(values.getOrDefault("maxP99Millis", "0")),
+                Double.parseDouble(values.getOrDefault("minThroughput", "0")),
+                Double.parseDouble(values.getOrDefault("maxErrorRate", "0.01")));
+        if (options.users() < 2 * options.membersPerGroup()) {
+            throw new IllegalArgumentException("usersはmembersPerGroupの2倍以上を指定してください");
+        }
+        return options;
+    }
+}
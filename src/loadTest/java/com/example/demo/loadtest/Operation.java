@@ -0,0 +1,31 @@
+package com.example.demo.loadtest;
+
+/**
+ * 負荷試験で送るAdControllerへの要求の種類
+ */
+enum Operation {
+
+    LIST_GROUPS("list-groups", true),
+    GROUP_MEMBERS("group-members", true),
+    LARGE_GROUP_MEMBERS("large-group-members", true),
+    MEMBER_ADD("member-add", false),
+    MEMBER_REMOVE("member-remove", false),
+    SYNC_MEMBERS("sync-members", false),
+    RENAME("rename", false);
+
+    private final String label;
+    private final boolean read;
+
+    Operation(String label, boolean read) {
+        this.label = label;
+        this.read = read;
+    }
+
+    String label() {
+        return label;
+    }
+
+    boolean isRead() {
+        return read;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 計測中のスレッド数・ヒープ使用量・GC時間を1秒ごとに採取する
+ * アプリケーションと負荷生成は同じJVMで動くため、値には負荷生成側の分も含まれます。
+ */
+final class ResourceSampler implements AutoCloseable {
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "load-test-sampler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int samples;
+    private long heapUsedTotal;
+    private long heapUsedMax;
+    private int threadsMax;
+    private long threadsTotal;
+    private long gcCountStart;
+    private long gcMillisStart;
+
+    void start() {
+        gcCountStart = gcCount();
+        gcMillisStart = gcMillis();
+        threads.resetPeakThreadCount();
+        scheduler.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+
+    private synchronized void sample() {
+        long heapUsed = memory.getHeapMemoryUsage().getUsed();
+        int threadCount = threads.getThreadCount();
+        samples++;
+        heapUsedTotal += heapUsed;
+        heapUsedMax = Math.max(heapUsedMax, heapUsed);
+        threadsTotal += threadCount;
+        threadsMax = Math.max(threadsMax, threadCount);
+    }
+
+    /**
+     * 採取した値の要約（ヒープはMB、スレッド数はプラットフォームスレッドのみ）
+     */
+    synchronized Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("heapUsedAvgMb", samples > 0 ? heapUsedTotal / samples / (1024 * 1024) : 0);
+        summary.put("heapUsedMaxMb", heapUsedMax / (1024 * 1024));
+        summary.put("heapMaxMb", memory.getHeapMemoryUsage().getMax() / (1024 * 1024));
+        summary.put("threadsAvg", samples > 0 ? threadsTotal / samples : 0);
+        summary.put("threadsMax", Math.max(threadsMax, threads.getPeakThreadCount()));
+        summary.put("gcCount", gcCount() - gcCountStart);
+        summary.put("gcMillis", gcMillis() - gcMillisStart);
+        return summary;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
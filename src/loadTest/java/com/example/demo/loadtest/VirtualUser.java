@@ -0,0 +1,160 @@
+package com.example.demo.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.example.demo.standin.InMemoryAdServer;
+
+/**
+ * 要求を順に送り続ける1人分の仮想ユーザー（クローズドループ）
+ * 読み取りは投入済みのグループに、更新は仮想ユーザーごとに作成した専用グループに対して行うため、
+ * 仮想ユーザー同士の更新が競合して失敗することはありません。
+ *
+ * 1回の繰り返しで選ぶ操作の割合（約90%が読み取り）:
+ * <ul>
+ * <li>グループ一覧 15%、通常のグループのメンバー一覧 65%、大規模グループのメンバー一覧 10%</li>
+ * <li>メンバーの追加と削除 5%、メンバーの同期（一括更新） 3%、グループ名の変更 2%</li>
+ * </ul>
+ */
+final class VirtualUser {
+
+    private final int id;
+    private final HttpClient client;
+    private final URI baseUri;
+    private final LoadTestOptions options;
+    private final LoadRecorder recorder;
+
+    // 名前の変更で -a と -b を行き来する
+    private boolean renamed;
+
+    VirtualUser(int id, HttpClient client, URI baseUri, LoadTestOptions options, LoadRecorder recorder) {
+        this.id = id;
+        this.client = client;
+        this.baseUri = baseUri;
+        this.options = options;
+        this.recorder = recorder;
+    }
+
+    /**
+     * 更新に使う専用グループを作成する（計測の対象外）
+     */
+    void prepare() throws IOException, InterruptedException {
+        HttpResponse<Void> response = send(HttpRequest.newBuilder(uri("/api/groups/" + ownGroup()))
+                .POST(HttpRequest.BodyPublishers.noBody()));
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException("グループを作成できません: " + ownGroup() + " (" + response.statusCode() + ")");
+        }
+    }
+
+    /**
+     * 指定された時刻まで要求を送り続ける
+     */
+    void run(long endNanos) {
+        while (System.nanoTime() < endNanos && !Thread.currentThread().isInterrupted()) {
+            int dice = ThreadLocalRandom.current().nextInt(100);
+            if (dice < 15) {
+                call(Operation.LIST_GROUPS, get("/api/groups/ref"));
+            } else if (dice < 80) {
+                call(Operation.GROUP_MEMBERS, get("/api/groups/" + randomGroup() + "/members"));
+            } else if (dice < 90) {
+                call(Operation.LARGE_GROUP_MEMBERS, get("/api/groups/large-" + options.largeGroup() + "/members"));
+            } else if (dice < 95) {
+                String user = InMemoryAdServer.userCn(randomUpperUser());
+                String path = "/api/groups/" + ownGroup() + "/members/" + user;
+                if (call(Operation.MEMBER_ADD, HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.noBody()))) {
+                    call(Operation.MEMBER_REMOVE, HttpRequest.newBuilder(uri(path)).DELETE());
+                }
+            } else if (dice < 98) {
+                call(Operation.SYNC_MEMBERS, HttpRequest.newBuilder(uri("/api/groups/" + ownGroup() + "/members"))
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString(syncBody())));
+            } else {
+                String from = ownGroup();
+                String to = groupName(!renamed);
+                if (call(Operation.RENAME, HttpRequest.newBuilder(uri("/api/groups/" + from + "/rename/" + to))
+                        .PUT(HttpRequest.BodyPublishers.noBody()))) {
+                    renamed = !renamed;
+                }
+            }
+        }
+    }
+
+    /**
+     * 要求を送り、応答時間と成否を記録する
+     *
+     * @return 2xxの応答を受け取った場合はtrue
+     */
+    private boolean call(Operation operation, HttpRequest.Builder request) {
+        long start = System.nanoTime();
+        try {
+            int status = send(request).statusCode();
+            boolean success = status < 400;
+            recorder.record(operation, System.nanoTime() - start, success);
+            return success;
+        } catch (IOException e) {
+            recorder.record(operation, System.nanoTime() - start, false);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private HttpResponse<Void> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        // 本文は読み捨てるが、ストリーミング出力の最後まで受信してから応答時間とする
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(uri(path)).header("Accept", "application/json").GET();
+    }
+
+    private URI uri(String path) {
+        return baseUri.resolve(path);
+    }
+
+    private String ownGroup() {
+        return groupName(renamed);
+    }
+
+    private String groupName(boolean renamed) {
+        return String.format(Locale.ROOT, "load-w%03d-%s", id, renamed ? "b" : "a");
+    }
+
+    private String randomGroup() {
+        return String.format(Locale.ROOT, "group-%04d", ThreadLocalRandom.current().nextInt(options.groups()) + 1);
+    }
+
+    /**
+     * 同期に使わない後半のユーザー（追加・削除用）
+     */
+    private int randomUpperUser() {
+        int half = options.users() / 2;
+        return half + 1 + ThreadLocalRandom.current().nextInt(options.users() - half);
+    }
+
+    /**
+     * 前半のユーザーから通常のグループと同じ人数を選んだ同期用の一覧
+     */
+    private String syncBody() {
+        Set<Integer> picked = new LinkedHashSet<>();
+        while (picked.size() < options.membersPerGroup()) {
+            picked.add(ThreadLocalRandom.current().nextInt(options.users() / 2) + 1);
+        }
+        StringBuilder body = new StringBuilder("[");
+        for (int index : picked) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append('"').append(InMemoryAdServer.userCn(index)).append('"');
+        }
+        return body.append(']').toString();
+    }
+}
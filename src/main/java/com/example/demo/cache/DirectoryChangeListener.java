@@ -0,0 +1,29 @@
+package com.example.demo.cache;
+
+import java.util.Collection;
+
+/**
+ * DirectoryChangePollerが検出したディレクトリの変更を受け取るリスナー
+ */
+public interface DirectoryChangeListener {
+
+    /**
+     * 前回のポーリング以降に変更されたエントリ
+     *
+     * @param dns 変更されたエントリのDN
+     */
+    void onEntriesChanged(Collection<String> dns);
+
+    /**
+     * 変更の追跡が途切れた（接続先DCが切り替わった等）ため、全件を無効化する必要がある
+     */
+    void onResync();
+
+    /**
+     * 1回のポーリングを終え、変更を全て通知した
+     *
+     * @param startedNanos ポーリングを開始した時点のSystem.nanoTime()（この時点までの変更が反映済み）
+     */
+    default void onPollCompleted(long startedNanos) {
+    }
+}
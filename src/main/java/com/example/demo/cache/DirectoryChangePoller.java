@@ -0,0 +1,199 @@
+package com.example.demo.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.BasicControl;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.Rdn;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.AccessMode;
+import com.example.demo.ldap.PooledLdapContext;
+import com.example.demo.service.ActiveDirectoryService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * uSNChangedをポーリングして、前回以降に変更されたエントリをリスナーへ通知する
+ * USNはDCごとに独立した値のため、優先DCに固定された更新用の接続で問い合わせ、
+ * 接続先DCが変わった場合は追跡をやり直します。
+ */
+@Component
+public class DirectoryChangePoller extends ActiveDirectoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryChangePoller.class);
+
+    private static final int PAGE_SIZE = 1000;
+
+    // LDAP_SERVER_SHOW_DELETED_OID（削除済みエントリを検索結果に含める）
+    private static final String SHOW_DELETED_OID = "1.2.840.113556.1.4.417";
+
+    @Autowired
+    private AdProperty adProperty;
+
+    @Autowired
+    private List<DirectoryChangeListener> listeners;
+
+    private ScheduledExecutorService scheduler;
+
+    // 追跡中のDC（dsServiceName）と、そのDCで処理済みのUSN
+    private String trackedServer;
+    private long processedUsn;
+
+    @PostConstruct
+    void start() {
+        if (!adProperty.getCache().isEnabled() && !adProperty.getReplica().isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ad-change-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = adProperty.getCache().getChangePollInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::pollSafely, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (NamingException | RuntimeException e) {
+            logger.warn("変更のポーリングに失敗しました: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 前回のポーリング以降に変更されたエントリを検索し、リスナーへ通知する
+     */
+    void poll() throws NamingException {
+        long startedNanos = System.nanoTime();
+        try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
+            Attributes rootDse = ctx.getAttributes("", new String[]{"highestCommittedUSN", "dsServiceName"});
+            String server = stringValue(rootDse.get("dsServiceName"));
+            long highestUsn = longValue(rootDse.get("highestCommittedUSN"));
+
+            if (trackedServer == null || !Objects.equals(trackedServer, server)) {
+                // 別のDCのUSNとは比較できないため、全件を無効化して追跡をやり直す
+                logger.info("変更の追跡を開始します: {} (USN {})", server, highestUsn);
+                trackedServer = server;
+                processedUsn = highestUsn;
+                listeners.forEach(DirectoryChangeListener::onResync);
+            } else if (highestUsn > processedUsn) {
+                List<String> changed = searchChangedSince(ctx, processedUsn + 1);
+                changed.addAll(searchDeletedSince(ctx, processedUsn + 1));
+                processedUsn = highestUsn;
+                if (!changed.isEmpty()) {
+                    logger.debug("{}件の変更を検出しました", changed.size());
+                    listeners.forEach(listener -> listener.onEntriesChanged(changed));
+                }
+            }
+        }
+        listeners.forEach(listener -> listener.onPollCompleted(startedNanos));
+    }
+
+    private List<String> searchChangedSince(PooledLdapContext ctx, long fromUsn) throws NamingException {
+        SearchControls searchControls = new SearchControls();
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        searchControls.setReturningAttributes(new String[]{"uSNChanged"});
+
+        List<String> changed = new ArrayList<>();
+        searchPaged(ctx, adProperty.getUsersDn(), "(uSNChanged>=" + fromUsn + ")", searchControls, null,
+                result -> changed.add(result.getNameInNamespace()));
+        return changed;
+    }
+
+    /**
+     * 削除されたエントリ（Deleted Objectsの墓石）を検索し、削除前のDNを返す
+     * 削除はユーザーOU配下の変更としては現れないため、墓石のcnとlastKnownParentから元のDNを復元します。
+     * 墓石を読み取る権限がない場合やAD以外のサーバーでは、結果は空になります。
+     */
+    private List<String> searchDeletedSince(PooledLdapContext ctx, long fromUsn) throws NamingException {
+        SearchControls searchControls = new SearchControls();
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        searchControls.setReturningAttributes(new String[]{"cn", "lastKnownParent"});
+
+        String usersDn = adProperty.getUsersDn().toLowerCase(Locale.ROOT);
+        List<String> deleted = new ArrayList<>();
+        searchPaged(ctx, adProperty.getBaseDn(), "(&(isDeleted=TRUE)(uSNChanged>=" + fromUsn + "))", searchControls,
+                new BasicControl(SHOW_DELETED_OID, Control.NONCRITICAL, null),
+                result -> {
+                    String cn = stringValue(result.getAttributes().get("cn"));
+                    String parent = stringValue(result.getAttributes().get("lastKnownParent"));
+                    if (cn == null || parent == null || !parent.toLowerCase(Locale.ROOT).endsWith(usersDn)) {
+                        return;
+                    }
+                    // 墓石のcnは "元の名前\nDEL:objectGUID" の形式
+                    int marker = cn.indexOf('\n');
+                    String name = marker >= 0 ? cn.substring(0, marker) : cn;
+                    deleted.add("CN=" + Rdn.escapeValue(name) + "," + parent);
+                });
+        return deleted;
+    }
+
+    @FunctionalInterface
+    private interface ResultHandler {
+        void handle(SearchResult result) throws NamingException;
+    }
+
+    private void searchPaged(PooledLdapContext ctx, String base, String filter, SearchControls searchControls,
+                             Control extraControl, ResultHandler handler) throws NamingException {
+        byte[] cookie = null;
+        do {
+            try {
+                Control paged = new PagedResultsControl(PAGE_SIZE, cookie, Control.CRITICAL);
+                ctx.setRequestControls(extraControl != null ? new Control[]{extraControl, paged} : new Control[]{paged});
+            } catch (IOException e) {
+                throw new NamingException("ページング制御の生成に失敗しました: " + e.getMessage());
+            }
+            NamingEnumeration<SearchResult> results = ctx.search(base, filter, searchControls);
+            while (results.hasMore()) {
+                handler.handle(results.next());
+            }
+            cookie = null;
+            Control[] responseControls = ctx.getResponseControls();
+            if (responseControls != null) {
+                for (Control control : responseControls) {
+                    if (control instanceof PagedResultsResponseControl) {
+                        cookie = ((PagedResultsResponseControl) control).getCookie();
+                    }
+                }
+            }
+        } while (cookie != null && cookie.length > 0);
+    }
+
+    private static String stringValue(Attribute attribute) throws NamingException {
+        return attribute != null ? attribute.get().toString() : null;
+    }
+
+    private static long longValue(Attribute attribute) throws NamingException {
+        return attribute != null ? Long.parseLong(attribute.get().toString()) : 0L;
+    }
+}
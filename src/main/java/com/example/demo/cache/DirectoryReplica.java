@@ -0,0 +1,661 @@
+package com.example.demo.cache;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.AccessMode;
+import com.example.demo.ldap.MemberRangeReader;
+import com.example.demo.ldap.PooledLdapContext;
+import com.example.demo.service.ActiveDirectoryService;
+import com.example.demo.service.GroupEntry;
+import com.example.demo.service.GroupQuery;
+
+/**
+ * ユーザーOU配下のグループとユーザーをメモリ上に複製した索引
+ * 最初のポーリングで全件を読み込み、以降はDirectoryChangePollerが通知したエントリだけを読み直します。
+ * 削除は墓石の検索、名前変更はobjectGUIDの一致で検出し、古いDNを索引から取り除きます。
+ * 変更を検出したDCと同じDCから読み直すため、読み取りにもポーリングと同じ更新用の接続を使います。
+ * 最後の同期からad.replica.max-stalenessを過ぎた場合や、このアプリケーションから更新した直後のグループは
+ * レプリカから返さず（メソッドは空を返す）、呼び出し元がADへ問い合わせます。
+ */
+@Component
+public class DirectoryReplica extends ActiveDirectoryService implements DirectoryChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryReplica.class);
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String FILTER = "(|(objectClass=group)(objectClass=user))";
+
+    private static final String[] ATTRIBUTES = {"cn", "objectClass", "objectGUID", "member"};
+
+    // 入れ子を展開した所属グループをメモする最大のメンバー数（超えたら全て捨てる）
+    private static final int MAX_CLOSURES = 100_000;
+
+    @Autowired
+    private AdProperty adProperty;
+
+    @Autowired
+    private MemberRangeReader memberRangeReader;
+
+    private volatile Index index;
+
+    // indexより先に書き込み、indexを読んだ後に読む
+    private volatile long syncedNanos;
+
+    private volatile boolean reloadRequired = true;
+
+    // 全件を読み込んだ時刻（ポーリングのスレッドだけが読み書きする）
+    private long loadedNanos;
+
+    // このアプリケーションから更新したエントリ（小文字のDN→更新した時刻）。その後のポーリングが終わるまで返さない
+    private final Map<String, Long> dirty = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    @Override
+    public void onEntriesChanged(Collection<String> dns) {
+        Index current = index;
+        if (!adProperty.getReplica().isEnabled() || current == null || reloadRequired) {
+            return;
+        }
+        try {
+            for (String dn : dns) {
+                reload(current, dn);
+            }
+        } catch (NamingException | RuntimeException e) {
+            // 反映できなかった変更は次のポーリングに現れないため、全件を読み込み直すまで使わない
+            logger.warn("レプリカへの変更の反映に失敗しました: {}", e.getMessage());
+            reloadRequired = true;
+        }
+    }
+
+    @Override
+    public void onResync() {
+        reloadRequired = true;
+    }
+
+    @Override
+    public void onPollCompleted(long startedNanos) {
+        if (!adProperty.getReplica().isEnabled()) {
+            return;
+        }
+        if (reloadRequired || index == null
+                || System.nanoTime() - loadedNanos > adProperty.getReplica().getFullReloadInterval().toNanos()) {
+            long start = System.nanoTime();
+            try {
+                Index loaded = load();
+                syncedNanos = startedNanos;
+                loadedNanos = start;
+                index = loaded;
+                reloadRequired = false;
+                logger.info("レプリカを読み込みました: グループ {}件, ユーザー {}件 ({}ms)", loaded.groupsByCn.size(),
+                        loaded.usersByCn.size(), (System.nanoTime() - start) / 1_000_000);
+            } catch (NamingException | RuntimeException e) {
+                logger.warn("レプリカの読み込みに失敗しました: {}", e.getMessage());
+                reloadRequired = true;
+                return;
+            }
+        }
+
+        // 更新したエントリはポーリングで通知されるが、削除や名前変更は通知されないことがあるため自分で読み直す
+        Index current = index;
+        try {
+            for (Map.Entry<String, Long> entry : dirty.entrySet()) {
+                if (entry.getValue() - startedNanos < 0) {
+                    reload(current, entry.getKey());
+                    dirty.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (NamingException | RuntimeException e) {
+            logger.warn("レプリカへの変更の反映に失敗しました: {}", e.getMessage());
+            return;
+        }
+        syncedNanos = startedNanos;
+    }
+
+    /**
+     * このアプリケーションからエントリを更新したことを記録する
+     * 次のポーリングで読み直すまで、このエントリはレプリカから返しません。
+     */
+    public void invalidate(String dn) {
+        if (adProperty.getReplica().isEnabled()) {
+            dirty.put(key(dn), System.nanoTime());
+        }
+    }
+
+    /**
+     * レプリカから応答できる状態か（読み込み済みで、最後の同期からmax-stalenessを過ぎていない）
+     */
+    public boolean isServing() {
+        return adProperty.getReplica().isEnabled() && !reloadRequired && index != null
+                && System.nanoTime() - syncedNanos <= adProperty.getReplica().getMaxStaleness().toNanos();
+    }
+
+    /**
+     * グループのメンバーのDN一覧（索引が保持している一覧をそのまま返す）
+     *
+     * @return レプリカから応答できない場合、またはグループがない場合は空
+     */
+    public Optional<List<String>> getMembers(String groupDn) {
+        Index current = servingIndex(groupDn);
+        return Optional.ofNullable(current != null ? current.membersOf(groupDn) : null);
+    }
+
+    /**
+     * グループのメンバー数
+     *
+     * @return レプリカから応答できない場合、またはグループがない場合は空
+     */
+    public OptionalInt getMemberCount(String groupDn) {
+        Index current = servingIndex(groupDn);
+        MemberSet members = current != null ? current.membersOf(groupDn) : null;
+        return members != null ? OptionalInt.of(members.size()) : OptionalInt.empty();
+    }
+
+    /**
+     * メンバー（ユーザーまたはグループ）が所属するグループのDN一覧
+     * 入れ子を展開した結果は、メンバーシップが変わるまでメンバーごとにメモします。
+     *
+     * @param transitive 入れ子のグループを経由した所属も含めるか
+     * @return レプリカから応答できない場合、更新直後のエントリがある場合、またはメンバーがない場合は空
+     */
+    public Optional<List<String>> getGroupsOf(String memberDn, boolean transitive) {
+        // 更新直後のグループがあると所属が変わっている可能性があるため、ADへ問い合わせさせる
+        Index current = servingIndex(dirty.isEmpty());
+        int[] groups = current != null ? current.groupsOf(memberDn, transitive) : null;
+        return groups != null ? Optional.of(MemberSet.ofSortedIds(current.dns, groups)) : Optional.empty();
+    }
+
+    /**
+     * ユーザーのCNからDNを解決する
+     *
+     * @return 見つかったユーザーのCN（大文字小文字を区別しない）からDNへのマップ。レプリカから応答できない場合は空
+     */
+    public Map<String, String> resolveUserDns(Collection<String> userCNs) {
+        Map<String, String> userCNToDN = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Index current = servingIndex(null);
+        if (current == null) {
+            return userCNToDN;
+        }
+        for (String userCN : userCNs) {
+            Integer id = current.usersByCn.get(key(userCN));
+            if (id != null) {
+                userCNToDN.put(userCN, current.dns.dn(id));
+            }
+        }
+        return userCNToDN;
+    }
+
+    /**
+     * 条件をレプリカだけで処理できるか（フィルターと追加の属性の指定がなく、更新直後のエントリがない）
+     * ADがソートしなかった一覧の続き（読み飛ばす件数を含むカーソル）は、並び順が異なるため処理しない
+     */
+    public boolean canServe(GroupQuery query) {
+        return query.filter() == null && query.attributes().isEmpty() && query.skip() == 0 && dirty.isEmpty() && isServing();
+    }
+
+    /**
+     * 条件に一致するグループをcnの昇順で1件ずつconsumerへ渡す（canServeがtrueの場合だけ呼び出す）
+     *
+     * @return 続きがある場合は次のページのカーソル、最後まで渡した場合はnull
+     */
+    public String listGroups(GroupQuery query, Consumer<GroupEntry> consumer) {
+        Index current = index;
+        hits.increment();
+        String prefix = query.prefix() != null ? key(query.prefix()) : null;
+        String after = query.after() != null ? key(query.after()) : null;
+
+        NavigableMap<String, Integer> groups = current.groupsByCn;
+        if (after != null && (prefix == null || after.compareTo(prefix) >= 0)) {
+            groups = groups.tailMap(after, false);
+        } else if (prefix != null) {
+            groups = groups.tailMap(prefix, true);
+        }
+        int count = 0;
+        String lastCn = null;
+        for (Map.Entry<String, Integer> entry : groups.entrySet()) {
+            if (prefix != null && !entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            Node node = current.nodes.get(entry.getValue());
+            if (node == null) {
+                continue;
+            }
+            if (count >= query.limit()) {
+                return GroupQuery.encodeCursor(lastCn);
+            }
+            consumer.accept(new GroupEntry(current.dns.dn(entry.getValue()), node.cn(), Map.of()));
+            lastCn = node.cn();
+            count++;
+        }
+        return null;
+    }
+
+    /**
+     * 読み込み済みのグループ数（メトリクス用、未読み込みの場合は0）
+     */
+    public int getGroupCount() {
+        Index current = index;
+        return current != null ? current.groupsByCn.size() : 0;
+    }
+
+    /**
+     * 読み込み済みのユーザー数（メトリクス用、未読み込みの場合は0）
+     */
+    public int getUserCount() {
+        Index current = index;
+        return current != null ? current.usersByCn.size() : 0;
+    }
+
+    /**
+     * 最後に同期してからの経過秒数（メトリクス用、未読み込みの場合は-1）
+     */
+    public double getStalenessSeconds() {
+        return index != null ? (System.nanoTime() - syncedNanos) / 1e9 : -1;
+    }
+
+    /**
+     * レプリカから応答した回数（メトリクス用）
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * レプリカから応答できずADへ問い合わせさせた回数（メトリクス用）
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    private Index servingIndex(String dn) {
+        return servingIndex(dn == null || !dirty.containsKey(key(dn)));
+    }
+
+    /**
+     * @param clean 問い合わせに関係するエントリがこのアプリケーションから更新されていないか
+     */
+    private Index servingIndex(boolean clean) {
+        if (!adProperty.getReplica().isEnabled()) {
+            return null;
+        }
+        Index current = index;
+        if (!clean || !isServing()) {
+            fallbacks.increment();
+            return null;
+        }
+        hits.increment();
+        return current;
+    }
+
+    /**
+     * ユーザーOU配下のグループとユーザーを全件読み込む
+     * メンバーがMaxValRangeを超えるグループは、検索を終えた後に範囲指定で読み直します。
+     */
+    private Index load() throws NamingException {
+        Loaded loaded = executeWithRetry(AccessMode.WRITE, this::searchAll);
+        for (String groupDn : loaded.ranged()) {
+            loaded.index().setMembers(groupDn, readAllMembers(groupDn));
+        }
+        return loaded.index();
+    }
+
+    private record Loaded(Index index, List<String> ranged) {
+    }
+
+    private Loaded searchAll() throws NamingException {
+        Index loading = new Index();
+        List<String> ranged = new ArrayList<>();
+        SearchControls sc = new SearchControls();
+        sc.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        sc.setReturningAttributes(ATTRIBUTES);
+
+        try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
+            byte[] cookie = null;
+            do {
+                try {
+                    ctx.setRequestControls(new Control[]{new PagedResultsControl(PAGE_SIZE, cookie, Control.CRITICAL)});
+                } catch (IOException e) {
+                    throw new NamingException("ページング制御の生成に失敗しました: " + e.getMessage());
+                }
+                NamingEnumeration<SearchResult> results = ctx.search(adProperty.getUsersDn(), FILTER, sc);
+                while (results.hasMore()) {
+                    Parsed parsed = parse(results.next());
+                    if (parsed != null) {
+                        loading.put(parsed, parsed.members());
+                        if (!parsed.complete()) {
+                            ranged.add(parsed.dn());
+                        }
+                    }
+                }
+                cookie = null;
+                Control[] responseControls = ctx.getResponseControls();
+                if (responseControls != null) {
+                    for (Control control : responseControls) {
+                        if (control instanceof PagedResultsResponseControl) {
+                            cookie = ((PagedResultsResponseControl) control).getCookie();
+                        }
+                    }
+                }
+            } while (cookie != null && cookie.length > 0);
+        }
+        return new Loaded(loading, ranged);
+    }
+
+    /**
+     * 1件のエントリを読み直して索引へ反映する（見つからない場合は索引から取り除く）
+     */
+    private void reload(Index current, String dn) throws NamingException {
+        SearchResult result = executeWithRetry(AccessMode.WRITE, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
+                SearchControls sc = new SearchControls();
+                sc.setSearchScope(SearchControls.OBJECT_SCOPE);
+                sc.setReturningAttributes(ATTRIBUTES);
+                NamingEnumeration<SearchResult> results = ctx.search(dn, FILTER, sc);
+                return results.hasMore() ? results.next() : null;
+            } catch (NameNotFoundException e) {
+                return null;
+            }
+        });
+        Parsed parsed = result != null ? parse(result) : null;
+        if (parsed == null) {
+            current.remove(dn);
+            return;
+        }
+        current.put(parsed, parsed.complete() ? parsed.members() : readAllMembers(parsed.dn()));
+    }
+
+    private List<String> readAllMembers(String groupDn) throws NamingException {
+        List<String> members = new ArrayList<>();
+        memberRangeReader.read((low, high) -> executeWithRetry(AccessMode.WRITE, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
+                return MemberRangeReader.fetchRange(ctx, groupDn, low, high);
+            }
+        }), members::add);
+        return members;
+    }
+
+    /**
+     * 検索結果の1件
+     *
+     * @param members 検索結果に含まれていたメンバー
+     * @param complete メンバーが全件含まれていたか（falseの場合は範囲指定で読み直す）
+     */
+    private record Parsed(String dn, String cn, boolean group, String guid, List<String> members, boolean complete) {
+    }
+
+    private static Parsed parse(SearchResult sr) throws NamingException {
+        Attributes attrs = sr.getAttributes();
+        Attribute cn = attrs.get("cn");
+        if (cn == null) {
+            return null;
+        }
+        boolean group = false;
+        Attribute objectClass = attrs.get("objectClass");
+        if (objectClass != null) {
+            NamingEnumeration<?> classes = objectClass.getAll();
+            while (classes.hasMore()) {
+                group |= classes.next().toString().equalsIgnoreCase("group");
+            }
+        }
+        Attribute objectGuid = attrs.get("objectGUID");
+        String guid = null;
+        if (objectGuid != null) {
+            Object value = objectGuid.get();
+            guid = value instanceof byte[] bytes ? HexFormat.of().formatHex(bytes) : value.toString();
+        }
+
+        List<String> members = new ArrayList<>();
+        boolean complete = true;
+        NamingEnumeration<? extends Attribute> all = attrs.getAll();
+        while (all.hasMore()) {
+            Attribute attribute = all.next();
+            String id = attribute.getID().toLowerCase(Locale.ROOT);
+            if (id.equals("member") || id.startsWith("member;range=")) {
+                // MaxValRangeを超えるグループは member;range=0-1499 のように一部だけが返る
+                complete = !id.startsWith("member;range=") || id.endsWith("-*");
+                NamingEnumeration<?> values = attribute.getAll();
+                while (values.hasMore()) {
+                    members.add(values.next().toString());
+                }
+            }
+        }
+        return new Parsed(sr.getNameInNamespace(), cn.get().toString(), group, guid, members, complete);
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 索引のエントリ
+     */
+    private record Node(String cn, boolean group, String guid) {
+    }
+
+    /**
+     * 入れ子を展開した所属グループと、展開したときの索引のバージョン
+     */
+    private record Closure(long version, int[] groups) {
+    }
+
+    /**
+     * DNをIDに置き換えた索引
+     * 読み取りはロックなしで行い、書き込みはポーリングのスレッドだけが行います。
+     */
+    private static final class Index {
+        private final DnDictionary dns = new DnDictionary();
+        private final NavigableMap<String, Integer> groupsByCn = new ConcurrentSkipListMap<>();
+        private final Map<String, Integer> usersByCn = new ConcurrentHashMap<>();
+        private final Map<Integer, Node> nodes = new ConcurrentHashMap<>();
+        // グループのID→メンバー
+        private final Map<Integer, MemberSet> members = new ConcurrentHashMap<>();
+        // メンバーのID→直接所属するグループのIDの昇順配列（membersの逆引き）
+        private final Map<Integer, int[]> groupsOf = new ConcurrentHashMap<>();
+        private final Map<String, Integer> idsByGuid = new ConcurrentHashMap<>();
+
+        // 入れ子を展開した所属グループのメモ（メンバーシップが変わるたびにversionを進めて無効にする）
+        private final Map<Integer, Closure> closures = new ConcurrentHashMap<>();
+        private volatile long version;
+
+        MemberSet membersOf(String groupDn) {
+            int id = dns.id(groupDn);
+            return id >= 0 ? members.get(id) : null;
+        }
+
+        void put(Parsed parsed, List<String> memberDns) {
+            int id = dns.intern(parsed.dn());
+            if (parsed.guid() != null) {
+                Integer previous = idsByGuid.put(parsed.guid(), id);
+                if (previous != null && previous != id) {
+                    // 同じオブジェクトが別のDNで現れた（名前変更・移動）。親グループの所属を新しいIDへ移す
+                    moveMemberships(previous, id);
+                    remove(previous);
+                }
+            }
+            Node old = nodes.put(id, new Node(parsed.cn(), parsed.group(), parsed.guid()));
+            if (old != null) {
+                (old.group() ? groupsByCn : usersByCn).remove(key(old.cn()), id);
+            }
+            (parsed.group() ? groupsByCn : usersByCn).put(key(parsed.cn()), id);
+            replaceMembers(id, parsed.group() ? MemberSet.of(dns, memberDns) : null);
+        }
+
+        void setMembers(String groupDn, List<String> memberDns) {
+            replaceMembers(dns.intern(groupDn), MemberSet.of(dns, memberDns));
+        }
+
+        /**
+         * グループのメンバーを置き換え、増減したメンバーだけ逆引きを更新する
+         *
+         * @param next 新しいメンバー（nullの場合はグループではなくなった）
+         */
+        private void replaceMembers(int groupId, MemberSet next) {
+            MemberSet previous = next != null ? members.put(groupId, next) : members.remove(groupId);
+            int[] before = previous != null ? previous.ids() : new int[0];
+            int[] after = next != null ? next.ids() : new int[0];
+            boolean changed = false;
+            int i = 0;
+            int j = 0;
+            while (i < before.length || j < after.length) {
+                if (j == after.length || (i < before.length && before[i] < after[j])) {
+                    groupsOf.computeIfPresent(before[i++], (member, groups) -> without(groups, groupId));
+                    changed = true;
+                } else if (i == before.length || after[j] < before[i]) {
+                    groupsOf.merge(after[j++], new int[]{groupId}, (groups, added) -> with(groups, groupId));
+                    changed = true;
+                } else {
+                    i++;
+                    j++;
+                }
+            }
+            if (changed) {
+                version++;
+            }
+        }
+
+        /**
+         * 名前変更・移動したメンバーについて、所属する各グループのメンバーを古いIDから新しいIDへ置き換える
+         */
+        private void moveMemberships(int from, int to) {
+            for (int groupId : groupsOf.getOrDefault(from, new int[0])) {
+                MemberSet current = members.get(groupId);
+                if (current == null) {
+                    continue;
+                }
+                int[] rest = without(current.ids(), from);
+                int[] moved = with(rest != null ? rest : new int[0], to);
+                replaceMembers(groupId, MemberSet.ofSortedIds(dns, moved));
+            }
+        }
+
+        /**
+         * メンバーが所属するグループ
+         *
+         * @param transitive 入れ子のグループを経由した所属も含めるか
+         * @return グループのIDの昇順配列。メンバーが索引にない場合はnull
+         */
+        int[] groupsOf(String memberDn, boolean transitive) {
+            int id = dns.id(memberDn);
+            if (id < 0 || !nodes.containsKey(id)) {
+                return null;
+            }
+            if (!transitive) {
+                return groupsOf.getOrDefault(id, new int[0]);
+            }
+            long current = version;
+            Closure memo = closures.get(id);
+            if (memo != null && memo.version() == current) {
+                return memo.groups();
+            }
+            int[] groups = expand(id);
+            if (closures.size() >= MAX_CLOSURES) {
+                closures.clear();
+            }
+            closures.put(id, new Closure(current, groups));
+            return groups;
+        }
+
+        /**
+         * 所属グループをたどり、入れ子のグループを経由して所属する全グループを求める（循環していても止まる）
+         */
+        private int[] expand(int memberId) {
+            Set<Integer> visited = new HashSet<>();
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.add(memberId);
+            while (!pending.isEmpty()) {
+                for (int group : groupsOf.getOrDefault(pending.poll(), new int[0])) {
+                    if (visited.add(group)) {
+                        pending.add(group);
+                    }
+                }
+            }
+            visited.remove(memberId);
+            return visited.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        private static int[] with(int[] sorted, int id) {
+            int index = Arrays.binarySearch(sorted, id);
+            if (index >= 0) {
+                return sorted;
+            }
+            int insertAt = -index - 1;
+            int[] result = new int[sorted.length + 1];
+            System.arraycopy(sorted, 0, result, 0, insertAt);
+            result[insertAt] = id;
+            System.arraycopy(sorted, insertAt, result, insertAt + 1, sorted.length - insertAt);
+            return result;
+        }
+
+        private static int[] without(int[] sorted, int id) {
+            int index = Arrays.binarySearch(sorted, id);
+            if (index < 0) {
+                return sorted;
+            }
+            if (sorted.length == 1) {
+                // nullを返すとエントリごと取り除かれる
+                return null;
+            }
+            int[] result = new int[sorted.length - 1];
+            System.arraycopy(sorted, 0, result, 0, index);
+            System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+            return result;
+        }
+
+        void remove(String dn) {
+            int id = dns.id(dn);
+            if (id >= 0) {
+                remove(id);
+            }
+        }
+
+        private void remove(int id) {
+            Node node = nodes.remove(id);
+            if (node == null) {
+                return;
+            }
+            (node.group() ? groupsByCn : usersByCn).remove(key(node.cn()), id);
+            if (node.guid() != null) {
+                idsByGuid.remove(node.guid(), id);
+            }
+            replaceMembers(id, null);
+        }
+    }
+}
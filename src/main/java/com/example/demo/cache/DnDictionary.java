@@ -0,0 +1,73 @@
+package com.example.demo.cache;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DNを0から始まる連番のIDに置き換える辞書
+ * 同じDNを何度も保持せず、メンバー一覧をintの配列で表せるようにします。
+ * DNは大文字小文字を区別せずに同一視し、最初に登録された表記を返します。
+ * 一度割り当てたIDは削除しないため、エントリが消えた後も同じDNには同じIDが返ります。
+ */
+public class DnDictionary {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // 書き込みはsynchronized内だけで行い、読み取りはロックなしで行う
+    private volatile String[] dns = new String[1024];
+    private int size;
+
+    /**
+     * DNのIDを取得する（未登録の場合は新しいIDを割り当てる）
+     */
+    public int intern(String dn) {
+        String key = key(dn);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            if (size == dns.length) {
+                dns = Arrays.copyOf(dns, size * 2);
+            }
+            dns[size] = dn;
+            // IDを公開する前に配列へ書き込むため、IDを得た読み取り側は必ずDNを参照できる
+            ids.put(key, size);
+            return size++;
+        }
+    }
+
+    /**
+     * 登録済みのDNのIDを取得する
+     *
+     * @return ID。未登録の場合は-1
+     */
+    public int id(String dn) {
+        Integer id = ids.get(key(dn));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * IDに対応するDN
+     */
+    public String dn(int id) {
+        return dns[id];
+    }
+
+    /**
+     * 登録済みのDNの数
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private static String key(String dn) {
+        return dn.toLowerCase(Locale.ROOT);
+    }
+}
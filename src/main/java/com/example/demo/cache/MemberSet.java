@@ -0,0 +1,177 @@
+package com.example.demo.cache;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * グループのメンバー一覧を、DnDictionaryのIDの昇順配列で保持する読み取り専用のリスト
+ * DNの文字列はグループ間で共有されるため、1メンバーあたりの使用量はintの4バイトになります。
+ * 要素の順序はIDの昇順（DnDictionaryへの登録順）で、ADが返した順序とは一致しません。
+ * 和・積は同じ辞書のID同士を突き合わせて求めるため、DNの比較は発生しません。
+ */
+public final class MemberSet extends AbstractList<String> implements RandomAccess {
+
+    private final DnDictionary dictionary;
+    private final int[] ids;
+
+    private MemberSet(DnDictionary dictionary, int[] ids) {
+        this.dictionary = dictionary;
+        this.ids = ids;
+    }
+
+    /**
+     * DNの一覧から作成する（未登録のDNは辞書に登録する。重複は除く）
+     */
+    public static MemberSet of(DnDictionary dictionary, Collection<String> dns) {
+        int[] ids = new int[dns.size()];
+        int i = 0;
+        for (String dn : dns) {
+            ids[i++] = dictionary.intern(dn);
+        }
+        Arrays.sort(ids);
+        return new MemberSet(dictionary, distinct(ids));
+    }
+
+    /**
+     * 昇順で重複のないIDの配列から作成する（配列はそのまま保持する）
+     */
+    static MemberSet ofSortedIds(DnDictionary dictionary, int[] ids) {
+        return new MemberSet(dictionary, ids);
+    }
+
+    /**
+     * IDの昇順配列（内部の配列そのものを返すため変更しないこと）
+     */
+    int[] ids() {
+        return ids;
+    }
+
+    @Override
+    public String get(int index) {
+        return dictionary.dn(ids[index]);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * DNがメンバーに含まれるか（大文字小文字を区別しない）
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String dn)) {
+            return false;
+        }
+        int id = dictionary.id(dn);
+        return id >= 0 && containsId(id);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof String dn)) {
+            return -1;
+        }
+        int id = dictionary.id(dn);
+        int index = id >= 0 ? Arrays.binarySearch(ids, id) : -1;
+        return Math.max(index, -1);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    /**
+     * IDがメンバーに含まれるか
+     */
+    public boolean containsId(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * どちらかに含まれるメンバー
+     *
+     * @throws IllegalArgumentException 別の辞書で作成された一覧を渡した場合
+     */
+    public MemberSet union(MemberSet other) {
+        checkDictionary(other);
+        int[] merged = new int[ids.length + other.ids.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < ids.length && j < other.ids.length) {
+            int a = ids[i];
+            int b = other.ids[j];
+            merged[n++] = Math.min(a, b);
+            if (a <= b) {
+                i++;
+            }
+            if (b <= a) {
+                j++;
+            }
+        }
+        while (i < ids.length) {
+            merged[n++] = ids[i++];
+        }
+        while (j < other.ids.length) {
+            merged[n++] = other.ids[j++];
+        }
+        return new MemberSet(dictionary, Arrays.copyOf(merged, n));
+    }
+
+    /**
+     * 両方に含まれるメンバー
+     * 大きさが大きく異なる場合は、小さい方の各要素を大きい方から二分探索します。
+     *
+     * @throws IllegalArgumentException 別の辞書で作成された一覧を渡した場合
+     */
+    public MemberSet intersection(MemberSet other) {
+        checkDictionary(other);
+        int[] small = ids.length <= other.ids.length ? ids : other.ids;
+        int[] large = small == ids ? other.ids : ids;
+        int[] common = new int[small.length];
+        int n = 0;
+        if ((long) small.length * 32 < large.length) {
+            for (int id : small) {
+                if (Arrays.binarySearch(large, id) >= 0) {
+                    common[n++] = id;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < small.length && j < large.length) {
+                if (small[i] < large[j]) {
+                    i++;
+                } else if (small[i] > large[j]) {
+                    j++;
+                } else {
+                    common[n++] = small[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return new MemberSet(dictionary, Arrays.copyOf(common, n));
+    }
+
+    private void checkDictionary(MemberSet other) {
+        if (other.dictionary != dictionary) {
+            throw new IllegalArgumentException("異なる辞書で作成されたメンバー一覧は比較できません");
+        }
+    }
+
+    private static int[] distinct(int[] sorted) {
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || sorted[n - 1] != sorted[i]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.demo.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * グループDNをキーにメンバーDN一覧を保持するキャッシュ
+ * 自身の更新操作とuSNChangedのポーリングによって、変更されたグループだけを無効化します。
+ * メンバー一覧は全グループで共有する辞書のIDの配列（MemberSet）で保持するため、
+ * 同じユーザーが多数のグループに属していてもDNの文字列は1つだけです。
+ */
+@Component
+public class MembershipCache implements DirectoryChangeListener {
+
+    @Autowired
+    private AdProperty adProperty;
+
+    private LruCache<String, MemberSet> cache;
+
+    // 全件の無効化で作り直し、名前変更・削除されたDNが残り続けないようにする
+    private volatile DnDictionary dictionary = new DnDictionary();
+
+    /**
+     * 無効化した時点の世代を覚えておくグループ数の上限（超えた場合は全グループを無効化したものとして扱う）
+     */
+    private static final int MAX_TRACKED_INVALIDATIONS = 100_000;
+
+    // 無効化のたびに進む世代番号
+    private final AtomicLong generation = new AtomicLong();
+
+    // グループごとの最後に無効化された世代（読み込み中に無効化された結果を格納しないため）
+    private final Map<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+
+    // 全件の無効化が最後に行われた世代（全グループの世代の下限）
+    private volatile long resetAt;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>(adProperty.getCache().getMembershipMaxEntries());
+    }
+
+    /**
+     * キャッシュされたメンバー一覧を取得する
+     *
+     * @param groupDn グループのDN
+     * @return メンバーDNの一覧（MemberSet）。キャッシュにない場合はnull
+     */
+    public List<String> get(String groupDn) {
+        return cache.get(key(groupDn));
+    }
+
+    /**
+     * ADからの読み込みを始める前にグループの現在の世代を取得する
+     * 世代はそのグループの無効化と全件の無効化でだけ進み、他のグループの無効化では変わりません。
+     */
+    public long currentGeneration(String groupDn) {
+        return Math.max(resetAt, invalidatedAt.getOrDefault(key(groupDn), 0L));
+    }
+
+    /**
+     * ADから読み込んだメンバー一覧を格納する
+     * 読み込み開始後にそのグループが無効化されていた場合は古い可能性があるため格納しない
+     *
+     * @param groupDn グループのDN
+     * @param members メンバーDNの一覧
+     * @param loadGeneration 読み込み開始時に取得したグループの世代
+     */
+    public void put(String groupDn, List<String> members, long loadGeneration) {
+        if (!adProperty.getCache().isEnabled() || currentGeneration(groupDn) != loadGeneration) {
+            return;
+        }
+        cache.put(key(groupDn), MemberSet.of(dictionary, members), adProperty.getCache().getMembershipTtl());
+    }
+
+    /**
+     * 指定されたグループのエントリを無効化する
+     */
+    public void invalidate(String groupDn) {
+        if (invalidatedAt.size() >= MAX_TRACKED_INVALIDATIONS) {
+            // 先に下限を進めてから消すため、読み込み中のグループの世代が以前の値に戻ることはない
+            resetAt = generation.incrementAndGet();
+            invalidatedAt.clear();
+        }
+        invalidatedAt.merge(key(groupDn), generation.incrementAndGet(), Math::max);
+        cache.invalidate(key(groupDn));
+    }
+
+    public void invalidateAll() {
+        resetAt = generation.incrementAndGet();
+        invalidatedAt.clear();
+        cache.invalidateAll();
+        dictionary = new DnDictionary();
+    }
+
+    @Override
+    public void onEntriesChanged(Collection<String> dns) {
+        // 変更されたエントリのうちキャッシュ中のグループだけが対象になる
+        dns.forEach(this::invalidate);
+    }
+
+    @Override
+    public void onResync() {
+        invalidateAll();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 辞書に登録されているDNの数（メトリクス用）
+     */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * DNは大文字小文字を区別しないため正規化してキーにする
+     */
+    private static String key(String dn) {
+        return dn.toLowerCase(Locale.ROOT);
+    }
+}
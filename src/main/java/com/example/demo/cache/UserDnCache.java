@@ -0,0 +1,124 @@
+package com.example.demo.cache;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * ユーザーCNからDNへの解決結果を保持するキャッシュ
+ * 見つからなかったユーザーも短いTTLでキャッシュし（ネガティブキャッシュ）、同じCNでの検索の繰り返しを防ぎます。
+ */
+@Component
+public class UserDnCache implements DirectoryChangeListener {
+
+    /**
+     * キャッシュされた解決結果
+     *
+     * @param dn ユーザーのDN。見つからなかった場合はnull
+     */
+    public record CachedDn(String dn) {
+
+        public boolean isFound() {
+            return dn != null;
+        }
+    }
+
+    private static final CachedDn NOT_FOUND = new CachedDn(null);
+
+    @Autowired
+    private AdProperty adProperty;
+
+    private LruCache<String, CachedDn> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>(adProperty.getCache().getUserDnMaxEntries());
+    }
+
+    /**
+     * キャッシュされた解決結果を取得する
+     *
+     * @param userCN ユーザーCN
+     * @return 解決結果。キャッシュにない場合はnull
+     */
+    public CachedDn lookup(String userCN) {
+        return cache.get(key(userCN));
+    }
+
+    public void putFound(String userCN, String dn) {
+        if (adProperty.getCache().isEnabled()) {
+            cache.put(key(userCN), new CachedDn(dn), adProperty.getCache().getUserDnTtl());
+        }
+    }
+
+    public void putNotFound(String userCN) {
+        if (adProperty.getCache().isEnabled()) {
+            cache.put(key(userCN), NOT_FOUND, adProperty.getCache().getUserDnNegativeTtl());
+        }
+    }
+
+    public void invalidate(String userCN) {
+        cache.invalidate(key(userCN));
+    }
+
+    /**
+     * 変更されたエントリのCNに対応する結果と、そのDNを指している結果を無効化する
+     * 作成・名前変更されたユーザーのネガティブキャッシュもここで消えます。
+     * 名前変更前のCNや削除されたユーザーは変更通知に現れないため、TTLと更新失敗時の無効化で追従します。
+     */
+    @Override
+    public void onEntriesChanged(Collection<String> dns) {
+        for (String dn : dns) {
+            String cn = leadingCn(dn);
+            if (cn != null) {
+                invalidate(cn);
+            }
+        }
+        Set<String> changedDns = dns.stream().map(UserDnCache::key).collect(Collectors.toSet());
+        cache.invalidateIf((cn, cached) -> cached.isFound() && changedDns.contains(key(cached.dn())));
+    }
+
+    @Override
+    public void onResync() {
+        cache.invalidateAll();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * "CN=xxx,..." 形式のDNから先頭のCNを取り出す
+     */
+    private static String leadingCn(String dn) {
+        if (!dn.regionMatches(true, 0, "CN=", 0, 3)) {
+            return null;
+        }
+        int end = 3;
+        while (end < dn.length() && dn.charAt(end) != ',') {
+            // エスケープされたカンマはCNの一部
+            end += dn.charAt(end) == '\\' ? 2 : 1;
+        }
+        return dn.substring(3, Math.min(end, dn.length())).replace("\\", "");
+    }
+}
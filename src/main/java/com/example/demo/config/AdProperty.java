@@ -4,6 +4,12 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import lombok.Data;
 
+import com.example.demo.ldap.SelectionStrategy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "ad")
@@ -13,14 +19,88 @@ public class AdProperty {
     private String password;
     private String adminPrincipal;
     private int port;
+    
+    /**
+     * LDAPSで接続するか（falseの場合は平文のLDAP。ローカルのスタンドイン用）
+     */
+    private boolean ssl = true;
     private String baseDn;
     private String usersOu;
     
+    /**
+     * 読み取り専用操作の接続設定（ad.read.*）
+     */
+    private Role read = new Role();
+    
+    /**
+     * 更新操作の接続設定（ad.write.*）
+     */
+    private Role write = new Role();
+    
+    /**
+     * DCの健全性判定と遅延計測の設定（ad.health.*）
+     */
+    private Health health = new Health();
+    
+    /**
+     * キャッシュの設定（ad.cache.*）
+     */
+    private Cache cache = new Cache();
+    
+    /**
+     * member属性の範囲指定取得の設定（ad.member-range.*）
+     */
+    private MemberRange memberRange = new MemberRange();
+    
+    /**
+     * メンバーの一括追加・削除の設定（ad.bulk.*）
+     */
+    private Bulk bulk = new Bulk();
+    
+    /**
+     * 操作の種類ごとのリトライ設定（ad.retry.*）
+     */
+    private Retry retry = new Retry();
+    
+    /**
+     * DC・用途ごとのサーキットブレーカーの設定（ad.circuit-breaker.*）
+     */
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    
+    /**
+     * 非同期APIの実行スレッドとタイムアウトの設定（ad.async.*）
+     */
+    private Async async = new Async();
+    
+    /**
+     * グループ・ユーザーのローカルレプリカの設定（ad.replica.*）
+     */
+    private Replica replica = new Replica();
+    
+    /**
+     * メンバーシップの一括確認の設定（ad.membership-check.*）
+     */
+    private MembershipCheck membershipCheck = new MembershipCheck();
+    
+    /**
+     * standinプロファイルで起動するインメモリLDAPサーバーの設定（ad.standin.*）
+     */
+    private Standin standin = new Standin();
+    
     /**
      * 完全なプロバイダーURLを取得
      */
     public String getProviderUrl() {
-        return "ldaps://" + host + ":" + port;
+        return getProviderUrl(host);
+    }
+    
+    /**
+     * 指定されたDCホストのプロバイダーURLを取得
+     * "host:port" 形式で指定された場合はそのポートを使用します
+     */
+    public String getProviderUrl(String dcHost) {
+        String scheme = ssl ? "ldaps://" : "ldap://";
+        return dcHost.contains(":") ? scheme + dcHost : scheme + dcHost + ":" + port;
     }
     
     /**
@@ -36,4 +116,483 @@ public class AdProperty {
     public String getObjectDn(String cn) {
         return "CN=" + cn + "," + getUsersDn();
     }
+    
+    /**
+     * 読み取り/更新それぞれの接続先・バインドID・プール設定
+     */
+    @Data
+    public static class Role {
+        
+        /**
+         * 接続先DCホスト（"host" または "host:port"、未指定の場合はad.host）
+         */
+        private List<String> hosts = new ArrayList<>();
+        
+        /**
+         * DCの選択戦略（未指定の場合、読み取りはROUND_ROBIN、更新はPRIORITY）
+         */
+        private SelectionStrategy selection;
+        
+        /**
+         * バインドに使用するアカウント（未指定の場合はad.admin-principal）
+         */
+        private String principal;
+        
+        /**
+         * バインドに使用するパスワード（未指定の場合はad.password）
+         */
+        private String password;
+        
+        /**
+         * 接続プールの設定（読み取り用ではホストごとに適用される）
+         */
+        private Pool pool = new Pool();
+    }
+    
+    /**
+     * DCの受動的なイジェクトと再プローブの設定
+     */
+    @Data
+    public static class Health {
+        
+        /**
+         * 連続してこの回数だけ通信に失敗したDCを振り分け対象から外す
+         */
+        private int failureThreshold = 3;
+        
+        /**
+         * 最初のイジェクト期間（繰り返すごとに倍になる）
+         */
+        private Duration ejectionTime = Duration.ofSeconds(30);
+        
+        /**
+         * イジェクト期間の上限
+         */
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+        
+        /**
+         * イジェクト中のDCを再プローブする間隔
+         */
+        private Duration probeInterval = Duration.ofSeconds(10);
+        
+        /**
+         * 遅延EWMAの減衰時定数
+         */
+        private Duration latencyDecay = Duration.ofSeconds(10);
+    }
+    
+    /**
+     * メンバーシップ・ユーザーDNキャッシュと変更ポーリングの設定
+     */
+    @Data
+    public static class Cache {
+        
+        /**
+         * キャッシュと変更ポーリングを有効にするか
+         */
+        private boolean enabled = true;
+        
+        /**
+         * メンバー一覧をキャッシュするグループ数の上限
+         */
+        private int membershipMaxEntries = 1000;
+        
+        /**
+         * ポーリングで変更を取りこぼした場合に備えたメンバー一覧の有効期限
+         */
+        private Duration membershipTtl = Duration.ofMinutes(10);
+        
+        /**
+         * CN→DNの解決結果をキャッシュするユーザー数の上限
+         */
+        private int userDnMaxEntries = 50000;
+        
+        /**
+         * 解決できたDNの有効期限
+         */
+        private Duration userDnTtl = Duration.ofHours(1);
+        
+        /**
+         * 見つからなかったユーザーの有効期限（ネガティブキャッシュ）
+         */
+        private Duration userDnNegativeTtl = Duration.ofSeconds(30);
+        
+        /**
+         * uSNChangedをポーリングする間隔
+         */
+        private Duration changePollInterval = Duration.ofSeconds(15);
+    }
+    
+    /**
+     * グループ・ユーザーのローカルレプリカの設定
+     * 起動時に全件を読み込み、以降はuSNChangedのポーリング（ad.cache.change-poll-interval）で差分を反映します。
+     */
+    @Data
+    public static class Replica {
+        
+        /**
+         * レプリカから読み取り系のAPIに応答するか
+         */
+        private boolean enabled = false;
+        
+        /**
+         * 最後に同期してからこの時間を過ぎた場合はレプリカを使わずADへ問い合わせる
+         */
+        private Duration maxStaleness = Duration.ofMinutes(1);
+        
+        /**
+         * 全件を読み込み直す間隔（差分に現れない変更を取りこぼした場合の保険）
+         */
+        private Duration fullReloadInterval = Duration.ofHours(6);
+    }
+    
+    /**
+     * メンバーシップの一括確認（/api/groups/membership:check）の設定
+     */
+    @Data
+    public static class MembershipCheck {
+        
+        /**
+         * 1回の要求で受け付ける組の上限
+         */
+        private int maxPairs = 10000;
+        
+        /**
+         * 同じグループへの確認がこの件数以上あり、キャッシュにない場合はメンバー一覧を読み込んで判定する
+         * （未満の場合はユーザーごとに(member=DN)で検索する）
+         */
+        private int bulkLoadThreshold = 20;
+    }
+    
+    /**
+     * 範囲指定取得（member;range=low-high）の設定
+     */
+    @Data
+    public static class MemberRange {
+        
+        /**
+         * 1回に要求する値の数（DCのMaxValRangeを超える場合はDC側の上限で返される）
+         */
+        private int size = 1500;
+        
+        /**
+         * 現在の範囲を処理している間に、次の範囲を別の接続で先読みするか
+         */
+        private boolean prefetch = true;
+    }
+    
+    /**
+     * メンバーの一括追加・削除の設定
+     */
+    @Data
+    public static class Bulk {
+        
+        /**
+         * 1回のmodifyAttributesで変更するメンバー数（適応制御が有効な場合は初期値）
+         */
+        private int batchSize = 100;
+        
+        /**
+         * DCの応答時間とエラーに応じてバッチサイズを増減させるか
+         */
+        private boolean adaptive = true;
+        
+        /**
+         * 適応制御で縮小する下限
+         */
+        private int minBatchSize = 10;
+        
+        /**
+         * 適応制御で拡大する上限（ADは1回の変更で扱える値の数に管理上限がある）
+         */
+        private int maxBatchSize = 2000;
+        
+        /**
+         * 目標時間内に収まったバッチごとに増やすサイズ（加算的増加）
+         */
+        private int increaseStep = 50;
+        
+        /**
+         * 目標時間超過や管理上限・タイムアウト・ビジー応答のときに掛ける係数（乗算的減少）
+         */
+        private double decreaseFactor = 0.5;
+        
+        /**
+         * 1バッチの目標応答時間
+         */
+        private Duration targetLatency = Duration.ofSeconds(2);
+        
+        /**
+         * 全グループ合計での同時書き込み数の上限（更新用プールのmax-size以下にする）
+         */
+        private int maxConcurrency = 4;
+        
+        /**
+         * 同時に実行する一括ジョブの数
+         */
+        private int jobConcurrency = 2;
+        
+        /**
+         * 実行待ちにできる一括ジョブの数（超えた場合は受け付けない）
+         */
+        private int jobQueueCapacity = 100;
+        
+        /**
+         * 一括ジョブが1回に処理するユーザー数（進捗の更新とキャンセルの確認はこの単位で行う）
+         */
+        private int jobChunkSize = 1000;
+        
+        /**
+         * 終了した一括ジョブの状態を保持する期間
+         */
+        private Duration jobRetention = Duration.ofHours(1);
+    }
+    
+    /**
+     * 読み取り・更新それぞれのリトライ方針と、全体で共有するリトライ予算
+     */
+    @Data
+    public static class Retry {
+        
+        /**
+         * 検索・メンバー取得のリトライ方針
+         */
+        private Policy read = new Policy(3, Duration.ofMillis(100), Duration.ofSeconds(1), Duration.ofSeconds(10));
+        
+        /**
+         * グループ作成・削除・メンバー変更のリトライ方針
+         */
+        private Policy write = new Policy(3, Duration.ofMillis(200), Duration.ofSeconds(2), Duration.ofSeconds(30));
+        
+        /**
+         * リトライ予算として蓄えられるトークンの上限
+         */
+        private double budgetMaxTokens = 100;
+        
+        /**
+         * 成功した操作ごとに補充するトークン数（0.1なら成功10回につき1回の再試行）
+         */
+        private double budgetTokenRatio = 0.1;
+    }
+    
+    /**
+     * 1種類の操作のリトライ方針
+     */
+    @Data
+    public static class Policy {
+        
+        /**
+         * 最初の試行を含む最大試行回数
+         */
+        private int maxAttempts;
+        
+        /**
+         * 1回目の再試行までの待機時間の上限（実際は0からこの値までの乱数）
+         */
+        private Duration initialBackoff;
+        
+        /**
+         * 再試行ごとに倍にする待機時間の上限の最大値
+         */
+        private Duration maxBackoff;
+        
+        /**
+         * 最初の試行からの期限（待機後にこれを超える場合は再試行しない）
+         */
+        private Duration deadline;
+        
+        public Policy() {
+        }
+        
+        public Policy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, Duration deadline) {
+            this.maxAttempts = maxAttempts;
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            this.deadline = deadline;
+        }
+    }
+    
+    /**
+     * DC・用途ごとのサーキットブレーカーの設定
+     */
+    @Data
+    public static class CircuitBreaker {
+        
+        /**
+         * サーキットブレーカーを有効にするか
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 失敗率を計算する直近の呼び出し数
+         */
+        private int windowSize = 50;
+        
+        /**
+         * 失敗率を判定するのに必要な最小の呼び出し数
+         */
+        private int minimumCalls = 10;
+        
+        /**
+         * OPENにする通信失敗率（%）
+         */
+        private int failureRateThreshold = 50;
+        
+        /**
+         * OPENのまま呼び出しを止める期間
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+        
+        /**
+         * HALF_OPENで試行する呼び出し数（すべて成功すればCLOSEDに戻す）
+         */
+        private int halfOpenCalls = 3;
+    }
+    
+    /**
+     * 非同期APIの設定
+     */
+    @Data
+    public static class Async {
+        
+        /**
+         * LDAP操作を実行するスレッド数（読み取り・更新用プールのmax-sizeの合計程度にする）
+         */
+        private int poolSize = 24;
+        
+        /**
+         * 実行待ちにできる操作の数（超えた場合は受け付けない）
+         */
+        private int queueCapacity = 500;
+        
+        /**
+         * 検索・単一の更新のタイムアウト（超えた場合は実行中のLDAP操作を中断する）
+         */
+        private Duration timeout = Duration.ofSeconds(30);
+        
+        /**
+         * 一括追加・削除・差分同期のタイムアウト
+         */
+        private Duration bulkTimeout = Duration.ofMinutes(10);
+    }
+    
+    /**
+     * ドメインコントローラーの代わりに起動するインメモリLDAPサーバーの設定
+     * 投入する合成データの量と、各操作に注入する遅延・障害を指定します。
+     */
+    @Data
+    public static class Standin {
+        
+        /**
+         * 待ち受けるポート（0の場合は空いているポート）
+         */
+        private int port = 0;
+        
+        /**
+         * 合成ユーザー数
+         */
+        private int users = 10000;
+        
+        /**
+         * 通常のグループ数
+         */
+        private int groups = 200;
+        
+        /**
+         * 通常のグループ1つあたりのメンバー数
+         */
+        private int membersPerGroup = 50;
+        
+        /**
+         * 追加で作成する大規模グループのメンバー数（ユーザー数を超える分は切り詰める）
+         */
+        private List<Integer> largeGroups = new ArrayList<>(List.of(1000, 10000));
+        
+        /**
+         * 各操作の応答に加える遅延
+         */
+        private Duration latency = Duration.ZERO;
+        
+        /**
+         * 遅延に加える0からこの値までの乱数
+         */
+        private Duration latencyJitter = Duration.ZERO;
+        
+        /**
+         * 操作を失敗させる割合（0.0〜1.0）
+         */
+        private double faultRate = 0.0;
+        
+        /**
+         * 失敗させる場合のLDAP結果コード（51=busy、52=unavailable、3=timeLimitExceeded、11=adminLimitExceeded）
+         */
+        private int faultResultCode = 51;
+        
+        /**
+         * 遅延・障害を注入する操作（bind、search、add、modify、modify-dn、delete、compare。空の場合は全操作）
+         */
+        private List<String> faultOperations = new ArrayList<>();
+    }
+    
+    /**
+     * 接続プールのチューニング項目
+     */
+    @Data
+    public static class Pool {
+
+        /**
+         * 常に維持するアイドル接続数
+         */
+        private int minIdle = 2;
+
+        /**
+         * 同時に保持できる物理接続の最大数
+         */
+        private int maxSize = 16;
+
+        /**
+         * この時間を超えて使われなかったアイドル接続は破棄される
+         */
+        private Duration idleTimeout = Duration.ofMinutes(5);
+
+        /**
+         * 接続の最大寿命（DC側のアイドル切断やパスワード変更に追従するため）
+         */
+        private Duration maxLifetime = Duration.ofMinutes(30);
+
+        /**
+         * 接続の貸し出しを待つ最大時間
+         */
+        private Duration borrowTimeout = Duration.ofSeconds(5);
+
+        /**
+         * アイドル接続の破棄と補充を行う間隔
+         */
+        private Duration evictionInterval = Duration.ofSeconds(30);
+
+        /**
+         * 貸し出し時に検証プローブを実行するか
+         */
+        private boolean validateOnBorrow = true;
+
+        /**
+         * 返却時に検証プローブを実行するか
+         */
+        private boolean validateOnReturn = false;
+
+        /**
+         * 直近にこの時間内で使われた接続は貸し出し時の検証を省略する
+         */
+        private Duration validationInterval = Duration.ofSeconds(10);
+
+        /**
+         * TCP接続タイムアウト
+         */
+        private Duration connectTimeout = Duration.ofSeconds(5);
+
+        /**
+         * LDAP応答の読み取りタイムアウト
+         */
+        private Duration readTimeout = Duration.ofSeconds(30);
+    }
 } 
\ No newline at end of file
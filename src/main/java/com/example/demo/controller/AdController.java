@@ -1,57 +1,259 @@
 package com.example.demo.controller;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryExceptionHandler;
+import com.example.demo.service.AsyncGroupService;
+import com.example.demo.service.GroupEntry;
 import com.example.demo.service.GroupLookupService;
 import com.example.demo.service.GroupManagementService;
-import com.example.demo.service.GroupMembershipService;
+import com.example.demo.service.GroupQuery;
+import com.example.demo.service.GroupSyncResult;
+import com.example.demo.service.MembershipCheckResult;
+import com.example.demo.service.MembershipPair;
+import com.example.demo.util.UserListParser;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import javax.naming.NamingException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/groups")
 public class AdController {
 
-    private final GroupManagementService managementService = new GroupManagementService();
-    private final GroupLookupService lookupService = new GroupLookupService();
-    private final GroupMembershipService membershipService = new GroupMembershipService();
+    @Autowired
+    private GroupManagementService managementService;
 
-    @GetMapping("/ref")
-    public List<String> listGroups() throws NamingException {
-        List<String> groupNames = new ArrayList<>();
-        lookupService.listGroups(); 
-        return groupNames;
+    @Autowired
+    private GroupLookupService lookupService;
+
+    @Autowired
+    private AsyncGroupService asyncService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AdProperty adProperty;
+
+    /**
+     * グループの一覧をストリーミング出力する
+     * 並び順はできる限りcnの昇順にしますが、DCがソートを断った場合（MaxTempTableSizeの超過等）はDCが返した順になります。
+     * 並び順によらず、カーソルで続きを取得すれば重複・欠落なく全件を取得できます。
+     * 応答は {"groups": [{"dn": ..., "cn": ..., 属性名: [値...]}], "next": カーソル} の形式で、
+     * nextがnullでなければ cursor に指定して続きを取得できます。
+     *
+     * @param prefix cnの前方一致
+     * @param filter 追加のLDAPフィルター（例: (description=営業*)）
+     * @param attributes 返す属性（カンマ区切り）
+     * @param limit 1ページの最大件数（既定1000、最大10000）
+     * @param cursor 前のページの応答のnext
+     */
+    @GetMapping(value = "/ref", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody listGroups(@RequestParam(required = false) String prefix,
+                                            @RequestParam(required = false) String filter,
+                                            @RequestParam(required = false) List<String> attributes,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String cursor) {
+        GroupQuery query;
+        try {
+            query = GroupQuery.of(prefix, filter, attributes, limit, cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("groups");
+            String next;
+            try {
+                next = lookupService.listGroups(query, group -> {
+                    try {
+                        writeGroup(generator, group);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (NamingException e) {
+                throw ActiveDirectoryExceptionHandler.handleNamingException(e, "グループ一覧の取得");
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+            generator.writeStringField("next", next);
+            generator.writeEndObject();
+            generator.flush();
+        };
+    }
+
+    private static void writeGroup(JsonGenerator generator, GroupEntry group) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("dn", group.dn());
+        generator.writeStringField("cn", group.cn());
+        for (Map.Entry<String, List<String>> attribute : group.attributes().entrySet()) {
+            generator.writeArrayFieldStart(attribute.getKey());
+            for (String value : attribute.getValue()) {
+                generator.writeString(value);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
     }
 
     @PostMapping("/{groupName}")
-    public String createGroup(@PathVariable String groupName) throws NamingException {
-        managementService.createGroup(groupName);
-        return "Group created: " + groupName;
+    public CompletableFuture<String> createGroup(@PathVariable String groupName) {
+        return asyncService.createGroup(groupName)
+                .thenApply(v -> "Group created: " + groupName);
     }
 
     @DeleteMapping("/{groupName}")
-    public String deleteGroup(@PathVariable String groupName) throws NamingException {
-        managementService.deleteGroup(groupName);
-        return "Group deleted: " + groupName;
+    public CompletableFuture<String> deleteGroup(@PathVariable String groupName) {
+        return asyncService.deleteGroup(groupName)
+                .thenApply(v -> "Group deleted: " + groupName);
     }
 
     @PutMapping("/{oldName}/rename/{newName}")
-    public String renameGroup(@PathVariable String oldName, @PathVariable String newName) throws NamingException {
-        managementService.renameGroup(oldName, newName);
-        return "Group renamed from " + oldName + " to " + newName;
+    public CompletableFuture<String> renameGroup(@PathVariable String oldName, @PathVariable String newName) {
+        return asyncService.renameGroup(oldName, newName)
+                .thenApply(v -> "Group renamed from " + oldName + " to " + newName);
     }
 
     @PostMapping("/{groupName}/members/{userName}")
-    public String addUserToGroup(@PathVariable String userName, @PathVariable String groupName) throws NamingException {
-        membershipService.addUserToGroup(userName, groupName);
-        return "User " + userName + " added to group " + groupName;
+    public CompletableFuture<String> addUserToGroup(@PathVariable String userName, @PathVariable String groupName) {
+        return asyncService.addUserToGroup(userName, groupName)
+                .thenApply(v -> "User " + userName + " added to group " + groupName);
     }
 
     @DeleteMapping("/{groupName}/members/{userName}")
-    public String removeUserFromGroup(@PathVariable String userName, @PathVariable String groupName) throws NamingException {
-        membershipService.removeUserFromGroup(userName, groupName);
-        return "User " + userName + " removed from group " + groupName;
+    public CompletableFuture<String> removeUserFromGroup(@PathVariable String userName, @PathVariable String groupName) {
+        return asyncService.removeUserFromGroup(userName, groupName)
+                .thenApply(v -> "User " + userName + " removed from group " + groupName);
+    }
+
+    /**
+     * グループのメンバーを、JSON（["user1","user2"] または {"users": [...]}）で指定されたユーザーと一致させる
+     * 現在のメンバーとの差分だけを追加・削除するため、同じ一覧で何度実行しても結果は変わらない
+     * ユーザー以外のメンバー（入れ子のグループ等）は、removeNonUsers=trueの場合だけ削除する
+     */
+    @PutMapping(value = "/{groupName}/members", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<GroupSyncResult> syncGroupMembersJson(@PathVariable String groupName,
+                                                                   @RequestParam(defaultValue = "false") boolean removeNonUsers,
+                                                                   InputStream body) throws IOException {
+        List<String> userCNs;
+        try {
+            userCNs = UserListParser.parseJson(body, objectMapper.getFactory());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return syncGroupMembers(groupName, userCNs, removeNonUsers);
+    }
+
+    /**
+     * グループのメンバーを、CSV（1列目がユーザーCN）で指定されたユーザーと一致させる
+     */
+    @PutMapping(value = "/{groupName}/members", consumes = "text/csv")
+    public CompletableFuture<GroupSyncResult> syncGroupMembersCsv(@PathVariable String groupName,
+                                                                  @RequestParam(defaultValue = "false") boolean removeNonUsers,
+                                                                  InputStream body) throws IOException {
+        return syncGroupMembers(groupName, UserListParser.parseCsv(body), removeNonUsers);
+    }
+
+    private CompletableFuture<GroupSyncResult> syncGroupMembers(String groupName, List<String> userCNs, boolean removeNonUsers) {
+        if (userCNs.isEmpty()) {
+            // 空のファイルを誤って送った場合に全メンバーが削除されるのを防ぐ
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ユーザーが指定されていません");
+        }
+        return asyncService.syncGroupMembers(groupName, userCNs, removeNonUsers);
+    }
+
+    /**
+     * ユーザーとグループの組（[{"user": "...", "group": "..."}]）ごとに、直接のメンバーかを判定する
+     * 結果は指定と同じ順で返し、見つからないユーザー・グループも1件ずつ結果に含める
+     * 判定できなかった組（見つからないユーザー・グループを含む）はmemberをnullとし、errorに理由を返す
+     */
+    @PostMapping(value = "/membership:check", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<List<MembershipCheckResult>> checkMemberships(@RequestBody List<MembershipPair> pairs) {
+        int maxPairs = adProperty.getMembershipCheck().getMaxPairs();
+        if (pairs.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ユーザーとグループの組が指定されていません");
+        }
+        if (pairs.size() > maxPairs) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "一度に指定できる組は" + maxPairs + "件までです");
+        }
+        for (MembershipPair pair : pairs) {
+            if (pair == null || pair.user() == null || pair.group() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userとgroupの両方を指定してください");
+            }
+        }
+        return asyncService.checkMemberships(pairs);
+    }
+
+    /**
+     * グループのメンバーDNを1行1件のJSON（NDJSON）でストリーミング出力する
+     */
+    @GetMapping(value = "/{groupName}/members", produces = "application/x-ndjson")
+    public StreamingResponseBody streamGroupMembersNdjson(@PathVariable String groupName) {
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writeMembers(groupName, dn -> {
+                writer.write(objectMapper.writeValueAsString(dn));
+                writer.write('\n');
+            });
+            writer.flush();
+        };
+    }
+
+    /**
+     * グループのメンバーDNをJSON配列としてストリーミング出力する
+     */
+    @GetMapping(value = "/{groupName}/members", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamGroupMembersJson(@PathVariable String groupName) {
+        return out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.writeStartArray();
+            writeMembers(groupName, generator::writeString);
+            generator.writeEndArray();
+            generator.flush();
+        };
+    }
+
+    /**
+     * メンバーを1件ずつレスポンスへ書き出す（リストに溜め込まない）
+     */
+    private void writeMembers(String groupName, MemberWriter writer) throws IOException {
+        try {
+            managementService.streamGroupMembers(groupName, dn -> {
+                try {
+                    writer.write(dn);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (NamingException e) {
+            throw ActiveDirectoryExceptionHandler.handleNamingException(e, "メンバー一覧の取得: " + groupName);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface MemberWriter {
+        void write(String dn) throws IOException;
     }
 }
@@ -0,0 +1,111 @@
+package com.example.demo.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.demo.exception.ActiveDirectoryException;
+import com.example.demo.job.BulkJob;
+import com.example.demo.job.BulkJobService;
+import com.example.demo.job.BulkJobStatus;
+import com.example.demo.util.UserListParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * メンバーの一括追加・削除ジョブの受け付けと進捗確認
+ * ジョブはバックグラウンドで実行されるため、受け付け時はジョブIDだけを返します。
+ * ジョブは/api/jobs/{jobId}で参照します（/api/groups/{groupName}と衝突しないようグループの下には置かない）。
+ */
+@RestController
+@RequestMapping("/api")
+public class BulkJobController {
+
+    @Autowired
+    private BulkJobService jobService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * JSON（["user1","user2"] または {"users": [...]}）で指定されたユーザーの一括ジョブを受け付ける
+     *
+     * @param operation add または remove
+     */
+    @PostMapping(value = "/groups/{groupName}/members:bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkJobStatus> submitJson(@PathVariable String groupName,
+                                                    @RequestParam(defaultValue = "add") String operation,
+                                                    InputStream body) throws IOException {
+        List<String> userCNs;
+        try {
+            userCNs = UserListParser.parseJson(body, objectMapper.getFactory());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return submit(groupName, operation, userCNs);
+    }
+
+    /**
+     * CSV（1列目がユーザーCN）で指定されたユーザーの一括ジョブを受け付ける
+     *
+     * @param operation add または remove
+     */
+    @PostMapping(value = "/groups/{groupName}/members:bulk", consumes = "text/csv")
+    public ResponseEntity<BulkJobStatus> submitCsv(@PathVariable String groupName,
+                                                   @RequestParam(defaultValue = "add") String operation,
+                                                   InputStream body) throws IOException {
+        return submit(groupName, operation, UserListParser.parseCsv(body));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public BulkJobStatus getJob(@PathVariable String jobId) {
+        return findJob(jobService.getJob(jobId)).snapshot();
+    }
+
+    /**
+     * ジョブをキャンセルする（実行中のジョブは処理中のチャンクが終わった時点で停止する）
+     */
+    @DeleteMapping("/jobs/{jobId}")
+    public BulkJobStatus cancelJob(@PathVariable String jobId) {
+        return findJob(jobService.cancel(jobId)).snapshot();
+    }
+
+    private ResponseEntity<BulkJobStatus> submit(String groupName, String operation, List<String> userCNs) {
+        BulkJob.Operation op = parseOperation(operation);
+        if (userCNs.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ユーザーが指定されていません");
+        }
+        BulkJob job;
+        try {
+            job = jobService.submit(groupName, op, userCNs);
+        } catch (ActiveDirectoryException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/jobs/" + job.getId()))
+                .body(job.snapshot());
+    }
+
+    private static BulkJob.Operation parseOperation(String operation) {
+        try {
+            return BulkJob.Operation.valueOf(operation.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "operationにはaddまたはremoveを指定してください");
+        }
+    }
+
+    private static BulkJob findJob(BulkJob job) {
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ジョブが見つかりません");
+        }
+        return job;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import com.example.demo.service.AsyncGroupService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ユーザーを起点にした問い合わせ
+ */
+@RestController
+@RequestMapping("/api/users")
+public class UserController {
+
+    @Autowired
+    private AsyncGroupService asyncService;
+
+    /**
+     * ユーザーが所属するグループのDN一覧を返す
+     *
+     * @param transitive trueの場合は入れ子のグループを経由した所属も含める
+     */
+    @GetMapping("/{userName}/groups")
+    public CompletableFuture<List<String>> getUserGroups(@PathVariable String userName,
+                                                         @RequestParam(defaultValue = "false") boolean transitive) {
+        return asyncService.getUserGroups(userName, transitive);
+    }
+}
@@ -41,4 +41,46 @@ public class ActiveDirectoryExceptionHandler {
     public static ActiveDirectoryException groupOperationFailed(String groupCN, String operation) {
         return new ActiveDirectoryException("グループ操作に失敗しました: " + operation + " - " + groupCN);
     }
+    
+    /**
+     * 接続プールから接続を取得できなかった場合の例外を生成
+     */
+    public static ActiveDirectoryException poolExhausted(String poolName, long waitMillis) {
+        return new ActiveDirectoryException("接続プールから接続を取得できませんでした: " + poolName + " (" + waitMillis + "ms待機)");
+    }
+    
+    /**
+     * 一括ジョブの実行待ちが上限に達した場合の例外を生成
+     */
+    public static ActiveDirectoryException jobQueueFull(int capacity) {
+        return new ActiveDirectoryException("実行待ちの一括ジョブが上限に達しています: " + capacity);
+    }
+    
+    /**
+     * 全DCのサーキットブレーカーが開いている場合の例外を生成
+     */
+    public static CircuitOpenException circuitOpen(String groupName) {
+        return new CircuitOpenException("ADへの接続が遮断されています（サーキットブレーカーが開いています）: " + groupName);
+    }
+    
+    /**
+     * 非同期操作の実行待ちが上限に達した場合の例外を生成
+     */
+    public static ActiveDirectoryException asyncQueueFull(int capacity) {
+        return new ActiveDirectoryException("実行待ちの非同期操作が上限に達しています: " + capacity);
+    }
+    
+    /**
+     * 非同期操作がタイムアウトした場合の例外を生成
+     */
+    public static ActiveDirectoryException operationTimedOut(String operation, long timeoutMillis) {
+        return new ActiveDirectoryException("操作がタイムアウトしました: " + operation + " (" + timeoutMillis + "ms)");
+    }
+    
+    /**
+     * キャンセルされた操作が接続を取得しようとした場合の例外を生成
+     */
+    public static ActiveDirectoryException operationCancelled() {
+        return new ActiveDirectoryException("操作はキャンセルされました");
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.example.demo.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * サーキットブレーカーが開いているため、ADへの操作を行わずに失敗したことを表す例外
+ * リトライ対象にはならず、呼び出し元へ即座に返されます。
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CircuitOpenException extends ActiveDirectoryException {
+    
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
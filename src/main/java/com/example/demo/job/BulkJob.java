@@ -0,0 +1,190 @@
+package com.example.demo.job;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.example.demo.service.BulkOperationResult;
+import com.example.demo.service.BulkOperationResult.UserOutcome;
+
+/**
+ * 非同期で実行される1件の一括追加・削除ジョブ
+ * 進捗はワーカースレッドから更新され、状態の取得（snapshot）は任意のスレッドから行えます。
+ */
+public class BulkJob {
+
+    /**
+     * 応答に含める失敗・スキップしたユーザーの上限（件数自体はすべて数える）
+     */
+    static final int MAX_REPORTED_OUTCOMES = 1000;
+
+    public enum Operation {
+        ADD, REMOVE
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id;
+    private final String groupName;
+    private final Operation operation;
+    private final List<String> userCNs;
+    private final Instant submittedAt = Instant.now();
+
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUED);
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final ConcurrentLinkedQueue<UserOutcome> failures = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<UserOutcome> skips = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean cancelRequested;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    BulkJob(String id, String groupName, Operation operation, List<String> userCNs) {
+        this.id = id;
+        this.groupName = groupName;
+        this.operation = operation;
+        this.userCNs = List.copyOf(userCNs);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    List<String> getUserCNs() {
+        return userCNs;
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * 実行待ちから実行中へ移す（既にキャンセルされていればfalse）
+     */
+    boolean start() {
+        if (!status.compareAndSet(Status.QUEUED, Status.RUNNING)) {
+            return false;
+        }
+        startedNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * 1チャンク分の結果を進捗に反映する
+     */
+    void record(BulkOperationResult result) {
+        succeeded.addAndGet(result.succeeded().size());
+        failed.addAndGet(result.failed().size());
+        skipped.addAndGet(result.skipped().size());
+        addOutcomes(failures, result.failed());
+        addOutcomes(skips, result.skipped());
+        processed.addAndGet(result.succeeded().size() + result.failed().size() + result.skipped().size());
+    }
+
+    /**
+     * キャンセルを要求する
+     * 実行待ちのジョブはその場でキャンセルし、実行中のジョブは処理中のチャンクが終わった時点で停止します。
+     *
+     * @return キャンセルを受け付けた場合はtrue（既に終了していた場合はfalse）
+     */
+    boolean cancel() {
+        if (status.get().isFinished()) {
+            return false;
+        }
+        cancelRequested = true;
+        if (status.compareAndSet(Status.QUEUED, Status.CANCELLED)) {
+            markFinished();
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+        return true;
+    }
+
+    void complete() {
+        finish(cancelRequested ? Status.CANCELLED : Status.COMPLETED);
+    }
+
+    void fail(Throwable cause) {
+        error = cause.getMessage();
+        finish(Status.FAILED);
+    }
+
+    private void finish(Status finalStatus) {
+        if (status.compareAndSet(Status.RUNNING, finalStatus)) {
+            markFinished();
+        }
+    }
+
+    private void markFinished() {
+        finishedNanos = System.nanoTime();
+        finishedAt = Instant.now();
+    }
+
+    private static void addOutcomes(ConcurrentLinkedQueue<UserOutcome> target, List<UserOutcome> outcomes) {
+        for (UserOutcome outcome : outcomes) {
+            if (target.size() >= MAX_REPORTED_OUTCOMES) {
+                return;
+            }
+            target.add(outcome);
+        }
+    }
+
+    /**
+     * 現在の状態を応答用の不変オブジェクトとして取得する
+     */
+    public BulkJobStatus snapshot() {
+        Status current = status.get();
+        long started = startedNanos;
+        Duration elapsed = Duration.ZERO;
+        if (started != 0) {
+            long end = current.isFinished() ? finishedNanos : System.nanoTime();
+            elapsed = Duration.ofNanos(end - started);
+        }
+        int done = processed.get();
+        double seconds = elapsed.toNanos() / 1_000_000_000.0;
+        double throughput = seconds > 0 ? done / seconds : 0;
+
+        return new BulkJobStatus(id, groupName, operation, current, userCNs.size(), done,
+                succeeded.get(), failed.get(), skipped.get(), throughput, elapsed.toMillis(),
+                submittedAt, finishedAt, new ArrayList<>(failures), new ArrayList<>(skips), error);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo.job;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.NamingException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryExceptionHandler;
+import com.example.demo.service.BulkOperationResult;
+import com.example.demo.service.GroupMembershipService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 大量ユーザーの一括追加・削除をバックグラウンドで実行するジョブ管理サービス
+ * ジョブは上限付きのスレッドプールで実行され、リクエストスレッドを長時間占有しません。
+ * 各ジョブはユーザー一覧をチャンクに分け、GroupMembershipServiceの一括操作を順に呼び出します。
+ */
+@Service
+public class BulkJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkJobService.class);
+
+    @Autowired
+    private AdProperty adProperty;
+
+    @Autowired
+    private GroupMembershipService membershipService;
+
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        AdProperty.Bulk config = adProperty.getBulk();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(config.getJobConcurrency(), config.getJobConcurrency(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getJobQueueCapacity()), r -> {
+                    Thread t = new Thread(r, "ad-bulk-job-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobs.values().forEach(BulkJob::cancel);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一括ジョブを受け付ける
+     *
+     * @param groupName 対象グループのCN
+     * @param operation 追加か削除か
+     * @param userCNs 対象ユーザーのCN
+     * @return 受け付けたジョブ
+     * @throws com.example.demo.exception.ActiveDirectoryException 実行待ちのジョブが上限に達している場合
+     */
+    public BulkJob submit(String groupName, BulkJob.Operation operation, List<String> userCNs) {
+        purgeFinishedJobs();
+
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), groupName, operation, userCNs);
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(executor.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw ActiveDirectoryExceptionHandler.jobQueueFull(adProperty.getBulk().getJobQueueCapacity());
+        }
+        logger.info("一括ジョブを受け付けました: {} ({} {}人, グループ: {})",
+                job.getId(), operation, userCNs.size(), groupName);
+        return job;
+    }
+
+    /**
+     * ジョブを取得する
+     *
+     * @return ジョブ（存在しない、または保持期間を過ぎた場合はnull）
+     */
+    public BulkJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * ジョブのキャンセルを要求する
+     *
+     * @return ジョブ（存在しない場合はnull）
+     */
+    public BulkJob cancel(String jobId) {
+        BulkJob job = jobs.get(jobId);
+        if (job != null && job.cancel()) {
+            logger.info("一括ジョブのキャンセルを受け付けました: {}", jobId);
+        }
+        return job;
+    }
+
+    void run(BulkJob job) {
+        if (!job.start()) {
+            return;
+        }
+        int chunkSize = adProperty.getBulk().getJobChunkSize();
+        List<String> userCNs = job.getUserCNs();
+        try {
+            for (int i = 0; i < userCNs.size() && !job.isCancelRequested(); i += chunkSize) {
+                List<String> chunk = userCNs.subList(i, Math.min(i + chunkSize, userCNs.size()));
+                BulkOperationResult result = job.getOperation() == BulkJob.Operation.ADD
+                        ? membershipService.addMultipleUsersToGroup(chunk, job.getGroupName())
+                        : membershipService.removeMultipleUsersFromGroup(chunk, job.getGroupName());
+                job.record(result);
+            }
+            job.complete();
+            logger.info("一括ジョブが終了しました: {} ({})", job.getId(), job.getStatus());
+        } catch (NamingException | RuntimeException e) {
+            logger.error("一括ジョブが失敗しました: {}", job.getId(), e);
+            job.fail(e);
+        }
+    }
+
+    private void purgeFinishedJobs() {
+        Instant threshold = Instant.now().minus(adProperty.getBulk().getJobRetention());
+        jobs.values().removeIf(job -> job.getStatus().isFinished()
+                && job.getFinishedAt() != null && job.getFinishedAt().isBefore(threshold));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.job;
+
+import java.time.Instant;
+import java.util.List;
+
+import com.example.demo.service.BulkOperationResult.UserOutcome;
+
+/**
+ * 一括ジョブの進捗（ポーリングの応答）
+ *
+ * @param id ジョブID
+ * @param groupName 対象グループのCN
+ * @param operation 追加か削除か
+ * @param status 状態
+ * @param total 指定されたユーザー数
+ * @param processed 処理済みのユーザー数
+ * @param succeeded 成功したユーザー数
+ * @param failed 失敗したユーザー数
+ * @param skipped スキップしたユーザー数
+ * @param throughputPerSecond 1秒あたりの処理ユーザー数
+ * @param elapsedMillis 実行開始からの経過時間（終了したジョブは実行時間）
+ * @param submittedAt 受け付けた時刻
+ * @param finishedAt 終了した時刻（未終了の場合はnull）
+ * @param failures 失敗したユーザーと理由（先頭から最大1000件）
+ * @param skips スキップしたユーザーと理由（先頭から最大1000件）
+ * @param error ジョブ全体が失敗した場合の理由
+ */
+public record BulkJobStatus(String id,
+                            String groupName,
+                            BulkJob.Operation operation,
+                            BulkJob.Status status,
+                            int total,
+                            int processed,
+                            int succeeded,
+                            int failed,
+                            int skipped,
+                            double throughputPerSecond,
+                            long elapsedMillis,
+                            Instant submittedAt,
+                            Instant finishedAt,
+                            List<UserOutcome> failures,
+                            List<UserOutcome> skips,
+                            String error) {
+
+    public BulkJobStatus {
+        failures = List.copyOf(failures);
+        skips = List.copyOf(skips);
+    }
+}
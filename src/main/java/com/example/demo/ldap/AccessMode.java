@@ -0,0 +1,17 @@
+package com.example.demo.ldap;
+
+/**
+ * 操作が使用する接続プールの種類
+ */
+public enum AccessMode {
+
+    /**
+     * 読み取り専用の検索（複数DCへ分散）
+     */
+    READ,
+
+    /**
+     * ディレクトリを更新する操作（優先DCに固定）
+     */
+    WRITE
+}
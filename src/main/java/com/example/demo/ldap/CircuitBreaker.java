@@ -0,0 +1,240 @@
+package com.example.demo.ldap;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.config.AdProperty;
+
+/**
+ * 1つのDC・用途（読み取り/更新）に対するサーキットブレーカー
+ * 直近の呼び出し（スライディングウィンドウ）の通信失敗率がしきい値を超えるとOPENになり、
+ * 一定時間そのDCへの呼び出しを止めます。期間が過ぎるとHALF_OPENで少数の呼び出しだけを通し、
+ * すべて成功すればCLOSEDに戻り、1つでも失敗すれば再びOPENになります。
+ * HALF_OPENで成功として数えるのは試行の許可を得た呼び出しだけで、OPEN前から実行中だった呼び出しの成功では閉じません。
+ * LDAPのエラー応答（エントリーが見つからない等）はDCが応答しているため成功として数えます。
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * 呼び出しの許可の種類
+     */
+    public enum Permission {
+        /** 呼び出してはいけない */
+        DENIED,
+        /** 通常の呼び出し */
+        PERMITTED,
+        /** HALF_OPENでの試行（結果はonTrialSuccess/onFailureで記録する） */
+        TRIAL
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // 直近の呼び出し結果（trueが失敗）のリングバッファ
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long stateSince = System.nanoTime();
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private final Map<State, LongAdder> transitions = new EnumMap<>(State.class);
+
+    public CircuitBreaker(String name, AdProperty.CircuitBreaker config) {
+        this.name = name;
+        this.enabled = config.isEnabled();
+        this.window = new boolean[Math.max(1, config.getWindowSize())];
+        this.minimumCalls = Math.min(window.length, Math.max(1, config.getMinimumCalls()));
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.openNanos = config.getOpenDuration().toNanos();
+        this.halfOpenCalls = Math.max(1, config.getHalfOpenCalls());
+        for (State s : State.values()) {
+            transitions.put(s, new LongAdder());
+        }
+    }
+
+    /**
+     * 呼び出しを通せる状態かどうか（許可は消費しない）
+     */
+    public synchronized boolean isCallPermitted() {
+        if (!enabled) {
+            return true;
+        }
+        switch (refreshState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                return halfOpenPermits > 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 呼び出しの許可を得る。HALF_OPENでは試行できる呼び出し数を1つ消費する
+     *
+     * @return 呼び出してはいけない場合はfalse
+     */
+    public boolean tryAcquirePermission() {
+        return acquirePermission() != Permission.DENIED;
+    }
+
+    /**
+     * 呼び出しの許可を得る。HALF_OPENでは試行できる呼び出し数を1つ消費してTRIALを返す
+     */
+    public synchronized Permission acquirePermission() {
+        if (!enabled) {
+            return Permission.PERMITTED;
+        }
+        switch (refreshState()) {
+            case CLOSED:
+                return Permission.PERMITTED;
+            case HALF_OPEN:
+                if (halfOpenPermits > 0) {
+                    halfOpenPermits--;
+                    return Permission.TRIAL;
+                }
+                return Permission.DENIED;
+            default:
+                return Permission.DENIED;
+        }
+    }
+
+    /**
+     * DCが応答した呼び出しを記録する
+     * HALF_OPENでは試行の許可を得ていない呼び出しのため、閉じる判定には数えない
+     */
+    public synchronized void onSuccess() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * 試行の許可（TRIAL）を得た呼び出しにDCが応答したことを記録する
+     */
+    public synchronized void onTrialSuccess() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            halfOpenSuccesses++;
+            if (halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * 接続の確立や通信に失敗した呼び出しを記録する
+     */
+    public synchronized void onFailure() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return refreshState();
+    }
+
+    /**
+     * 直近のウィンドウでの失敗率（%）
+     */
+    public synchronized double getFailureRate() {
+        return windowCount == 0 ? 0 : windowFailures * 100.0 / windowCount;
+    }
+
+    /**
+     * 指定された状態へ遷移した回数（メトリクス用）
+     */
+    public long getTransitions(State to) {
+        return transitions.get(to).sum();
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    /**
+     * OPENの期間が過ぎていればHALF_OPENへ、HALF_OPENで試行した呼び出しが結果を返さないまま
+     * 同じ期間が過ぎていれば試行できる呼び出し数を補充する
+     */
+    private State refreshState() {
+        long elapsed = System.nanoTime() - stateSince;
+        if (state == State.OPEN && elapsed >= openNanos) {
+            transitionTo(State.HALF_OPEN);
+        } else if (state == State.HALF_OPEN && halfOpenPermits == 0 && elapsed >= openNanos) {
+            halfOpenPermits = halfOpenCalls - halfOpenSuccesses;
+            stateSince = System.nanoTime();
+        }
+        return state;
+    }
+
+    private void transitionTo(State to) {
+        State from = state;
+        state = to;
+        stateSince = System.nanoTime();
+        if (to == State.HALF_OPEN) {
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        } else if (to == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+        transitions.get(to).increment();
+        if (to == State.OPEN) {
+            logger.warn("サーキットブレーカーが開きました（{}）: {} -> {}", name, from, to);
+        } else {
+            logger.info("サーキットブレーカーの状態が変わりました（{}）: {} -> {}", name, from, to);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.ldap;
+
+/**
+ * 接続プール上で発生したLDAP操作の結果を受け取るリスナー
+ * DCごとの遅延計測や障害検知に使用します。
+ */
+public interface ConnectionEventListener {
+
+    /**
+     * 何もしないリスナー
+     */
+    ConnectionEventListener NONE = new ConnectionEventListener() {
+    };
+
+    /**
+     * LDAP操作が応答を返した（LDAPエラー応答を含む）
+     *
+     * @param operation 操作名（search, modifyAttributes など）
+     * @param elapsedNanos 所要時間（ナノ秒）
+     */
+    default void onOperationCompleted(String operation, long elapsedNanos) {
+    }
+
+    /**
+     * サーキットブレーカーの試行として貸し出した接続で、最初のLDAP操作が応答を返した
+     * onOperationCompletedの後に呼ばれます。
+     */
+    default void onTrialCompleted() {
+    }
+
+    /**
+     * 接続の確立や通信そのものに失敗した
+     *
+     * @param cause 発生した例外
+     */
+    default void onConnectionFailure(Throwable cause) {
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.demo.ldap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.config.AdProperty;
+
+/**
+ * 接続先DCの1つを表し、そのDC専用の接続プールと健全性・遅延の統計を持つ
+ * 通信障害が連続した場合は受動的に振り分け対象から外されます（イジェクト）。
+ * 通信失敗率が高い場合はサーキットブレーカーが開き、イジェクト中と違い他のDCがなくても呼び出しを止めます。
+ */
+public class DcEndpoint implements ConnectionEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(DcEndpoint.class);
+
+    /**
+     * 計測値がまだない場合の遅延の初期値（1ms）
+     */
+    private static final double INITIAL_LATENCY_NANOS = 1_000_000;
+
+    private final String host;
+    private final AdProperty.Health health;
+    private final CircuitBreaker circuitBreaker;
+    private LdapConnectionPool pool;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean ejected;
+    private volatile long ejectedUntil;
+    private int ejectionCount;
+
+    private double ewmaLatencyNanos = INITIAL_LATENCY_NANOS;
+    private long lastSampleAt = System.nanoTime();
+
+    public DcEndpoint(String host, AdProperty.Health health) {
+        this(host, health, new CircuitBreaker(host, new AdProperty.CircuitBreaker()));
+    }
+
+    public DcEndpoint(String host, AdProperty.Health health, CircuitBreaker circuitBreaker) {
+        this.host = host;
+        this.health = health;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    void attach(LdapConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public LdapConnectionPool getPool() {
+        return pool;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * 処理中（貸し出し中の接続）の要求数
+     */
+    public int getOutstanding() {
+        return pool.getActiveConnections();
+    }
+
+    public synchronized double getEwmaLatencyNanos() {
+        return ewmaLatencyNanos;
+    }
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    /**
+     * イジェクト期間が過ぎ、再プローブ可能かどうか
+     */
+    boolean isProbeDue() {
+        return ejected && System.nanoTime() - ejectedUntil >= 0;
+    }
+
+    @Override
+    public void onOperationCompleted(String operation, long elapsedNanos) {
+        consecutiveFailures.set(0);
+        circuitBreaker.onSuccess();
+        recordLatency(elapsedNanos);
+    }
+
+    @Override
+    public void onTrialCompleted() {
+        circuitBreaker.onTrialSuccess();
+    }
+
+    @Override
+    public void onConnectionFailure(Throwable cause) {
+        circuitBreaker.onFailure();
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= health.getFailureThreshold() && !ejected) {
+            eject(cause);
+        }
+    }
+
+    /**
+     * 再プローブに成功したので振り分け対象に戻す
+     */
+    synchronized void restore() {
+        if (ejected) {
+            logger.info("DCを振り分け対象に復帰しました: {}", host);
+        }
+        ejected = false;
+        ejectionCount = 0;
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * 振り分け対象から外す。繰り返しイジェクトされるほど期間を延ばす。
+     */
+    synchronized void eject(Throwable cause) {
+        long base = health.getEjectionTime().toNanos();
+        long max = health.getMaxEjectionTime().toNanos();
+        long duration = Math.min(max, base << Math.min(ejectionCount, 16));
+        ejectedUntil = System.nanoTime() + duration;
+        ejectionCount++;
+        if (!ejected) {
+            logger.warn("DCを振り分け対象から外しました: {} ({}ms) - {}", host, duration / 1_000_000,
+                    cause != null ? cause.getMessage() : "probe failed");
+        }
+        ejected = true;
+    }
+
+    /**
+     * 経過時間で減衰するEWMAで応答遅延を更新する
+     */
+    private synchronized void recordLatency(long elapsedNanos) {
+        long now = System.nanoTime();
+        double decay = Math.exp(-(double) (now - lastSampleAt) / health.getLatencyDecay().toNanos());
+        ewmaLatencyNanos = ewmaLatencyNanos * decay + elapsedNanos * (1 - decay);
+        lastSampleAt = now;
+    }
+}
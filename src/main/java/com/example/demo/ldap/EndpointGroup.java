@@ -0,0 +1,131 @@
+package com.example.demo.ldap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryExceptionHandler;
+import com.example.demo.exception.CircuitOpenException;
+
+/**
+ * 同じ用途（読み取り/更新）で使う複数のDCをまとめ、選択戦略に従って接続を振り分ける
+ * 接続できなかったDCは飛ばして次のDCへフェイルオーバーし、イジェクトされたDCはバックグラウンドで再プローブします。
+ * サーキットブレーカーが開いているDCには振り分けず、全DCで開いている場合は接続を試みずに失敗させます。
+ */
+public class EndpointGroup implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EndpointGroup.class);
+
+    private static final String[] PROBE_ATTRIBUTES = {"currentTime"};
+
+    private final String name;
+    private final List<DcEndpoint> endpoints;
+    private final EndpointSelector selector;
+    private final ScheduledExecutorService prober;
+
+    public EndpointGroup(String name, List<DcEndpoint> endpoints, EndpointSelector selector,
+                         AdProperty.Health health) {
+        this.name = name;
+        this.endpoints = List.copyOf(endpoints);
+        this.selector = selector;
+        this.prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ldap-probe-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = health.getProbeInterval().toMillis();
+        prober.scheduleWithFixedDelay(this::probeEjected, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 選択戦略に従ってDCを選び、そのDCのプールから接続を借りる
+     * 接続に失敗した場合は残りのDCへ順にフェイルオーバーします
+     *
+     * @throws CircuitOpenException 全DCのサーキットブレーカーが開いている場合
+     */
+    public PooledLdapContext borrow() throws NamingException {
+        List<DcEndpoint> tried = new ArrayList<>();
+        NamingException lastFailure = null;
+        List<DcEndpoint> candidates;
+        while (!(candidates = candidates(tried)).isEmpty()) {
+            DcEndpoint endpoint = selector.select(candidates);
+            tried.add(endpoint);
+            CircuitBreaker.Permission permission = endpoint.getCircuitBreaker().acquirePermission();
+            if (permission == CircuitBreaker.Permission.DENIED) {
+                continue;
+            }
+            try {
+                return endpoint.getPool().borrow(permission == CircuitBreaker.Permission.TRIAL);
+            } catch (CommunicationException | ServiceUnavailableException e) {
+                lastFailure = e;
+                logger.warn("DCへの接続に失敗したため次のDCへ切り替えます（{}）: {} - {}",
+                        name, endpoint.getHost(), e.getMessage());
+            }
+        }
+        if (lastFailure == null) {
+            throw ActiveDirectoryExceptionHandler.circuitOpen(name);
+        }
+        throw lastFailure;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<DcEndpoint> getEndpoints() {
+        return Collections.unmodifiableList(endpoints);
+    }
+
+    @Override
+    public void close() {
+        prober.shutdownNow();
+        endpoints.forEach(endpoint -> endpoint.getPool().close());
+    }
+
+    /**
+     * まだ試していない正常なDC。正常なDCが残っていない場合はイジェクト中のDCも候補にする
+     * サーキットブレーカーが開いているDCは候補にしない
+     */
+    private List<DcEndpoint> candidates(List<DcEndpoint> tried) {
+        List<DcEndpoint> healthy = new ArrayList<>();
+        List<DcEndpoint> remaining = new ArrayList<>();
+        for (DcEndpoint endpoint : endpoints) {
+            if (tried.contains(endpoint) || !endpoint.getCircuitBreaker().isCallPermitted()) {
+                continue;
+            }
+            remaining.add(endpoint);
+            if (!endpoint.isEjected()) {
+                healthy.add(endpoint);
+            }
+        }
+        return healthy.isEmpty() ? remaining : healthy;
+    }
+
+    /**
+     * イジェクト期間が過ぎたDCへ接続を試み、成功すれば振り分け対象に戻す
+     */
+    private void probeEjected() {
+        for (DcEndpoint endpoint : endpoints) {
+            if (!endpoint.isProbeDue()) {
+                continue;
+            }
+            try (PooledLdapContext ctx = endpoint.getPool().borrow()) {
+                ctx.getAttributes("", PROBE_ATTRIBUTES);
+                endpoint.restore();
+            } catch (NamingException | RuntimeException e) {
+                endpoint.eject(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.ldap;
+
+import java.util.List;
+
+/**
+ * 接続先DCを選択する戦略
+ */
+@FunctionalInterface
+public interface EndpointSelector {
+
+    /**
+     * 候補の中から接続先を1つ選ぶ
+     *
+     * @param candidates 選択可能なDC（設定順、空ではない）
+     * @return 選ばれたDC
+     */
+    DcEndpoint select(List<DcEndpoint> candidates);
+}
@@ -0,0 +1,13 @@
+package com.example.demo.ldap;
+
+/**
+ * 応答遅延のEWMAと処理中の要求数の積が小さいDCを選ぶセレクター
+ * 遅いDCほど選ばれにくく、速いDCでも混雑していれば他へ振り分けます。
+ */
+class LatencyEwmaSelector extends LeastOutstandingSelector {
+
+    @Override
+    protected double score(DcEndpoint endpoint) {
+        return endpoint.getEwmaLatencyNanos() * (endpoint.getOutstanding() + 1);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.ldap;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Active Directoryへの接続を一元管理するコンポーネント
+ * 読み取り用と更新用で独立したプールを持ち、大量の更新が検索の接続を枯渇させないようにします。
+ * 読み取り用は選択戦略に従って複数DCへ分散し、更新用は優先DCに固定して障害時のみ次のDCへ切り替えます。
+ */
+@Component
+public class LdapConnectionManager {
+
+    @Autowired
+    private AdProperty adProperty;
+
+    @Autowired
+    private OperationObserver operationObserver;
+
+    private final Map<AccessMode, EndpointGroup> groups = new EnumMap<>(AccessMode.class);
+
+    @PostConstruct
+    void init() {
+        groups.put(AccessMode.READ, createGroup("read", adProperty.getRead(), SelectionStrategy.ROUND_ROBIN));
+        groups.put(AccessMode.WRITE, createGroup("write", adProperty.getWrite(), SelectionStrategy.PRIORITY));
+    }
+
+    /**
+     * 指定された用途のDCグループから接続を借りる
+     *
+     * @param mode 読み取りか更新か
+     */
+    public PooledLdapContext getConnection(AccessMode mode) throws NamingException {
+        return groups.get(mode).borrow();
+    }
+
+    public EndpointGroup getEndpointGroup(AccessMode mode) {
+        return groups.get(mode);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        groups.values().forEach(EndpointGroup::close);
+    }
+
+    private EndpointGroup createGroup(String name, AdProperty.Role role, SelectionStrategy defaultStrategy) {
+        List<String> hosts = role.getHosts().isEmpty() ? List.of(adProperty.getHost()) : role.getHosts();
+        String principal = role.getPrincipal() != null ? role.getPrincipal() : adProperty.getAdminPrincipal();
+        String password = role.getPassword() != null ? role.getPassword() : adProperty.getPassword();
+
+        List<DcEndpoint> endpoints = new ArrayList<>();
+        for (String host : hosts) {
+            DcEndpoint endpoint = new DcEndpoint(host, adProperty.getHealth(),
+                    new CircuitBreaker(name + "-" + host, adProperty.getCircuitBreaker()));
+            endpoint.attach(new LdapConnectionPool(name + "-" + host, role.getPool(),
+                    () -> createContext(host, principal, password, role.getPool()), endpoint, operationObserver));
+            endpoints.add(endpoint);
+        }
+        SelectionStrategy strategy = role.getSelection() != null ? role.getSelection() : defaultStrategy;
+        return new EndpointGroup(name, endpoints, strategy.createSelector(), adProperty.getHealth());
+    }
+
+    /**
+     * LDAPS（ad.ssl=falseの場合はLDAP）で接続し、指定されたアカウントでシンプルバインドする
+     */
+    private LdapContext createContext(String host, String principal, String password,
+                                      AdProperty.Pool poolConfig) throws NamingException {
+        Hashtable<String, String> env = new Hashtable<>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        env.put(Context.PROVIDER_URL, adProperty.getProviderUrl(host));
+        env.put(Context.SECURITY_AUTHENTICATION, "simple");
+        env.put(Context.SECURITY_PRINCIPAL, principal);
+        env.put(Context.SECURITY_CREDENTIALS, password);
+
+        if (adProperty.isSsl()) {
+            env.put("java.naming.ldap.factory.socket", "javax.net.ssl.SSLSocketFactory");
+        }
+        env.put("com.sun.jndi.ldap.connect.timeout", String.valueOf(poolConfig.getConnectTimeout().toMillis()));
+        env.put("com.sun.jndi.ldap.read.timeout", String.valueOf(poolConfig.getReadTimeout().toMillis()));
+        // objectGUIDは文字列に変換すると値が壊れるため、バイト列のまま受け取る
+        env.put("java.naming.ldap.attributes.binary", "objectGUID");
+        return new InitialLdapContext(env, null);
+    }
+}
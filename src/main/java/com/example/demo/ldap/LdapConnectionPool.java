@@ -0,0 +1,297 @@
+package com.example.demo.ldap;
+
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.NamingException;
+import javax.naming.ldap.LdapContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryException;
+import com.example.demo.exception.ActiveDirectoryExceptionHandler;
+
+/**
+ * ヘルスチェック付きのLDAP接続プール
+ * 最小/最大サイズ、アイドル破棄、貸し出し・返却時の検証、最大寿命、貸し出しタイムアウトをサポートします。
+ * 貸し出した接続はclose()でプールへ返却されます。
+ */
+public class LdapConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LdapConnectionPool.class);
+
+    /**
+     * 検証プローブで読み取るRootDSE属性
+     */
+    private static final String[] VALIDATION_ATTRIBUTES = {"currentTime"};
+
+    /**
+     * 物理接続（接続＋バインド）を生成するファクトリ
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        LdapContext create() throws NamingException;
+    }
+
+    private final String name;
+    private final AdProperty.Pool config;
+    private final ConnectionFactory factory;
+    private final ConnectionEventListener listener;
+    private final OperationObserver observer;
+
+    // 先頭が最も最近返却された接続（LIFOで温かい接続を優先）
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+
+    // 貸し出し中の接続数をmaxSizeで制限する
+    private final Semaphore permits;
+
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed;
+
+    public LdapConnectionPool(String name, AdProperty.Pool config, ConnectionFactory factory) {
+        this(name, config, factory, ConnectionEventListener.NONE);
+    }
+
+    public LdapConnectionPool(String name, AdProperty.Pool config, ConnectionFactory factory,
+                              ConnectionEventListener listener) {
+        this(name, config, factory, listener, OperationObserver.NONE);
+    }
+
+    /**
+     * @param observer 接続の確立と各操作の所要時間を受け取るオブザーバー（メトリクス用）
+     */
+    public LdapConnectionPool(String name, AdProperty.Pool config, ConnectionFactory factory,
+                              ConnectionEventListener listener, OperationObserver observer) {
+        this.name = name;
+        this.config = config;
+        this.factory = factory;
+        this.listener = listener;
+        this.observer = observer;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ldap-pool-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = config.getEvictionInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::maintain, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * プールから接続を借りる
+     * 取得した接続は必ずclose()してください（try-with-resources推奨）
+     *
+     * @return 貸し出された接続
+     * @throws NamingException 新しい接続の確立に失敗した場合
+     * @throws ActiveDirectoryException 貸し出しタイムアウトに達した場合
+     */
+    public PooledLdapContext borrow() throws NamingException {
+        return borrow(false);
+    }
+
+    /**
+     * プールから接続を借りる
+     *
+     * @param trial サーキットブレーカーの試行として借りる場合はtrue（最初の操作の結果を試行の結果として通知する）
+     * @return 貸し出された接続
+     * @throws NamingException 新しい接続の確立に失敗した場合
+     * @throws ActiveDirectoryException 貸し出しタイムアウトに達した場合
+     */
+    public PooledLdapContext borrow(boolean trial) throws NamingException {
+        if (closed) {
+            throw new IllegalStateException("接続プールは既にクローズされています: " + name);
+        }
+        long waitMillis = config.getBorrowTimeout().toMillis();
+        try {
+            if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                throw ActiveDirectoryExceptionHandler.poolExhausted(name, waitMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ActiveDirectoryException("接続の取得が中断されました: " + name, e);
+        }
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (isReusable(connection, config.isValidateOnBorrow())) {
+                    connection.touch();
+                    return wrap(connection, trial);
+                }
+                destroy(connection);
+            }
+            connection = open();
+            return wrap(connection, trial);
+        } catch (NamingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 貸し出した接続を返却する（PooledContextHandlerから呼ばれる）
+     */
+    void release(PooledConnection connection) {
+        try {
+            if (closed || !isReusable(connection, config.isValidateOnReturn())) {
+                destroy(connection);
+                return;
+            }
+            try {
+                // ページング制御などのリクエストコントロールを次の利用者に持ち越さない
+                connection.getContext().setRequestControls(null);
+            } catch (NamingException e) {
+                destroy(connection);
+                return;
+            }
+            connection.touch();
+            idle.offerFirst(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    ConnectionEventListener getListener() {
+        return listener;
+    }
+
+    OperationObserver getObserver() {
+        return observer;
+    }
+
+    /**
+     * 現在の物理接続数（アイドル＋貸し出し中）
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return config.getMaxSize() - permits.availablePermits();
+    }
+
+    /**
+     * 貸し出し待ちのスレッド数
+     */
+    public int getPendingBorrowers() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            destroy(connection);
+        }
+    }
+
+    private PooledConnection open() throws NamingException {
+        LdapContext ctx;
+        long start = System.nanoTime();
+        try {
+            ctx = factory.create();
+        } catch (NamingException e) {
+            observer.onConnect(name, System.nanoTime() - start, e);
+            listener.onConnectionFailure(e);
+            throw e;
+        }
+        observer.onConnect(name, System.nanoTime() - start, null);
+        totalConnections.incrementAndGet();
+        return new PooledConnection(ctx);
+    }
+
+    private PooledLdapContext wrap(PooledConnection connection, boolean trial) {
+        return (PooledLdapContext) Proxy.newProxyInstance(
+                PooledLdapContext.class.getClassLoader(),
+                new Class<?>[]{PooledLdapContext.class},
+                new PooledContextHandler(this, connection, trial));
+    }
+
+    private boolean isReusable(PooledConnection connection, boolean validate) {
+        if (connection.isBroken() || isExpired(connection)) {
+            return false;
+        }
+        if (!validate) {
+            return true;
+        }
+        long sinceLastUse = System.nanoTime() - connection.getLastUsedAt();
+        if (sinceLastUse < config.getValidationInterval().toNanos()) {
+            return true;
+        }
+        return probe(connection);
+    }
+
+    private boolean isExpired(PooledConnection connection) {
+        return System.nanoTime() - connection.getCreatedAt() >= config.getMaxLifetime().toNanos();
+    }
+
+    /**
+     * RootDSEを読み取り、接続が生きているか確認する
+     */
+    private boolean probe(PooledConnection connection) {
+        try {
+            connection.getContext().getAttributes("", VALIDATION_ATTRIBUTES);
+            return true;
+        } catch (NamingException e) {
+            logger.debug("接続の検証に失敗しました（{}）: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection connection) {
+        totalConnections.decrementAndGet();
+        try {
+            connection.getContext().close();
+        } catch (NamingException e) {
+            logger.debug("接続のクローズに失敗しました（{}）: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * アイドル・寿命切れ接続を破棄し、最小アイドル数まで補充する
+     */
+    private void maintain() {
+        try {
+            long idleTimeout = config.getIdleTimeout().toNanos();
+            long now = System.nanoTime();
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledConnection connection = it.next();
+                boolean idleTooLong = now - connection.getLastUsedAt() >= idleTimeout
+                        && idle.size() > config.getMinIdle();
+                if ((idleTooLong || isExpired(connection)) && idle.remove(connection)) {
+                    destroy(connection);
+                }
+            }
+
+            int room = config.getMaxSize() - getActiveConnections() - idle.size();
+            int missing = Math.min(config.getMinIdle() - idle.size(), room);
+            for (int i = 0; i < missing && !closed; i++) {
+                idle.offerLast(open());
+            }
+        } catch (NamingException e) {
+            logger.warn("アイドル接続の補充に失敗しました（{}）: {}", name, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("接続プールのメンテナンス中にエラーが発生しました（{}）", name, e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.ldap;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 処理中の要求が少ないDCを選ぶセレクター
+ * 全件走査ではなくランダムな2候補を比較し（Power of Two Choices）、同時に同じDCへ集中するのを避けます。
+ */
+class LeastOutstandingSelector implements EndpointSelector {
+
+    @Override
+    public DcEndpoint select(List<DcEndpoint> candidates) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        DcEndpoint a = candidates.get(first);
+        DcEndpoint b = candidates.get(second);
+        return score(a) <= score(b) ? a : b;
+    }
+
+    protected double score(DcEndpoint endpoint) {
+        return endpoint.getOutstanding();
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.demo.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 範囲指定取得（member;range=low-high）で多値属性memberを読み取る
+ * ADはMaxValRange（既定1500）を超える値を1回の応答で返さないため、範囲を進めながら全件を取得します。
+ * 先読みを有効にすると、現在の範囲を処理している間に次の範囲を別の接続で取得します。
+ * 先読みは仮想スレッドで実行し、呼び出し元のOperationScopeを引き継ぐため、キャンセル時は先読みの接続も閉じられます。
+ * 範囲の大きさと先読みの有無はad.member-range.*で設定します。
+ */
+@Component
+public class MemberRangeReader {
+
+    private static final String MEMBER = "member";
+    private static final String RANGE_OPTION = ";range=";
+
+    /**
+     * 指定された範囲のmember値を取得する（範囲単位でリトライ可能な処理を渡す）
+     */
+    @FunctionalInterface
+    public interface RangeFetcher {
+        Range fetch(int low, int high) throws NamingException;
+    }
+
+    /**
+     * 1回の応答で返された範囲
+     *
+     * @param values 値
+     * @param high 返された範囲の終端（最後の範囲の場合は無視される）
+     * @param last 最後の範囲かどうか
+     */
+    public record Range(List<String> values, int high, boolean last) {
+    }
+
+    @Autowired
+    private AdProperty adProperty;
+
+    private int rangeSize;
+    private boolean prefetch;
+    private Executor executor;
+    private ExecutorService ownedExecutor;
+
+    public MemberRangeReader() {
+    }
+
+    public MemberRangeReader(int rangeSize, boolean prefetch, Executor executor) {
+        this.rangeSize = rangeSize;
+        this.prefetch = prefetch;
+        this.executor = executor;
+    }
+
+    @PostConstruct
+    void init() {
+        AdProperty.MemberRange config = adProperty.getMemberRange();
+        rangeSize = config.getSize();
+        prefetch = config.isPrefetch();
+        // 先読みは1回の読み取りにつき同時に1つまでのため、スレッド数は並行している読み取りの数で抑えられる
+        ownedExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ad-member-range-", 0).factory());
+        executor = ownedExecutor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 全範囲を順に取得し、値をconsumerへ渡す
+     * consumerが例外をスローした場合や割り込まれた場合は、実行中の先読みをキャンセルします。
+     *
+     * @param fetcher 範囲ごとの取得処理
+     * @param consumer 値を受け取る処理
+     * @return 渡した値の数
+     */
+    public int read(RangeFetcher fetcher, Consumer<String> consumer) throws NamingException {
+        OperationScope scope = OperationScope.current();
+        int low = 0;
+        int count = 0;
+        Range current = fetcher.fetch(low, low + rangeSize - 1);
+        while (true) {
+            FutureTask<Range> next = null;
+            int nextLow = current.high() + 1;
+            if (!current.last() && prefetch) {
+                // サーバーが返した範囲の幅で次の範囲を先に要求しておく
+                int step = Math.max(1, current.high() - low + 1);
+                next = new FutureTask<>(() -> fetchInScope(scope, fetcher, nextLow, nextLow + step - 1));
+                executor.execute(next);
+            }
+
+            try {
+                current.values().forEach(consumer);
+                count += current.values().size();
+                if (current.last()) {
+                    return count;
+                }
+
+                low = nextLow;
+                current = next != null ? await(next) : fetcher.fetch(low, low + rangeSize - 1);
+            } finally {
+                // 正常に受け取った場合は完了済みのため何もしない
+                if (next != null) {
+                    next.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * 1つの範囲を検索する
+     *
+     * @param ctx 接続
+     * @param groupDn グループのDN
+     * @param low 範囲の始端
+     * @param high 範囲の終端（要求値。サーバーがより小さい範囲を返すことがある）
+     */
+    public static Range fetchRange(DirContext ctx, String groupDn, int low, int high) throws NamingException {
+        SearchControls searchControls = new SearchControls();
+        searchControls.setSearchScope(SearchControls.OBJECT_SCOPE);
+        searchControls.setReturningAttributes(new String[]{MEMBER + RANGE_OPTION + low + "-" + high});
+
+        NamingEnumeration<SearchResult> results = ctx.search(groupDn, "(objectClass=group)", searchControls);
+        if (!results.hasMore()) {
+            throw new NamingException("Group '" + groupDn + "' not found");
+        }
+        Attributes attributes = results.next().getAttributes();
+
+        NamingEnumeration<? extends Attribute> all = attributes.getAll();
+        while (all.hasMore()) {
+            Attribute attribute = all.next();
+            String id = attribute.getID().toLowerCase(Locale.ROOT);
+            if (id.equals(MEMBER)) {
+                // 範囲指定に対応しないサーバーは全値をそのまま返す
+                return new Range(values(attribute), low + attribute.size() - 1, true);
+            }
+            if (id.startsWith(MEMBER + RANGE_OPTION)) {
+                String end = id.substring(id.indexOf('-', MEMBER.length() + RANGE_OPTION.length()) + 1);
+                boolean last = end.equals("*");
+                int returnedHigh = last ? low + attribute.size() - 1 : Integer.parseInt(end);
+                return new Range(values(attribute), returnedHigh, last);
+            }
+        }
+        // member属性がない（メンバー0件、または最後の範囲をちょうど読み終えた）
+        return new Range(List.of(), low - 1, true);
+    }
+
+    private static List<String> values(Attribute attribute) throws NamingException {
+        List<String> values = new ArrayList<>(attribute.size());
+        NamingEnumeration<?> all = attribute.getAll();
+        while (all.hasMore()) {
+            values.add(all.next().toString());
+        }
+        return values;
+    }
+
+    /**
+     * 呼び出し元のスコープをbindして先読みする（先読みで借りた接続もキャンセルの対象にする）
+     */
+    private static Range fetchInScope(OperationScope scope, RangeFetcher fetcher, int low, int high) throws NamingException {
+        if (scope != null) {
+            scope.bind();
+        }
+        try {
+            return fetcher.fetch(low, high);
+        } finally {
+            if (scope != null) {
+                scope.unbind();
+            }
+        }
+    }
+
+    private static Range await(FutureTask<Range> future) throws NamingException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ActiveDirectoryException("メンバーの読み取りが中断されました", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NamingException) {
+                throw (NamingException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ActiveDirectoryException("メンバーの読み取りに失敗しました", e.getCause());
+        }
+    }
+}
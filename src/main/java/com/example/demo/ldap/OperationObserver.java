@@ -0,0 +1,36 @@
+package com.example.demo.ldap;
+
+/**
+ * 接続プール上で行われたLDAP操作の所要時間と結果を受け取るオブザーバー（メトリクス用）
+ * ConnectionEventListenerと違いDCの健全性の判定には使われず、失敗した操作も含めて全ての操作が通知されます。
+ */
+public interface OperationObserver {
+
+    /**
+     * 何もしないオブザーバー
+     */
+    OperationObserver NONE = new OperationObserver() {
+    };
+
+    /**
+     * 物理接続の確立が終わった
+     * JNDIではTLSハンドシェイクとシンプルバインドが接続の確立と同時に行われます。
+     *
+     * @param pool 接続プール名
+     * @param elapsedNanos 所要時間（ナノ秒）
+     * @param error 失敗した場合の例外（成功した場合はnull）
+     */
+    default void onConnect(String pool, long elapsedNanos, Throwable error) {
+    }
+
+    /**
+     * 貸し出した接続上で、DCへの往復が発生する操作が終わった
+     *
+     * @param pool 接続プール名
+     * @param operation JNDIのメソッド名（search, modifyAttributes など）
+     * @param elapsedNanos 所要時間（ナノ秒）
+     * @param error 失敗した場合の例外（成功した場合はnull）
+     */
+    default void onOperation(String pool, String operation, long elapsedNanos, Throwable error) {
+    }
+}
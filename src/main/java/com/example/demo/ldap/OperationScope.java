@@ -0,0 +1,59 @@
+package com.example.demo.ldap;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 1つの非同期操作の中で借りた接続を追跡し、キャンセル時に実行中のLDAP操作を中断する
+ * 操作を実行するスレッドにbindしている間に借りた接続が対象になります。
+ * JNDIの読み取りは割り込みに応答しないため、中断は物理接続を閉じることで行います。
+ */
+public class OperationScope {
+
+    private static final ThreadLocal<OperationScope> CURRENT = new ThreadLocal<>();
+
+    private final Set<PooledContextHandler> inFlight = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean cancelled;
+
+    /**
+     * 現在のスレッドにbindされているスコープ（ない場合はnull）
+     */
+    public static OperationScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 現在のスレッドで借りる接続をこのスコープで追跡する
+     */
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    public void unbind() {
+        CURRENT.remove();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 以降の接続の取得を止め、貸し出し中の接続を閉じて実行中の操作を中断する
+     */
+    public void cancel() {
+        cancelled = true;
+        inFlight.forEach(PooledContextHandler::abort);
+    }
+
+    void attach(PooledContextHandler handler) {
+        inFlight.add(handler);
+        if (cancelled) {
+            handler.abort();
+        }
+    }
+
+    void detach(PooledContextHandler handler) {
+        inFlight.remove(handler);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.ldap;
+
+import javax.naming.ldap.LdapContext;
+
+/**
+ * プールが管理する物理LDAP接続とそのメタデータ
+ */
+class PooledConnection {
+
+    private final LdapContext context;
+    private final long createdAt;
+    private volatile long lastUsedAt;
+    private volatile boolean broken;
+
+    PooledConnection(LdapContext context) {
+        this.context = context;
+        this.createdAt = System.nanoTime();
+        this.lastUsedAt = createdAt;
+    }
+
+    LdapContext getContext() {
+        return context;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    void touch() {
+        lastUsedAt = System.nanoTime();
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * 通信エラーなどで再利用できなくなった接続としてマークする
+     */
+    void markBroken() {
+        broken = true;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.demo.ldap;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+
+/**
+ * 貸し出し中の接続に対する呼び出しを物理接続へ委譲する。
+ * close()は物理接続を閉じずにプールへ返却する。
+ */
+class PooledContextHandler implements InvocationHandler {
+
+    /**
+     * DCへの往復が発生する操作（遅延計測の対象）
+     */
+    static final Set<String> REMOTE_OPERATIONS = Set.of(
+            "search", "getAttributes", "modifyAttributes", "createSubcontext", "destroySubcontext",
+            "rename", "lookup", "list", "listBindings", "bind", "rebind", "unbind", "extendedOperation");
+
+    private final LdapConnectionPool pool;
+    private final PooledConnection connection;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+    private final AtomicBoolean aborted = new AtomicBoolean(false);
+
+    // サーキットブレーカーの試行として貸し出され、まだ結果を通知していない
+    private final AtomicBoolean trial;
+
+    // 貸し出したスレッドにbindされていたスコープ（キャンセル時に接続を閉じる）
+    private final OperationScope scope;
+
+    PooledContextHandler(LdapConnectionPool pool, PooledConnection connection) {
+        this(pool, connection, false);
+    }
+
+    PooledContextHandler(LdapConnectionPool pool, PooledConnection connection, boolean trial) {
+        this.pool = pool;
+        this.connection = connection;
+        this.trial = new AtomicBoolean(trial);
+        this.scope = OperationScope.current();
+        if (scope != null) {
+            scope.attach(this);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if ("close".equals(name) && method.getParameterCount() == 0) {
+            // 二重closeでも返却は一度だけ
+            if (released.compareAndSet(false, true)) {
+                if (scope != null) {
+                    scope.detach(this);
+                }
+                pool.release(connection);
+            }
+            return null;
+        }
+        if ("equals".equals(name) && method.getParameterCount() == 1) {
+            return proxy == args[0];
+        }
+        if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+            return System.identityHashCode(proxy);
+        }
+        if ("toString".equals(name) && method.getParameterCount() == 0) {
+            return "PooledLdapContext[" + pool.getName() + "]";
+        }
+        if ("getPoolName".equals(name) && method.getParameterCount() == 0) {
+            return pool.getName();
+        }
+        if (released.get()) {
+            throw new IllegalStateException("プールへ返却済みの接続は使用できません");
+        }
+
+        boolean remote = REMOTE_OPERATIONS.contains(name);
+        long start = System.nanoTime();
+        try {
+            Object result = method.invoke(connection.getContext(), args);
+            if (remote) {
+                long elapsed = System.nanoTime() - start;
+                pool.getListener().onOperationCompleted(name, elapsed);
+                pool.getObserver().onOperation(pool.getName(), name, elapsed, null);
+                completeTrial();
+            }
+            return result;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (remote) {
+                pool.getObserver().onOperation(pool.getName(), name, System.nanoTime() - start, cause);
+            }
+            if (aborted.get()) {
+                // キャンセルによる切断はDCの障害として数えない
+                throw cause;
+            }
+            if (isCommunicationFailure(cause)) {
+                trial.set(false);
+                connection.markBroken();
+                pool.getListener().onConnectionFailure(cause);
+            } else if (remote) {
+                pool.getListener().onOperationCompleted(name, System.nanoTime() - start);
+                completeTrial();
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * DCとの通信そのものに失敗したかどうか
+     * 読み取りタイムアウトはJNDIから原因を持たないNamingExceptionとして通知されるため、メッセージで判定する
+     */
+    static boolean isCommunicationFailure(Throwable error) {
+        if (error instanceof CommunicationException || error instanceof ServiceUnavailableException) {
+            return true;
+        }
+        if (error.getClass() == NamingException.class && error.getMessage() != null
+                && error.getMessage().contains("read timed out")) {
+            return true;
+        }
+        // NamingExceptionのgetCause()はgetRootCause()を返す
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException || t instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void completeTrial() {
+        if (trial.compareAndSet(true, false)) {
+            pool.getListener().onTrialCompleted();
+        }
+    }
+
+    /**
+     * 実行中の操作を中断するため物理接続を閉じる（接続は返却時に破棄される）
+     */
+    void abort() {
+        if (released.get() || !aborted.compareAndSet(false, true)) {
+            return;
+        }
+        connection.markBroken();
+        try {
+            connection.getContext().close();
+        } catch (NamingException e) {
+            // 既に切断されている
+        }
+    }
+}
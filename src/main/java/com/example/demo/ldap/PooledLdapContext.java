@@ -0,0 +1,19 @@
+package com.example.demo.ldap;
+
+import javax.naming.NamingException;
+import javax.naming.ldap.LdapContext;
+
+/**
+ * 接続プールから貸し出されるLDAPコンテキスト
+ * try-with-resourcesで使用でき、close()すると物理接続を閉じずにプールへ返却します。
+ */
+public interface PooledLdapContext extends LdapContext, AutoCloseable {
+
+    @Override
+    void close() throws NamingException;
+
+    /**
+     * 貸し出し元の接続プール名（"read-dc1.example.com" のように用途とDCを表す）
+     */
+    String getPoolName();
+}
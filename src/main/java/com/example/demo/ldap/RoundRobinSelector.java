@@ -0,0 +1,17 @@
+package com.example.demo.ldap;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 候補を順番に選ぶセレクター
+ */
+class RoundRobinSelector implements EndpointSelector {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public DcEndpoint select(List<DcEndpoint> candidates) {
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.ldap;
+
+/**
+ * 複数DCから接続先を選ぶ戦略
+ */
+public enum SelectionStrategy {
+
+    /**
+     * 順番に割り振る
+     */
+    ROUND_ROBIN,
+
+    /**
+     * 処理中の要求が最も少ないDCを選ぶ
+     */
+    LEAST_OUTSTANDING,
+
+    /**
+     * 指数移動平均（EWMA）による応答遅延と処理中の要求数で重み付けして選ぶ
+     */
+    LATENCY_EWMA,
+
+    /**
+     * 設定順で最初の正常なDCを選ぶ（優先DCへの固定とフェイルオーバー）
+     */
+    PRIORITY;
+
+    /**
+     * 戦略に対応するセレクターを生成する
+     */
+    public EndpointSelector createSelector() {
+        switch (this) {
+            case ROUND_ROBIN:
+                return new RoundRobinSelector();
+            case LEAST_OUTSTANDING:
+                return new LeastOutstandingSelector();
+            case LATENCY_EWMA:
+                return new LatencyEwmaSelector();
+            default:
+                return candidates -> candidates.get(0);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.demo.metrics;
+
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.cache.DirectoryReplica;
+import com.example.demo.cache.MembershipCache;
+import com.example.demo.cache.UserDnCache;
+import com.example.demo.ldap.AccessMode;
+import com.example.demo.ldap.CircuitBreaker;
+import com.example.demo.ldap.DcEndpoint;
+import com.example.demo.ldap.LdapConnectionManager;
+import com.example.demo.ldap.LdapConnectionPool;
+import com.example.demo.service.AdaptiveBatcher;
+import com.example.demo.service.AdaptiveBatcherRegistry;
+import com.example.demo.service.BulkOperationStats;
+import com.example.demo.service.GroupLookupService;
+import com.example.demo.service.GroupManagementService;
+import com.example.demo.service.GroupMembershipService;
+import com.example.demo.service.RetryPolicies;
+import com.example.demo.util.RetryBudget;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * 各コンポーネントが集計している統計値をゲージ・カウンターとして公開する
+ * 値は収集時にコンポーネントから読み取るため、LDAP操作の処理中に追加の集計は発生しません。
+ * 接続プールとサーキットブレーカーはDCごと、バッチサイズの調整は全DCの合計で公開します。
+ */
+@Component
+public class AdMeterBinder implements MeterBinder {
+
+    @Autowired
+    private LdapConnectionManager connectionManager;
+
+    @Autowired
+    private MembershipCache membershipCache;
+
+    @Autowired
+    private UserDnCache userDnCache;
+
+    @Autowired
+    private DirectoryReplica replica;
+
+    @Autowired
+    private RetryPolicies retryPolicies;
+
+    @Autowired
+    private AdaptiveBatcherRegistry batchers;
+
+    @Autowired
+    private BulkOperationStats bulkStats;
+
+    @Autowired
+    private GroupManagementService groupManagementService;
+
+    @Autowired
+    private GroupLookupService groupLookupService;
+
+    @Autowired
+    private GroupMembershipService groupMembershipService;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (AccessMode mode : AccessMode.values()) {
+            for (DcEndpoint endpoint : connectionManager.getEndpointGroup(mode).getEndpoints()) {
+                bindPool(registry, endpoint.getPool());
+                bindCircuitBreaker(registry, endpoint.getPool().getName(), endpoint.getCircuitBreaker());
+            }
+        }
+        bindCaches(registry);
+        bindRetryBudget(registry, retryPolicies.getBudget());
+        bindBulk(registry);
+        bindCoalescing(registry);
+    }
+
+    private void bindPool(MeterRegistry registry, LdapConnectionPool pool) {
+        Gauge.builder("ad.pool.connections", pool, LdapConnectionPool::getActiveConnections)
+                .description("貸し出し中の接続数")
+                .tag("pool", pool.getName()).tag("state", "active")
+                .register(registry);
+        Gauge.builder("ad.pool.connections", pool, LdapConnectionPool::getIdleConnections)
+                .description("アイドル状態の接続数")
+                .tag("pool", pool.getName()).tag("state", "idle")
+                .register(registry);
+        Gauge.builder("ad.pool.connections.total", pool, LdapConnectionPool::getTotalConnections)
+                .description("物理接続数（アイドル＋貸し出し中）")
+                .tag("pool", pool.getName())
+                .register(registry);
+        Gauge.builder("ad.pool.pending", pool, LdapConnectionPool::getPendingBorrowers)
+                .description("接続の貸し出しを待っているスレッド数")
+                .tag("pool", pool.getName())
+                .register(registry);
+    }
+
+    private void bindCircuitBreaker(MeterRegistry registry, String pool, CircuitBreaker breaker) {
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            // 現在の状態だけが1になる
+            Gauge.builder("ad.circuit.state", breaker, b -> b.getState() == state ? 1 : 0)
+                    .description("サーキットブレーカーの状態")
+                    .tag("pool", pool).tag("state", state.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+            FunctionCounter.builder("ad.circuit.transitions", breaker, b -> b.getTransitions(state))
+                    .description("サーキットブレーカーが状態に遷移した回数")
+                    .tag("pool", pool).tag("state", state.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        Gauge.builder("ad.circuit.failure.rate", breaker, CircuitBreaker::getFailureRate)
+                .description("スライディングウィンドウ内の通信失敗率（%）")
+                .tag("pool", pool)
+                .register(registry);
+    }
+
+    private void bindCaches(MeterRegistry registry) {
+        bindCache(registry, "membership", membershipCache, MembershipCache::size,
+                MembershipCache::getHitCount, MembershipCache::getMissCount);
+        Gauge.builder("ad.cache.dictionary.size", membershipCache, MembershipCache::getDictionarySize)
+                .description("メンバー一覧のキャッシュが共有しているDNの数")
+                .register(registry);
+        bindCache(registry, "user-dn", userDnCache, UserDnCache::size,
+                UserDnCache::getHitCount, UserDnCache::getMissCount);
+        bindReplica(registry);
+    }
+
+    private void bindReplica(MeterRegistry registry) {
+        Gauge.builder("ad.replica.entries", replica, DirectoryReplica::getGroupCount)
+                .description("レプリカに読み込まれているエントリ数")
+                .tag("type", "group")
+                .register(registry);
+        Gauge.builder("ad.replica.entries", replica, DirectoryReplica::getUserCount)
+                .description("レプリカに読み込まれているエントリ数")
+                .tag("type", "user")
+                .register(registry);
+        Gauge.builder("ad.replica.staleness", replica, DirectoryReplica::getStalenessSeconds)
+                .description("レプリカを最後に同期してからの経過秒数（未読み込みの場合は-1）")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("ad.replica.requests", replica, DirectoryReplica::getHitCount)
+                .description("レプリカへの問い合わせ回数")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("ad.replica.requests", replica, DirectoryReplica::getFallbackCount)
+                .description("レプリカへの問い合わせ回数")
+                .tag("result", "fallback")
+                .register(registry);
+    }
+
+    private <T> void bindCache(MeterRegistry registry, String name, T cache, ToLongFunction<T> size,
+                               ToLongFunction<T> hits, ToLongFunction<T> misses) {
+        Gauge.builder("ad.cache.size", cache, c -> size.applyAsLong(c))
+                .description("キャッシュされているエントリ数")
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("ad.cache.requests", cache, c -> hits.applyAsLong(c))
+                .description("キャッシュの参照回数")
+                .tag("cache", name).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("ad.cache.requests", cache, c -> misses.applyAsLong(c))
+                .description("キャッシュの参照回数")
+                .tag("cache", name).tag("result", "miss")
+                .register(registry);
+    }
+
+    private void bindRetryBudget(MeterRegistry registry, RetryBudget budget) {
+        Gauge.builder("ad.retry.budget.tokens", budget, RetryBudget::getTokens)
+                .description("リトライ予算の残りトークン数")
+                .register(registry);
+        FunctionCounter.builder("ad.retry.budget.rejected", budget, RetryBudget::getRejected)
+                .description("リトライ予算が不足して再試行しなかった回数")
+                .register(registry);
+    }
+
+    private void bindBulk(MeterRegistry registry) {
+        FunctionCounter.builder("ad.bulk.operations", bulkStats, BulkOperationStats::getOperations)
+                .description("一括追加・削除したグループ数")
+                .register(registry);
+        FunctionCounter.builder("ad.bulk.users", bulkStats, BulkOperationStats::getSucceededUsers)
+                .tag("result", "succeeded")
+                .register(registry);
+        FunctionCounter.builder("ad.bulk.users", bulkStats, BulkOperationStats::getFailedUsers)
+                .tag("result", "failed")
+                .register(registry);
+        FunctionCounter.builder("ad.bulk.users", bulkStats, BulkOperationStats::getSkippedUsers)
+                .tag("result", "skipped")
+                .register(registry);
+        FunctionCounter.builder("ad.bulk.batches", bulkStats, BulkOperationStats::getBatches)
+                .description("書き込んだバッチ数")
+                .register(registry);
+        FunctionCounter.builder("ad.bulk.batches.failed", bulkStats, BulkOperationStats::getFailedBatches)
+                .register(registry);
+        FunctionCounter.builder("ad.bulk.batch.time", bulkStats, s -> s.getBatchNanos() / 1e9)
+                .description("全バッチの所要時間の合計")
+                .baseUnit("seconds")
+                .register(registry);
+
+        Gauge.builder("ad.bulk.batch.size", batchers, r -> r.current().getCurrentSize())
+                .description("直近に書き込んだDCの現在のバッチサイズ")
+                .register(registry);
+        bindBatcherAdjustments(registry, "increase", AdaptiveBatcher::getIncreases);
+        bindBatcherAdjustments(registry, "latency", AdaptiveBatcher::getLatencyBackoffs);
+        bindBatcherAdjustments(registry, "error", AdaptiveBatcher::getErrorBackoffs);
+    }
+
+    /**
+     * 書き込み実績のある全DCの合計（DCは実行中に増えるため収集時に合計する）
+     */
+    private void bindBatcherAdjustments(MeterRegistry registry, String reason, ToLongFunction<AdaptiveBatcher> count) {
+        FunctionCounter.builder("ad.bulk.batch.adjustments", batchers,
+                        r -> r.getBatchers().stream().mapToLong(count).sum())
+                .description("バッチサイズを調整した回数")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private void bindCoalescing(MeterRegistry registry) {
+        FunctionCounter.builder("ad.lookup.coalesced", groupManagementService, GroupManagementService::getCoalescedCalls)
+                .description("同時の呼び出しで読み込み結果を共有した回数")
+                .tag("lookup", "group-members")
+                .register(registry);
+        FunctionCounter.builder("ad.lookup.coalesced", groupLookupService, GroupLookupService::getCoalescedCalls)
+                .description("同時の呼び出しで読み込み結果を共有した回数")
+                .tag("lookup", "group-list")
+                .register(registry);
+        FunctionCounter.builder("ad.lookup.coalesced", groupMembershipService, GroupMembershipService::getCoalescedCalls)
+                .description("同時の呼び出しで読み込み結果を共有した回数")
+                .tag("lookup", "user-dn")
+                .register(registry);
+    }
+}
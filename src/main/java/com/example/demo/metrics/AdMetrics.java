@@ -0,0 +1,172 @@
+package com.example.demo.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.ldap.OperationObserver;
+import com.example.demo.util.RetryListener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * LDAP操作・ページ単位の読み取り・リトライをMicrometerへ記録する
+ * 操作ごとの所要時間（ad.ldap.operation）はJNDIのメソッド名をLDAPの操作名（search、modify等）にまとめ、
+ * 接続プール名と成否をタグに付けます。ヒストグラムの有無はmanagement.metrics.distribution.*で設定します。
+ * 同じタグのメーターは毎回登録し直さず、初回に作成したものを使い回します。
+ */
+@Component
+public class AdMetrics implements OperationObserver, RetryListener {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Map<String, Timer> operationTimers = new ConcurrentHashMap<>();
+    private final Map<String, PageMeters> pageMeters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> retryCounters = new ConcurrentHashMap<>();
+
+    public AdMetrics() {
+    }
+
+    public AdMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 1ページ（範囲指定取得の1範囲、または1回の検索応答）分のメーター
+     */
+    private record PageMeters(Timer latency, DistributionSummary entries, DistributionSummary values,
+                              DistributionSummary bytes) {
+    }
+
+    @Override
+    public void onConnect(String pool, long elapsedNanos, Throwable error) {
+        operationTimer(pool, "connect", error).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onOperation(String pool, String operation, long elapsedNanos, Throwable error) {
+        operationTimer(pool, operationName(operation), error).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 1ページ分の読み取りを記録する
+     *
+     * @param source 読み取りの種類（member-range、group-list等）
+     * @param elapsedNanos リトライを含む所要時間（ナノ秒）
+     * @param entries 返されたエントリ数
+     * @param values 処理した属性値
+     */
+    public void recordPage(String source, long elapsedNanos, int entries, Collection<String> values) {
+        PageMeters meters = pageMeters.computeIfAbsent(source, this::createPageMeters);
+        long bytes = 0;
+        for (String value : values) {
+            bytes += utf8Length(value);
+        }
+        meters.latency().record(elapsedNanos, TimeUnit.NANOSECONDS);
+        meters.entries().record(entries);
+        meters.values().record(values.size());
+        meters.bytes().record(bytes);
+    }
+
+    @Override
+    public void onRetry(String policy, int attempts, Exception error) {
+        retryCounter("ad.retry.attempts", policy, "error", error.getClass().getSimpleName()).increment();
+    }
+
+    @Override
+    public void onRecovered(String policy, int attempts) {
+        retryCounter("ad.retry.recovered", policy, null, null).increment();
+    }
+
+    @Override
+    public void onGiveUp(String policy, int attempts, String reason, Exception error) {
+        retryCounter("ad.retry.exhausted", policy, "reason", reason).increment();
+    }
+
+    /**
+     * JNDIのメソッド名をLDAPの操作名にまとめる
+     */
+    static String operationName(String method) {
+        return switch (method) {
+            case "search", "getAttributes", "lookup", "list", "listBindings" -> "search";
+            case "modifyAttributes" -> "modify";
+            case "rename" -> "rename";
+            case "destroySubcontext", "unbind" -> "delete";
+            case "createSubcontext", "bind", "rebind" -> "add";
+            case "extendedOperation" -> "extended";
+            default -> method;
+        };
+    }
+
+    /**
+     * 文字列をUTF-8で符号化した場合のバイト数（符号化せずに数える）
+     */
+    static long utf8Length(String value) {
+        long bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private Timer operationTimer(String pool, String operation, Throwable error) {
+        String outcome = error == null ? "success" : "error";
+        return operationTimers.computeIfAbsent(pool + "|" + operation + "|" + outcome,
+                k -> Timer.builder("ad.ldap.operation")
+                        .description("DCへのLDAP操作の所要時間")
+                        .tag("pool", pool)
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .register(registry));
+    }
+
+    private PageMeters createPageMeters(String source) {
+        return new PageMeters(
+                Timer.builder("ad.ldap.page")
+                        .description("1ページ分の読み取りの所要時間")
+                        .tag("source", source)
+                        .register(registry),
+                DistributionSummary.builder("ad.ldap.page.entries")
+                        .description("1ページで返されたエントリ数")
+                        .tag("source", source)
+                        .register(registry),
+                DistributionSummary.builder("ad.ldap.page.values")
+                        .description("1ページで処理した属性値の数")
+                        .tag("source", source)
+                        .register(registry),
+                DistributionSummary.builder("ad.ldap.page.bytes")
+                        .description("1ページで処理した属性値のバイト数")
+                        .baseUnit("bytes")
+                        .tag("source", source)
+                        .register(registry));
+    }
+
+    private Counter retryCounter(String name, String policy, String tagKey, String tagValue) {
+        return retryCounters.computeIfAbsent(name + "|" + policy + "|" + tagValue, k -> {
+            Counter.Builder builder = Counter.builder(name).tag("policy", policy);
+            if (tagKey != null) {
+                builder.tag(tagKey, tagValue);
+            }
+            return builder.register(registry);
+        });
+    }
+}
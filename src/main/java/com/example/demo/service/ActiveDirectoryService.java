@@ -1,17 +1,17 @@
 package com.example.demo.service;
 
 import javax.naming.*;
-import javax.naming.directory.*;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryExceptionHandler;
+import com.example.demo.ldap.AccessMode;
+import com.example.demo.ldap.LdapConnectionManager;
+import com.example.demo.ldap.OperationScope;
+import com.example.demo.ldap.PooledLdapContext;
 import com.example.demo.util.RetryUtil;
 
-import java.util.Hashtable;
-import java.util.function.Supplier;
-
 /**
  * Active Directory操作のベースクラス
  * リトライ機能を組み込んでおり、子クラスで簡単にリトライ処理を使用できます
@@ -20,42 +20,45 @@ import java.util.function.Supplier;
 public class ActiveDirectoryService {
     
     @Autowired
-    private AdProperty adProperty;
+    private LdapConnectionManager connectionManager;
+    
+    @Autowired
+    private RetryPolicies retryPolicies;
     
     /**
-     * Active Directoryに接続する
+     * Active Directoryへの接続を接続プールから借りる
+     * close()すると接続はプールへ返却されます
+     * 
+     * @param mode 読み取り専用の検索ならREAD、ディレクトリを更新するならWRITE
      */
-    protected DirContext connect() throws NamingException {
-        Hashtable<String, String> env = new Hashtable<>();
-        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-        env.put(Context.PROVIDER_URL, adProperty.getProviderUrl());
-        env.put(Context.SECURITY_AUTHENTICATION, "simple");
-        env.put(Context.SECURITY_PRINCIPAL, adProperty.getAdminPrincipal());
-        env.put(Context.SECURITY_CREDENTIALS, adProperty.getPassword());
-
-        env.put("java.naming.ldap.factory.socket", "javax.net.ssl.SSLSocketFactory");
-        return new InitialDirContext(env);
+    protected PooledLdapContext connect(AccessMode mode) throws NamingException {
+        OperationScope scope = OperationScope.current();
+        if (scope != null && scope.isCancelled()) {
+            // タイムアウト・キャンセル済みの操作はリトライでも接続し直さない
+            throw ActiveDirectoryExceptionHandler.operationCancelled();
+        }
+        return connectionManager.getConnection(mode);
     }
     
     /**
      * リトライ機能付きで操作を実行する（戻り値あり）
+     * リトライできないNamingExceptionはそのままスローされます
      * 
+     * @param mode 操作の種類（リトライ方針の選択に使用）
      * @param operation 実行する操作
      * @return 操作の結果
      */
-    protected <T> T executeWithRetry(Supplier<T> operation) {
-        return RetryUtil.retryOnError(operation);
+    protected <T> T executeWithRetry(AccessMode mode, RetryUtil.RetryableOperation<T> operation) throws NamingException {
+        return RetryUtil.retryOnError(retryPolicies.forMode(mode), operation);
     }
     
     /**
      * リトライ機能付きで操作を実行する（戻り値なし）
      * 
+     * @param mode 操作の種類（リトライ方針の選択に使用）
      * @param operation 実行する操作
      */
-    protected void executeWithRetry(Runnable operation) {
-        RetryUtil.retryOnError(() -> {
-            operation.run();
-            return null;
-        });
+    protected void executeWithRetry(AccessMode mode, RetryUtil.RetryableAction operation) throws NamingException {
+        RetryUtil.retryOnError(retryPolicies.forMode(mode), operation);
     }
 }
@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.naming.LimitExceededException;
+import javax.naming.ServiceUnavailableException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.config.AdProperty;
+
+/**
+ * 1つのDCに対するメンバー変更のバッチサイズをAIMDで調整する
+ * 目標応答時間内に収まれば加算的に拡大し、超過した場合や管理上限・タイムアウト・ビジー応答を受けた場合は乗算的に縮小します。
+ * 同じDCへ並行して書き込む全グループで共有されます。
+ */
+public class AdaptiveBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatcher.class);
+
+    private final String dc;
+    private final boolean adaptive;
+    private final int minSize;
+    private final int maxSize;
+    private final int increaseStep;
+    private final double decreaseFactor;
+    private final Duration targetLatency;
+
+    private int size;
+
+    private final LongAdder increases = new LongAdder();
+    private final LongAdder latencyBackoffs = new LongAdder();
+    private final LongAdder errorBackoffs = new LongAdder();
+
+    public AdaptiveBatcher(String dc, AdProperty.Bulk config) {
+        this(dc, config, config.getBatchSize());
+    }
+
+    /**
+     * @param initialSize 最初のバッチサイズ（適応制御が有効な場合は上下限の範囲に収める）
+     */
+    public AdaptiveBatcher(String dc, AdProperty.Bulk config, int initialSize) {
+        this.dc = dc;
+        this.adaptive = config.isAdaptive();
+        this.minSize = Math.max(1, config.getMinBatchSize());
+        this.maxSize = Math.max(minSize, config.getMaxBatchSize());
+        this.increaseStep = config.getIncreaseStep();
+        this.decreaseFactor = config.getDecreaseFactor();
+        this.targetLatency = config.getTargetLatency();
+        this.size = adaptive ? Math.min(Math.max(initialSize, minSize), maxSize) : initialSize;
+    }
+
+    /**
+     * 次のバッチのサイズ
+     */
+    public synchronized int nextSize() {
+        return size;
+    }
+
+    /**
+     * 成功したバッチの応答時間を反映する
+     *
+     * @param batchSize 実際に送ったバッチのサイズ
+     * @param elapsed リトライを含む所要時間
+     */
+    public synchronized void onSuccess(int batchSize, Duration elapsed) {
+        if (!adaptive) {
+            return;
+        }
+        if (elapsed.compareTo(targetLatency) > 0) {
+            latencyBackoffs.increment();
+            decrease(batchSize, "応答時間 " + elapsed.toMillis() + "ms");
+        } else if (batchSize >= size && size < maxSize) {
+            // 端数の小さいバッチが速かっただけでは拡大しない
+            size = Math.min(maxSize, size + increaseStep);
+            increases.increment();
+            logger.debug("バッチサイズを拡大しました（{}）: {}", dc, size);
+        }
+    }
+
+    /**
+     * 失敗したバッチを反映する
+     *
+     * @return 縮小した場合はtrue（同じユーザーを小さいバッチでやり直せる）
+     */
+    public synchronized boolean onFailure(int batchSize, Exception error) {
+        if (!adaptive || !isThrottlingError(error)) {
+            return false;
+        }
+        errorBackoffs.increment();
+        int before = size;
+        decrease(batchSize, error.getClass().getSimpleName());
+        return size < Math.min(before, batchSize);
+    }
+
+    private void decrease(int batchSize, String reason) {
+        int base = Math.min(size, batchSize);
+        size = Math.max(minSize, (int) (base * decreaseFactor));
+        logger.info("バッチサイズを縮小しました（{}）: {} [{}]", dc, size, reason);
+    }
+
+    /**
+     * DCが負荷を理由に拒否したとみなすエラーかどうか
+     * 管理上限（adminLimitExceeded等）、時間制限、ビジー・利用不可、ソケットのタイムアウトが該当します。
+     * 例外の型で判定し、ラップされている場合は原因をたどります。
+     */
+    static boolean isThrottlingError(Exception e) {
+        // NamingExceptionのgetCause()はgetRootCause()を返す
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            // SizeLimitExceededException・TimeLimitExceededExceptionはLimitExceededExceptionのサブクラス
+            if (t instanceof LimitExceededException || t instanceof ServiceUnavailableException
+                    || t instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getDc() {
+        return dc;
+    }
+
+    public synchronized int getCurrentSize() {
+        return size;
+    }
+
+    /**
+     * 拡大した回数
+     */
+    public long getIncreases() {
+        return increases.sum();
+    }
+
+    /**
+     * 目標応答時間の超過で縮小した回数
+     */
+    public long getLatencyBackoffs() {
+        return latencyBackoffs.sum();
+    }
+
+    /**
+     * 管理上限・タイムアウト・ビジー応答で縮小した回数
+     */
+    public long getErrorBackoffs() {
+        return errorBackoffs.sum();
+    }
+}
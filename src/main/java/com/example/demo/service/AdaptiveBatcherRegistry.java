@@ -0,0 +1,74 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 書き込み先DCごとのAdaptiveBatcherを保持する
+ * 更新用DCは障害時に切り替わるため、直近に書き込んだDCのバッチサイズを次のバッチに使います。
+ */
+@Component
+public class AdaptiveBatcherRegistry {
+
+    @Autowired
+    private AdProperty adProperty;
+
+    private AdProperty.Bulk config;
+
+    private final Map<String, AdaptiveBatcher> batchers = new ConcurrentHashMap<>();
+
+    // まだ一度も書き込んでいない間に使う初期値
+    private AdaptiveBatcher initial;
+
+    private volatile AdaptiveBatcher current;
+
+    public AdaptiveBatcherRegistry() {
+    }
+
+    public AdaptiveBatcherRegistry(AdProperty.Bulk config) {
+        this.config = config;
+        this.initial = new AdaptiveBatcher("initial", config);
+    }
+
+    @PostConstruct
+    void init() {
+        config = adProperty.getBulk();
+        initial = new AdaptiveBatcher("initial", config);
+    }
+
+    /**
+     * 直近に書き込んだDCのバッチャー
+     */
+    public AdaptiveBatcher current() {
+        AdaptiveBatcher batcher = current;
+        return batcher != null ? batcher : initial;
+    }
+
+    /**
+     * 指定されたDCのバッチャーを取得し、以降のバッチの基準にする
+     * 初めて書き込んだDCは、それまでに調整されたサイズから始めます。
+     *
+     * @param dc 書き込みに使用した接続プール名
+     */
+    public AdaptiveBatcher forDc(String dc) {
+        AdaptiveBatcher batcher = batchers.computeIfAbsent(dc, k -> new AdaptiveBatcher(k, config, current().nextSize()));
+        current = batcher;
+        return batcher;
+    }
+
+    /**
+     * 書き込み実績のあるDCのバッチャー（メトリクス用）
+     */
+    public Collection<AdaptiveBatcher> getBatchers() {
+        return List.copyOf(batchers.values());
+    }
+}
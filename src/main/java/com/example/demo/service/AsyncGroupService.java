@@ -0,0 +1,216 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryExceptionHandler;
+import com.example.demo.ldap.OperationScope;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * グループの検索・管理・メンバーシップ操作をCompletableFutureで返す非同期API
+ * 操作は上限付きの専用スレッドプールで実行されるため、呼び出し元（Tomcatのスレッド等）はADの応答を待ちません。
+ * タイムアウトした場合や返したFutureがキャンセルされた場合は、実行中のLDAP操作の接続を閉じて中断し、
+ * リトライも行いません。
+ */
+@Service
+public class AsyncGroupService {
+
+    @Autowired
+    private AdProperty adProperty;
+
+    @Autowired
+    private GroupLookupService lookupService;
+
+    @Autowired
+    private GroupManagementService managementService;
+
+    @Autowired
+    private GroupMembershipService membershipService;
+
+    private ThreadPoolExecutor executor;
+
+    private ScheduledThreadPoolExecutor timer;
+
+    private Duration timeout;
+
+    private Duration bulkTimeout;
+
+    private int queueCapacity;
+
+    @PostConstruct
+    void init() {
+        AdProperty.Async config = adProperty.getAsync();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(config.getPoolSize(), config.getPoolSize(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getQueueCapacity()), r -> {
+                    Thread t = new Thread(r, "ad-async-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "ad-async-timeout");
+            t.setDaemon(true);
+            return t;
+        });
+        // 完了した操作のタイムアウトはすぐに取り除く
+        timer.setRemoveOnCancelPolicy(true);
+        timeout = config.getTimeout();
+        bulkTimeout = config.getBulkTimeout();
+        queueCapacity = config.getQueueCapacity();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    public CompletableFuture<List<String>> listGroups() {
+        return submit("listGroups", timeout, () -> lookupService.listGroups());
+    }
+
+    public CompletableFuture<List<String>> getGroupMembers(String groupCN) {
+        return submit("getGroupMembers: " + groupCN, timeout, () -> managementService.getGroupMembers(groupCN));
+    }
+
+    public CompletableFuture<Integer> getGroupMemberCount(String groupCN) {
+        return submit("getGroupMemberCount: " + groupCN, timeout, () -> managementService.getGroupMemberCount(groupCN));
+    }
+
+    public CompletableFuture<List<String>> getUserGroups(String userCN, boolean transitive) {
+        return submit("getUserGroups: " + userCN, timeout, () -> membershipService.getUserGroups(userCN, transitive));
+    }
+
+    public CompletableFuture<List<MembershipCheckResult>> checkMemberships(List<MembershipPair> pairs) {
+        return submit("checkMemberships: " + pairs.size() + "件", timeout, () -> membershipService.checkMemberships(pairs));
+    }
+
+    public CompletableFuture<Void> createGroup(String groupCN) {
+        return submit("createGroup: " + groupCN, timeout, () -> {
+            managementService.createGroup(groupCN);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteGroup(String groupCN) {
+        return submit("deleteGroup: " + groupCN, timeout, () -> {
+            managementService.deleteGroup(groupCN);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> renameGroup(String oldCN, String newCN) {
+        return submit("renameGroup: " + oldCN, timeout, () -> {
+            managementService.renameGroup(oldCN, newCN);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> addUserToGroup(String userCN, String groupCN) {
+        return submit("addUserToGroup: " + groupCN, timeout, () -> {
+            membershipService.addUserToGroup(userCN, groupCN);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> removeUserFromGroup(String userCN, String groupCN) {
+        return submit("removeUserFromGroup: " + groupCN, timeout, () -> {
+            membershipService.removeUserFromGroup(userCN, groupCN);
+            return null;
+        });
+    }
+
+    public CompletableFuture<BulkOperationResult> addMultipleUsersToGroup(List<String> userCNs, String groupCN) {
+        return submit("addMultipleUsersToGroup: " + groupCN, bulkTimeout,
+                () -> membershipService.addMultipleUsersToGroup(userCNs, groupCN));
+    }
+
+    public CompletableFuture<BulkOperationResult> removeMultipleUsersFromGroup(List<String> userCNs, String groupCN) {
+        return submit("removeMultipleUsersFromGroup: " + groupCN, bulkTimeout,
+                () -> membershipService.removeMultipleUsersFromGroup(userCNs, groupCN));
+    }
+
+    public CompletableFuture<List<BulkOperationResult>> addUsersToGroups(Map<String, List<String>> usersByGroup) {
+        return submit("addUsersToGroups", bulkTimeout, () -> membershipService.addUsersToGroups(usersByGroup));
+    }
+
+    public CompletableFuture<List<BulkOperationResult>> removeUsersFromGroups(Map<String, List<String>> usersByGroup) {
+        return submit("removeUsersFromGroups", bulkTimeout, () -> membershipService.removeUsersFromGroups(usersByGroup));
+    }
+
+    public CompletableFuture<GroupSyncResult> syncGroupMembers(String groupCN, List<String> desiredUserCNs, boolean removeNonUsers) {
+        return submit("syncGroupMembers: " + groupCN, bulkTimeout,
+                () -> membershipService.syncGroupMembers(groupCN, desiredUserCNs, removeNonUsers));
+    }
+
+    /**
+     * 操作を専用スレッドで実行し、結果をFutureで返す
+     * 操作の中で借りた接続はOperationScopeで追跡し、タイムアウト・キャンセル時に閉じます。
+     * 一括操作の内部で並行実行されるバッチにもスコープが引き継がれるため、実行中のバッチの接続も閉じられ、
+     * 次のバッチへは進みません（完了したバッチの変更は取り消されません）。
+     *
+     * @param name タイムアウト時のメッセージに含める操作名
+     */
+    private <T> CompletableFuture<T> submit(String name, Duration limit, Callable<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        OperationScope scope = new OperationScope();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (future.isDone()) {
+                    // 実行待ちの間にタイムアウト・キャンセルされた
+                    return;
+                }
+                scope.bind();
+                try {
+                    future.complete(operation.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    scope.unbind();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(ActiveDirectoryExceptionHandler.asyncQueueFull(queueCapacity));
+        }
+
+        ScheduledFuture<?> timeoutTask = timer.schedule(() -> {
+            if (future.completeExceptionally(ActiveDirectoryExceptionHandler.operationTimedOut(name, limit.toMillis()))) {
+                abort(scope, task);
+            }
+        }, limit.toMillis(), TimeUnit.MILLISECONDS);
+        future.whenComplete((result, error) -> {
+            timeoutTask.cancel(false);
+            if (future.isCancelled()) {
+                abort(scope, task);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 実行中のLDAP操作の接続を閉じ、リトライの待機中や一括操作のバッチの完了待ちであれば割り込む
+     */
+    private static void abort(OperationScope scope, Future<?> task) {
+        scope.cancel();
+        task.cancel(true);
+    }
+}
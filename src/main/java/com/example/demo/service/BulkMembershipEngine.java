@@ -0,0 +1,239 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.naming.NamingException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryException;
+import com.example.demo.ldap.OperationScope;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 複数グループへのメンバー一括追加・削除を仮想スレッドで並行実行するエンジン
+ * グループごとに1本の仮想スレッドでバッチを順番に適用するため、同じグループへの変更順序は保たれます。
+ * DCへの同時書き込み数はグループ数によらずad.bulk.max-concurrencyで制限されます。
+ * バッチサイズは書き込み先DCごとのAdaptiveBatcherが応答時間とエラーに応じて調整します。
+ * 呼び出し元が割り込まれた場合は全グループの処理を中断し、実行中のバッチの完了を待たずに戻ります。
+ * 呼び出し元にbindされたOperationScopeは各仮想スレッドへ引き継がれるため、キャンセル時は実行中の書き込みの接続も閉じられます。
+ */
+@Component
+public class BulkMembershipEngine {
+
+    @Autowired
+    private AdProperty adProperty;
+
+    @Autowired
+    private AdaptiveBatcherRegistry batchers;
+
+    private Semaphore permits;
+
+    public BulkMembershipEngine() {
+    }
+
+    /**
+     * 固定のバッチサイズで実行するエンジンを作成する
+     */
+    public BulkMembershipEngine(int batchSize, int maxConcurrency) {
+        this(fixedBatchSize(batchSize, maxConcurrency));
+    }
+
+    public BulkMembershipEngine(AdProperty.Bulk config) {
+        this.batchers = new AdaptiveBatcherRegistry(config);
+        this.permits = new Semaphore(config.getMaxConcurrency(), true);
+    }
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(adProperty.getBulk().getMaxConcurrency(), true);
+    }
+
+    private static AdProperty.Bulk fixedBatchSize(int batchSize, int maxConcurrency) {
+        AdProperty.Bulk config = new AdProperty.Bulk();
+        config.setAdaptive(false);
+        config.setBatchSize(batchSize);
+        config.setMaxConcurrency(maxConcurrency);
+        return config;
+    }
+
+    /**
+     * 1バッチ分のmember属性の変更をDCへ書き込む処理
+     * 戻り値は書き込みに使用したDC（接続プール名）で、バッチサイズの調整に使われます。
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        String write(String groupDn, int modificationOp, List<String> userDNs) throws NamingException;
+    }
+
+    /**
+     * 1つのグループに対する変更
+     *
+     * @param groupDn グループのDN
+     * @param modificationOp DirContext.ADD_ATTRIBUTE または DirContext.REMOVE_ATTRIBUTE
+     * @param userCNs 対象ユーザーのCN
+     * @param userDNs userCNsと同じ順序のDN
+     */
+    public record GroupChange(String groupDn, int modificationOp, List<String> userCNs, List<String> userDNs) {
+    }
+
+    /**
+     * 1バッチの実行結果
+     *
+     * @param groupDn グループのDN
+     * @param batchIndex グループ内でのバッチの順番（0始まり）
+     * @param userCNs バッチに含まれるユーザーのCN
+     * @param error 失敗した場合の例外（成功した場合はnull）
+     * @param elapsed リトライを含む所要時間（同時実行数の待ち時間は含まない）
+     */
+    public record BatchResult(String groupDn, int batchIndex, List<String> userCNs, Exception error, Duration elapsed) {
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * 変更をバッチに分割して並行実行し、全バッチの結果を返す
+     * あるバッチが失敗しても、同じグループの後続バッチと他のグループの処理は継続します。
+     * 割り込まれた場合や予期しない例外で終了した場合は、残りのグループの処理を中断します。
+     *
+     * @param changes グループごとの変更（同じグループが複数回現れる場合は指定順に適用する）
+     * @param writer バッチの書き込み処理
+     * @return グループの指定順、グループ内ではバッチ順に並んだ結果
+     */
+    public List<BatchResult> execute(List<GroupChange> changes, BatchWriter writer) {
+        Map<String, List<GroupChange>> byGroup = new LinkedHashMap<>();
+        for (GroupChange change : changes) {
+            byGroup.computeIfAbsent(change.groupDn().toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(change);
+        }
+
+        OperationScope scope = OperationScope.current();
+        List<Future<List<BatchResult>>> futures = new ArrayList<>();
+        // try-with-resourcesのclose()は全タスクの完了を待つため、中断時に待たずに戻れるよう明示的に停止する
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ad-bulk-", 0).factory());
+        try {
+            for (List<GroupChange> groupChanges : byGroup.values()) {
+                futures.add(executor.submit(() -> applyGroup(groupChanges, writer, scope)));
+            }
+
+            List<BatchResult> results = new ArrayList<>();
+            for (Future<List<BatchResult>> future : futures) {
+                results.addAll(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ActiveDirectoryException("一括更新が中断されました", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ActiveDirectoryException("一括更新に失敗しました", e.getCause());
+        } finally {
+            // 正常終了時は全タスクが完了済みのため何もしない
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * バッチと同じ同時書き込み数の上限（ad.bulk.max-concurrency）の枠内で、1回の書き込みを実行する
+     * 拒否されたバッチを1人ずつ適用し直す場合など、バッチ以外の書き込みに使います。
+     *
+     * @return 書き込みに使用したDC（接続プール名）
+     */
+    public String write(String groupDn, int modificationOp, List<String> userDNs, BatchWriter writer) throws NamingException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ActiveDirectoryException("一括更新が中断されました", e);
+        }
+        try {
+            return writer.write(groupDn, modificationOp, userDNs);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 1つのグループの変更をバッチ順に適用する（仮想スレッド上で実行される）
+     * 負荷を理由に拒否されたバッチは、縮小したサイズで同じユーザーからやり直します。
+     * 割り込まれた場合は次のバッチへ進まずに終了します。
+     */
+    private List<BatchResult> applyGroup(List<GroupChange> groupChanges, BatchWriter writer, OperationScope scope)
+            throws InterruptedException {
+        if (scope != null) {
+            scope.bind();
+        }
+        try {
+            return applyGroup(groupChanges, writer);
+        } finally {
+            if (scope != null) {
+                scope.unbind();
+            }
+        }
+    }
+
+    private List<BatchResult> applyGroup(List<GroupChange> groupChanges, BatchWriter writer) throws InterruptedException {
+        List<BatchResult> results = new ArrayList<>();
+        int batchIndex = 0;
+        for (GroupChange change : groupChanges) {
+            int from = 0;
+            int total = change.userDNs().size();
+            while (from < total) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("一括更新が中断されました");
+                }
+                AdaptiveBatcher batcher = batchers.current();
+                int to = Math.min(from + batcher.nextSize(), total);
+
+                String dc = null;
+                Exception error = null;
+                permits.acquire();
+                long start = System.nanoTime();
+                try {
+                    dc = writer.write(change.groupDn(), change.modificationOp(), change.userDNs().subList(from, to));
+                } catch (NamingException | RuntimeException e) {
+                    error = unwrap(e);
+                } finally {
+                    permits.release();
+                }
+                Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+                AdaptiveBatcher used = dc != null ? batchers.forDc(dc) : batcher;
+                if (error == null) {
+                    used.onSuccess(to - from, elapsed);
+                } else if (used.onFailure(to - from, error)) {
+                    continue;
+                }
+                results.add(new BatchResult(change.groupDn(), batchIndex++, change.userCNs().subList(from, to), error, elapsed));
+                from = to;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * リトライ後の失敗はActiveDirectoryExceptionで包まれているため、元のNamingExceptionを取り出す
+     */
+    static Exception unwrap(Exception e) {
+        if (e instanceof ActiveDirectoryException && e.getCause() instanceof NamingException) {
+            return (NamingException) e.getCause();
+        }
+        return e;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 1回の一括追加・削除の結果（1グループ分）
+ * 呼び出しごとに生成される不変オブジェクトのため、並行して実行された一括操作の結果が混ざることはありません。
+ *
+ * @param groupDn 対象グループのDN
+ * @param succeeded 変更に成功したユーザーのCN
+ * @param failed 変更に失敗したユーザーと理由
+ * @param skipped 変更しなかったユーザーと理由（見つからない、重複して指定された等）
+ * @param batches バッチごとの所要時間
+ * @param resolveTime ユーザーDNの解決にかかった時間
+ * @param totalTime 全体の所要時間
+ */
+public record BulkOperationResult(String groupDn,
+                                  List<String> succeeded,
+                                  List<UserOutcome> failed,
+                                  List<UserOutcome> skipped,
+                                  List<BatchTiming> batches,
+                                  Duration resolveTime,
+                                  Duration totalTime) {
+
+    public BulkOperationResult {
+        succeeded = List.copyOf(succeeded);
+        failed = List.copyOf(failed);
+        skipped = List.copyOf(skipped);
+        batches = List.copyOf(batches);
+    }
+
+    /**
+     * 失敗または変更しなかったユーザーと、その理由
+     */
+    public record UserOutcome(String userCN, String reason) {
+    }
+
+    /**
+     * 1バッチの所要時間
+     *
+     * @param batchIndex グループ内でのバッチの順番（0始まり）
+     * @param size バッチに含まれるユーザー数
+     * @param success 成功したかどうか
+     * @param elapsed リトライを含む所要時間
+     */
+    public record BatchTiming(int batchIndex, int size, boolean success, Duration elapsed) {
+    }
+
+    /**
+     * 失敗したユーザーがいないかどうか（変更しなかったユーザーは失敗に含めない）
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 一括追加・削除の累計統計
+ * 並行して実行される一括操作から更新されるため、ロックを使わずLongAdderで集計します。
+ */
+@Component
+public class BulkOperationStats {
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder succeededUsers = new LongAdder();
+    private final LongAdder failedUsers = new LongAdder();
+    private final LongAdder skippedUsers = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder batchNanos = new LongAdder();
+
+    /**
+     * 1グループ分の結果を累計に加える
+     */
+    public void record(BulkOperationResult result) {
+        operations.increment();
+        succeededUsers.add(result.succeeded().size());
+        failedUsers.add(result.failed().size());
+        skippedUsers.add(result.skipped().size());
+        for (BulkOperationResult.BatchTiming batch : result.batches()) {
+            batches.increment();
+            if (!batch.success()) {
+                failedBatches.increment();
+            }
+            batchNanos.add(batch.elapsed().toNanos());
+        }
+    }
+
+    public long getOperations() {
+        return operations.sum();
+    }
+
+    public long getSucceededUsers() {
+        return succeededUsers.sum();
+    }
+
+    public long getFailedUsers() {
+        return failedUsers.sum();
+    }
+
+    public long getSkippedUsers() {
+        return skippedUsers.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * 全バッチの所要時間の合計（ナノ秒）
+     */
+    public long getBatchNanos() {
+        return batchNanos.sum();
+    }
+}
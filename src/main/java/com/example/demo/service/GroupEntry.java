@@ -0,0 +1,14 @@
+package com.example.demo.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * グループ一覧の1件
+ *
+ * @param dn グループのDN
+ * @param cn グループのCN
+ * @param attributes 要求された属性の値（値のない属性は含まない）
+ */
+public record GroupEntry(String dn, String cn, Map<String, List<String>> attributes) {
+}
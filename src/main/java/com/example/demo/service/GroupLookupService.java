@@ -1,16 +1,32 @@
 package com.example.demo.service;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.SizeLimitExceededException;
 import javax.naming.directory.*;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.SortControl;
+import javax.naming.ldap.SortResponseControl;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.cache.DirectoryReplica;
 import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.AccessMode;
+import com.example.demo.ldap.PooledLdapContext;
+import com.example.demo.metrics.AdMetrics;
 
 @Service
 public class GroupLookupService extends ActiveDirectoryService {
@@ -18,21 +34,200 @@ public class GroupLookupService extends ActiveDirectoryService {
     @Autowired
     private AdProperty adProperty;
     
+    @Autowired
+    private AdMetrics adMetrics;
+    
+    @Autowired
+    private DirectoryReplica replica;
+    
+    private static final int PAGE_SIZE = 1000;
+    
+    private final SingleFlight<String, List<String>> groupListings = new SingleFlight<>();
+    
+    /**
+     * グループのDN一覧を取得します
+     * 同時に呼び出された場合は1回の検索にまとめ、結果を共有します
+     */
     public List<String> listGroups() throws NamingException {
-        try (DirContext ctx = connect()) {
-            String base = adProperty.getUsersDn();
-            String filter = "(objectClass=group)";
-            SearchControls sc = new SearchControls();
-            sc.setSearchScope(SearchControls.SUBTREE_SCOPE);
-
-            NamingEnumeration<SearchResult> results = ctx.search(base, filter, sc);
+        return groupListings.execute("all", () -> {
             List<String> groupNames = new ArrayList<>();
-            while (results.hasMore()) {
-                SearchResult sr = results.next();
-                System.out.println(sr.getNameInNamespace());
-                groupNames.add(sr.getNameInNamespace());
+            listGroups(GroupQuery.all(), group -> groupNames.add(group.dn()));
+            return Collections.unmodifiableList(groupNames);
+        });
+    }
+    
+    /**
+     * 条件に一致するグループを1件ずつconsumerへ渡します（並び順はできる限りcnの昇順）
+     * cnのソート（非クリティカル）とページング（PagedResultsControl）を要求し、結果をメモリに溜め込みません。
+     * DCがソートを断った場合（MaxTempTableSizeの超過等）はDCが返した順に渡し、カーソルには読み飛ばす件数を含めます。
+     * 検索全体の件数はlimit+1件までに制限し、続きの有無は余分な1件で判定します（サーバー側に検索状態を残しません）。
+     * リトライは最後に渡したグループの後ろから検索し直すため、同じグループを重複して渡すことはありません。
+     * 属性とフィルターの指定がなく、レプリカが同期済みの場合はレプリカから返します（カーソルは共通）。
+     * 
+     * @param query 検索条件（query.limit()件まで渡す）
+     * @return 続きがある場合は次のページのカーソル、最後まで渡した場合はnull
+     */
+    public String listGroups(GroupQuery query, Consumer<GroupEntry> consumer) throws NamingException {
+        if (replica.canServe(query)) {
+            return replica.listGroups(query, consumer);
+        }
+        Listing listing = new Listing(query);
+        executeWithRetry(AccessMode.READ, () -> searchGroups(listing, consumer));
+        return listing.hasMore ? listing.resumePoint().toCursor() : null;
+    }
+    
+    private void searchGroups(Listing listing, Consumer<GroupEntry> consumer) throws NamingException {
+        GroupQuery query = listing.resumePoint();
+        listing.resume = query;
+        listing.pending = 0;
+        String filter = query.toFilter();
+        long remaining = (long) listing.query.limit() - listing.count;
+        // 読み飛ばす件数・渡す件数・続きの有無を判定する1件を超えては受け取らない
+        long wanted = query.skip() + remaining + 1;
+        SearchControls sc = new SearchControls();
+        sc.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        sc.setReturningAttributes(query.returningAttributes());
+        sc.setCountLimit(wanted < Integer.MAX_VALUE ? wanted : 0);
+        
+        try (PooledLdapContext ctx = connect(AccessMode.READ)) {
+            int toSkip = query.skip();
+            long received = 0;
+            byte[] cookie = null;
+            do {
+                int pageSize = (int) Math.min(PAGE_SIZE, wanted - received);
+                long start = System.nanoTime();
+                setPageControls(ctx, pageSize, cookie);
+                NamingEnumeration<SearchResult> results = ctx.search(adProperty.getUsersDn(), filter, sc);
+                List<String> groupNames = new ArrayList<>(pageSize);
+                try {
+                    while (results.hasMore()) {
+                        SearchResult result = results.next();
+                        received++;
+                        if (toSkip > 0) {
+                            toSkip--;
+                            continue;
+                        }
+                        if (listing.count >= listing.query.limit()) {
+                            // 余分な1件は渡さず、検索の終了（ソートの結果を含む応答）まで読み切る
+                            listing.hasMore = true;
+                            continue;
+                        }
+                        GroupEntry group = toEntry(result, query.attributes());
+                        consumer.accept(group);
+                        listing.lastCn = group.cn();
+                        listing.count++;
+                        listing.pending++;
+                        groupNames.add(group.dn());
+                    }
+                } catch (SizeLimitExceededException e) {
+                    // 件数の上限に達した（続きがある場合は余分な1件を受け取り済み）
+                } finally {
+                    results.close();
+                }
+                adMetrics.recordPage("group-list", System.nanoTime() - start, groupNames.size(), groupNames);
+                if (isSorted(ctx) && listing.pending > 0) {
+                    // ソート済みなら、以降の再開は最後のcnより後ろから
+                    listing.resume = listing.query.resumeAfter(listing.lastCn);
+                    listing.pending = 0;
+                }
+                cookie = listing.hasMore ? null : pagedResultsCookie(ctx);
+            } while (cookie != null);
+        }
+    }
+    
+    private static void setPageControls(PooledLdapContext ctx, int pageSize, byte[] cookie) throws NamingException {
+        try {
+            // ソートは非クリティカルで要求し、DCが断った場合もソートなしで結果を受け取る
+            ctx.setRequestControls(new Control[]{
+                    new SortControl("cn", Control.NONCRITICAL),
+                    new PagedResultsControl(pageSize, cookie, Control.CRITICAL)});
+        } catch (IOException e) {
+            throw new NamingException("ページング制御の生成に失敗しました: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 直前のページがcnの昇順で返されたか
+     * ADはソートを断った場合に結果コード付きのSortResponseControlを返すため、応答がない場合はソート済みとみなします
+     */
+    private static boolean isSorted(PooledLdapContext ctx) throws NamingException {
+        Control[] responseControls = ctx.getResponseControls();
+        if (responseControls != null) {
+            for (Control control : responseControls) {
+                if (control instanceof SortResponseControl sortResponse) {
+                    return sortResponse.isSorted();
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 次のページのクッキー（最後のページの場合はnull）
+     */
+    private static byte[] pagedResultsCookie(PooledLdapContext ctx) throws NamingException {
+        Control[] responseControls = ctx.getResponseControls();
+        if (responseControls != null) {
+            for (Control control : responseControls) {
+                if (control instanceof PagedResultsResponseControl) {
+                    byte[] cookie = ((PagedResultsResponseControl) control).getCookie();
+                    return cookie != null && cookie.length > 0 ? cookie : null;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static GroupEntry toEntry(SearchResult sr, List<String> projected) throws NamingException {
+        Attributes attrs = sr.getAttributes();
+        Attribute cn = attrs.get("cn");
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        for (String name : projected) {
+            Attribute attribute = attrs.get(name);
+            if (attribute == null || attribute.size() == 0) {
+                continue;
+            }
+            List<String> list = new ArrayList<>(attribute.size());
+            NamingEnumeration<?> all = attribute.getAll();
+            while (all.hasMore()) {
+                Object value = all.next();
+                // バイナリ属性（objectGUID等）はBase64で返す
+                list.add(value instanceof byte[] bytes ? Base64.getEncoder().encodeToString(bytes) : value.toString());
             }
-            return groupNames;
+            values.put(name, list);
+        }
+        return new GroupEntry(sr.getNameInNamespace(), cn != null ? cn.get().toString() : null, values);
+    }
+    
+    /**
+     * 1回の一覧取得の進み具合（リトライをまたいで引き継ぐ）
+     */
+    private static class Listing {
+        private final GroupQuery query;
+        private GroupQuery resume;
+        private String lastCn;
+        private int count;
+        private int pending;
+        private boolean hasMore;
+        
+        private Listing(GroupQuery query) {
+            this.query = query;
+            this.resume = query;
+        }
+        
+        /**
+         * 続きを返すための検索条件
+         * ソート済みと確認できていないページで渡した件数は、並び順に依らないよう読み飛ばす件数で表します
+         */
+        private GroupQuery resumePoint() {
+            return pending > 0 ? resume.skipping(resume.skip() + pending) : resume;
         }
     }
+    
+    /**
+     * 同時の呼び出しでグループ一覧の検索結果を共有した回数（メトリクス用）
+     */
+    public long getCoalescedCalls() {
+        return groupListings.getSharedCount();
+    }
 }
@@ -6,12 +6,22 @@ import javax.naming.directory.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.cache.DirectoryReplica;
+import com.example.demo.cache.MembershipCache;
 import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.AccessMode;
+import com.example.demo.ldap.MemberRangeReader;
+import com.example.demo.ldap.PooledLdapContext;
+import com.example.demo.metrics.AdMetrics;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Active Directoryのグループ管理操作を提供するサービスクラス
  * グループの作成、削除、名前変更、メンバー一覧取得、メンバー数取得をサポートします。
+ * メンバー一覧はMembershipCacheにキャッシュされ、変更があったグループだけADから再取得します。
+ * キャッシュにないグループへの同時の問い合わせは、1回の読み込みにまとめます。
+ * レプリカ（ad.replica.enabled）が同期済みの場合は、キャッシュより先にレプリカから返します。
  */
 @Service
 public class GroupManagementService extends ActiveDirectoryService {
@@ -19,6 +29,20 @@ public class GroupManagementService extends ActiveDirectoryService {
     @Autowired
     private AdProperty adProperty;
     
+    @Autowired
+    private MembershipCache membershipCache;
+    
+    @Autowired
+    private DirectoryReplica replica;
+    
+    @Autowired
+    private MemberRangeReader memberRangeReader;
+    
+    @Autowired
+    private AdMetrics adMetrics;
+    
+    private final SingleFlight<String, List<String>> memberLoads = new SingleFlight<>();
+    
     /**
      * 指定されたCNで新しいセキュリティグループを作成します
      * グループには以下の属性が設定されます：
@@ -34,8 +58,8 @@ public class GroupManagementService extends ActiveDirectoryService {
      * @throws NamingException グループ作成中にエラーが発生した場合、または同名のグループが既に存在する場合
      */
     public void createGroup(String groupCN) throws NamingException {
-        executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
+        executeWithRetry(AccessMode.WRITE, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
                 Attributes attrs = new BasicAttributes(true);
 
                 // objectClass を定義（必須）
@@ -79,12 +103,14 @@ public class GroupManagementService extends ActiveDirectoryService {
      * @throws NamingException グループが見つからない場合、または削除中にエラーが発生した場合
      */
     public void deleteGroup(String groupCN) throws NamingException {
-        executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
+        executeWithRetry(AccessMode.WRITE, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
                 String dn = adProperty.getObjectDn(groupCN);
                 ctx.destroySubcontext(dn);
             }
         });
+        membershipCache.invalidate(adProperty.getObjectDn(groupCN));
+        replica.invalidate(adProperty.getObjectDn(groupCN));
     }
 
     /**
@@ -95,137 +121,113 @@ public class GroupManagementService extends ActiveDirectoryService {
      * @throws NamingException 元のグループが見つからない場合、または新しい名前のグループが既に存在する場合
      */
     public void renameGroup(String oldCN, String newCN) throws NamingException {
-        executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
+        executeWithRetry(AccessMode.WRITE, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
                 String oldDn = adProperty.getObjectDn(oldCN);
                 String newDn = adProperty.getObjectDn(newCN);
                 ctx.rename(oldDn, newDn);
             }
         });
+        membershipCache.invalidate(adProperty.getObjectDn(oldCN));
+        membershipCache.invalidate(adProperty.getObjectDn(newCN));
+        replica.invalidate(adProperty.getObjectDn(oldCN));
+        replica.invalidate(adProperty.getObjectDn(newCN));
     }
     
     /**
      * セキュリティグループのメンバー一覧を取得します
-     * 1000人を超えるグループでも全メンバーを取得するため、ページング制御を使用します
+     * MaxValRange（1500）を超えるグループでも全メンバーを取得するため、範囲指定取得を使用します
      * 
      * @param groupCN グループのCN
      * @return メンバーのDN（Distinguished Name）一覧
      * @throws NamingException グループが見つからない場合、または検索中にエラーが発生した場合
      */
     public List<String> getGroupMembers(String groupCN) throws NamingException {
-        return executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
-                String groupDn = adProperty.getObjectDn(groupCN);
-                List<String> allMembers = new ArrayList<>();
-                
-                // ページング用の変数
-                int pageSize = 1000;
-                byte[] cookie = null;
-                
-                for (; cookie == null || cookie.length > 0; ) {
-                    // ページング制御
-                    Control[] controls = new Control[]{
-                        new PagedResultsControl(pageSize, cookie, Control.CRITICAL)
-                    };
-                    ctx.setRequestControls(controls);
-
-                    SearchControls searchControls = new SearchControls();
-                    searchControls.setSearchScope(SearchControls.OBJECT_SCOPE);
-                    searchControls.setReturningAttributes(new String[]{"member"});
-
-                    NamingEnumeration<SearchResult> results = ctx.search(groupDn, "(objectClass=group)", searchControls);
-
-                    if (results.hasMore()) {
-                        SearchResult result = results.next();
-                        Attribute memberAttr = result.getAttributes().get("member");
-
-                        if (memberAttr != null) {
-                            NamingEnumeration<?> members = memberAttr.getAll();
-                            while (members.hasMore()) {
-                                allMembers.add(members.next().toString());
-                            }
-                        }
-                    }
-
-                    // 次のページ用 cookie を取得
-                    byte[] nextCookie = null;
-                    Control[] responseControls = ctx.getResponseControls();
-                    if (responseControls != null) {
-                        for (Control control : responseControls) {
-                            if (control instanceof PagedResultsResponseControl) {
-                                nextCookie = ((PagedResultsResponseControl) control).getCookie();
-                                break;
-                            }
-                        }
-                    }
-
-                    cookie = nextCookie;
-                }
-
-                return allMembers;
-            }
+        String groupDn = adProperty.getObjectDn(groupCN);
+        Optional<List<String>> replicated = replica.getMembers(groupDn);
+        if (replicated.isPresent()) {
+            return replicated.get();
+        }
+        List<String> cached = membershipCache.get(groupDn);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = membershipCache.currentGeneration(groupDn);
+        
+        // グループの世代をキーに含め、無効化の後に来た呼び出し元が無効化前の読み込み結果を共有しないようにする
+        return memberLoads.execute(flightKey(groupDn, generation), () -> {
+            List<String> loaded = new ArrayList<>();
+            readMembers(groupDn, loaded::add);
+            membershipCache.put(groupDn, loaded, generation);
+            return Collections.unmodifiableList(loaded);
         });
     }
     
+    /**
+     * セキュリティグループのメンバーを、ADから受け取った順に1件ずつconsumerへ渡します
+     * メンバー一覧をリストに溜め込まないため、巨大なグループでもメモリ使用量は一定です。
+     * キャッシュ済みのグループはキャッシュから渡し、未キャッシュの場合もキャッシュには格納しません。
+     * 
+     * @param groupCN グループのCN
+     * @param consumer メンバーのDNを受け取る処理
+     * @return 渡したメンバー数
+     * @throws NamingException グループが見つからない場合、または検索中にエラーが発生した場合
+     */
+    public int streamGroupMembers(String groupCN, Consumer<String> consumer) throws NamingException {
+        String groupDn = adProperty.getObjectDn(groupCN);
+        List<String> cached = replica.getMembers(groupDn).orElseGet(() -> membershipCache.get(groupDn));
+        if (cached != null) {
+            cached.forEach(consumer);
+            return cached.size();
+        }
+        return readMembers(groupDn, consumer);
+    }
+    
+    /**
+     * ADからグループのmember属性を範囲指定で読み取り、値を順にconsumerへ渡します
+     * リトライは範囲単位で行うため、途中で接続が切れても渡したメンバーが重複することはありません
+     * 
+     * @return 渡したメンバー数
+     */
+    private int readMembers(String groupDn, Consumer<String> consumer) throws NamingException {
+        return memberRangeReader.read((low, high) -> {
+            long start = System.nanoTime();
+            MemberRangeReader.Range range = executeWithRetry(AccessMode.READ, () -> {
+                try (PooledLdapContext ctx = connect(AccessMode.READ)) {
+                    return MemberRangeReader.fetchRange(ctx, groupDn, low, high);
+                }
+            });
+            adMetrics.recordPage("member-range", System.nanoTime() - start, 1, range.values());
+            return range;
+        }, consumer);
+    }
+    
     /**
      * セキュリティグループのメンバー数を取得します
-     * 1000人を超えるグループでも正確な数を取得するため、ページング制御を使用します
+     * memberの件数を返す属性はないため、getGroupMembersと同じ読み込みでメンバー一覧をキャッシュし、その件数を返します
      * 
      * @param groupCN グループのCN
      * @return メンバー数
      * @throws NamingException グループが見つからない場合、または検索中にエラーが発生した場合
      */
     public int getGroupMemberCount(String groupCN) throws NamingException {
-        return executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
-                String groupDn = adProperty.getObjectDn(groupCN);
-                int totalCount = 0;
-                int pageSize = 1000;
-                byte[] cookie = null;
-
-                for (; cookie == null || cookie.length > 0; ) {
-                    // ページング制御
-                    Control[] controls = new Control[]{
-                        new PagedResultsControl(pageSize, cookie, Control.CRITICAL)
-                    };
-                    ctx.setRequestControls(controls);
-
-                    SearchControls searchControls = new SearchControls();
-                    searchControls.setSearchScope(SearchControls.OBJECT_SCOPE);
-                    searchControls.setReturningAttributes(new String[]{"member"});
-                    searchControls.setCountLimit(pageSize); // 明示的に設定
-
-                    NamingEnumeration<SearchResult> results = ctx.search(groupDn, "(objectClass=group)", searchControls);
-
-                    if (results.hasMore()) {
-                        SearchResult result = results.next();
-                        Attribute memberAttr = result.getAttributes().get("member");
-
-                        if (memberAttr != null) {
-                            int pageCount = memberAttr.size();
-                            totalCount += pageCount;
-                            System.out.println("Page count: " + pageCount + ", Total so far: " + totalCount);
-                        }
-                    }
-
-                    // 次ページの cookie を取得
-                    byte[] nextCookie = null;
-                    Control[] responseControls = ctx.getResponseControls();
-                    if (responseControls != null) {
-                        for (Control control : responseControls) {
-                            if (control instanceof PagedResultsResponseControl) {
-                                nextCookie = ((PagedResultsResponseControl) control).getCookie();
-                                break;
-                            }
-                        }
-                    }
-
-                    // 次ループ用に cookie 更新
-                    cookie = nextCookie;
-                }
-
-                return totalCount;
-            }
-        });
+        String groupDn = adProperty.getObjectDn(groupCN);
+        OptionalInt replicated = replica.getMemberCount(groupDn);
+        if (replicated.isPresent()) {
+            return replicated.getAsInt();
+        }
+        // 続くgetGroupMembersで読み直さないよう、読み込んだ一覧はキャッシュに格納される
+        return getGroupMembers(groupCN).size();
+    }
+    
+    private static String flightKey(String groupDn, long generation) {
+        return groupDn.toLowerCase(Locale.ROOT) + "#" + generation;
+    }
+    
+    /**
+     * 同時の問い合わせでメンバーの読み込み結果を共有した回数（メトリクス用）
+     */
+    public long getCoalescedCalls() {
+        return memberLoads.getSharedCount();
     }
 }
\ No newline at end of file
@@ -2,16 +2,34 @@ package com.example.demo.service;
 
 import javax.naming.*;
 import javax.naming.directory.*;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
 
+import com.example.demo.cache.DirectoryReplica;
+import com.example.demo.cache.MemberSet;
+import com.example.demo.cache.MembershipCache;
+import com.example.demo.cache.UserDnCache;
 import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.AccessMode;
+import com.example.demo.ldap.PooledLdapContext;
+import com.example.demo.service.BulkMembershipEngine.BatchResult;
+import com.example.demo.service.BulkMembershipEngine.GroupChange;
+import com.example.demo.service.BulkOperationResult.BatchTiming;
+import com.example.demo.service.BulkOperationResult.UserOutcome;
+import com.example.demo.util.LdapFilterUtil;
 
 /**
  * Active Directoryのグループメンバーシップ操作を提供するサービスクラス
  * ユーザーのグループへの追加・削除、複数ユーザーの一括操作をサポートします。
+ * 一括操作はBulkMembershipEngineにより、複数グループに対して並行して実行されます。
+ * 一括操作の結果は呼び出しごとにBulkOperationResultとして返すため、並行して呼び出しても安全です。
  */
 @Service
 public class GroupMembershipService extends ActiveDirectoryService {
@@ -19,24 +37,65 @@ public class GroupMembershipService extends ActiveDirectoryService {
     @Autowired
     private AdProperty adProperty;
     
-    // 成功したユーザーCNの一覧
-    private final List<String> successLog = new ArrayList<>();
+    @Autowired
+    private MembershipCache membershipCache;
+    
+    @Autowired
+    private UserDnCache userDnCache;
+    
+    @Autowired
+    private DirectoryReplica replica;
+    
+    @Autowired
+    private BulkMembershipEngine bulkMembershipEngine;
+    
+    @Autowired
+    private BulkOperationStats bulkOperationStats;
+    
+    @Autowired
+    private GroupManagementService groupManagementService;
+    
+    /**
+     * 一度のOR検索で解決するユーザー数の上限
+     */
+    private static final int RESOLVE_CHUNK_SIZE = 500;
     
-    // 失敗したユーザーCNの一覧
-    private final List<String> failureLog = new ArrayList<>();
+    private static final int PAGE_SIZE = 1000;
+    
+    /**
+     * LDAP_MATCHING_RULE_IN_CHAIN（入れ子のグループを展開して一致させる）
+     */
+    private static final String MATCHING_RULE_IN_CHAIN = "1.2.840.113556.1.4.1941";
+    
+    private final SingleFlight<String, String> userLookups = new SingleFlight<>();
     
     /**
      * 指定されたユーザーCNに対応するDNを検索します
+     * レプリカが同期済みの場合はレプリカから解決し、見つからなかったユーザーだけをADで検索します
+     * 解決結果はUserDnCacheにキャッシュされ、見つからなかった場合も短時間キャッシュされます
      * 
      * @param userCN 検索対象のユーザーCN
      * @return ユーザーのDN（Distinguished Name）
      * @throws NamingException ユーザーが見つからない場合、または検索中にエラーが発生した場合
      */
     private String findUserDN(String userCN) throws NamingException {
-        return executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
+        String replicated = replica.resolveUserDns(List.of(userCN)).get(userCN);
+        if (replicated != null) {
+            return replicated;
+        }
+        UserDnCache.CachedDn cached = userDnCache.lookup(userCN);
+        if (cached != null) {
+            if (!cached.isFound()) {
+                throw new NamingException("User with CN '" + userCN + "' not found");
+            }
+            return cached.dn();
+        }
+        
+        // 同じユーザーの同時の解決は1回の検索にまとめる
+        String userDn = userLookups.execute(userCN.toLowerCase(Locale.ROOT), () -> executeWithRetry(AccessMode.READ, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.READ)) {
                 String searchBase = adProperty.getUsersDn();
-                String searchFilter = "(&(objectClass=user)(cn=" + userCN + "))";
+                String searchFilter = "(&(objectClass=user)(cn=" + LdapFilterUtil.escape(userCN) + "))";
                 
                 SearchControls searchControls = new SearchControls();
                 searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
@@ -48,34 +107,78 @@ public class GroupMembershipService extends ActiveDirectoryService {
                     SearchResult result = results.next();
                     return result.getNameInNamespace();
                 } else {
-                    throw new NamingException("User with CN '" + userCN + "' not found");
+                    return null;
                 }
             }
-        });
+        }));
+        
+        if (userDn == null) {
+            userDnCache.putNotFound(userCN);
+            throw new NamingException("User with CN '" + userCN + "' not found");
+        }
+        userDnCache.putFound(userCN, userDn);
+        return userDn;
     }
     
     /**
      * 複数のユーザーCNを指定して、対応するDNを一括検索します
-     * 効率的な検索のため、OR条件を使用して一度のクエリで複数ユーザーを検索します
+     * キャッシュで解決できなかったCNだけを、OR条件を使用して一度のクエリ（一定件数ごと）で検索します
      * 
      * @param userCNs 検索対象のユーザーCNのリスト
-     * @return ユーザーCNの順序に対応するDNのリスト
-     * @throws NamingException 一部または全てのユーザーが見つからない場合、または検索中にエラーが発生した場合
+     * @return 見つかったユーザーのCN（大文字小文字を区別しない）からDNへのマップ（見つからなかったユーザーは含まない）
+     * @throws NamingException 検索中にエラーが発生した場合
      */
-    private List<String> findMultipleUserDNs(List<String> userCNs) throws NamingException {
-        return executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
-                List<String> userDNs = new ArrayList<>();
-                Map<String, String> userCNToDN = new HashMap<>();
-                
-                if (userCNs.isEmpty()) {
-                    return userDNs;
+    Map<String, String> resolveUserDNs(Collection<String> userCNs) throws NamingException {
+        Map<String, String> userCNToDN = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> misses = new ArrayList<>();
+        
+        // レプリカやキャッシュで解決できたユーザーはADへ問い合わせない
+        Map<String, String> replicated = replica.resolveUserDns(userCNs);
+        for (String userCN : userCNs) {
+            String dn = replicated.get(userCN);
+            if (dn != null) {
+                userCNToDN.put(userCN, dn);
+                continue;
+            }
+            UserDnCache.CachedDn cached = userDnCache.lookup(userCN);
+            if (cached == null) {
+                misses.add(userCN);
+            } else if (cached.isFound()) {
+                userCNToDN.put(userCN, cached.dn());
+            }
+        }
+        
+        // フィルターが巨大にならないよう一定件数ごとに検索
+        for (int i = 0; i < misses.size(); i += RESOLVE_CHUNK_SIZE) {
+            List<String> chunk = misses.subList(i, Math.min(i + RESOLVE_CHUNK_SIZE, misses.size()));
+            Map<String, String> resolved = searchUserDNs(chunk);
+            for (String userCN : chunk) {
+                String dn = resolved.get(userCN);
+                if (dn != null) {
+                    userCNToDN.put(userCN, dn);
+                    userDnCache.putFound(userCN, dn);
+                } else {
+                    userDnCache.putNotFound(userCN);
                 }
+            }
+        }
+        return userCNToDN;
+    }
+    
+    /**
+     * OR条件で複数のユーザーを一度に検索します
+     * 
+     * @param userCNs 検索対象のユーザーCNのリスト
+     * @return 見つかったユーザーのCN（大文字小文字を区別しない）からDNへのマップ
+     */
+    private Map<String, String> searchUserDNs(List<String> userCNs) throws NamingException {
+        return executeWithRetry(AccessMode.READ, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.READ)) {
+                Map<String, String> userCNToDN = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
                 
-                // OR条件で複数のユーザーを一度に検索
                 StringBuilder searchFilter = new StringBuilder("(&(objectClass=user)(|");
                 for (String userCN : userCNs) {
-                    searchFilter.append("(cn=").append(userCN).append(")");
+                    searchFilter.append("(cn=").append(LdapFilterUtil.escape(userCN)).append(")");
                 }
                 searchFilter.append("))");
                 
@@ -95,124 +198,548 @@ public class GroupMembershipService extends ActiveDirectoryService {
                     userCNToDN.put(cn, dn);
                 }
                 
-                // 見つからないユーザーをチェック
-                List<String> notFoundUsers = new ArrayList<>();
-                for (String userCN : userCNs) {
-                    if (!userCNToDN.containsKey(userCN)) {
-                        notFoundUsers.add(userCN);
-                    }
-                }
-                
-                if (!notFoundUsers.isEmpty()) {
-                    throw new NamingException("Users not found: " + String.join(", ", notFoundUsers));
-                }
-                
-                // 元の順序を保持してDNのリストを作成
-                for (String userCN : userCNs) {
-                    userDNs.add(userCNToDN.get(userCN));
-                }
-                
-                return userDNs;
+                return userCNToDN;
             }
         });
     }
     
     /**
-     * 複数のユーザーを100人単位で指定されたグループに追加します
-     * 効率的な操作のため、100人ずつバッチ処理で追加します
+     * 指定されたユーザーが所属するグループのDN一覧を取得します
+     * レプリカが同期済みの場合はレプリカの逆引きから返します。
+     * それ以外はmemberにユーザーのDNを持つグループを検索し、入れ子を含める場合は
+     * LDAP_MATCHING_RULE_IN_CHAIN（1.2.840.113556.1.4.1941）でAD側に展開させます。
      * 
-     * @param userCNs グループに追加するユーザーCNのリスト
-     * @param groupCN 対象グループのCN
-     * @throws NamingException ユーザーまたはグループが見つからない場合、または操作中にエラーが発生した場合
+     * @param userCN ユーザーのCN
+     * @param transitive 入れ子のグループを経由した所属も含めるか
+     * @return グループのDN一覧
+     * @throws NamingException ユーザーが見つからない場合、または検索中にエラーが発生した場合
      */
-    public void addMultipleUsersToGroup(List<String> userCNs, String groupCN) throws NamingException {
-        // ログをクリア
-        successLog.clear();
-        failureLog.clear();
+    public List<String> getUserGroups(String userCN, boolean transitive) throws NamingException {
+        String userDn = findUserDN(userCN);
+        Optional<List<String>> replicated = replica.getGroupsOf(userDn, transitive);
+        if (replicated.isPresent()) {
+            return replicated.get();
+        }
         
-        executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
-                String groupDn = "CN=" + groupCN + "," + adProperty.getUsersDn();
-                List<String> userDNs = findMultipleUserDNs(userCNs);
-                
-                // 100人単位でバッチ処理
-                int batchSize = 100;
-                for (int i = 0; i < userDNs.size(); i += batchSize) {
-                    int end = Math.min(i + batchSize, userDNs.size());
-                    List<String> batch = userDNs.subList(i, end);
-                    List<String> batchUserCNs = userCNs.subList(i, end);
-                    
+        String memberFilter = transitive ? "member:" + MATCHING_RULE_IN_CHAIN + ":=" : "member=";
+        String searchFilter = "(&(objectClass=group)(" + memberFilter + LdapFilterUtil.escape(userDn) + "))";
+        SearchControls searchControls = new SearchControls();
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        searchControls.setReturningAttributes(new String[]{"cn"});
+        
+        return executeWithRetry(AccessMode.READ, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.READ)) {
+                List<String> groupDns = new ArrayList<>();
+                byte[] cookie = null;
+                do {
                     try {
-                        ModificationItem[] mods = new ModificationItem[batch.size()];
-                        int index = 0;
-                        for (String userDN : batch) {
-                            mods[index] = new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("member", userDN));
-                            index++;
+                        ctx.setRequestControls(new Control[]{new PagedResultsControl(PAGE_SIZE, cookie, Control.CRITICAL)});
+                    } catch (IOException e) {
+                        throw new NamingException("ページング制御の生成に失敗しました: " + e.getMessage());
+                    }
+                    NamingEnumeration<SearchResult> results = ctx.search(adProperty.getUsersDn(), searchFilter, searchControls);
+                    while (results.hasMore()) {
+                        groupDns.add(results.next().getNameInNamespace());
+                    }
+                    cookie = null;
+                    Control[] responseControls = ctx.getResponseControls();
+                    if (responseControls != null) {
+                        for (Control control : responseControls) {
+                            if (control instanceof PagedResultsResponseControl) {
+                                cookie = ((PagedResultsResponseControl) control).getCookie();
+                            }
                         }
-                        
-                        ctx.modifyAttributes(groupDn, mods);
-                        
-                        // 成功したユーザーをログに追加
-                        successLog.addAll(batchUserCNs);
-                        
-                    } catch (NamingException e) {
-                        // 失敗したユーザーをログに追加
-                        failureLog.addAll(batchUserCNs);
-                        throw e; // リトライのために例外を再スロー
+                    }
+                } while (cookie != null && cookie.length > 0);
+                return Collections.unmodifiableList(groupDns);
+            }
+        });
+    }
+    
+    /**
+     * ユーザーとグループの組ごとに、ユーザーがグループの直接のメンバーかを判定します
+     * ユーザーDNはまとめて解決し、グループごとに次の順で安い方法を選びます。
+     * レプリカ・キャッシュにメンバー一覧があればそれを使い、なければ確認するユーザー数が
+     * bulk-load-threshold以上の場合はメンバー一覧を読み込み（キャッシュされる）、
+     * 未満の場合はユーザーごとにグループを(member=DN)で検索します。
+     * 入れ子のグループを経由した所属は判定しません。
+     * 
+     * @param pairs 判定するユーザーとグループの組
+     * @return 指定と同じ順の判定結果（ユーザーやグループが見つからない場合も結果に含める）
+     * @throws NamingException ユーザーDNの検索中にエラーが発生した場合
+     */
+    public List<MembershipCheckResult> checkMemberships(List<MembershipPair> pairs) throws NamingException {
+        Set<String> userCNs = new LinkedHashSet<>();
+        pairs.forEach(pair -> userCNs.add(pair.user()));
+        Map<String, String> userCNToDN = resolveUserDNs(userCNs);
+        
+        // 同じグループの組をまとめ、グループごとに判定方法を選ぶ
+        Map<String, GroupVerdict> verdicts = new LinkedHashMap<>();
+        for (MembershipPair pair : pairs) {
+            String groupDn = getGroupDn(pair.group());
+            GroupVerdict verdict = verdicts.computeIfAbsent(groupDn.toLowerCase(Locale.ROOT), k -> new GroupVerdict(pair.group(), groupDn));
+            String userDn = userCNToDN.get(pair.user());
+            if (userDn != null) {
+                verdict.userDns.add(userDn);
+            }
+        }
+        for (GroupVerdict verdict : verdicts.values()) {
+            if (!verdict.userDns.isEmpty()) {
+                decide(verdict);
+            }
+        }
+        
+        List<MembershipCheckResult> results = new ArrayList<>(pairs.size());
+        for (MembershipPair pair : pairs) {
+            String userDn = userCNToDN.get(pair.user());
+            GroupVerdict verdict = verdicts.get(getGroupDn(pair.group()).toLowerCase(Locale.ROOT));
+            if (userDn == null) {
+                results.add(new MembershipCheckResult(pair.user(), pair.group(), null, null, "ユーザーが見つかりません"));
+            } else if (verdict.error != null) {
+                results.add(new MembershipCheckResult(pair.user(), pair.group(), null, null, verdict.error));
+            } else {
+                results.add(new MembershipCheckResult(pair.user(), pair.group(), verdict.members.contains(userDn), verdict.source, null));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * 1グループ分の判定を行い、メンバーであるユーザーのDNと判定方法をverdictに記録します
+     * 失敗した場合は例外をスローせず、理由をverdictに記録します
+     */
+    private void decide(GroupVerdict verdict) {
+        try {
+            Optional<List<String>> replicated = replica.getMembers(verdict.groupDn);
+            if (replicated.isPresent()) {
+                verdict.accept(replicated.get(), MembershipCheckResult.Source.REPLICA);
+                return;
+            }
+            List<String> cached = membershipCache.get(verdict.groupDn);
+            if (cached != null) {
+                verdict.accept(cached, MembershipCheckResult.Source.CACHE);
+                return;
+            }
+            if (verdict.userDns.size() >= adProperty.getMembershipCheck().getBulkLoadThreshold()) {
+                verdict.accept(groupManagementService.getGroupMembers(verdict.groupCN), MembershipCheckResult.Source.LOAD);
+                return;
+            }
+            verdict.accept(searchMembers(verdict.groupDn, verdict.userDns), MembershipCheckResult.Source.SEARCH);
+        } catch (NameNotFoundException e) {
+            verdict.error = "グループが見つかりません";
+        } catch (NamingException | RuntimeException e) {
+            // 接続プールの枯渇やサーキットブレーカー等で1グループが失敗しても、他のグループの判定は続ける
+            verdict.error = describe(e);
+        }
+    }
+    
+    /**
+     * グループをベースにしたOBJECT_SCOPEの(member=DN)検索で、指定したユーザーのうちメンバーであるものを求めます
+     * 属性は返させないため、1ユーザーあたりの応答はエントリの有無だけになります
+     * 
+     * @return メンバーであるユーザーのDN
+     */
+    private Set<String> searchMembers(String groupDn, Set<String> userDns) throws NamingException {
+        SearchControls searchControls = new SearchControls();
+        searchControls.setSearchScope(SearchControls.OBJECT_SCOPE);
+        searchControls.setReturningAttributes(new String[0]);
+        
+        return executeWithRetry(AccessMode.READ, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.READ)) {
+                Set<String> members = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                for (String userDn : userDns) {
+                    String searchFilter = "(member=" + LdapFilterUtil.escape(userDn) + ")";
+                    NamingEnumeration<SearchResult> results = ctx.search(groupDn, searchFilter, searchControls);
+                    if (results.hasMore()) {
+                        members.add(userDn);
                     }
                 }
+                return members;
             }
         });
     }
     
     /**
-     * 複数のユーザーを100人単位で指定されたグループから削除します
-     * 効率的な操作のため、100人ずつバッチ処理で削除します
+     * checkMembershipsでの1グループ分の判定状態
+     */
+    private static class GroupVerdict {
+        private final String groupCN;
+        private final String groupDn;
+        private final Set<String> userDns = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        private Set<String> members = Set.of();
+        private MembershipCheckResult.Source source;
+        private String error;
+        
+        private GroupVerdict(String groupCN, String groupDn) {
+            this.groupCN = groupCN;
+            this.groupDn = groupDn;
+        }
+        
+        /**
+         * メンバー一覧のうち、確認対象のユーザーだけを残す
+         */
+        private void accept(Collection<String> memberDns, MembershipCheckResult.Source source) {
+            Set<String> found = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            if (memberDns instanceof MemberSet memberSet) {
+                // 辞書のIDを二分探索するため、メンバー一覧を走査しない
+                userDns.stream().filter(memberSet::contains).forEach(found::add);
+            } else {
+                Set<String> lowered = new HashSet<>();
+                memberDns.forEach(dn -> lowered.add(dn.toLowerCase(Locale.ROOT)));
+                userDns.stream().filter(dn -> lowered.contains(dn.toLowerCase(Locale.ROOT))).forEach(found::add);
+            }
+            this.members = found;
+            this.source = source;
+        }
+    }
+    
+    /**
+     * 複数のユーザーを指定されたグループにバッチ処理で追加します
+     * バッチサイズはad.bulk.batch-sizeから始まり、DCの応答時間とエラーに応じて
+     * ad.bulk.min-batch-size～ad.bulk.max-batch-sizeの範囲でAIMD（加算的増加・乗算的減少）により調整されます
+     * 見つからないユーザー、重複して指定されたユーザー、既にメンバーのユーザーはスキップし、失敗したバッチがあっても残りのバッチは続行します
+     * 
+     * @param userCNs グループに追加するユーザーCNのリスト
+     * @param groupCN 対象グループのCN
+     * @return この呼び出しの結果（成功・失敗・スキップしたユーザーと所要時間）
+     * @throws NamingException ユーザーDNの検索中にエラーが発生した場合
+     */
+    public BulkOperationResult addMultipleUsersToGroup(List<String> userCNs, String groupCN) throws NamingException {
+        return applyChanges(Map.of(groupCN, userCNs), DirContext.ADD_ATTRIBUTE).get(0);
+    }
+    
+    /**
+     * 複数のユーザーを指定されたグループからバッチ処理で削除します
+     * バッチサイズはad.bulk.batch-sizeから始まり、DCの応答時間とエラーに応じて
+     * ad.bulk.min-batch-size～ad.bulk.max-batch-sizeの範囲でAIMD（加算的増加・乗算的減少）により調整されます
+     * 見つからないユーザー、重複して指定されたユーザー、メンバーではないユーザーはスキップし、失敗したバッチがあっても残りのバッチは続行します
      * 
      * @param userCNs グループから削除するユーザーCNのリスト
      * @param groupCN 対象グループのCN
-     * @throws NamingException ユーザーまたはグループが見つからない場合、または操作中にエラーが発生した場合
+     * @return この呼び出しの結果（成功・失敗・スキップしたユーザーと所要時間）
+     * @throws NamingException ユーザーDNの検索中にエラーが発生した場合
+     */
+    public BulkOperationResult removeMultipleUsersFromGroup(List<String> userCNs, String groupCN) throws NamingException {
+        return applyChanges(Map.of(groupCN, userCNs), DirContext.REMOVE_ATTRIBUTE).get(0);
+    }
+    
+    /**
+     * 複数のグループへ、それぞれ複数のユーザーを並行して追加します
+     * グループ内のバッチは順番に、グループ間は並行して実行されます
+     * 
+     * @param usersByGroup グループCNから追加するユーザーCNのリストへのマップ
+     * @return グループごとの結果
+     * @throws NamingException ユーザーDNの検索中にエラーが発生した場合
      */
-    public void removeMultipleUsersFromGroup(List<String> userCNs, String groupCN) throws NamingException {
-        // ログをクリア
-        successLog.clear();
-        failureLog.clear();
+    public List<BulkOperationResult> addUsersToGroups(Map<String, List<String>> usersByGroup) throws NamingException {
+        return applyChanges(usersByGroup, DirContext.ADD_ATTRIBUTE);
+    }
+    
+    /**
+     * 複数のグループから、それぞれ複数のユーザーを並行して削除します
+     * グループ内のバッチは順番に、グループ間は並行して実行されます
+     * 
+     * @param usersByGroup グループCNから削除するユーザーCNのリストへのマップ
+     * @return グループごとの結果
+     * @throws NamingException ユーザーDNの検索中にエラーが発生した場合
+     */
+    public List<BulkOperationResult> removeUsersFromGroups(Map<String, List<String>> usersByGroup) throws NamingException {
+        return applyChanges(usersByGroup, DirContext.REMOVE_ATTRIBUTE);
+    }
+    
+    /**
+     * 全グループのユーザーDNをまとめて解決し、BulkMembershipEngineで変更を実行します
+     * DN解決は別の接続で行うため、書き込みを始める前に済ませます
+     * 
+     * @return グループごとの結果（同じグループが大文字小文字違いで複数回指定された場合は1つにまとめる）
+     */
+    private List<BulkOperationResult> applyChanges(Map<String, List<String>> usersByGroup, int modificationOp) throws NamingException {
+        long start = System.nanoTime();
         
-        executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
-                String groupDn = "CN=" + groupCN + "," + adProperty.getUsersDn();
-                List<String> userDNs = findMultipleUserDNs(userCNs);
-                
-                // 100人単位でバッチ処理
-                int batchSize = 100;
-                for (int i = 0; i < userDNs.size(); i += batchSize) {
-                    int end = Math.min(i + batchSize, userDNs.size());
-                    List<String> batch = userDNs.subList(i, end);
-                    List<String> batchUserCNs = userCNs.subList(i, end);
-                    
-                    try {
-                        ModificationItem[] mods = new ModificationItem[batch.size()];
-                        int index = 0;
-                        for (String userDN : batch) {
-                            mods[index] = new ModificationItem(DirContext.REMOVE_ATTRIBUTE, new BasicAttribute("member", userDN));
-                            index++;
-                        }
-                        
-                        ctx.modifyAttributes(groupDn, mods);
-                        
-                        // 成功したユーザーをログに追加
-                        successLog.addAll(batchUserCNs);
-                        
-                    } catch (NamingException e) {
-                        // 失敗したユーザーをログに追加
-                        failureLog.addAll(batchUserCNs);
-                        throw e; // リトライのために例外を再スロー
+        // 同じグループの指定をまとめる
+        Map<String, List<String>> usersByGroupDn = new LinkedHashMap<>();
+        Map<String, String> groupDns = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : usersByGroup.entrySet()) {
+            String groupDn = getGroupDn(entry.getKey());
+            String key = groupDn.toLowerCase(Locale.ROOT);
+            groupDns.putIfAbsent(key, groupDn);
+            usersByGroupDn.computeIfAbsent(key, k -> new ArrayList<>()).addAll(entry.getValue());
+        }
+        
+        Set<String> allUserCNs = new LinkedHashSet<>();
+        usersByGroupDn.values().forEach(allUserCNs::addAll);
+        Map<String, String> userCNToDN = resolveUserDNs(allUserCNs);
+        Duration resolveTime = Duration.ofNanos(System.nanoTime() - start);
+        
+        List<GroupChange> changes = new ArrayList<>();
+        Map<String, List<UserOutcome>> skippedByGroup = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : usersByGroupDn.entrySet()) {
+            List<String> userCNs = new ArrayList<>();
+            List<String> userDNs = new ArrayList<>();
+            List<UserOutcome> skipped = new ArrayList<>();
+            Set<String> seen = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (String userCN : entry.getValue()) {
+                String userDn = userCNToDN.get(userCN);
+                if (!seen.add(userCN)) {
+                    skipped.add(new UserOutcome(userCN, "重複して指定されています"));
+                } else if (userDn == null) {
+                    skipped.add(new UserOutcome(userCN, "ユーザーが見つかりません"));
+                } else {
+                    userCNs.add(userCN);
+                    userDNs.add(userDn);
+                }
+            }
+            changes.add(new GroupChange(groupDns.get(entry.getKey()), modificationOp, userCNs, userDNs));
+            skippedByGroup.put(entry.getKey(), skipped);
+        }
+        
+        return executeChanges(changes, skippedByGroup, resolveTime, start);
+    }
+    
+    /**
+     * 指定されたグループのユーザーを、指定されたユーザーの一覧と一致させます（差分同期）
+     * ユーザー以外のメンバー（入れ子のグループ、連絡先、コンピューター等）は削除せず、結果で報告します。
+     * 
+     * @param groupCN 対象グループのCN
+     * @param desiredUserCNs あるべきメンバーのユーザーCN
+     * @return 追加・削除それぞれの結果（削除の結果はメンバーのDNで示す）
+     * @throws NamingException メンバーの取得中、またはユーザーDNの検索中にエラーが発生した場合
+     */
+    public GroupSyncResult syncGroupMembers(String groupCN, List<String> desiredUserCNs) throws NamingException {
+        return syncGroupMembers(groupCN, desiredUserCNs, false);
+    }
+    
+    /**
+     * 指定されたグループのメンバーを、指定されたユーザーの一覧と一致させます（差分同期）
+     * 現在のメンバーを一度だけ取得してハッシュセットで差分を求め、不足しているユーザーの追加と
+     * 一覧にないメンバーの削除だけを一括で実行します。同じ一覧で再実行しても変更は発生しません。
+     * 一覧にないメンバーのうちユーザー（usersDn配下のobjectCategory=person、objectClass=user）以外は、
+     * removeNonUsersを指定した場合だけ削除し、ユーザーの削除とは別に結果へ含めます。
+     * 
+     * @param groupCN 対象グループのCN
+     * @param desiredUserCNs あるべきメンバーのユーザーCN
+     * @param removeNonUsers 一覧にないユーザー以外のメンバーも削除するか
+     * @return 追加・削除それぞれの結果（削除の結果はメンバーのDNで示す）
+     * @throws NamingException メンバーの取得中、またはユーザーDNの検索中にエラーが発生した場合
+     */
+    public GroupSyncResult syncGroupMembers(String groupCN, List<String> desiredUserCNs, boolean removeNonUsers)
+            throws NamingException {
+        long start = System.nanoTime();
+        String groupDn = getGroupDn(groupCN);
+        String key = groupDn.toLowerCase(Locale.ROOT);
+        
+        // 差分の基準になるため、キャッシュではなくADから読み直す
+        invalidateGroup(groupDn);
+        List<String> currentMembers = groupManagementService.getGroupMembers(groupCN);
+        Set<String> current = new HashSet<>(currentMembers.size() * 2);
+        currentMembers.forEach(dn -> current.add(dn.toLowerCase(Locale.ROOT)));
+        
+        Map<String, String> userCNToDN = resolveUserDNs(new LinkedHashSet<>(desiredUserCNs));
+        Duration resolveTime = Duration.ofNanos(System.nanoTime() - start);
+        
+        List<String> addCNs = new ArrayList<>();
+        List<String> addDNs = new ArrayList<>();
+        List<UserOutcome> skipped = new ArrayList<>();
+        Set<String> desired = new HashSet<>(desiredUserCNs.size() * 2);
+        Set<String> seen = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        int unchanged = 0;
+        for (String userCN : desiredUserCNs) {
+            String userDn = userCNToDN.get(userCN);
+            if (!seen.add(userCN)) {
+                skipped.add(new UserOutcome(userCN, "重複して指定されています"));
+            } else if (userDn == null) {
+                skipped.add(new UserOutcome(userCN, "ユーザーが見つかりません"));
+            } else {
+                desired.add(userDn.toLowerCase(Locale.ROOT));
+                if (current.contains(userDn.toLowerCase(Locale.ROOT))) {
+                    unchanged++;
+                } else {
+                    addCNs.add(userCN);
+                    addDNs.add(userDn);
+                }
+            }
+        }
+        List<String> staleDNs = new ArrayList<>();
+        for (String memberDn : currentMembers) {
+            if (!desired.contains(memberDn.toLowerCase(Locale.ROOT))) {
+                staleDNs.add(memberDn);
+            }
+        }
+        // 一覧はユーザーのCNで指定されるため、入れ子のグループ等は指定がない限り削除しない
+        Set<String> users = findUsers(staleDNs);
+        List<String> removeDNs = new ArrayList<>();
+        List<String> nonUserDNs = new ArrayList<>();
+        for (String memberDn : staleDNs) {
+            if (users.contains(memberDn.toLowerCase(Locale.ROOT))) {
+                removeDNs.add(memberDn);
+            } else {
+                nonUserDNs.add(memberDn);
+            }
+        }
+        List<String> removeNonUserDNs = removeNonUsers ? nonUserDNs : List.of();
+        
+        // 追加を先に行い、途中で失敗してもメンバーが一時的に減りすぎないようにする
+        BulkOperationResult added = executeChanges(
+                List.of(new GroupChange(groupDn, DirContext.ADD_ATTRIBUTE, addCNs, addDNs)),
+                Map.of(key, skipped), resolveTime, start).get(0);
+        BulkOperationResult removed = executeChanges(
+                List.of(new GroupChange(groupDn, DirContext.REMOVE_ATTRIBUTE, removeDNs, removeDNs)),
+                Map.of(key, List.of()), Duration.ZERO, System.nanoTime()).get(0);
+        BulkOperationResult removedNonUsers = executeChanges(
+                List.of(new GroupChange(groupDn, DirContext.REMOVE_ATTRIBUTE, removeNonUserDNs, removeNonUserDNs)),
+                Map.of(key, List.of()), Duration.ZERO, System.nanoTime()).get(0);
+        return new GroupSyncResult(groupDn, added, removed, removedNonUsers,
+                removeNonUsers ? List.of() : nonUserDNs, unchanged);
+    }
+    
+    /**
+     * 指定されたDNのうち、ユーザー（usersDn配下のobjectCategory=person、objectClass=user）であるものを求めます
+     * コンピューターもobjectClass=userを持つため、objectCategoryで除外します
+     * 
+     * @return ユーザーであるDN（小文字）
+     */
+    private Set<String> findUsers(List<String> dns) throws NamingException {
+        Set<String> users = new HashSet<>();
+        for (int i = 0; i < dns.size(); i += RESOLVE_CHUNK_SIZE) {
+            List<String> chunk = dns.subList(i, Math.min(i + RESOLVE_CHUNK_SIZE, dns.size()));
+            StringBuilder searchFilter = new StringBuilder("(&(objectCategory=person)(objectClass=user)(|");
+            for (String dn : chunk) {
+                searchFilter.append("(distinguishedName=").append(LdapFilterUtil.escape(dn)).append(")");
+            }
+            searchFilter.append("))");
+            
+            SearchControls searchControls = new SearchControls();
+            searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+            searchControls.setReturningAttributes(new String[0]);
+            
+            executeWithRetry(AccessMode.READ, () -> {
+                try (PooledLdapContext ctx = connect(AccessMode.READ)) {
+                    NamingEnumeration<SearchResult> results = ctx.search(adProperty.getUsersDn(), searchFilter.toString(), searchControls);
+                    while (results.hasMore()) {
+                        users.add(results.next().getNameInNamespace().toLowerCase(Locale.ROOT));
+                    }
+                }
+            });
+        }
+        return users;
+    }
+    
+    /**
+     * BulkMembershipEngineで変更を実行し、グループごとの結果にまとめます
+     * 既にメンバーである（追加）・メンバーではない（削除）ユーザーを含むバッチは、
+     * 1人ずつ適用し直してそのユーザーだけをスキップします
+     * 
+     * @param skippedByGroup 小文字にしたグループDNから、実行前にスキップしたユーザーへのマップ
+     */
+    private List<BulkOperationResult> executeChanges(List<GroupChange> changes, Map<String, List<UserOutcome>> skippedByGroup,
+                                                     Duration resolveTime, long start) {
+        List<BatchResult> batchResults;
+        try {
+            batchResults = bulkMembershipEngine.execute(changes, this::modifyMembers);
+        } finally {
+            // 一部のバッチだけ成功した場合も含め、更新したグループのキャッシュを無効化する
+            changes.forEach(change -> invalidateGroup(change.groupDn()));
+        }
+        
+        List<BulkOperationResult> results = new ArrayList<>();
+        for (GroupChange change : changes) {
+            String key = change.groupDn().toLowerCase(Locale.ROOT);
+            List<String> succeeded = new ArrayList<>();
+            List<UserOutcome> failed = new ArrayList<>();
+            List<UserOutcome> skipped = new ArrayList<>(skippedByGroup.getOrDefault(key, List.of()));
+            List<BatchTiming> timings = new ArrayList<>();
+            for (BatchResult batch : batchResults) {
+                if (!batch.groupDn().toLowerCase(Locale.ROOT).equals(key)) {
+                    continue;
+                }
+                timings.add(new BatchTiming(batch.batchIndex(), batch.userCNs().size(), batch.isSuccess(), batch.elapsed()));
+                if (batch.isSuccess()) {
+                    succeeded.addAll(batch.userCNs());
+                } else if (isAlreadyApplied(change.modificationOp(), batch.error())) {
+                    applyIndividually(change, batch.userCNs(), succeeded, failed, skipped);
+                } else {
+                    String reason = describe(batch.error());
+                    batch.userCNs().forEach(userCN -> failed.add(new UserOutcome(userCN, reason)));
+                    if (batch.error() instanceof NameNotFoundException) {
+                        // 名前変更・削除されたユーザーの古いDNがキャッシュに残っている可能性がある
+                        batch.userCNs().forEach(userDnCache::invalidate);
                     }
                 }
             }
+            BulkOperationResult result = new BulkOperationResult(change.groupDn(), succeeded, failed,
+                    skipped, timings, resolveTime, Duration.ofNanos(System.nanoTime() - start));
+            bulkOperationStats.record(result);
+            results.add(result);
+        }
+        return results;
+    }
+    
+    /**
+     * 既に追加済み・削除済みのユーザーを含むために拒否されたかどうか
+     * ADはメンバーでないユーザーの削除をunwillingToPerformで拒否するため、削除ではそれも含めます
+     */
+    private static boolean isAlreadyApplied(int modificationOp, Exception error) {
+        if (modificationOp == DirContext.ADD_ATTRIBUTE) {
+            return error instanceof AttributeInUseException;
+        }
+        return error instanceof NoSuchAttributeException || error instanceof OperationNotSupportedException;
+    }
+    
+    /**
+     * 拒否されたバッチのユーザーを1人ずつ適用します
+     * 1人ずつの書き込みもバッチと同じくリトライし、同時書き込み数の上限（ad.bulk.max-concurrency）に従います
+     */
+    private void applyIndividually(GroupChange change, List<String> userCNs,
+                                   List<String> succeeded, List<UserOutcome> failed, List<UserOutcome> skipped) {
+        Map<String, String> userCNToDN = new HashMap<>();
+        for (int i = 0; i < change.userCNs().size(); i++) {
+            userCNToDN.put(change.userCNs().get(i), change.userDNs().get(i));
+        }
+        for (String userCN : userCNs) {
+            try {
+                bulkMembershipEngine.write(change.groupDn(), change.modificationOp(),
+                        List.of(userCNToDN.get(userCN)), this::modifyMembers);
+                succeeded.add(userCN);
+            } catch (NamingException | RuntimeException e) {
+                Exception error = BulkMembershipEngine.unwrap(e);
+                if (isAlreadyApplied(change.modificationOp(), error)) {
+                    boolean add = change.modificationOp() == DirContext.ADD_ATTRIBUTE;
+                    skipped.add(new UserOutcome(userCN, add ? "既にメンバーです" : "メンバーではありません"));
+                } else {
+                    failed.add(new UserOutcome(userCN, describe(error)));
+                }
+            }
+        }
+    }
+    
+    private static String describe(Exception e) {
+        return e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+    
+    /**
+     * 1バッチ分のmember属性の追加・削除を、リトライ付きで1回のmodifyAttributesとして実行します
+     * 
+     * @return 書き込みに使用したDC（接続プール名）
+     */
+    private String modifyMembers(String groupDn, int modificationOp, List<String> userDNs) throws NamingException {
+        return executeWithRetry(AccessMode.WRITE, () -> {
+            try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
+                ModificationItem[] mods = new ModificationItem[userDNs.size()];
+                int index = 0;
+                for (String userDN : userDNs) {
+                    mods[index] = new ModificationItem(modificationOp, new BasicAttribute("member", userDN));
+                    index++;
+                }
+                ctx.modifyAttributes(groupDn, mods);
+                return ctx.getPoolName();
+            }
         });
     }
     
+    private String getGroupDn(String groupCN) {
+        return "CN=" + groupCN + "," + adProperty.getUsersDn();
+    }
+    
     /**
      * 指定されたユーザーを指定されたグループに追加します
      * 
@@ -221,16 +748,29 @@ public class GroupMembershipService extends ActiveDirectoryService {
      * @throws NamingException ユーザーまたはグループが見つからない場合、または操作中にエラーが発生した場合
      */
     public void addUserToGroup(String userCN, String groupCN) throws NamingException {
-        executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
-                String groupDn = "CN=" + groupCN + "," + adProperty.getUsersDn();
-                String userDn = findUserDN(userCN);
+        // DN解決は別の接続で行うため、書き込み用の接続を借りる前に済ませる
+        String userDn = findUserDN(userCN);
+        
+        try {
+            executeWithRetry(AccessMode.WRITE, () -> {
+                try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
+                    String groupDn = "CN=" + groupCN + "," + adProperty.getUsersDn();
 
-                ModificationItem[] mods = new ModificationItem[1];
-                mods[0] = new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("member", userDn));
-                ctx.modifyAttributes(groupDn, mods);
-            }
-        });
+                    ModificationItem[] mods = new ModificationItem[1];
+                    mods[0] = new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("member", userDn));
+                    try {
+                        ctx.modifyAttributes(groupDn, mods);
+                    } catch (NameNotFoundException e) {
+                        // 名前変更・削除されたユーザーの古いDNがキャッシュに残っている可能性がある
+                        userDnCache.invalidate(userCN);
+                        throw e;
+                    }
+                }
+            });
+        } finally {
+            // 応答が得られなかった場合も更新済みの可能性があるため、キャッシュを無効化する
+            invalidateGroup("CN=" + groupCN + "," + adProperty.getUsersDn());
+        }
     }
 
     /**
@@ -241,41 +781,43 @@ public class GroupMembershipService extends ActiveDirectoryService {
      * @throws NamingException ユーザーまたはグループが見つからない場合、または操作中にエラーが発生した場合
      */
     public void removeUserFromGroup(String userCN, String groupCN) throws NamingException {
-        executeWithRetry(() -> {
-            try (DirContext ctx = connect()) {
-                String groupDn = "CN=" + groupCN + "," + adProperty.getUsersDn();
-                String userDn = findUserDN(userCN);
+        // DN解決は別の接続で行うため、書き込み用の接続を借りる前に済ませる
+        String userDn = findUserDN(userCN);
+        
+        try {
+            executeWithRetry(AccessMode.WRITE, () -> {
+                try (PooledLdapContext ctx = connect(AccessMode.WRITE)) {
+                    String groupDn = "CN=" + groupCN + "," + adProperty.getUsersDn();
 
-                ModificationItem[] mods = new ModificationItem[1];
-                mods[0] = new ModificationItem(DirContext.REMOVE_ATTRIBUTE, new BasicAttribute("member", userDn));
-                ctx.modifyAttributes(groupDn, mods);
-            }
-        });
-    }
-    
-    /**
-     * 成功したユーザーCNの一覧を取得します
-     * 
-     * @return 成功したユーザーCNのリスト
-     */
-    public List<String> getSuccessLog() {
-        return Collections.unmodifiableList(successLog);
+                    ModificationItem[] mods = new ModificationItem[1];
+                    mods[0] = new ModificationItem(DirContext.REMOVE_ATTRIBUTE, new BasicAttribute("member", userDn));
+                    try {
+                        ctx.modifyAttributes(groupDn, mods);
+                    } catch (NameNotFoundException e) {
+                        // 名前変更・削除されたユーザーの古いDNがキャッシュに残っている可能性がある
+                        userDnCache.invalidate(userCN);
+                        throw e;
+                    }
+                }
+            });
+        } finally {
+            // 応答が得られなかった場合も更新済みの可能性があるため、キャッシュを無効化する
+            invalidateGroup("CN=" + groupCN + "," + adProperty.getUsersDn());
+        }
     }
     
     /**
-     * 失敗したユーザーCNの一覧を取得します
-     * 
-     * @return 失敗したユーザーCNのリスト
+     * 更新したグループのメンバー一覧をキャッシュとレプリカから返さないようにする
      */
-    public List<String> getFailureLog() {
-        return Collections.unmodifiableList(failureLog);
+    private void invalidateGroup(String groupDn) {
+        membershipCache.invalidate(groupDn);
+        replica.invalidate(groupDn);
     }
     
     /**
-     * ログをクリアします
+     * 同時に解決されたユーザーの検索結果を共有した回数（メトリクス用）
      */
-    public void clearLogs() {
-        successLog.clear();
-        failureLog.clear();
+    public long getCoalescedCalls() {
+        return userLookups.getSharedCount();
     }
 }
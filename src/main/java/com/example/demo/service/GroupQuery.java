@@ -0,0 +1,163 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.example.demo.util.LdapFilterUtil;
+
+/**
+ * グループ一覧の検索条件
+ * 一覧は原則としてcnの昇順で返され、カーソルには前のページの最後のcnが入ります。
+ * cnより後ろから検索し直すため、カーソルは接続やDCをまたいでも有効です。
+ * DCがcnのソートを断った場合は、返した件数を読み飛ばす件数としてカーソルに含めます。
+ *
+ * @param prefix cnの前方一致（nullの場合は条件なし）
+ * @param filter 追加の検索フィルター（objectClass=groupとANDで結合する、nullの場合は条件なし）
+ * @param attributes 返す属性（cnは常に返す）
+ * @param limit 1ページの最大件数
+ * @param after このcnより後ろから返す（nullの場合は先頭から）
+ * @param skip 検索結果の先頭から読み飛ばす件数（ソートされなかった一覧の続きを返す場合）
+ */
+public record GroupQuery(String prefix, String filter, List<String> attributes, int limit, String after, int skip) {
+
+    public static final int DEFAULT_LIMIT = 1000;
+    public static final int MAX_LIMIT = 10000;
+
+    private static final Pattern ATTRIBUTE_NAME = Pattern.compile("[A-Za-z][A-Za-z0-9-]*");
+
+    /**
+     * 全グループを1回で返す条件（属性はcnのみ）
+     */
+    public static GroupQuery all() {
+        return new GroupQuery(null, null, List.of(), Integer.MAX_VALUE, null, 0);
+    }
+
+    /**
+     * リクエストのパラメーターから検索条件を作成する
+     *
+     * @param cursor 前のページの応答で返されたカーソル
+     * @throws IllegalArgumentException パラメーターが正しくない場合
+     */
+    public static GroupQuery of(String prefix, String filter, List<String> attributes, Integer limit, String cursor) {
+        if (filter != null && !filter.isBlank() && !LdapFilterUtil.isValidFilter(filter.strip())) {
+            throw new IllegalArgumentException("filterは括弧で囲まれたLDAPフィルターで指定してください");
+        }
+        List<String> projected = new ArrayList<>();
+        if (attributes != null) {
+            for (String attribute : attributes) {
+                String name = attribute.strip();
+                if (name.isEmpty() || name.equalsIgnoreCase("cn")) {
+                    continue;
+                }
+                if (!ATTRIBUTE_NAME.matcher(name).matches()) {
+                    throw new IllegalArgumentException("属性名が正しくありません: " + name);
+                }
+                if (name.equalsIgnoreCase("member")) {
+                    // 大規模グループでは範囲指定取得が必要なため、メンバー一覧APIを使う
+                    throw new IllegalArgumentException("memberは /api/groups/{groupName}/members で取得してください");
+                }
+                if (!projected.contains(name)) {
+                    projected.add(name);
+                }
+            }
+        }
+        int size = limit != null ? limit : DEFAULT_LIMIT;
+        if (size < 1 || size > MAX_LIMIT) {
+            throw new IllegalArgumentException("limitは1〜" + MAX_LIMIT + "で指定してください");
+        }
+        GroupQuery query = new GroupQuery(blankToNull(prefix), blankToNull(filter), List.copyOf(projected), size, null, 0);
+        return cursor != null && !cursor.isBlank() ? query.resumeFrom(cursor.strip()) : query;
+    }
+
+    /**
+     * 検索フィルター（cnの昇順で after より後ろのグループ）
+     */
+    String toFilter() {
+        StringBuilder sb = new StringBuilder("(&(objectClass=group)");
+        if (prefix != null) {
+            sb.append("(cn=").append(LdapFilterUtil.escape(prefix)).append("*)");
+        }
+        if (after != null) {
+            String escaped = LdapFilterUtil.escape(after);
+            sb.append("(cn>=").append(escaped).append(")(!(cn=").append(escaped).append("))");
+        }
+        if (filter != null) {
+            sb.append(filter.strip());
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * 検索で要求する属性（cnと指定された属性）
+     */
+    String[] returningAttributes() {
+        List<String> names = new ArrayList<>(attributes.size() + 1);
+        names.add("cn");
+        names.addAll(attributes);
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * 同じ条件で、指定されたcnより後ろを検索する条件
+     */
+    GroupQuery resumeAfter(String cn) {
+        return new GroupQuery(prefix, filter, attributes, limit, cn, 0);
+    }
+
+    /**
+     * 同じ条件で、検索結果の先頭から指定された件数を読み飛ばす条件
+     */
+    GroupQuery skipping(int count) {
+        return new GroupQuery(prefix, filter, attributes, limit, after, count);
+    }
+
+    /**
+     * この条件の続きを示すカーソル
+     */
+    String toCursor() {
+        if (skip == 0) {
+            return encodeCursor(after);
+        }
+        // cnにNULは含まれないため、読み飛ばす件数との区切りに使う
+        return encode(skip + "\0" + (after != null ? after : ""));
+    }
+
+    public static String encodeCursor(String cn) {
+        return encode(cn);
+    }
+
+    private GroupQuery resumeFrom(String cursor) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("cursorが正しくありません");
+        }
+        int separator = decoded.indexOf('\0');
+        if (separator < 0) {
+            return resumeAfter(decoded);
+        }
+        int count;
+        try {
+            count = Integer.parseInt(decoded.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("cursorが正しくありません");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("cursorが正しくありません");
+        }
+        String cn = decoded.substring(separator + 1);
+        return resumeAfter(cn.isEmpty() ? null : cn).skipping(count);
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.strip();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.service;
+
+import java.util.List;
+
+/**
+ * 1回の差分同期の結果
+ *
+ * @param groupDn 対象グループのDN
+ * @param added 不足していたユーザーの追加結果（スキップには見つからない・重複したユーザーを含む）
+ * @param removed 一覧になかったユーザーの削除結果（ユーザーはCNではなくメンバーのDNで示す）
+ * @param removedNonUsers 一覧になかったユーザー以外のメンバー（入れ子のグループ、連絡先、コンピューター等）の削除結果
+ *                        （ユーザー以外も削除するよう指定した場合だけ削除する）
+ * @param retainedNonUsers 一覧になかったが、ユーザー以外のため削除しなかったメンバーのDN
+ * @param unchanged 既にメンバーだったため変更しなかったユーザー数
+ */
+public record GroupSyncResult(String groupDn,
+                              BulkOperationResult added,
+                              BulkOperationResult removed,
+                              BulkOperationResult removedNonUsers,
+                              List<String> retainedNonUsers,
+                              int unchanged) {
+
+    public GroupSyncResult {
+        retainedNonUsers = List.copyOf(retainedNonUsers);
+    }
+
+    /**
+     * 追加・削除ともに失敗したメンバーがいないかどうか
+     */
+    public boolean isSuccess() {
+        return added.isSuccess() && removed.isSuccess() && removedNonUsers.isSuccess();
+    }
+}
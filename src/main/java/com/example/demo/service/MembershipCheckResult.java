@@ -0,0 +1,27 @@
+package com.example.demo.service;
+
+/**
+ * メンバーシップの確認結果
+ *
+ * @param user ユーザーのCN
+ * @param group グループのCN
+ * @param member ユーザーがグループの直接のメンバーか（ユーザー・グループが見つからない場合や判定できなかった場合はnull）
+ * @param source 判定に使った情報源（ユーザーが見つからない場合・判定できなかった場合はnull）
+ * @param error 見つからなかった・判定できなかった理由
+ */
+public record MembershipCheckResult(String user, String group, Boolean member, Source source, String error) {
+
+    /**
+     * 判定に使った情報源
+     */
+    public enum Source {
+        /** ローカルレプリカ */
+        REPLICA,
+        /** メンバー一覧のキャッシュ */
+        CACHE,
+        /** メンバー一覧をADから読み込んだ */
+        LOAD,
+        /** ユーザーごとに(member=DN)で検索した */
+        SEARCH
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.demo.service;
+
+/**
+ * メンバーシップを確認するユーザーとグループの組
+ *
+ * @param user ユーザーのCN
+ * @param group グループのCN
+ */
+public record MembershipPair(String user, String group) {
+}
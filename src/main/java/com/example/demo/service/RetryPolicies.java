@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.AccessMode;
+import com.example.demo.util.RetryBudget;
+import com.example.demo.util.RetryListener;
+import com.example.demo.util.RetryPolicy;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 読み取り・更新それぞれのリトライ方針を保持する
+ * リトライ予算は両方の方針で共有するため、DCの障害時に読み取りと更新の再試行が合わせて抑えられます。
+ */
+@Component
+public class RetryPolicies {
+    
+    @Autowired
+    private AdProperty adProperty;
+    
+    @Autowired
+    private RetryListener retryListener;
+    
+    private RetryBudget budget;
+    private RetryPolicy read;
+    private RetryPolicy write;
+    
+    public RetryPolicies() {
+    }
+    
+    public RetryPolicies(AdProperty.Retry config) {
+        retryListener = RetryListener.NONE;
+        configure(config);
+    }
+    
+    @PostConstruct
+    void init() {
+        configure(adProperty.getRetry());
+    }
+    
+    private void configure(AdProperty.Retry config) {
+        budget = new RetryBudget(config.getBudgetMaxTokens(), config.getBudgetTokenRatio());
+        read = toPolicy("read", config.getRead());
+        write = toPolicy("write", config.getWrite());
+    }
+    
+    private RetryPolicy toPolicy(String name, AdProperty.Policy config) {
+        return new RetryPolicy(name, config.getMaxAttempts(), config.getInitialBackoff(),
+                config.getMaxBackoff(), config.getDeadline(), budget, retryListener);
+    }
+    
+    /**
+     * 指定された種類の操作のリトライ方針
+     */
+    public RetryPolicy forMode(AccessMode mode) {
+        return mode == AccessMode.WRITE ? write : read;
+    }
+    
+    /**
+     * 全操作で共有するリトライ予算（メトリクス用）
+     */
+    public RetryBudget getBudget() {
+        return budget;
+    }
+}
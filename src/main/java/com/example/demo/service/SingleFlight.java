@@ -0,0 +1,97 @@
+package com.example.demo.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.naming.NamingException;
+
+import com.example.demo.exception.ActiveDirectoryException;
+import com.example.demo.ldap.OperationScope;
+
+/**
+ * 同じキーに対する同時の読み込みを1回のLDAP操作にまとめる（シングルフライト）
+ * 最初の呼び出し元だけが読み込みを実行し、実行中に来た呼び出し元はその結果（または例外）を共有します。
+ * 結果は完了した時点で破棄されるため、キャッシュとは異なり古い結果を返すことはありません。
+ * 最初の呼び出し元がタイムアウト・キャンセルで中断された場合、待っていた呼び出し元は読み込みをやり直します。
+ */
+class SingleFlight<K, V> {
+
+    @FunctionalInterface
+    interface Loader<V> {
+        V load() throws NamingException;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * 同じキーの読み込みが実行中であればその結果を待ち、なければ自分で読み込む
+     * 共有される結果は呼び出し元間で同じインスタンスのため、変更不可にしておくこと
+     */
+    V execute(K key, Loader<V> loader) throws NamingException {
+        while (true) {
+            CompletableFuture<V> mine = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+            if (existing == null) {
+                return lead(key, mine, loader);
+            }
+            shared.increment();
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ActiveDirectoryException("実行中の読み込みの待機が中断されました", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Abandoned) {
+                    continue;
+                }
+                if (cause instanceof NamingException) {
+                    throw (NamingException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new ActiveDirectoryException("読み込みに失敗しました", cause);
+            }
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> mine, Loader<V> loader) throws NamingException {
+        try {
+            V value = loader.load();
+            // 待機中の呼び出し元がやり直した場合に完了済みの結果を拾わないよう、先に取り除く
+            inFlight.remove(key, mine);
+            mine.complete(value);
+            return value;
+        } catch (NamingException | RuntimeException | Error e) {
+            inFlight.remove(key, mine);
+            OperationScope scope = OperationScope.current();
+            mine.completeExceptionally(scope != null && scope.isCancelled() ? new Abandoned() : e);
+            throw e;
+        }
+    }
+
+    /**
+     * 他の呼び出し元の結果を共有した回数（メトリクス用）
+     */
+    long getSharedCount() {
+        return shared.sum();
+    }
+
+    /**
+     * 最初の呼び出し元が中断されたため、結果を共有できないことを表す
+     */
+    private static class Abandoned extends Exception {
+
+        Abandoned() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.standin;
+
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.schema.Schema;
+
+/**
+ * インメモリサーバー用のADに似たスキーマ
+ * 標準スキーマに、このアプリケーションが読み書きするADの属性とオブジェクトクラスだけを追加します（OIDはADと同じ）。
+ */
+final class AdSchema {
+
+    private static final String DIRECTORY_STRING = "1.3.6.1.4.1.1466.115.121.1.15";
+    private static final String INTEGER = "1.3.6.1.4.1.1466.115.121.1.27";
+    private static final String DN = "1.3.6.1.4.1.1466.115.121.1.12";
+
+    private AdSchema() {
+    }
+
+    static Schema create() throws LDAPException {
+        Entry ad = new Entry(
+                "dn: cn=schema",
+                "objectClass: top",
+                "objectClass: ldapSubentry",
+                "objectClass: subschema",
+                "cn: schema",
+                "attributeTypes: ( 1.2.840.113556.1.4.221 NAME 'sAMAccountName' EQUALITY caseIgnoreMatch"
+                        + " SUBSTR caseIgnoreSubstringsMatch SYNTAX " + DIRECTORY_STRING + " SINGLE-VALUE )",
+                "attributeTypes: ( 1.2.840.113556.1.4.750 NAME 'groupType' EQUALITY integerMatch"
+                        + " SYNTAX " + INTEGER + " SINGLE-VALUE )",
+                "attributeTypes: ( 1.2.840.113556.1.4.653 NAME 'managedBy' EQUALITY distinguishedNameMatch"
+                        + " SYNTAX " + DN + " SINGLE-VALUE )",
+                "attributeTypes: ( 1.2.840.113556.1.2.19 NAME 'uSNCreated' EQUALITY integerMatch"
+                        + " ORDERING integerOrderingMatch SYNTAX " + INTEGER + " SINGLE-VALUE )",
+                "attributeTypes: ( 1.2.840.113556.1.2.120 NAME 'uSNChanged' EQUALITY integerMatch"
+                        + " ORDERING integerOrderingMatch SYNTAX " + INTEGER + " SINGLE-VALUE )",
+                "objectClasses: ( 1.2.840.113556.1.3.23 NAME 'container' SUP top STRUCTURAL MUST cn"
+                        + " MAY ( description $ uSNCreated $ uSNChanged ) )",
+                "objectClasses: ( 1.2.840.113556.1.5.9 NAME 'user' SUP top STRUCTURAL MUST cn"
+                        + " MAY ( sAMAccountName $ displayName $ mail $ description $ uSNCreated $ uSNChanged ) )",
+                "objectClasses: ( 1.2.840.113556.1.5.8 NAME 'group' SUP top STRUCTURAL MUST ( cn $ groupType )"
+                        + " MAY ( member $ sAMAccountName $ description $ mail $ displayName $ managedBy"
+                        + " $ uSNCreated $ uSNChanged ) )");
+        return Schema.mergeSchemas(Schema.getDefaultStandardSchema(), new Schema(ad));
+    }
+}
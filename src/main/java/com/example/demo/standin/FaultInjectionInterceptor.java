@@ -0,0 +1,106 @@
+package com.example.demo.standin;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import com.example.demo.config.AdProperty;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedAddRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedCompareRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedDeleteRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyDNRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSimpleBindRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+/**
+ * 操作ごとに遅延と障害を注入するインターセプター
+ * 遅延はサーバー側の接続スレッドで待つため、DCの応答が遅い状況と同じく接続が占有されます。
+ * 障害は指定されたLDAP結果コードで応答します（51/52はJNDIでServiceUnavailableExceptionになり、リトライの対象になります）。
+ */
+public class FaultInjectionInterceptor extends InMemoryOperationInterceptor {
+
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double faultRate;
+    private final ResultCode faultResultCode;
+    private final Set<String> operations;
+
+    private final LongAdder injectedFaults = new LongAdder();
+
+    public FaultInjectionInterceptor(AdProperty.Standin config) {
+        this.latencyNanos = config.getLatency().toNanos();
+        this.jitterNanos = config.getLatencyJitter().toNanos();
+        this.faultRate = config.getFaultRate();
+        this.faultResultCode = ResultCode.valueOf(config.getFaultResultCode());
+        this.operations = config.getFaultOperations().stream()
+                .map(op -> op.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public void processSimpleBindRequest(InMemoryInterceptedSimpleBindRequest request) throws LDAPException {
+        inject("bind");
+    }
+
+    @Override
+    public void processSearchRequest(InMemoryInterceptedSearchRequest request) throws LDAPException {
+        inject("search");
+    }
+
+    @Override
+    public void processAddRequest(InMemoryInterceptedAddRequest request) throws LDAPException {
+        inject("add");
+    }
+
+    @Override
+    public void processModifyRequest(InMemoryInterceptedModifyRequest request) throws LDAPException {
+        inject("modify");
+    }
+
+    @Override
+    public void processModifyDNRequest(InMemoryInterceptedModifyDNRequest request) throws LDAPException {
+        inject("modify-dn");
+    }
+
+    @Override
+    public void processDeleteRequest(InMemoryInterceptedDeleteRequest request) throws LDAPException {
+        inject("delete");
+    }
+
+    @Override
+    public void processCompareRequest(InMemoryInterceptedCompareRequest request) throws LDAPException {
+        inject("compare");
+    }
+
+    /**
+     * これまでに注入した障害の数
+     */
+    public long getInjectedFaults() {
+        return injectedFaults.sum();
+    }
+
+    private void inject(String operation) throws LDAPException {
+        if (!operations.isEmpty() && !operations.contains(operation)) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyNanos + (jitterNanos > 0 ? random.nextLong(jitterNanos) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay / 1_000_000, (int) (delay % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (faultRate > 0 && random.nextDouble() < faultRate) {
+            injectedFaults.increment();
+            throw new LDAPException(faultResultCode, "Injected fault (" + operation + ")");
+        }
+    }
+}
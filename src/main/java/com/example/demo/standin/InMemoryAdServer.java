@@ -0,0 +1,169 @@
+package com.example.demo.standin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RDN;
+
+/**
+ * ドメインコントローラーの代わりに使うインメモリLDAPサーバー
+ * ADに似たスキーマ（user、group、member、sAMAccountName、groupType）と範囲指定取得を備え、
+ * 合成したユーザーとグループを投入できます。LDAPSではなく平文のLDAPで待ち受けるため、ad.ssl=falseで接続します。
+ */
+public class InMemoryAdServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryAdServer.class);
+
+    /**
+     * ADのMaxValRangeの既定値
+     */
+    public static final int DEFAULT_MAX_VAL_RANGE = 1500;
+
+    // 0x00000002 | 0x80000000 = セキュリティ有効なグローバルグループ
+    private static final String GLOBAL_SECURITY_GROUP = String.valueOf(0x00000002 | 0x80000000);
+
+    private final InMemoryDirectoryServer server;
+    private final String baseDn;
+    private final String usersDn;
+    private int userCount;
+
+    /**
+     * @param baseDn ドメインのDN（DC=sandbox,DC=local等）
+     * @param usersOu ユーザーとグループを置くコンテナ（CN=Users等）
+     * @param adminDn バインドに使う管理者のDN
+     * @param password 管理者のパスワード
+     * @param port 待ち受けるポート（0の場合は空いているポート）
+     * @param interceptors 範囲指定取得の後に適用するインターセプター（遅延・障害の注入等）
+     */
+    public InMemoryAdServer(String baseDn, String usersOu, String adminDn, String password, int port,
+                            InMemoryOperationInterceptor... interceptors) throws LDAPException {
+        this.baseDn = baseDn;
+        this.usersDn = usersOu.strip() + "," + baseDn;
+
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(baseDn);
+        config.setSchema(AdSchema.create());
+        config.addAdditionalBindCredentials(adminDn, password);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("LDAP", port));
+        config.addInMemoryOperationInterceptor(new RangeRetrievalInterceptor(DEFAULT_MAX_VAL_RANGE));
+        for (InMemoryOperationInterceptor interceptor : interceptors) {
+            config.addInMemoryOperationInterceptor(interceptor);
+        }
+        this.server = new InMemoryDirectoryServer(config);
+    }
+
+    /**
+     * ドメインとユーザー用のコンテナを作成して待ち受けを開始する
+     */
+    public void start() throws LDAPException {
+        RDN domain = new DN(baseDn).getRDN();
+        server.add(new Entry(baseDn,
+                new Attribute("objectClass", "top", "domain"),
+                new Attribute("dc", domain.getAttributeValues()[0])));
+
+        RDN users = new DN(usersDn).getRDN();
+        boolean ou = users.getAttributeNames()[0].equalsIgnoreCase("ou");
+        server.add(new Entry(usersDn,
+                new Attribute("objectClass", "top", ou ? "organizationalUnit" : "container"),
+                new Attribute(ou ? "ou" : "cn", users.getAttributeValues()[0])));
+
+        server.startListening();
+        logger.info("インメモリLDAPサーバーを起動しました: ldap://localhost:{} ({})", getPort(), baseDn);
+    }
+
+    public int getPort() {
+        return server.getListenPort();
+    }
+
+    public String getUsersDn() {
+        return usersDn;
+    }
+
+    /**
+     * 合成ユーザーのCN（1始まり）
+     */
+    public static String userCn(int index) {
+        return String.format(Locale.ROOT, "user%06d", index);
+    }
+
+    public String userDn(int index) {
+        return "CN=" + userCn(index) + "," + usersDn;
+    }
+
+    /**
+     * これまでに投入したユーザー数
+     */
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * 合成ユーザーを指定された人数だけ追加する（CNは既存のユーザーの続きの番号になる）
+     */
+    public void addUsers(int count) throws LDAPException {
+        for (int i = 0; i < count; i++) {
+            int index = userCount + 1;
+            String cn = userCn(index);
+            server.add(new Entry(userDn(index),
+                    new Attribute("objectClass", "top", "user"),
+                    new Attribute("cn", cn),
+                    new Attribute("sAMAccountName", cn),
+                    new Attribute("displayName", "Synthetic User " + index)));
+            userCount = index;
+        }
+    }
+
+    /**
+     * 先頭から指定された人数のユーザーをメンバーに持つグループを追加する
+     */
+    public void addGroup(String cn, int memberCount) throws LDAPException {
+        if (memberCount > userCount) {
+            throw new IllegalArgumentException("メンバー数がユーザー数を超えています: " + memberCount + " > " + userCount);
+        }
+        List<String> members = new ArrayList<>(memberCount);
+        for (int i = 1; i <= memberCount; i++) {
+            members.add(userDn(i));
+        }
+        Entry group = new Entry("CN=" + cn + "," + usersDn,
+                new Attribute("objectClass", "top", "group"),
+                new Attribute("cn", cn),
+                new Attribute("sAMAccountName", cn),
+                new Attribute("groupType", GLOBAL_SECURITY_GROUP));
+        if (!members.isEmpty()) {
+            group.addAttribute(new Attribute("member", members));
+        }
+        server.add(group);
+    }
+
+    /**
+     * 同じ人数のメンバーを持つグループをまとめて追加する（CNは prefix-0001 の形式）
+     */
+    public void addGroups(String prefix, int count, int membersEach) throws LDAPException {
+        for (int i = 1; i <= count; i++) {
+            addGroup(String.format(Locale.ROOT, "%s-%04d", prefix, i), membersEach);
+        }
+    }
+
+    /**
+     * テストや計測のために直接操作する場合のサーバー
+     */
+    public InMemoryDirectoryServer getServer() {
+        return server;
+    }
+
+    @Override
+    public void close() {
+        server.shutDown(true);
+    }
+}
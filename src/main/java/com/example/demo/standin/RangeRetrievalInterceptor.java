@@ -0,0 +1,87 @@
+package com.example.demo.standin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchEntry;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.ReadOnlySearchRequest;
+import com.unboundid.ldap.sdk.SearchRequest;
+
+/**
+ * ADの範囲指定取得（member;range=low-high）とMaxValRangeを再現するインターセプター
+ * インメモリサーバーは範囲指定のオプションを解釈しないため、元の属性名で検索させてから返す値を範囲で切り出します。
+ * 範囲を指定せずに要求された場合も、ADと同様にMaxValRangeを超える値は最初の範囲だけを返します。
+ */
+public class RangeRetrievalInterceptor extends InMemoryOperationInterceptor {
+
+    private static final String MEMBER = "member";
+    private static final String RANGE_OPTION = ";range=";
+    private static final String RANGES_PROPERTY = RangeRetrievalInterceptor.class.getName() + ".ranges";
+
+    private final int maxValRange;
+
+    /**
+     * @param maxValRange 1回の応答で返す値の最大数（ADの既定値は1500）
+     */
+    public RangeRetrievalInterceptor(int maxValRange) {
+        this.maxValRange = maxValRange;
+    }
+
+    @Override
+    public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+        ReadOnlySearchRequest search = request.getRequest();
+        List<String> attributes = new ArrayList<>(search.getAttributeList());
+        Map<String, int[]> ranges = new HashMap<>();
+        for (int i = 0; i < attributes.size(); i++) {
+            String attribute = attributes.get(i);
+            int option = attribute.toLowerCase(Locale.ROOT).indexOf(RANGE_OPTION);
+            if (option < 0) {
+                continue;
+            }
+            String name = attribute.substring(0, option).toLowerCase(Locale.ROOT);
+            String[] bounds = attribute.substring(option + RANGE_OPTION.length()).split("-", 2);
+            int low = Integer.parseInt(bounds[0]);
+            int high = bounds.length < 2 || bounds[1].equals("*") ? Integer.MAX_VALUE : Integer.parseInt(bounds[1]);
+            ranges.put(name, new int[]{low, high});
+            attributes.set(i, name);
+        }
+        if (!ranges.isEmpty()) {
+            SearchRequest rewritten = search.duplicate();
+            rewritten.setAttributes(attributes);
+            request.setRequest(rewritten);
+            request.setProperty(RANGES_PROPERTY, ranges);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void processSearchEntry(InMemoryInterceptedSearchEntry result) {
+        Attribute member = result.getSearchEntry().getAttribute(MEMBER);
+        Map<String, int[]> ranges = (Map<String, int[]>) result.getProperty(RANGES_PROPERTY);
+        int[] range = ranges != null ? ranges.get(MEMBER) : null;
+        if (member == null || (range == null && member.size() <= maxValRange)) {
+            return;
+        }
+
+        int low = range != null ? range[0] : 0;
+        int high = range != null ? range[1] : Integer.MAX_VALUE;
+        Entry entry = result.getSearchEntry().duplicate();
+        entry.removeAttribute(MEMBER);
+        String[] values = member.getValues();
+        if (low < values.length) {
+            int end = (int) Math.min(Math.min((long) high, (long) low + maxValRange - 1), values.length - 1);
+            boolean last = end == values.length - 1;
+            entry.addAttribute(new Attribute(member.getName() + RANGE_OPTION + low + "-" + (last ? "*" : end),
+                    Arrays.copyOfRange(values, low, end + 1)));
+        }
+        result.setSearchEntry(entry);
+    }
+}
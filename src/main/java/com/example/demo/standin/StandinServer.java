@@ -0,0 +1,91 @@
+package com.example.demo.standin;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.AdProperty;
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * standinプロファイルで、DCの代わりにインメモリLDAPサーバーを起動する
+ * AdPropertyのバインド直後にサーバーを起動して接続先を書き換えるため、
+ * 接続プールを含む全てのBeanは実際のDCと同じ経路でスタンドインへ接続します。
+ */
+@Component
+@Profile("standin")
+public class StandinServer implements BeanPostProcessor, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandinServer.class);
+
+    private InMemoryAdServer server;
+    private FaultInjectionInterceptor faults;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof AdProperty adProperty && server == null) {
+            try {
+                start(adProperty);
+            } catch (LDAPException e) {
+                throw new BeanCreationException(beanName, "スタンドインの起動に失敗しました", e);
+            }
+        }
+        return bean;
+    }
+
+    private void start(AdProperty adProperty) throws LDAPException {
+        AdProperty.Standin config = adProperty.getStandin();
+        faults = new FaultInjectionInterceptor(config);
+        server = new InMemoryAdServer(adProperty.getBaseDn(), adProperty.getUsersOu(),
+                adProperty.getAdminPrincipal(), adProperty.getPassword(), config.getPort(),
+                new UsnInterceptor("CN=NTDS Settings,CN=STANDIN,CN=Servers," + adProperty.getBaseDn()),
+                faults);
+        server.start();
+        seed(config);
+
+        String host = "localhost:" + server.getPort();
+        adProperty.setHost(host);
+        adProperty.setSsl(false);
+        adProperty.getRead().setHosts(List.of(host));
+        adProperty.getWrite().setHosts(List.of(host));
+        logger.info("スタンドインを起動しました: {} (ユーザー {}人, グループ {}件, 大規模グループ {})",
+                adProperty.getProviderUrl(), server.getUserCount(), config.getGroups(), config.getLargeGroups());
+    }
+
+    private void seed(AdProperty.Standin config) throws LDAPException {
+        server.addUsers(config.getUsers());
+        int users = server.getUserCount();
+        server.addGroups("group", config.getGroups(), Math.min(config.getMembersPerGroup(), users));
+        for (int size : config.getLargeGroups()) {
+            server.addGroup("large-" + size, Math.min(size, users));
+        }
+    }
+
+    /**
+     * 起動中のサーバー（起動前はnull）
+     */
+    public InMemoryAdServer getServer() {
+        return server;
+    }
+
+    /**
+     * これまでに注入した障害の数
+     */
+    public long getInjectedFaults() {
+        return faults != null ? faults.getInjectedFaults() : 0;
+    }
+
+    @Override
+    public void destroy() {
+        if (server != null) {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.standin;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedAddRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchEntry;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ModifyRequest;
+
+/**
+ * ADの更新シーケンス番号（USN）を再現するインターセプター
+ * 追加・変更されたエントリにuSNCreated/uSNChangedを付け、RootDSEでhighestCommittedUSNとdsServiceNameを返すため、
+ * DirectoryChangePollerによるキャッシュの無効化をスタンドインでも動かせます。
+ * 名前の変更（modify DN）には属性を追加できないため、USNは進みません。
+ */
+public class UsnInterceptor extends InMemoryOperationInterceptor {
+
+    private final AtomicLong highestCommittedUsn = new AtomicLong(1);
+    private final String serviceName;
+
+    /**
+     * @param serviceName RootDSEのdsServiceNameとして返す名前（DCの識別子）
+     */
+    public UsnInterceptor(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public void processAddRequest(InMemoryInterceptedAddRequest request) {
+        String usn = String.valueOf(highestCommittedUsn.incrementAndGet());
+        AddRequest add = request.getRequest().duplicate();
+        add.addAttribute("uSNCreated", usn);
+        add.addAttribute("uSNChanged", usn);
+        request.setRequest(add);
+    }
+
+    @Override
+    public void processModifyRequest(InMemoryInterceptedModifyRequest request) {
+        ModifyRequest modify = request.getRequest().duplicate();
+        modify.addModification(new Modification(ModificationType.REPLACE, "uSNChanged",
+                String.valueOf(highestCommittedUsn.incrementAndGet())));
+        request.setRequest(modify);
+    }
+
+    @Override
+    public void processSearchEntry(InMemoryInterceptedSearchEntry result) {
+        if (!result.getSearchEntry().getDN().isEmpty()) {
+            return;
+        }
+        Entry rootDse = result.getSearchEntry().duplicate();
+        rootDse.setAttribute("highestCommittedUSN", String.valueOf(highestCommittedUsn.get()));
+        rootDse.setAttribute("dsServiceName", serviceName);
+        result.setSearchEntry(rootDse);
+    }
+}
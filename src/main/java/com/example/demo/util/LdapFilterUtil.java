@@ -0,0 +1,71 @@
+package com.example.demo.util;
+
+/**
+ * LDAP検索フィルターを組み立てるためのユーティリティクラス
+ */
+public class LdapFilterUtil {
+
+    private LdapFilterUtil() {
+    }
+
+    /**
+     * フィルターの値として使えるように特殊文字をエスケープする（RFC 4515）
+     * 
+     * @param value エスケープする値
+     * @return エスケープ済みの値
+     */
+    public static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\5c");
+                    break;
+                case '*':
+                    sb.append("\\2a");
+                    break;
+                case '(':
+                    sb.append("\\28");
+                    break;
+                case ')':
+                    sb.append("\\29");
+                    break;
+                case '\0':
+                    sb.append("\\00");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 括弧で囲まれた1つのフィルターとして正しく閉じているかを検査する
+     * 他の条件とANDで結合する前に、括弧の対応が崩れて条件が外へ漏れないことを確認します。
+     * 
+     * @param filter 検査するフィルター（例: (description=営業*)）
+     * @return 先頭の括弧が末尾で閉じ、途中で閉じきらない場合はtrue
+     */
+    public static boolean isValidFilter(String filter) {
+        if (filter.length() < 3 || filter.charAt(0) != '(' || filter.charAt(filter.length() - 1) != ')') {
+            return false;
+        }
+        int depth = 0;
+        for (int i = 0; i < filter.length(); i++) {
+            char c = filter.charAt(i);
+            if (c == '\0') {
+                return false;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0 && i != filter.length() - 1) {
+                    return false;
+                }
+            }
+        }
+        return depth == 0;
+    }
+}
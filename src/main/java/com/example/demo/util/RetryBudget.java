@@ -0,0 +1,60 @@
+package com.example.demo.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 全操作で共有するリトライ予算（トークンバケット）
+ * 再試行ごとにトークンを1つ消費し、成功した操作ごとにtokenRatioだけ補充します。
+ * DCの障害で失敗が続くとトークンが尽き、再試行が失敗の数に比例して増え続けるのを防ぎます。
+ */
+public class RetryBudget {
+    
+    private final double maxTokens;
+    private final double tokenRatio;
+    
+    private double tokens;
+    
+    private final LongAdder rejected = new LongAdder();
+    
+    /**
+     * @param maxTokens 蓄えられるトークンの上限（最初は満杯）
+     * @param tokenRatio 成功した操作ごとに補充するトークン数
+     */
+    public RetryBudget(double maxTokens, double tokenRatio) {
+        this.maxTokens = maxTokens;
+        this.tokenRatio = tokenRatio;
+        this.tokens = maxTokens;
+    }
+    
+    /**
+     * 再試行のためにトークンを1つ消費する
+     * 
+     * @return トークンが不足している場合はfalse（再試行しない）
+     */
+    public synchronized boolean tryAcquire() {
+        if (tokens < 1) {
+            rejected.increment();
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+    
+    /**
+     * 成功した操作の分だけトークンを補充する
+     */
+    public synchronized void onSuccess() {
+        tokens = Math.min(maxTokens, tokens + tokenRatio);
+    }
+    
+    public synchronized double getTokens() {
+        return tokens;
+    }
+    
+    /**
+     * 予算不足で再試行しなかった回数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
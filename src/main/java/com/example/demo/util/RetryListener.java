@@ -0,0 +1,39 @@
+package com.example.demo.util;
+
+/**
+ * RetryUtilによる再試行の発生と結果を受け取るリスナー（メトリクス用）
+ */
+public interface RetryListener {
+    
+    /**
+     * 何もしないリスナー
+     */
+    RetryListener NONE = new RetryListener() {
+    };
+    
+    /**
+     * 失敗した操作を再試行する
+     * 
+     * @param policy ポリシー名（read、write等）
+     * @param attempts これまでの試行回数
+     * @param error 直前の試行で発生した例外
+     */
+    default void onRetry(String policy, int attempts, Exception error) {
+    }
+    
+    /**
+     * 再試行の結果、操作が成功した
+     * 
+     * @param attempts 成功した試行を含む試行回数（2以上）
+     */
+    default void onRecovered(String policy, int attempts) {
+    }
+    
+    /**
+     * リトライ可能なエラーで失敗したが、再試行せずに諦めた
+     * 
+     * @param reason 諦めた理由（attempts、deadline、budget）
+     */
+    default void onGiveUp(String policy, int attempts, String reason, Exception error) {
+    }
+}
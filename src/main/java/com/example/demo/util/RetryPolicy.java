@@ -0,0 +1,50 @@
+package com.example.demo.util;
+
+import java.time.Duration;
+
+/**
+ * 操作の種類ごとのリトライ方針
+ * 
+ * @param name ログに出力する名前（read、write等）
+ * @param maxAttempts 最初の試行を含む最大試行回数
+ * @param initialBackoff 1回目の再試行までの待機時間の上限
+ * @param maxBackoff 再試行ごとに倍にする待機時間の上限の最大値
+ * @param deadline 最初の試行からの期限（待機後にこれを超える場合は再試行しない）
+ * @param budget 全操作で共有するリトライ予算（nullの場合は制限しない）
+ * @param listener 再試行の発生と結果を受け取るリスナー
+ */
+public record RetryPolicy(String name,
+                          int maxAttempts,
+                          Duration initialBackoff,
+                          Duration maxBackoff,
+                          Duration deadline,
+                          RetryBudget budget,
+                          RetryListener listener) {
+    
+    /**
+     * 再試行を通知しないポリシー
+     */
+    public RetryPolicy(String name, int maxAttempts, Duration initialBackoff, Duration maxBackoff,
+                       Duration deadline, RetryBudget budget) {
+        this(name, maxAttempts, initialBackoff, maxBackoff, deadline, budget, RetryListener.NONE);
+    }
+    
+    /**
+     * 設定に依存しない既定のポリシー
+     */
+    public static final RetryPolicy DEFAULT = new RetryPolicy("default", 3,
+            Duration.ofMillis(200), Duration.ofSeconds(2), Duration.ofSeconds(30), null);
+    
+    /**
+     * 指定された回数だけ失敗した後の待機時間の上限（実際の待機時間は0からこの値までの乱数）
+     * 
+     * @param failures これまでに失敗した回数（1以上）
+     */
+    public Duration backoffCap(int failures) {
+        Duration cap = initialBackoff;
+        for (int i = 1; i < failures && cap.compareTo(maxBackoff) < 0; i++) {
+            cap = cap.multipliedBy(2);
+        }
+        return cap.compareTo(maxBackoff) > 0 ? maxBackoff : cap;
+    }
+}
@@ -4,69 +4,144 @@ import com.example.demo.exception.ActiveDirectoryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.function.Supplier;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * リトライ機能を提供するユーティリティクラス
- * 3回リトライ、1秒間隔の固定パターンで動作します
+ * 待機時間は指数的に伸ばした上限までの一様乱数（フルジッター）で決めるため、
+ * 同時に失敗した呼び出しが同じタイミングで再試行することはありません。
+ * 回数・待機時間・期限・リトライ予算はRetryPolicyで指定します。
  */
 public class RetryUtil {
     
     private static final Logger logger = LoggerFactory.getLogger(RetryUtil.class);
     
     /**
-     * 最大リトライ回数
+     * リトライ対象の操作（チェック例外をそのままスローできる）
      */
-    private static final int MAX_RETRIES = 3;
+    @FunctionalInterface
+    public interface RetryableOperation<T> {
+        T get() throws Exception;
+    }
     
     /**
-     * リトライ間隔（ミリ秒）
+     * リトライ対象の戻り値のない操作
      */
-    private static final long RETRY_DELAY = 1000;
+    @FunctionalInterface
+    public interface RetryableAction {
+        void run() throws Exception;
+    }
+    
+    /**
+     * 指定された操作を既定のポリシー（3回まで試行）でリトライする
+     * 
+     * @param operation 実行する操作
+     * @return 操作の結果
+     * @throws ActiveDirectoryException リトライ後も失敗した場合
+     */
+    public static <T> T retryOnError(RetryableOperation<T> operation) {
+        return retryOnError(RetryPolicy.DEFAULT, operation);
+    }
+    
+    /**
+     * 戻り値のない操作を既定のポリシーでリトライする
+     */
+    public static void retryOnError(RetryableAction operation) {
+        retryOnError(RetryPolicy.DEFAULT, operation);
+    }
+    
+    /**
+     * 戻り値のない操作を指定されたポリシーでリトライする
+     */
+    public static void retryOnError(RetryPolicy policy, RetryableAction operation) {
+        retryOnError(policy, () -> {
+            operation.run();
+            return null;
+        });
+    }
     
     /**
      * 指定された操作をリトライ可能なエラーが発生した場合にリトライする
-     * 3回リトライ、1秒間隔で実行されます
+     * リトライできないエラーはそのままスローし、リトライ可能なエラーで試行回数・期限・
+     * リトライ予算のいずれかを使い切った場合はActiveDirectoryExceptionで包んでスローします。
+     * 失敗した時点でスレッドが割り込まれている場合は、割り込み状態を保ったまま中断としてスローします。
      * 
+     * @param policy リトライのポリシー
      * @param operation 実行する操作
      * @return 操作の結果
      * @throws ActiveDirectoryException リトライ後も失敗した場合
      */
-    public static <T> T retryOnError(Supplier<T> operation) {
+    public static <T> T retryOnError(RetryPolicy policy, RetryableOperation<T> operation) {
+        long deadline = System.nanoTime() + policy.deadline().toNanos();
         int attempts = 0;
         
-        while (attempts < MAX_RETRIES) {
+        while (true) {
             try {
-                return operation.get();
+                T result = operation.get();
+                if (policy.budget() != null) {
+                    policy.budget().onSuccess();
+                }
+                if (attempts > 0) {
+                    policy.listener().onRecovered(policy.name(), attempts + 1);
+                }
+                return result;
             } catch (Exception e) {
                 attempts++;
                 
-                if (isRetryableError(e) && attempts < MAX_RETRIES) {
-                    logger.warn("操作が失敗しました（試行回数: {}）: {}", attempts, e.getMessage());
-                    try {
-                        Thread.sleep(RETRY_DELAY);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new ActiveDirectoryException("リトライが中断されました", ie);
-                    }
-                } else {
-                    logger.error("操作が最終的に失敗しました（試行回数: {}）", attempts, e);
+                // 割り込まれたスレッドでは再試行せず、割り込み状態を残したまま中断を通知する
+                if (Thread.currentThread().isInterrupted()) {
+                    logger.warn("リトライが中断されました（{}、試行回数: {}）: {}", policy.name(), attempts, e.getMessage());
+                    throw new ActiveDirectoryException("リトライが中断されました", e);
+                }
+                if (!isRetryableError(e)) {
+                    throw RetryUtil.<RuntimeException>rethrow(e);
+                }
+                if (attempts >= policy.maxAttempts()) {
+                    logger.error("操作が最終的に失敗しました（{}、試行回数: {}）", policy.name(), attempts, e);
+                    policy.listener().onGiveUp(policy.name(), attempts, "attempts", e);
+                    throw new ActiveDirectoryException("操作が失敗しました", e);
+                }
+                long delay = ThreadLocalRandom.current().nextLong(policy.backoffCap(attempts).toMillis() + 1);
+                if (System.nanoTime() + delay * 1_000_000L > deadline) {
+                    logger.error("操作の期限内に再試行できません（{}、試行回数: {}）", policy.name(), attempts, e);
+                    policy.listener().onGiveUp(policy.name(), attempts, "deadline", e);
+                    throw new ActiveDirectoryException("操作が失敗しました", e);
+                }
+                if (policy.budget() != null && !policy.budget().tryAcquire()) {
+                    logger.error("リトライ予算が不足しているため再試行しません（{}、試行回数: {}）", policy.name(), attempts, e);
+                    policy.listener().onGiveUp(policy.name(), attempts, "budget", e);
                     throw new ActiveDirectoryException("操作が失敗しました", e);
                 }
+                
+                policy.listener().onRetry(policy.name(), attempts, e);
+                logger.warn("操作が失敗しました（{}、試行回数: {}、{}ms後に再試行）: {}", policy.name(), attempts, delay, e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new ActiveDirectoryException("リトライが中断されました", ie);
+                }
             }
         }
-        
-        throw new ActiveDirectoryException("操作が最大試行回数に達しました");
     }
     
     /**
      * リトライ可能なエラーかどうかを判定
+     * 既にメンバーである等のAttributeInUseExceptionは、やり直しても同じ結果になるためリトライしない
      */
     private static boolean isRetryableError(Exception e) {
         // 例外の型で判定
         return e instanceof javax.naming.CommunicationException ||
                e instanceof javax.naming.ServiceUnavailableException ||
-               e instanceof javax.naming.TimeLimitExceededException ||
-               e instanceof javax.naming.directory.AttributeInUseException;
+               e instanceof javax.naming.TimeLimitExceededException;
+    }
+    
+    /**
+     * リトライできないエラーを、チェック例外も含めて元の型のままスローする
+     * 呼び出し元（ActiveDirectoryService等）はNamingExceptionを宣言しているため、型が失われることはありません。
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> RuntimeException rethrow(Exception e) throws E {
+        throw (E) e;
     }
-} 
\ No newline at end of file
+}
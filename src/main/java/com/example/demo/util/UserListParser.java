@@ -0,0 +1,115 @@
+package com.example.demo.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * 一括操作のリクエストボディからユーザーCNの一覧を読み取るユーティリティクラス
+ * 数万件のユーザーを想定し、ボディ全体を文字列に読み込まずストリームから順に読み取ります。
+ */
+public class UserListParser {
+
+    private UserListParser() {
+    }
+
+    /**
+     * JSONの文字列配列（["user1","user2"]）、または {"users": [...]} 形式を読み取る
+     *
+     * @throws IllegalArgumentException 形式が正しくない場合
+     */
+    public static List<String> parseJson(InputStream in, JsonFactory factory) throws IOException {
+        List<String> userCNs = new ArrayList<>();
+        try (JsonParser parser = factory.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = findUsersField(parser);
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("ユーザーCNの配列を指定してください");
+            }
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.VALUE_STRING) {
+                    throw new IllegalArgumentException("ユーザーCNは文字列で指定してください");
+                }
+                addIfPresent(userCNs, parser.getText());
+            }
+        }
+        return userCNs;
+    }
+
+    /**
+     * CSVの1列目をユーザーCNとして読み取る
+     * 空行、#で始まる行、先頭のヘッダー行（cn）は無視します。
+     */
+    public static List<String> parseCsv(InputStream in) throws IOException {
+        List<String> userCNs = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            String value = firstColumn(line);
+            if (first && value.equalsIgnoreCase("cn")) {
+                first = false;
+                continue;
+            }
+            first = false;
+            if (!value.startsWith("#")) {
+                addIfPresent(userCNs, value);
+            }
+        }
+        return userCNs;
+    }
+
+    private static JsonToken findUsersField(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            token = parser.nextToken();
+            if ("users".equals(field)) {
+                return token;
+            }
+            parser.skipChildren();
+        }
+        return token;
+    }
+
+    /**
+     * 1列目を取り出す（ダブルクォートで囲まれた値はカンマを含められる）
+     */
+    private static String firstColumn(String line) {
+        String trimmed = line.strip();
+        if (trimmed.startsWith("\"")) {
+            StringBuilder value = new StringBuilder();
+            for (int i = 1; i < trimmed.length(); i++) {
+                char c = trimmed.charAt(i);
+                if (c == '"') {
+                    if (i + 1 < trimmed.length() && trimmed.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                        continue;
+                    }
+                    break;
+                }
+                value.append(c);
+            }
+            return value.toString().strip();
+        }
+        int comma = trimmed.indexOf(',');
+        return (comma >= 0 ? trimmed.substring(0, comma) : trimmed).strip();
+    }
+
+    private static void addIfPresent(List<String> userCNs, String value) {
+        if (value != null && !value.isBlank()) {
+            userCNs.add(value.strip());
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.demo.cache;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.LdapConnectionManager;
+import com.example.demo.ldap.MemberRangeReader;
+import com.example.demo.ldap.PooledLdapContext;
+import com.example.demo.service.GroupQuery;
+import com.example.demo.service.RetryPolicies;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * DirectoryReplicaのテストクラス
+ */
+@ExtendWith(MockitoExtension.class)
+class DirectoryReplicaTest {
+
+    private static final String USERS_DN = "CN=Users,DC=example,DC=com";
+    private static final String GROUP_DN = "CN=sales,CN=Users,DC=example,DC=com";
+    private static final String USER1_DN = "CN=user1,CN=Users,DC=example,DC=com";
+    private static final String USER2_DN = "CN=user2,CN=Users,DC=example,DC=com";
+    private static final String FILTER = "(|(objectClass=group)(objectClass=user))";
+
+    @Mock
+    private AdProperty adProperty;
+
+    @Mock
+    private LdapConnectionManager connectionManager;
+
+    @Mock
+    private MemberRangeReader memberRangeReader;
+
+    @Spy
+    private RetryPolicies retryPolicies = new RetryPolicies(new AdProperty.Retry());
+
+    @Mock
+    private PooledLdapContext mockContext;
+
+    @InjectMocks
+    private DirectoryReplica replica;
+
+    private final AdProperty.Replica config = new AdProperty.Replica();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config.setEnabled(true);
+        doReturn(config).when(adProperty).getReplica();
+        doReturn(USERS_DN).when(adProperty).getUsersDn();
+        doReturn(mockContext).when(connectionManager).getConnection(any());
+    }
+
+    @Test
+    void testLoad_ServesMembersAndUsers() throws Exception {
+        // 準備
+        loadEntries(group("sales", new byte[]{1}, USER1_DN), user("user1", new byte[]{2}));
+
+        // メソッドの実行
+        replica.onPollCompleted(System.nanoTime());
+
+        // 検証
+        assertTrue(replica.isServing());
+        assertEquals(Optional.of(List.of(USER1_DN)), replica.getMembers(GROUP_DN.toUpperCase()));
+        assertEquals(1, replica.getMemberCount(GROUP_DN).getAsInt());
+        Map<String, String> users = replica.resolveUserDns(List.of("USER1", "unknown"));
+        assertEquals(Map.of("USER1", USER1_DN), Map.copyOf(users));
+    }
+
+    @Test
+    void testInvalidate_FallsBackUntilNextPoll() throws Exception {
+        // 準備
+        loadEntries(group("sales", new byte[]{1}, USER1_DN), user("user1", new byte[]{2}), user("user2", new byte[]{3}));
+        replica.onPollCompleted(System.nanoTime());
+        doReturn(results(group("sales", new byte[]{1}, USER1_DN, USER2_DN))).when(mockContext)
+                .search(eq(GROUP_DN.toLowerCase()), eq(FILTER), any(SearchControls.class));
+
+        // メソッドの実行
+        replica.invalidate(GROUP_DN);
+        Optional<List<String>> beforePoll = replica.getMembers(GROUP_DN);
+        replica.onPollCompleted(System.nanoTime());
+
+        // 検証
+        assertTrue(beforePoll.isEmpty());
+        assertEquals(Optional.of(List.of(USER1_DN, USER2_DN)), replica.getMembers(GROUP_DN));
+    }
+
+    @Test
+    void testOnEntriesChanged_RemovesDeletedAndRenamedEntries() throws Exception {
+        // 準備
+        loadEntries(group("sales", new byte[]{1}, USER1_DN), user("user1", new byte[]{2}), user("user2", new byte[]{3}));
+        replica.onPollCompleted(System.nanoTime());
+        String renamedDn = "CN=sales2," + USERS_DN;
+        doReturn(results(group("sales2", new byte[]{1}, USER1_DN))).when(mockContext)
+                .search(eq(renamedDn), eq(FILTER), any(SearchControls.class));
+        doThrow(new NameNotFoundException()).when(mockContext)
+                .search(eq(USER2_DN), eq(FILTER), any(SearchControls.class));
+
+        // メソッドの実行
+        replica.onEntriesChanged(List.of(renamedDn, USER2_DN));
+
+        // 検証: objectGUIDが同じため古いDNは取り除かれる
+        assertTrue(replica.getMembers(GROUP_DN).isEmpty());
+        assertEquals(Optional.of(List.of(USER1_DN)), replica.getMembers(renamedDn));
+        assertEquals(Map.of("user1", USER1_DN), Map.copyOf(replica.resolveUserDns(List.of("user1", "user2"))));
+    }
+
+    @Test
+    void testIsServing_FalseAfterMaxStaleness() throws Exception {
+        // 準備
+        config.setMaxStaleness(Duration.ofSeconds(30));
+        loadEntries(group("sales", new byte[]{1}, USER1_DN), user("user1", new byte[]{2}));
+
+        // メソッドの実行: 最後のポーリングの開始が1分前
+        replica.onPollCompleted(System.nanoTime() - Duration.ofMinutes(1).toNanos());
+
+        // 検証
+        assertFalse(replica.isServing());
+        assertTrue(replica.getMembers(GROUP_DN).isEmpty());
+        assertEquals(1, replica.getFallbackCount());
+    }
+
+    @Test
+    void testListGroups_PagesByCnWithPrefix() throws Exception {
+        // 準備
+        loadEntries(group("a-2", new byte[]{1}), group("b-1", new byte[]{2}), group("a-1", new byte[]{3}));
+        replica.onPollCompleted(System.nanoTime());
+        GroupQuery first = GroupQuery.of("A-", null, null, 1, null);
+        List<String> names = new ArrayList<>();
+
+        // メソッドの実行
+        assertTrue(replica.canServe(first));
+        String cursor = replica.listGroups(first, g -> names.add(g.cn()));
+        String last = replica.listGroups(GroupQuery.of("A-", null, null, 1, cursor), g -> names.add(g.cn()));
+
+        // 検証
+        assertNotNull(cursor);
+        assertNull(last);
+        assertEquals(List.of("a-1", "a-2"), names);
+        assertFalse(replica.canServe(GroupQuery.of(null, "(description=x)", null, 1, null)));
+    }
+
+    @Test
+    void testGetGroupsOf_ExpandsNestedGroupsUntilMembershipChanges() throws Exception {
+        // 準備: user1 → inner → outer
+        String innerDn = "CN=inner," + USERS_DN;
+        String outerDn = "CN=outer," + USERS_DN;
+        loadEntries(group("inner", new byte[]{1}, USER1_DN), group("outer", new byte[]{2}, innerDn),
+                user("user1", new byte[]{3}));
+        replica.onPollCompleted(System.nanoTime());
+        doReturn(results(group("inner", new byte[]{1}))).when(mockContext)
+                .search(eq(innerDn), eq(FILTER), any(SearchControls.class));
+
+        // メソッドの実行・検証
+        assertEquals(Optional.of(List.of(innerDn)), replica.getGroupsOf(USER1_DN, false));
+        assertEquals(Optional.of(List.of(innerDn, outerDn)), replica.getGroupsOf(USER1_DN, true));
+
+        // innerからuser1が外れると、メモした展開結果も使われなくなる
+        replica.onEntriesChanged(List.of(innerDn));
+        assertEquals(Optional.of(List.of()), replica.getGroupsOf(USER1_DN, true));
+        assertEquals(Optional.of(List.of(outerDn)), replica.getGroupsOf(innerDn, true));
+    }
+
+    @Test
+    void testOnEntriesChanged_RenamedNestedGroupKeepsParentMemberships() throws Exception {
+        // 準備: user1 → inner → outer のinnerをinner2に名前変更する
+        String innerDn = "CN=inner," + USERS_DN;
+        String renamedDn = "CN=inner2," + USERS_DN;
+        String outerDn = "CN=outer," + USERS_DN;
+        loadEntries(group("inner", new byte[]{1}, USER1_DN), group("outer", new byte[]{2}, innerDn),
+                user("user1", new byte[]{3}));
+        replica.onPollCompleted(System.nanoTime());
+        assertEquals(Optional.of(List.of(innerDn, outerDn)), replica.getGroupsOf(USER1_DN, true));
+        doReturn(results(group("inner2", new byte[]{1}, USER1_DN))).when(mockContext)
+                .search(eq(renamedDn), eq(FILTER), any(SearchControls.class));
+
+        // メソッドの実行
+        replica.onEntriesChanged(List.of(renamedDn));
+
+        // 検証: 親グループのメンバーと逆引きが新しいDNへ移る
+        assertEquals(Optional.of(List.of(renamedDn)), replica.getMembers(outerDn));
+        assertEquals(Optional.of(List.of(outerDn)), replica.getGroupsOf(renamedDn, false));
+        assertEquals(Optional.of(List.of(renamedDn)), replica.getGroupsOf(USER1_DN, false));
+        assertEquals(Optional.of(List.of(outerDn, renamedDn)), replica.getGroupsOf(USER1_DN, true));
+        assertTrue(replica.getGroupsOf(innerDn, true).isEmpty());
+    }
+
+    private void loadEntries(SearchResult... entries) throws Exception {
+        doReturn(results(entries)).when(mockContext).search(eq(USERS_DN), eq(FILTER), any(SearchControls.class));
+    }
+
+    private static SearchResult group(String cn, byte[] guid, String... members) {
+        BasicAttributes attrs = entry(cn, guid, "group");
+        if (members.length > 0) {
+            BasicAttribute member = new BasicAttribute("member");
+            for (String dn : members) {
+                member.add(dn);
+            }
+            attrs.put(member);
+        }
+        return result(cn, attrs);
+    }
+
+    private static SearchResult user(String cn, byte[] guid) {
+        return result(cn, entry(cn, guid, "user"));
+    }
+
+    private static BasicAttributes entry(String cn, byte[] guid, String objectClass) {
+        BasicAttributes attrs = new BasicAttributes(true);
+        attrs.put("cn", cn);
+        BasicAttribute classes = new BasicAttribute("objectClass");
+        classes.add("top");
+        classes.add(objectClass);
+        attrs.put(classes);
+        attrs.put("objectGUID", guid);
+        return attrs;
+    }
+
+    private static SearchResult result(String cn, BasicAttributes attrs) {
+        SearchResult result = new SearchResult("CN=" + cn, null, attrs);
+        result.setNameInNamespace("CN=" + cn + "," + USERS_DN);
+        return result;
+    }
+
+    private static NamingEnumeration<SearchResult> results(SearchResult... entries) {
+        Iterator<SearchResult> iterator = List.of(entries).iterator();
+        return new NamingEnumeration<>() {
+            @Override
+            public boolean hasMore() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public SearchResult next() {
+                return iterator.next();
+            }
+
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public SearchResult nextElement() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
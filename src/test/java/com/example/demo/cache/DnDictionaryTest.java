@@ -0,0 +1,52 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DnDictionaryのテストクラス
+ */
+class DnDictionaryTest {
+
+    @Test
+    void testIntern_SameIdIgnoringCase() {
+        // 準備
+        DnDictionary dictionary = new DnDictionary();
+
+        // メソッドの実行
+        int first = dictionary.intern("CN=user1,CN=Users,DC=example,DC=com");
+        int second = dictionary.intern("cn=USER1,cn=users,dc=example,dc=com");
+
+        // 検証
+        assertEquals(first, second);
+        assertEquals(1, dictionary.size());
+        assertEquals("CN=user1,CN=Users,DC=example,DC=com", dictionary.dn(first));
+    }
+
+    @Test
+    void testId_UnknownDnIsMinusOne() {
+        // 準備
+        DnDictionary dictionary = new DnDictionary();
+        dictionary.intern("CN=user1,CN=Users,DC=example,DC=com");
+
+        // メソッドの実行・検証
+        assertEquals(-1, dictionary.id("CN=user2,CN=Users,DC=example,DC=com"));
+        assertEquals(0, dictionary.id("CN=USER1,CN=Users,DC=example,DC=com"));
+    }
+
+    @Test
+    void testIntern_GrowsBeyondInitialCapacity() {
+        // 準備
+        DnDictionary dictionary = new DnDictionary();
+
+        // メソッドの実行
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, dictionary.intern("CN=user" + i + ",CN=Users,DC=example,DC=com"));
+        }
+
+        // 検証
+        assertEquals(5000, dictionary.size());
+        assertEquals("CN=user4999,CN=Users,DC=example,DC=com", dictionary.dn(4999));
+    }
+}
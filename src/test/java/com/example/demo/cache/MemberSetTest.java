@@ -0,0 +1,78 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MemberSetのテストクラス
+ */
+class MemberSetTest {
+
+    private DnDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new DnDictionary();
+    }
+
+    @Test
+    void testOf_RemovesDuplicatesIgnoringCase() {
+        // メソッドの実行
+        MemberSet members = MemberSet.of(dictionary, List.of(dn(1), dn(2), dn(1).toUpperCase()));
+
+        // 検証
+        assertEquals(2, members.size());
+        assertEquals(List.of(dn(1), dn(2)), members);
+        assertTrue(members.contains(dn(2).toLowerCase()));
+        assertFalse(members.contains(dn(3)));
+        assertThrows(UnsupportedOperationException.class, () -> members.add(dn(3)));
+    }
+
+    @Test
+    void testUnionAndIntersection() {
+        // 準備
+        MemberSet a = MemberSet.of(dictionary, List.of(dn(1), dn(2), dn(3)));
+        MemberSet b = MemberSet.of(dictionary, List.of(dn(3), dn(4), dn(2)));
+
+        // メソッドの実行・検証
+        assertEquals(List.of(dn(1), dn(2), dn(3), dn(4)), a.union(b));
+        assertEquals(List.of(dn(2), dn(3)), a.intersection(b));
+        assertEquals(List.of(), a.intersection(MemberSet.of(dictionary, List.of())));
+    }
+
+    @Test
+    void testIntersection_SmallAgainstLarge() {
+        // 準備: 件数が大きく異なる場合は二分探索で求める
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            all.add(dn(i));
+        }
+        MemberSet large = MemberSet.of(dictionary, all);
+        MemberSet small = MemberSet.of(dictionary, List.of(dn(999), dn(5), dn(2000)));
+
+        // メソッドの実行
+        MemberSet common = small.intersection(large);
+
+        // 検証
+        assertEquals(List.of(dn(5), dn(999)), common);
+    }
+
+    @Test
+    void testUnion_DifferentDictionaryIsRejected() {
+        // 準備
+        MemberSet a = MemberSet.of(dictionary, List.of(dn(1)));
+        MemberSet b = MemberSet.of(new DnDictionary(), List.of(dn(1)));
+
+        // メソッドの実行・検証
+        assertThrows(IllegalArgumentException.class, () -> a.union(b));
+    }
+
+    private static String dn(int index) {
+        return "CN=user" + index + ",CN=Users,DC=example,DC=com";
+    }
+}
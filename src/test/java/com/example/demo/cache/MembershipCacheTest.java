@@ -0,0 +1,142 @@
+package com.example.demo.cache;
+
+import com.example.demo.config.AdProperty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MembershipCacheのテストクラス
+ */
+class MembershipCacheTest {
+
+    private static final String GROUP_DN = "CN=testGroup,OU=Users,DC=example,DC=com";
+
+    private AdProperty adProperty;
+
+    private MembershipCache membershipCache;
+
+    @BeforeEach
+    void setUp() {
+        adProperty = new AdProperty();
+        adProperty.getCache().setMembershipMaxEntries(2);
+        membershipCache = new MembershipCache();
+        ReflectionTestUtils.setField(membershipCache, "adProperty", adProperty);
+        membershipCache.init();
+    }
+
+    @Test
+    void testGet_HitAndMissAreCounted() {
+        // 準備
+        List<String> members = List.of("CN=user1,OU=Users,DC=example,DC=com");
+
+        // メソッドの実行
+        assertNull(membershipCache.get(GROUP_DN));
+        membershipCache.put(GROUP_DN, members, membershipCache.currentGeneration(GROUP_DN));
+        List<String> result = membershipCache.get(GROUP_DN.toUpperCase());
+
+        // 検証（DNの大文字小文字は区別しない）
+        assertEquals(members, result);
+        assertEquals(1, membershipCache.getHitCount());
+        assertEquals(1, membershipCache.getMissCount());
+    }
+
+    @Test
+    void testPut_SkippedWhenInvalidatedDuringLoad() {
+        // 準備
+        long generation = membershipCache.currentGeneration(GROUP_DN);
+
+        // 読み込み中に自身の更新で無効化された
+        membershipCache.invalidate(GROUP_DN);
+        membershipCache.put(GROUP_DN, List.of("CN=stale,OU=Users,DC=example,DC=com"), generation);
+
+        // 検証
+        assertNull(membershipCache.get(GROUP_DN));
+    }
+
+    @Test
+    void testPut_NotSkippedWhenOtherGroupInvalidatedDuringLoad() {
+        // 準備
+        String otherDn = "CN=otherGroup,OU=Users,DC=example,DC=com";
+        long generation = membershipCache.currentGeneration(GROUP_DN);
+
+        // 読み込み中に別のグループが無効化された
+        membershipCache.invalidate(otherDn);
+        membershipCache.put(GROUP_DN, List.of("CN=user1,OU=Users,DC=example,DC=com"), generation);
+
+        // 検証（無関係な無効化では世代は変わらず、格納される）
+        assertEquals(generation, membershipCache.currentGeneration(GROUP_DN));
+        assertNotNull(membershipCache.get(GROUP_DN));
+    }
+
+    @Test
+    void testPut_SkippedWhenAllInvalidatedDuringLoad() {
+        // 準備
+        long generation = membershipCache.currentGeneration(GROUP_DN);
+
+        // メソッドの実行
+        membershipCache.invalidateAll();
+        membershipCache.put(GROUP_DN, List.of("CN=stale,OU=Users,DC=example,DC=com"), generation);
+
+        // 検証
+        assertNull(membershipCache.get(GROUP_DN));
+    }
+
+    @Test
+    void testOnEntriesChanged_InvalidatesOnlyChangedGroups() {
+        // 準備
+        String otherDn = "CN=otherGroup,OU=Users,DC=example,DC=com";
+        membershipCache.put(GROUP_DN, List.of("CN=user1,OU=Users,DC=example,DC=com"), membershipCache.currentGeneration(GROUP_DN));
+        membershipCache.put(otherDn, List.of("CN=user2,OU=Users,DC=example,DC=com"), membershipCache.currentGeneration(otherDn));
+
+        // メソッドの実行
+        membershipCache.onEntriesChanged(List.of(GROUP_DN, "CN=someUser,OU=Users,DC=example,DC=com"));
+
+        // 検証
+        assertNull(membershipCache.get(GROUP_DN));
+        assertNotNull(membershipCache.get(otherDn));
+    }
+
+    @Test
+    void testOnResync_InvalidatesAll() {
+        // 準備
+        membershipCache.put(GROUP_DN, List.of(), membershipCache.currentGeneration(GROUP_DN));
+
+        // メソッドの実行
+        membershipCache.onResync();
+
+        // 検証
+        assertEquals(0, membershipCache.size());
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsed() {
+        // 準備
+        membershipCache.put("CN=g1,DC=example", List.of(), membershipCache.currentGeneration("CN=g1,DC=example"));
+        membershipCache.put("CN=g2,DC=example", List.of(), membershipCache.currentGeneration("CN=g2,DC=example"));
+        membershipCache.get("CN=g1,DC=example");
+
+        // メソッドの実行
+        membershipCache.put("CN=g3,DC=example", List.of(), membershipCache.currentGeneration("CN=g3,DC=example"));
+
+        // 検証（最も参照されていないg2が追い出される）
+        assertNotNull(membershipCache.get("CN=g1,DC=example"));
+        assertNull(membershipCache.get("CN=g2,DC=example"));
+        assertNotNull(membershipCache.get("CN=g3,DC=example"));
+    }
+
+    @Test
+    void testGet_ExpiredEntryIsMiss() {
+        // 準備
+        adProperty.getCache().setMembershipTtl(Duration.ZERO);
+        membershipCache.put(GROUP_DN, List.of(), membershipCache.currentGeneration(GROUP_DN));
+
+        // メソッドの実行と検証
+        assertNull(membershipCache.get(GROUP_DN));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.cache;
+
+import com.example.demo.config.AdProperty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserDnCacheのテストクラス
+ */
+class UserDnCacheTest {
+
+    private AdProperty adProperty;
+
+    private UserDnCache userDnCache;
+
+    @BeforeEach
+    void setUp() {
+        adProperty = new AdProperty();
+        userDnCache = new UserDnCache();
+        ReflectionTestUtils.setField(userDnCache, "adProperty", adProperty);
+        userDnCache.init();
+    }
+
+    @Test
+    void testLookup_FoundAndNotFound() {
+        // 準備
+        userDnCache.putFound("user1", "CN=user1,OU=Users,DC=example,DC=com");
+        userDnCache.putNotFound("ghost");
+
+        // メソッドの実行
+        UserDnCache.CachedDn found = userDnCache.lookup("USER1");
+        UserDnCache.CachedDn notFound = userDnCache.lookup("ghost");
+        UserDnCache.CachedDn unknown = userDnCache.lookup("user2");
+
+        // 検証
+        assertTrue(found.isFound());
+        assertEquals("CN=user1,OU=Users,DC=example,DC=com", found.dn());
+        assertFalse(notFound.isFound());
+        assertNull(unknown);
+    }
+
+    @Test
+    void testPutNotFound_UsesShortTtl() {
+        // 準備
+        adProperty.getCache().setUserDnNegativeTtl(Duration.ZERO);
+
+        // メソッドの実行
+        userDnCache.putNotFound("ghost");
+
+        // 検証
+        assertNull(userDnCache.lookup("ghost"));
+    }
+
+    @Test
+    void testOnEntriesChanged_ClearsNegativeEntryForCreatedUser() {
+        // 準備
+        userDnCache.putNotFound("newUser");
+
+        // メソッドの実行
+        userDnCache.onEntriesChanged(List.of("CN=newUser,OU=Users,DC=example,DC=com"));
+
+        // 検証
+        assertNull(userDnCache.lookup("newUser"));
+    }
+
+    @Test
+    void testOnEntriesChanged_ClearsEntriesPointingToChangedDn() {
+        // 準備（表示名とCNが異なるユーザー）
+        userDnCache.putFound("alias", "CN=Moved User,OU=Users,DC=example,DC=com");
+        userDnCache.putFound("user1", "CN=user1,OU=Users,DC=example,DC=com");
+
+        // メソッドの実行
+        userDnCache.onEntriesChanged(List.of("cn=moved user,ou=users,dc=example,dc=com"));
+
+        // 検証
+        assertNull(userDnCache.lookup("alias"));
+        assertNotNull(userDnCache.lookup("user1"));
+    }
+
+    @Test
+    void testOnEntriesChanged_HandlesEscapedComma() {
+        // 準備
+        userDnCache.putNotFound("Doe, John");
+
+        // メソッドの実行
+        userDnCache.onEntriesChanged(List.of("CN=Doe\\, John,OU=Users,DC=example,DC=com"));
+
+        // 検証
+        assertNull(userDnCache.lookup("Doe, John"));
+    }
+}
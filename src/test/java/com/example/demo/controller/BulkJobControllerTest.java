@@ -0,0 +1,66 @@
+package com.example.demo.controller;
+
+import com.example.demo.job.BulkJob;
+import com.example.demo.job.BulkJobService;
+import com.example.demo.job.BulkJobStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * BulkJobControllerのテストクラス
+ */
+@ExtendWith(MockitoExtension.class)
+class BulkJobControllerTest {
+
+    @Mock
+    private BulkJobService jobService;
+
+    @InjectMocks
+    private BulkJobController controller;
+
+    @Test
+    void testSubmit_LocationPointsToJobResource() throws Exception {
+        // 準備
+        BulkJob job = mock(BulkJob.class);
+        doReturn("job-1").when(job).getId();
+        doReturn(job).when(jobService).submit("testGroup", BulkJob.Operation.ADD, List.of("user1", "user2"));
+
+        // メソッドの実行
+        ResponseEntity<BulkJobStatus> response = controller.submitCsv("testGroup", "add",
+                new ByteArrayInputStream("user1\nuser2\n".getBytes(StandardCharsets.UTF_8)));
+
+        // 検証
+        assertEquals(URI.create("/api/jobs/job-1"), response.getHeaders().getLocation());
+    }
+
+    @Test
+    void testJobPaths_DoNotOverlapGroupPaths() throws Exception {
+        // 準備
+        String base = BulkJobController.class.getAnnotation(RequestMapping.class).value()[0];
+
+        // メソッドの実行
+        String get = BulkJobController.class.getMethod("getJob", String.class)
+                .getAnnotation(GetMapping.class).value()[0];
+        String delete = BulkJobController.class.getMethod("cancelJob", String.class)
+                .getAnnotation(DeleteMapping.class).value()[0];
+
+        // 検証（/api/groups/{groupName}で「jobs」という名前のグループと衝突しない）
+        assertEquals("/api/jobs/{jobId}", base + get);
+        assertEquals("/api/jobs/{jobId}", base + delete);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.job;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryException;
+import com.example.demo.service.BulkOperationResult;
+import com.example.demo.service.GroupMembershipService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * BulkJobServiceのテストクラス
+ */
+class BulkJobServiceTest {
+
+    private GroupMembershipService membershipService;
+
+    private BulkJobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        AdProperty adProperty = new AdProperty();
+        adProperty.getBulk().setJobConcurrency(1);
+        adProperty.getBulk().setJobQueueCapacity(1);
+        adProperty.getBulk().setJobChunkSize(2);
+        membershipService = mock(GroupMembershipService.class);
+
+        jobService = new BulkJobService();
+        ReflectionTestUtils.setField(jobService, "adProperty", adProperty);
+        ReflectionTestUtils.setField(jobService, "membershipService", membershipService);
+        jobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    private static BulkOperationResult succeeded(List<String> userCNs) {
+        return new BulkOperationResult("CN=testGroup", userCNs, List.of(), List.of(), List.of(), Duration.ZERO, Duration.ZERO);
+    }
+
+    private static BulkJobStatus await(BulkJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!job.getStatus().isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return job.snapshot();
+    }
+
+    @Test
+    void testSubmit_ProcessesInChunks() throws Exception {
+        // 準備
+        doAnswer(invocation -> succeeded(invocation.getArgument(0)))
+                .when(membershipService).addMultipleUsersToGroup(anyList(), anyString());
+
+        // メソッドの実行
+        BulkJob job = jobService.submit("testGroup", BulkJob.Operation.ADD, List.of("u1", "u2", "u3", "u4", "u5"));
+        BulkJobStatus status = await(job);
+
+        // 検証
+        assertEquals(BulkJob.Status.COMPLETED, status.status());
+        assertEquals(5, status.total());
+        assertEquals(5, status.processed());
+        assertEquals(5, status.succeeded());
+        verify(membershipService, times(3)).addMultipleUsersToGroup(anyList(), eq("testGroup"));
+        assertSame(job, jobService.getJob(job.getId()));
+    }
+
+    @Test
+    void testSubmit_ReportsPerUserFailures() throws Exception {
+        // 準備
+        doReturn(new BulkOperationResult("CN=testGroup", List.of("u1"),
+                List.of(new BulkOperationResult.UserOutcome("u2", "NamingException: error")),
+                List.of(), List.of(), Duration.ZERO, Duration.ZERO))
+                .when(membershipService).removeMultipleUsersFromGroup(anyList(), anyString());
+
+        // メソッドの実行
+        BulkJobStatus status = await(jobService.submit("testGroup", BulkJob.Operation.REMOVE, List.of("u1", "u2")));
+
+        // 検証
+        assertEquals(BulkJob.Status.COMPLETED, status.status());
+        assertEquals(1, status.failed());
+        assertEquals("u2", status.failures().get(0).userCN());
+    }
+
+    @Test
+    void testCancel_StopsRunningJobBetweenChunks() throws Exception {
+        // 準備（最初のチャンクの処理中にキャンセルする）
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return succeeded(invocation.getArgument(0));
+        }).when(membershipService).addMultipleUsersToGroup(anyList(), anyString());
+        BulkJob job = jobService.submit("testGroup", BulkJob.Operation.ADD, List.of("u1", "u2", "u3", "u4"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // メソッドの実行
+        jobService.cancel(job.getId());
+        release.countDown();
+        BulkJobStatus status = await(job);
+
+        // 検証
+        assertEquals(BulkJob.Status.CANCELLED, status.status());
+        assertEquals(2, status.processed());
+        verify(membershipService, times(1)).addMultipleUsersToGroup(anyList(), anyString());
+    }
+
+    @Test
+    void testSubmit_RejectsWhenQueueIsFull() throws Exception {
+        // 準備（実行中1件、実行待ち1件で満杯にする）
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return succeeded(invocation.getArgument(0));
+        }).when(membershipService).addMultipleUsersToGroup(anyList(), anyString());
+        jobService.submit("testGroup", BulkJob.Operation.ADD, List.of("u1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        BulkJob queued = jobService.submit("testGroup", BulkJob.Operation.ADD, List.of("u2"));
+
+        // メソッドの実行と例外の検証
+        assertThrows(ActiveDirectoryException.class,
+                () -> jobService.submit("testGroup", BulkJob.Operation.ADD, List.of("u3")));
+
+        // 実行待ちのジョブはその場でキャンセルされる
+        jobService.cancel(queued.getId());
+        assertEquals(BulkJob.Status.CANCELLED, queued.getStatus());
+        release.countDown();
+    }
+
+    @Test
+    void testSubmit_FailedJob() throws Exception {
+        // 準備
+        doThrow(new ActiveDirectoryException("接続できません"))
+                .when(membershipService).addMultipleUsersToGroup(anyList(), anyString());
+
+        // メソッドの実行
+        BulkJobStatus status = await(jobService.submit("testGroup", BulkJob.Operation.ADD, List.of("u1")));
+
+        // 検証
+        assertEquals(BulkJob.Status.FAILED, status.status());
+        assertEquals("接続できません", status.error());
+    }
+}
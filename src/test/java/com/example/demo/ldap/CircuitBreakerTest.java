@@ -0,0 +1,177 @@
+package com.example.demo.ldap;
+
+import com.example.demo.config.AdProperty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CircuitBreakerのテストクラス
+ */
+class CircuitBreakerTest {
+
+    private AdProperty.CircuitBreaker config;
+
+    @BeforeEach
+    void setUp() {
+        config = new AdProperty.CircuitBreaker();
+        config.setWindowSize(10);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(50);
+        config.setOpenDuration(Duration.ofHours(1));
+        config.setHalfOpenCalls(2);
+    }
+
+    @Test
+    void testStaysClosedBelowMinimumCalls() {
+        // 準備
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+
+        // メソッドの実行
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        // 検証（失敗率100%でも呼び出し数が足りないうちは開かない）
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void testOpensWhenFailureRateExceedsThreshold() {
+        // 準備
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+
+        // メソッドの実行
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+
+        // 検証（4回中2回失敗で50%に達する）
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isCallPermitted());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(1, breaker.getTransitions(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    void testSlidingWindowForgetsOldFailures() {
+        // 準備
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        // メソッドの実行（ウィンドウ10件のうち古い失敗が押し出される）
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess();
+        }
+        breaker.onFailure();
+
+        // 検証
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(10.0, breaker.getFailureRate());
+    }
+
+    @Test
+    void testHalfOpen_ClosesAfterSuccessfulTrials() {
+        // 準備
+        config.setOpenDuration(Duration.ofMillis(50));
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+
+        // メソッドの実行（期間が過ぎると試行数だけ呼び出しを通す）
+        await(() -> breaker.getState() == CircuitBreaker.State.HALF_OPEN);
+        assertEquals(CircuitBreaker.Permission.TRIAL, breaker.acquirePermission());
+        assertEquals(CircuitBreaker.Permission.TRIAL, breaker.acquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        breaker.onTrialSuccess();
+        breaker.onTrialSuccess();
+
+        // 検証
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate());
+        assertEquals(1, breaker.getTransitions(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    void testHalfOpen_IgnoresSuccessWithoutTrialPermit() {
+        // 準備
+        config.setOpenDuration(Duration.ofMillis(50));
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        await(() -> breaker.getState() == CircuitBreaker.State.HALF_OPEN);
+
+        // メソッドの実行（OPEN前から実行中だった呼び出しが成功した場合を想定）
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+
+        // 検証（試行の許可を得ていない成功では閉じない）
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.Permission.TRIAL, breaker.acquirePermission());
+        breaker.onTrialSuccess();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.Permission.TRIAL, breaker.acquirePermission());
+        breaker.onTrialSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpen_ReopensOnFailure() {
+        // 準備
+        config.setOpenDuration(Duration.ofMillis(50));
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+
+        // メソッドの実行
+        assertFalse(breaker.tryAcquirePermission());
+        await(() -> breaker.getState() == CircuitBreaker.State.HALF_OPEN);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onFailure();
+
+        // 検証
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTransitions(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    void testDisabled_AlwaysPermits() {
+        // 準備
+        config.setEnabled(false);
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+
+        // メソッドの実行
+        for (int i = 0; i < 10; i++) {
+            breaker.onFailure();
+        }
+
+        // 検証
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    private static void await(java.util.function.BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "タイムアウトしました");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.demo.ldap;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.CircuitOpenException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.CommunicationException;
+import javax.naming.ldap.LdapContext;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * EndpointGroupと各セレクターのテストクラス
+ */
+class EndpointGroupTest {
+
+    private AdProperty.Health health;
+
+    private AdProperty.Pool poolConfig;
+
+    // ホストごとの物理接続の生成回数
+    private final Map<String, Integer> connectCounts = new HashMap<>();
+
+    // 接続できないホスト
+    private final List<String> downHosts = new ArrayList<>();
+
+    private EndpointGroup group;
+
+    @BeforeEach
+    void setUp() {
+        health = new AdProperty.Health();
+        health.setFailureThreshold(1);
+        health.setProbeInterval(Duration.ofHours(1));
+        poolConfig = new AdProperty.Pool();
+        poolConfig.setMinIdle(0);
+        poolConfig.setEvictionInterval(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (group != null) {
+            group.close();
+        }
+    }
+
+    private DcEndpoint endpoint(String host) {
+        DcEndpoint endpoint = new DcEndpoint(host, health);
+        endpoint.attach(new LdapConnectionPool(host, poolConfig, () -> {
+            connectCounts.merge(host, 1, Integer::sum);
+            if (downHosts.contains(host)) {
+                throw new CommunicationException("connection refused: " + host);
+            }
+            return mock(LdapContext.class);
+        }, endpoint));
+        return endpoint;
+    }
+
+    private EndpointGroup createGroup(SelectionStrategy strategy, String... hosts) {
+        List<DcEndpoint> endpoints = new ArrayList<>();
+        for (String host : hosts) {
+            endpoints.add(endpoint(host));
+        }
+        group = new EndpointGroup("test", endpoints, strategy.createSelector(), health);
+        return group;
+    }
+
+    @Test
+    void testRoundRobin_DistributesAcrossHosts() throws Exception {
+        // 準備
+        createGroup(SelectionStrategy.ROUND_ROBIN, "dc1:389", "dc2:389", "dc3:389");
+
+        // メソッドの実行（返却せずに借り続けると各DCに新しい接続が作られる）
+        List<PooledLdapContext> borrowed = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            borrowed.add(group.borrow());
+        }
+
+        // 検証
+        assertEquals(2, connectCounts.get("dc1:389"));
+        assertEquals(2, connectCounts.get("dc2:389"));
+        assertEquals(2, connectCounts.get("dc3:389"));
+        for (PooledLdapContext ctx : borrowed) {
+            ctx.close();
+        }
+    }
+
+    @Test
+    void testPriority_PinnedToPreferredHost() throws Exception {
+        // 準備
+        createGroup(SelectionStrategy.PRIORITY, "dc1:389", "dc2:389");
+
+        // メソッドの実行
+        PooledLdapContext first = group.borrow();
+        PooledLdapContext second = group.borrow();
+
+        // 検証
+        assertEquals(2, connectCounts.get("dc1:389"));
+        assertNull(connectCounts.get("dc2:389"));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void testFailover_SkipsUnreachableHostAndEjectsIt() throws Exception {
+        // 準備
+        downHosts.add("dc1:389");
+        createGroup(SelectionStrategy.PRIORITY, "dc1:389", "dc2:389");
+
+        // メソッドの実行
+        group.borrow().close();
+        group.borrow().close();
+
+        // 検証（dc1は一度失敗した後イジェクトされ、二度目は試行されない）
+        assertEquals(1, connectCounts.get("dc1:389"));
+        assertTrue(group.getEndpoints().get(0).isEjected());
+        assertFalse(group.getEndpoints().get(1).isEjected());
+    }
+
+    @Test
+    void testAllHostsDown_ThrowsLastFailure() {
+        // 準備
+        downHosts.add("dc1:389");
+        downHosts.add("dc2:389");
+        createGroup(SelectionStrategy.ROUND_ROBIN, "dc1:389", "dc2:389");
+
+        // メソッドの実行と例外の検証
+        assertThrows(CommunicationException.class, () -> group.borrow());
+        assertEquals(1, connectCounts.get("dc1:389"));
+        assertEquals(1, connectCounts.get("dc2:389"));
+    }
+
+    @Test
+    void testCircuitOpen_SkipsHostWithoutConnecting() throws Exception {
+        // 準備
+        createGroup(SelectionStrategy.PRIORITY, "dc1:389", "dc2:389");
+        DcEndpoint preferred = group.getEndpoints().get(0);
+        for (int i = 0; i < 10; i++) {
+            preferred.getCircuitBreaker().onFailure();
+        }
+
+        // メソッドの実行
+        group.borrow().close();
+
+        // 検証（優先DCでもブレーカーが開いていれば振り分けない）
+        assertEquals(CircuitBreaker.State.OPEN, preferred.getCircuitBreaker().getState());
+        assertNull(connectCounts.get("dc1:389"));
+        assertEquals(1, connectCounts.get("dc2:389"));
+    }
+
+    @Test
+    void testCircuitOpenOnAllHosts_FailsFast() {
+        // 準備
+        createGroup(SelectionStrategy.ROUND_ROBIN, "dc1:389", "dc2:389");
+        for (DcEndpoint endpoint : group.getEndpoints()) {
+            for (int i = 0; i < 10; i++) {
+                endpoint.getCircuitBreaker().onFailure();
+            }
+        }
+
+        // メソッドの実行と例外の検証（接続を試みずに失敗する）
+        assertThrows(CircuitOpenException.class, () -> group.borrow());
+        assertTrue(connectCounts.isEmpty());
+    }
+
+    @Test
+    void testLeastOutstanding_PrefersIdleHost() throws Exception {
+        // 準備
+        createGroup(SelectionStrategy.LEAST_OUTSTANDING, "dc1:389", "dc2:389");
+        DcEndpoint busy = group.getEndpoints().get(0);
+        PooledLdapContext held1 = busy.getPool().borrow();
+        PooledLdapContext held2 = busy.getPool().borrow();
+
+        // メソッドの実行
+        for (int i = 0; i < 5; i++) {
+            group.borrow().close();
+        }
+
+        // 検証（2候補の比較では常に処理中の少ないdc2が選ばれる）
+        assertEquals(2, connectCounts.get("dc1:389"));
+        assertEquals(1, connectCounts.get("dc2:389"));
+        held1.close();
+        held2.close();
+    }
+
+    @Test
+    void testLatencyEwma_PrefersFasterHost() {
+        // 準備
+        createGroup(SelectionStrategy.LATENCY_EWMA, "slow:389", "fast:389");
+        DcEndpoint slow = group.getEndpoints().get(0);
+        DcEndpoint fast = group.getEndpoints().get(1);
+        for (int i = 0; i < 20; i++) {
+            slow.onOperationCompleted("search", 50_000_000L);
+            fast.onOperationCompleted("search", 1_000_000L);
+        }
+
+        // メソッドの実行
+        EndpointSelector selector = SelectionStrategy.LATENCY_EWMA.createSelector();
+
+        // 検証
+        assertTrue(slow.getEwmaLatencyNanos() > fast.getEwmaLatencyNanos());
+        assertSame(fast, selector.select(List.of(slow, fast)));
+        assertSame(fast, selector.select(List.of(fast, slow)));
+    }
+}
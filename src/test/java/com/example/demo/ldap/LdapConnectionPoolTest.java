@@ -0,0 +1,301 @@
+package com.example.demo.ldap;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ldap.LdapContext;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * LdapConnectionPoolのテストクラス
+ */
+class LdapConnectionPoolTest {
+
+    private AdProperty.Pool config;
+
+    private final List<LdapContext> created = new ArrayList<>();
+
+    private LdapConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        config = new AdProperty.Pool();
+        config.setMinIdle(0);
+        config.setMaxSize(2);
+        config.setBorrowTimeout(Duration.ofMillis(100));
+        config.setEvictionInterval(Duration.ofHours(1));
+        config.setValidationInterval(Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private LdapConnectionPool createPool() {
+        pool = new LdapConnectionPool("test", config, () -> {
+            LdapContext ctx = mock(LdapContext.class);
+            created.add(ctx);
+            return ctx;
+        });
+        return pool;
+    }
+
+    @Test
+    void testBorrow_ReusesReturnedConnection() throws Exception {
+        // 準備
+        createPool();
+
+        // メソッドの実行
+        LdapContext first = pool.borrow();
+        first.close();
+        LdapContext second = pool.borrow();
+        second.close();
+
+        // 検証
+        assertEquals(1, created.size());
+        assertEquals(1, pool.getTotalConnections());
+        assertEquals(1, pool.getIdleConnections());
+        verify(created.get(0), never()).close();
+    }
+
+    @Test
+    void testBorrow_TimeoutWhenExhausted() throws Exception {
+        // 準備
+        createPool();
+        LdapContext first = pool.borrow();
+        LdapContext second = pool.borrow();
+
+        // メソッドの実行と例外の検証
+        assertThrows(ActiveDirectoryException.class, () -> pool.borrow());
+
+        // 返却後は再び借りられる
+        first.close();
+        assertNotNull(pool.borrow());
+        second.close();
+    }
+
+    @Test
+    void testBorrow_DiscardsConnectionFailingValidation() throws Exception {
+        // 準備
+        createPool();
+        pool.borrow().close();
+        LdapContext stale = created.get(0);
+        doThrow(new CommunicationException("connection reset")).when(stale).getAttributes(eq(""), any(String[].class));
+
+        // メソッドの実行
+        LdapContext ctx = pool.borrow();
+        ctx.close();
+
+        // 検証
+        assertEquals(2, created.size());
+        verify(stale, times(1)).close();
+        assertEquals(1, pool.getTotalConnections());
+    }
+
+    @Test
+    void testRelease_BrokenConnectionIsDestroyed() throws Exception {
+        // 準備
+        createPool();
+        LdapContext ctx = pool.borrow();
+        LdapContext physical = created.get(0);
+        doThrow(new CommunicationException("connection reset")).when(physical).getAttributes(anyString());
+
+        // メソッドの実行
+        assertThrows(CommunicationException.class, () -> ctx.getAttributes("CN=test"));
+        ctx.close();
+
+        // 検証
+        verify(physical, times(1)).close();
+        assertEquals(0, pool.getTotalConnections());
+        assertEquals(0, pool.getActiveConnections());
+    }
+
+    @Test
+    void testBorrow_ExpiredConnectionIsReplaced() throws Exception {
+        // 準備
+        config.setMaxLifetime(Duration.ZERO);
+        createPool();
+
+        // メソッドの実行
+        pool.borrow().close();
+        pool.borrow().close();
+
+        // 検証
+        assertEquals(2, created.size());
+        verify(created.get(0), times(1)).close();
+    }
+
+    @Test
+    void testClose_ReturnsOnlyOnce() throws Exception {
+        // 準備
+        createPool();
+        LdapContext ctx = pool.borrow();
+
+        // メソッドの実行
+        ctx.close();
+        ctx.close();
+
+        // 検証
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+        assertThrows(IllegalStateException.class, () -> ctx.getAttributes("CN=test"));
+    }
+
+    @Test
+    void testBorrow_FactoryFailureReleasesPermit() {
+        // 準備
+        pool = new LdapConnectionPool("test", config, () -> {
+            throw new NamingException("bind failed");
+        });
+
+        // メソッドの実行と例外の検証
+        assertThrows(NamingException.class, () -> pool.borrow());
+        assertThrows(NamingException.class, () -> pool.borrow());
+        assertThrows(NamingException.class, () -> pool.borrow());
+
+        // 検証
+        assertEquals(0, pool.getActiveConnections());
+    }
+
+    @Test
+    void testOperationScopeCancel_ClosesBorrowedConnection() throws Exception {
+        // 準備
+        createPool();
+        OperationScope scope = new OperationScope();
+        scope.bind();
+        LdapContext ctx;
+        try {
+            ctx = pool.borrow();
+        } finally {
+            scope.unbind();
+        }
+
+        // メソッドの実行（別スレッドからのキャンセルを想定）
+        scope.cancel();
+        ctx.close();
+
+        // 検証（物理接続は閉じられ、プールへは戻らない）
+        verify(created.get(0), atLeastOnce()).close();
+        assertEquals(0, pool.getIdleConnections());
+        assertTrue(scope.isCancelled());
+    }
+
+    @Test
+    void testObserver_ReceivesConnectAndOperations() throws Exception {
+        // 準備
+        List<String> events = new ArrayList<>();
+        OperationObserver observer = new OperationObserver() {
+            @Override
+            public void onConnect(String pool, long elapsedNanos, Throwable error) {
+                events.add(pool + ":connect:" + (error == null));
+            }
+
+            @Override
+            public void onOperation(String pool, String operation, long elapsedNanos, Throwable error) {
+                events.add(pool + ":" + operation + ":" + (error == null));
+            }
+        };
+        LdapContext physical = mock(LdapContext.class);
+        doThrow(new NamingException("No such object")).when(physical).destroySubcontext(anyString());
+        pool = new LdapConnectionPool("test", config, () -> physical, ConnectionEventListener.NONE, observer);
+
+        // メソッドの実行
+        try (PooledLdapContext ctx = pool.borrow()) {
+            ctx.getAttributes("");
+            assertThrows(NamingException.class, () -> ctx.destroySubcontext("CN=missing"));
+            ctx.getEnvironment();
+        }
+
+        // 検証（ローカルで完結する操作は通知しない）
+        assertEquals(List.of("test:connect:true", "test:getAttributes:true", "test:destroySubcontext:false"), events);
+    }
+
+    @Test
+    void testReadTimeout_CountsAsConnectionFailure() throws Exception {
+        // 準備
+        List<String> events = new ArrayList<>();
+        ConnectionEventListener listener = new ConnectionEventListener() {
+            @Override
+            public void onOperationCompleted(String operation, long elapsedNanos) {
+                events.add("completed:" + operation);
+            }
+
+            @Override
+            public void onConnectionFailure(Throwable cause) {
+                events.add("failure:" + cause.getMessage());
+            }
+        };
+        LdapContext physical = mock(LdapContext.class);
+        created.add(physical);
+        doThrow(new NamingException("LDAP response read timed out, timeout used: 5000 ms."))
+                .when(physical).getAttributes(anyString());
+        pool = new LdapConnectionPool("test", config, () -> physical, listener);
+
+        // メソッドの実行
+        try (PooledLdapContext ctx = pool.borrow()) {
+            assertThrows(NamingException.class, () -> ctx.getAttributes(""));
+        }
+
+        // 検証（応答を待ちきれなかったのでDCの障害として数え、接続も破棄する）
+        assertEquals(List.of("failure:LDAP response read timed out, timeout used: 5000 ms."), events);
+        assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    void testIsCommunicationFailure_ClassifiesTimeouts() {
+        // 準備
+        NamingException connectTimeout = new NamingException("connect failed");
+        connectTimeout.setRootCause(new java.net.SocketTimeoutException("connect timed out"));
+        NamingException refused = new NamingException("connect failed");
+        refused.setRootCause(new java.net.ConnectException("Connection refused"));
+
+        // メソッドの実行・検証
+        assertTrue(PooledContextHandler.isCommunicationFailure(new CommunicationException("reset")));
+        assertTrue(PooledContextHandler.isCommunicationFailure(
+                new NamingException("LDAP response read timed out, timeout used: 5000 ms.")));
+        assertTrue(PooledContextHandler.isCommunicationFailure(connectTimeout));
+        assertTrue(PooledContextHandler.isCommunicationFailure(refused));
+        assertFalse(PooledContextHandler.isCommunicationFailure(new NamingException("No such object")));
+        assertFalse(PooledContextHandler.isCommunicationFailure(
+                new javax.naming.NameNotFoundException("read timed out")));
+    }
+
+    @Test
+    void testTrialBorrow_ReportsFirstResponseOnly() throws Exception {
+        // 準備
+        List<String> events = new ArrayList<>();
+        ConnectionEventListener listener = new ConnectionEventListener() {
+            @Override
+            public void onTrialCompleted() {
+                events.add("trial");
+            }
+        };
+        pool = new LdapConnectionPool("test", config, () -> mock(LdapContext.class), listener);
+
+        // メソッドの実行
+        try (PooledLdapContext ctx = pool.borrow()) {
+            ctx.getAttributes("");
+        }
+        try (PooledLdapContext ctx = pool.borrow(true)) {
+            ctx.getAttributes("");
+            ctx.getAttributes("");
+        }
+
+        // 検証（試行として借りた接続の最初の応答だけを通知する）
+        assertEquals(List.of("trial"), events);
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.demo.ldap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.CommunicationException;
+import javax.naming.InterruptedNamingException;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MemberRangeReaderのテストクラス
+ * MaxValRangeを強制するメモリ上のディレクトリに対して範囲指定取得を検証する
+ */
+class MemberRangeReaderTest {
+
+    private static final String GROUP_DN = "CN=BigGroup,OU=Users,DC=example,DC=com";
+    private static final Pattern RANGE = Pattern.compile("member;range=(\\d+)-(\\d+|\\*)");
+
+    private final Map<String, List<String>> groups = new HashMap<>();
+    private final AtomicInteger searches = new AtomicInteger();
+    private int maxValRange = 1500;
+    private DirContext directory;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        directory = mock(DirContext.class);
+        doAnswer(invocation -> search(invocation.getArgument(0), invocation.getArgument(2)))
+                .when(directory).search(anyString(), anyString(), any(SearchControls.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * ADと同様に、要求範囲をMaxValRangeで切り詰めて返す
+     */
+    private NamingEnumeration<SearchResult> search(String dn, SearchControls controls) throws NamingException {
+        searches.incrementAndGet();
+        List<String> members = groups.get(dn);
+        if (members == null) {
+            throw new NameNotFoundException(dn);
+        }
+        Matcher m = RANGE.matcher(controls.getReturningAttributes()[0]);
+        assertTrue(m.matches());
+        int low = Integer.parseInt(m.group(1));
+        int high = m.group(2).equals("*") ? Integer.MAX_VALUE : Integer.parseInt(m.group(2));
+        high = (int) Math.min(high, (long) low + maxValRange - 1);
+
+        BasicAttributes attributes = new BasicAttributes(true);
+        if (low < members.size()) {
+            boolean last = high >= members.size() - 1;
+            int end = last ? members.size() - 1 : high;
+            BasicAttribute attribute = new BasicAttribute("member;range=" + low + "-" + (last ? "*" : String.valueOf(end)));
+            members.subList(low, end + 1).forEach(attribute::add);
+            attributes.put(attribute);
+        }
+        NamingEnumeration<SearchResult> results = mock(NamingEnumeration.class);
+        doReturn(true, false).when(results).hasMore();
+        doReturn(new SearchResult(dn, null, attributes)).when(results).next();
+        return results;
+    }
+
+    private List<String> addGroup(int size) {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            members.add("CN=user" + i + ",OU=Users,DC=example,DC=com");
+        }
+        groups.put(GROUP_DN, members);
+        return members;
+    }
+
+    private MemberRangeReader.RangeFetcher fetcher() {
+        return (low, high) -> MemberRangeReader.fetchRange(directory, GROUP_DN, low, high);
+    }
+
+    @Test
+    void testRead_LargeGroupBeyondMaxValRange() throws Exception {
+        // 準備
+        List<String> expected = addGroup(4000);
+        MemberRangeReader reader = new MemberRangeReader(1500, false, executor);
+
+        // メソッドの実行
+        List<String> received = new ArrayList<>();
+        int count = reader.read(fetcher(), received::add);
+
+        // 検証（0-1499, 1500-2999, 3000-*の3回で全件を順に取得）
+        assertEquals(4000, count);
+        assertEquals(expected, received);
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    void testRead_FollowsServerLimitSmallerThanRequested() throws Exception {
+        // 準備
+        maxValRange = 1000;
+        List<String> expected = addGroup(2500);
+        MemberRangeReader reader = new MemberRangeReader(5000, false, executor);
+
+        // メソッドの実行
+        List<String> received = new ArrayList<>();
+        int count = reader.read(fetcher(), received::add);
+
+        // 検証
+        assertEquals(2500, count);
+        assertEquals(expected, received);
+    }
+
+    @Test
+    void testRead_ExactMultipleOfRange() throws Exception {
+        // 準備
+        List<String> expected = addGroup(3000);
+        MemberRangeReader reader = new MemberRangeReader(1500, false, executor);
+
+        // メソッドの実行
+        List<String> received = new ArrayList<>();
+        int count = reader.read(fetcher(), received::add);
+
+        // 検証
+        assertEquals(3000, count);
+        assertEquals(expected, received);
+    }
+
+    @Test
+    void testRead_WithPrefetch() throws Exception {
+        // 準備
+        List<String> expected = addGroup(10000);
+        MemberRangeReader reader = new MemberRangeReader(1500, true, executor);
+
+        // メソッドの実行
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        int count = reader.read(fetcher(), received::add);
+
+        // 検証（先読みしても順序は保たれる）
+        assertEquals(10000, count);
+        assertEquals(expected, received);
+    }
+
+    @Test
+    void testRead_EmptyGroup() throws Exception {
+        // 準備
+        addGroup(0);
+        MemberRangeReader reader = new MemberRangeReader(1500, true, executor);
+
+        // メソッドの実行
+        int count = reader.read(fetcher(), dn -> fail("メンバーは存在しない"));
+
+        // 検証
+        assertEquals(0, count);
+    }
+
+    @Test
+    void testRead_ServerWithoutRangeSupport() throws Exception {
+        // 準備（範囲指定を無視してmember属性をそのまま返すサーバー）
+        DirContext plain = mock(DirContext.class);
+        BasicAttributes attributes = new BasicAttributes(true);
+        BasicAttribute member = new BasicAttribute("member");
+        member.add("CN=user1,OU=Users,DC=example,DC=com");
+        member.add("CN=user2,OU=Users,DC=example,DC=com");
+        attributes.put(member);
+        NamingEnumeration<SearchResult> results = mock(NamingEnumeration.class);
+        doReturn(true, false).when(results).hasMore();
+        doReturn(new SearchResult(GROUP_DN, null, attributes)).when(results).next();
+        doReturn(results).when(plain).search(anyString(), anyString(), any(SearchControls.class));
+        MemberRangeReader reader = new MemberRangeReader(1500, true, executor);
+
+        // メソッドの実行
+        List<String> received = new ArrayList<>();
+        int count = reader.read((low, high) -> MemberRangeReader.fetchRange(plain, GROUP_DN, low, high), received::add);
+
+        // 検証
+        assertEquals(2, count);
+        assertEquals(List.of("CN=user1,OU=Users,DC=example,DC=com", "CN=user2,OU=Users,DC=example,DC=com"), received);
+        verify(plain, times(1)).search(anyString(), anyString(), any(SearchControls.class));
+    }
+
+    @Test
+    void testRead_PrefetchFailureIsPropagated() throws Exception {
+        // 準備
+        addGroup(4000);
+        MemberRangeReader reader = new MemberRangeReader(1500, true, executor);
+        MemberRangeReader.RangeFetcher failing = (low, high) -> {
+            if (low > 0) {
+                throw new CommunicationException("connection reset");
+            }
+            return MemberRangeReader.fetchRange(directory, GROUP_DN, low, high);
+        };
+
+        // メソッドの実行と例外の検証
+        assertThrows(CommunicationException.class, () -> reader.read(failing, dn -> { }));
+    }
+
+    @Test
+    void testRead_ConsumerFailureCancelsPrefetch() throws Exception {
+        // 準備（2つ目以降の範囲は割り込まれるまで応答しない）
+        MemberRangeReader reader = new MemberRangeReader(1500, true, executor);
+        CountDownLatch prefetching = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        MemberRangeReader.RangeFetcher slow = (low, high) -> {
+            if (low == 0) {
+                return new MemberRangeReader.Range(List.of("CN=user0"), high, false);
+            }
+            prefetching.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new InterruptedNamingException();
+            }
+            return new MemberRangeReader.Range(List.of(), high, true);
+        };
+
+        // メソッドの実行（先読みが始まった後で、値の受け取り側が途中でやめる）
+        assertThrows(IllegalStateException.class, () -> reader.read(slow, dn -> {
+            try {
+                assertTrue(prefetching.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("client disconnected");
+        }));
+
+        // 検証（先読みはキャンセルされる）
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRead_PrefetchRunsInCallerScope() throws Exception {
+        // 準備
+        MemberRangeReader reader = new MemberRangeReader(1500, true, executor);
+        OperationScope scope = new OperationScope();
+        List<OperationScope> seen = Collections.synchronizedList(new ArrayList<>());
+        MemberRangeReader.RangeFetcher fetcher = (low, high) -> {
+            seen.add(OperationScope.current());
+            return new MemberRangeReader.Range(List.of("CN=user" + low), low, low > 0);
+        };
+
+        // メソッドの実行
+        scope.bind();
+        try {
+            reader.read(fetcher, dn -> { });
+        } finally {
+            scope.unbind();
+        }
+
+        // 検証（先読みのスレッドでも呼び出し元のスコープで接続を借りる）
+        assertEquals(List.of(scope, scope), seen);
+    }
+}
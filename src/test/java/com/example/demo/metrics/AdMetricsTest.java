@@ -0,0 +1,92 @@
+package com.example.demo.metrics;
+
+import com.example.demo.exception.ActiveDirectoryException;
+import com.example.demo.util.RetryPolicy;
+import com.example.demo.util.RetryUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.CommunicationException;
+import javax.naming.NameNotFoundException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdMetricsのテストクラス
+ */
+class AdMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AdMetrics metrics = new AdMetrics(registry);
+
+    @Test
+    void testOnOperation_TaggedByLdapOperationAndOutcome() {
+        // メソッドの実行
+        metrics.onOperation("read-dc1", "getAttributes", TimeUnit.MILLISECONDS.toNanos(5), null);
+        metrics.onOperation("read-dc1", "search", TimeUnit.MILLISECONDS.toNanos(15), null);
+        metrics.onOperation("write-dc1", "destroySubcontext", TimeUnit.MILLISECONDS.toNanos(3),
+                new NameNotFoundException("No such object"));
+        metrics.onConnect("write-dc1", TimeUnit.MILLISECONDS.toNanos(40), null);
+
+        // 検証
+        Timer search = registry.find("ad.ldap.operation")
+                .tag("pool", "read-dc1").tag("operation", "search").tag("outcome", "success").timer();
+        assertNotNull(search);
+        assertEquals(2, search.count());
+        assertEquals(20, search.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.find("ad.ldap.operation")
+                .tag("operation", "delete").tag("outcome", "error").timer().count());
+        assertEquals(1, registry.find("ad.ldap.operation")
+                .tag("pool", "write-dc1").tag("operation", "connect").timer().count());
+    }
+
+    @Test
+    void testRecordPage_CountsEntriesValuesAndBytes() {
+        // メソッドの実行（"é"はUTF-8で2バイト）
+        metrics.recordPage("member-range", TimeUnit.MILLISECONDS.toNanos(8), 1, List.of("CN=a", "CN=é"));
+
+        // 検証
+        assertEquals(1, registry.find("ad.ldap.page").tag("source", "member-range").timer().count());
+        assertEquals(1, registry.find("ad.ldap.page.entries").summary().totalAmount());
+        assertEquals(2, registry.find("ad.ldap.page.values").summary().totalAmount());
+        assertEquals(9, registry.find("ad.ldap.page.bytes").summary().totalAmount());
+    }
+
+    @Test
+    void testUtf8Length() {
+        assertEquals(3, AdMetrics.utf8Length("abc"));
+        assertEquals(6, AdMetrics.utf8Length("日本"));
+        assertEquals(4, AdMetrics.utf8Length("😀"));
+    }
+
+    @Test
+    void testRetryListener_CountsRetriesAndGiveUp() {
+        // 準備
+        RetryPolicy policy = new RetryPolicy("read", 3, Duration.ZERO, Duration.ZERO, Duration.ofSeconds(30),
+                null, metrics);
+        AtomicInteger callCount = new AtomicInteger(0);
+
+        // メソッドの実行（2回目で成功、その後は3回とも失敗）
+        RetryUtil.retryOnError(policy, () -> {
+            if (callCount.incrementAndGet() == 1) {
+                throw new CommunicationException("Connection failed");
+            }
+            return "ok";
+        });
+        assertThrows(ActiveDirectoryException.class, () -> RetryUtil.retryOnError(policy, () -> {
+            throw new CommunicationException("Connection failed");
+        }));
+
+        // 検証
+        assertEquals(3, registry.find("ad.retry.attempts").tag("policy", "read").counter().count());
+        assertEquals(1, registry.find("ad.retry.recovered").tag("policy", "read").counter().count());
+        assertEquals(1, registry.find("ad.retry.exhausted").tag("reason", "attempts").counter().count());
+    }
+}
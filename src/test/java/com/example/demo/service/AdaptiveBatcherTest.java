@@ -0,0 +1,139 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AdProperty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.exception.ActiveDirectoryException;
+import javax.naming.CommunicationException;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.SizeLimitExceededException;
+import javax.naming.TimeLimitExceededException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdaptiveBatcherのテストクラス
+ */
+class AdaptiveBatcherTest {
+
+    private AdProperty.Bulk config;
+
+    @BeforeEach
+    void setUp() {
+        config = new AdProperty.Bulk();
+        config.setBatchSize(100);
+        config.setMinBatchSize(10);
+        config.setMaxBatchSize(200);
+        config.setIncreaseStep(50);
+        config.setDecreaseFactor(0.5);
+        config.setTargetLatency(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testOnSuccess_GrowsAdditivelyUpToMax() {
+        // 準備
+        AdaptiveBatcher batcher = new AdaptiveBatcher("write-dc1", config);
+
+        // メソッドの実行
+        batcher.onSuccess(100, Duration.ofMillis(200));
+        batcher.onSuccess(150, Duration.ofMillis(200));
+        batcher.onSuccess(200, Duration.ofMillis(200));
+
+        // 検証
+        assertEquals(200, batcher.getCurrentSize());
+        assertEquals(2, batcher.getIncreases());
+    }
+
+    @Test
+    void testOnSuccess_SmallTailBatchDoesNotGrow() {
+        // 準備
+        AdaptiveBatcher batcher = new AdaptiveBatcher("write-dc1", config);
+
+        // メソッドの実行
+        batcher.onSuccess(20, Duration.ofMillis(10));
+
+        // 検証
+        assertEquals(100, batcher.getCurrentSize());
+    }
+
+    @Test
+    void testOnSuccess_SlowBatchBacksOff() {
+        // 準備
+        AdaptiveBatcher batcher = new AdaptiveBatcher("write-dc1", config);
+
+        // メソッドの実行
+        batcher.onSuccess(100, Duration.ofSeconds(3));
+
+        // 検証
+        assertEquals(50, batcher.getCurrentSize());
+        assertEquals(1, batcher.getLatencyBackoffs());
+    }
+
+    @Test
+    void testOnFailure_ThrottlingErrorsBackOffToMin() {
+        // 準備
+        AdaptiveBatcher batcher = new AdaptiveBatcher("write-dc1", config);
+
+        // メソッドの実行と検証
+        assertTrue(batcher.onFailure(100, new ServiceUnavailableException("busy")));
+        assertEquals(50, batcher.getCurrentSize());
+        assertTrue(batcher.onFailure(50, new TimeLimitExceededException()));
+        assertTrue(batcher.onFailure(25, new SizeLimitExceededException()));
+        assertEquals(12, batcher.getCurrentSize());
+        assertTrue(batcher.onFailure(12, new ServiceUnavailableException("busy")));
+        assertEquals(10, batcher.getCurrentSize());
+
+        // 下限に達した後はやり直さない
+        assertFalse(batcher.onFailure(10, new ServiceUnavailableException("busy")));
+        assertEquals(5, batcher.getErrorBackoffs());
+    }
+
+    @Test
+    void testIsThrottlingError_FollowsWrappedCause() {
+        // 準備
+        CommunicationException timeout = new CommunicationException("connection failed");
+        timeout.setRootCause(new SocketTimeoutException("Read timed out"));
+        NamingException busy = new NamingException("modify failed");
+        busy.setRootCause(new ServiceUnavailableException("busy"));
+
+        // メソッドの実行・検証
+        assertTrue(AdaptiveBatcher.isThrottlingError(new ActiveDirectoryException("バッチの変更に失敗しました", timeout)));
+        assertTrue(AdaptiveBatcher.isThrottlingError(busy));
+        // メッセージだけでは判定しない
+        assertFalse(AdaptiveBatcher.isThrottlingError(new NamingException("operation timed out")));
+        assertFalse(AdaptiveBatcher.isThrottlingError(new ActiveDirectoryException("失敗しました", new NameNotFoundException())));
+    }
+
+    @Test
+    void testOnFailure_OtherErrorsKeepSize() {
+        // 準備
+        AdaptiveBatcher batcher = new AdaptiveBatcher("write-dc1", config);
+
+        // メソッドの実行
+        boolean retry = batcher.onFailure(100, new NameNotFoundException("CN=missing"));
+
+        // 検証
+        assertFalse(retry);
+        assertEquals(100, batcher.getCurrentSize());
+    }
+
+    @Test
+    void testDisabled_KeepsFixedSize() {
+        // 準備
+        config.setAdaptive(false);
+        AdaptiveBatcher batcher = new AdaptiveBatcher("write-dc1", config);
+
+        // メソッドの実行
+        batcher.onSuccess(100, Duration.ofSeconds(5));
+        boolean retry = batcher.onFailure(100, new ServiceUnavailableException("busy"));
+
+        // 検証
+        assertFalse(retry);
+        assertEquals(100, batcher.getCurrentSize());
+    }
+}
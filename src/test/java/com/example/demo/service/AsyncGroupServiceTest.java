@@ -0,0 +1,182 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryException;
+import com.example.demo.ldap.OperationScope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.naming.InterruptedNamingException;
+import javax.naming.directory.DirContext;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AsyncGroupServiceのテストクラス
+ */
+class AsyncGroupServiceTest {
+
+    private AdProperty adProperty;
+
+    private GroupManagementService managementService;
+
+    private AsyncGroupService asyncService;
+
+    // 実行中の操作にbindされたスコープ
+    private final AtomicReference<OperationScope> scope = new AtomicReference<>();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        adProperty = new AdProperty();
+        adProperty.getAsync().setPoolSize(1);
+        adProperty.getAsync().setQueueCapacity(1);
+        adProperty.getAsync().setTimeout(Duration.ofSeconds(5));
+        managementService = mock(GroupManagementService.class);
+
+        asyncService = new AsyncGroupService();
+        ReflectionTestUtils.setField(asyncService, "adProperty", adProperty);
+        ReflectionTestUtils.setField(asyncService, "managementService", managementService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        asyncService.shutdown();
+    }
+
+    /**
+     * getGroupMembersを、解放されるまで応答しない遅いADとして振る舞わせる
+     */
+    private void blockGetGroupMembers() throws Exception {
+        doAnswer(invocation -> {
+            scope.set(OperationScope.current());
+            started.countDown();
+            release.await();
+            return List.of();
+        }).when(managementService).getGroupMembers(anyString());
+    }
+
+    @Test
+    void testGetGroupMembers_ReturnsResult() throws Exception {
+        // 準備
+        asyncService.init();
+        doReturn(List.of("CN=user1,OU=Users,DC=example,DC=com")).when(managementService).getGroupMembers("testGroup");
+
+        // メソッドの実行
+        List<String> members = asyncService.getGroupMembers("testGroup").get(5, TimeUnit.SECONDS);
+
+        // 検証
+        assertEquals(List.of("CN=user1,OU=Users,DC=example,DC=com"), members);
+    }
+
+    @Test
+    void testTimeout_CancelsInFlightOperation() throws Exception {
+        // 準備
+        adProperty.getAsync().setTimeout(Duration.ofMillis(100));
+        asyncService.init();
+        blockGetGroupMembers();
+
+        // メソッドの実行
+        CompletableFuture<List<String>> future = asyncService.getGroupMembers("testGroup");
+
+        // 検証（タイムアウトで失敗し、実行中の操作のスコープがキャンセルされる）
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ActiveDirectoryException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("タイムアウト"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(scope.get().isCancelled());
+    }
+
+    @Test
+    void testCancel_PropagatesToInFlightOperation() throws Exception {
+        // 準備
+        asyncService.init();
+        blockGetGroupMembers();
+        CompletableFuture<List<String>> future = asyncService.getGroupMembers("testGroup");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // メソッドの実行
+        future.cancel(true);
+
+        // 検証
+        assertTrue(future.isCancelled());
+        assertTrue(scope.get().isCancelled());
+    }
+
+    @Test
+    void testQueueFull_FailsWithoutRunning() throws Exception {
+        // 準備（実行中1件と実行待ち1件で埋める）
+        asyncService.init();
+        blockGetGroupMembers();
+        asyncService.getGroupMembers("group1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        asyncService.getGroupMembers("group2");
+
+        // メソッドの実行
+        CompletableFuture<List<String>> rejected = asyncService.getGroupMembers("group3");
+
+        // 検証
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ActiveDirectoryException.class, e.getCause());
+        verify(managementService, never()).getGroupMembers("group3");
+    }
+
+    @Test
+    void testCancel_StopsBulkOperationAtNextBatch() throws Exception {
+        // 準備（1バッチ目の書き込みが解放されるまで戻らない一括操作）
+        asyncService.init();
+        GroupMembershipService membershipService = mock(GroupMembershipService.class);
+        ReflectionTestUtils.setField(asyncService, "membershipService", membershipService);
+        BulkMembershipEngine engine = new BulkMembershipEngine(10, 4);
+        AtomicInteger writes = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            try {
+                engine.execute(List.of(new BulkMembershipEngine.GroupChange("CN=testGroup", DirContext.ADD_ATTRIBUTE,
+                        List.of("u1", "u2", "u3"), List.of("CN=u1", "CN=u2", "CN=u3"))), (groupDn, op, userDNs) -> {
+                    writes.incrementAndGet();
+                    scope.set(OperationScope.current());
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedNamingException();
+                    }
+                    return "write-dc1";
+                });
+                return List.of();
+            } finally {
+                finished.countDown();
+            }
+        }).when(membershipService).addUsersToGroups(anyMap());
+        CompletableFuture<List<BulkOperationResult>> future = asyncService.addUsersToGroups(Map.of("testGroup", List.of("u1")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // メソッドの実行
+        future.cancel(true);
+
+        // 検証（バッチを実行する仮想スレッドにもスコープが引き継がれ、一括操作は次のバッチへ進まずに戻る）
+        assertTrue(future.isCancelled());
+        assertTrue(scope.get().isCancelled());
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1, writes.get());
+    }
+}
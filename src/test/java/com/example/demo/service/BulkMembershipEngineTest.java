@@ -0,0 +1,205 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryException;
+import com.example.demo.service.BulkMembershipEngine.BatchResult;
+import com.example.demo.service.BulkMembershipEngine.GroupChange;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.LimitExceededException;
+import javax.naming.NameNotFoundException;
+import javax.naming.directory.DirContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BulkMembershipEngineのテストクラス
+ */
+class BulkMembershipEngineTest {
+
+    private static List<String> users(String prefix, int count) {
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(prefix + i);
+        }
+        return users;
+    }
+
+    @Test
+    void testExecute_SplitsIntoBatchesInOrder() {
+        // 準備
+        BulkMembershipEngine engine = new BulkMembershipEngine(100, 4);
+        List<String> cns = users("user", 250);
+        List<String> dns = users("CN=user", 250);
+        List<List<String>> written = Collections.synchronizedList(new ArrayList<>());
+
+        // メソッドの実行
+        List<BatchResult> results = engine.execute(
+                List.of(new GroupChange("CN=G1", DirContext.ADD_ATTRIBUTE, cns, dns)),
+                (groupDn, op, userDNs) -> {
+                    written.add(userDNs);
+                    return "write-dc1";
+                });
+
+        // 検証
+        assertEquals(3, results.size());
+        assertEquals(List.of(100, 100, 50), written.stream().map(List::size).toList());
+        assertEquals(dns.subList(0, 100), written.get(0));
+        assertEquals(cns.subList(200, 250), results.get(2).userCNs());
+        assertTrue(results.stream().allMatch(BatchResult::isSuccess));
+    }
+
+    @Test
+    void testExecute_PreservesOrderWithinGroupAndLimitsConcurrency() {
+        // 準備
+        BulkMembershipEngine engine = new BulkMembershipEngine(10, 3);
+        List<GroupChange> changes = new ArrayList<>();
+        for (int g = 0; g < 20; g++) {
+            changes.add(new GroupChange("CN=G" + g, DirContext.ADD_ATTRIBUTE, users("u", 50), users("CN=u", 50)));
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Map<String, List<String>> firstDnByGroup = new ConcurrentHashMap<>();
+
+        // メソッドの実行
+        List<BatchResult> results = engine.execute(changes, (groupDn, op, userDNs) -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            firstDnByGroup.computeIfAbsent(groupDn, k -> Collections.synchronizedList(new ArrayList<>())).add(userDNs.get(0));
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return "write-dc1";
+        });
+
+        // 検証
+        assertEquals(20 * 5, results.size());
+        assertTrue(maxRunning.get() <= 3, "同時実行数が上限を超えた: " + maxRunning.get());
+        assertTrue(maxRunning.get() > 1, "グループ間で並行実行されていない");
+        for (List<String> firsts : firstDnByGroup.values()) {
+            assertEquals(List.of("CN=u0", "CN=u10", "CN=u20", "CN=u30", "CN=u40"), firsts);
+        }
+    }
+
+    @Test
+    void testExecute_ReportsFailedBatchAndContinues() {
+        // 準備
+        BulkMembershipEngine engine = new BulkMembershipEngine(2, 2);
+        List<GroupChange> changes = List.of(
+                new GroupChange("CN=G1", DirContext.REMOVE_ATTRIBUTE, users("a", 6), users("CN=a", 6)),
+                new GroupChange("CN=G2", DirContext.REMOVE_ATTRIBUTE, users("b", 2), users("CN=b", 2)));
+
+        // メソッドの実行（G1の2番目のバッチだけ失敗させる）
+        List<BatchResult> results = engine.execute(changes, (groupDn, op, userDNs) -> {
+            if (userDNs.contains("CN=a2")) {
+                throw new NameNotFoundException("CN=a2");
+            }
+            return "write-dc1";
+        });
+
+        // 検証
+        assertEquals(4, results.size());
+        assertEquals("CN=G1", results.get(1).groupDn());
+        assertEquals(1, results.get(1).batchIndex());
+        assertFalse(results.get(1).isSuccess());
+        assertInstanceOf(NameNotFoundException.class, results.get(1).error());
+        assertEquals(List.of("a2", "a3"), results.get(1).userCNs());
+        assertTrue(results.get(2).isSuccess());
+        assertTrue(results.get(3).isSuccess());
+    }
+
+    @Test
+    void testExecute_ShrinksAndRetriesThrottledBatch() {
+        // 準備（100件を超えるバッチは管理上限で拒否するDC）
+        AdProperty.Bulk config = new AdProperty.Bulk();
+        config.setBatchSize(400);
+        config.setMinBatchSize(10);
+        BulkMembershipEngine engine = new BulkMembershipEngine(config);
+        List<Integer> attempted = Collections.synchronizedList(new ArrayList<>());
+
+        // メソッドの実行
+        List<BatchResult> results = engine.execute(
+                List.of(new GroupChange("CN=G1", DirContext.ADD_ATTRIBUTE, users("u", 300), users("CN=u", 300))),
+                (groupDn, op, userDNs) -> {
+                    attempted.add(userDNs.size());
+                    if (userDNs.size() > 100) {
+                        throw new LimitExceededException("adminLimitExceeded");
+                    }
+                    return "write-dc1";
+                });
+
+        // 検証（拒否されると半減してやり直し、成功すると加算的に拡大する。拒否されたバッチは結果に含めない）
+        assertEquals(List.of(300, 150, 75, 125, 62), attempted.subList(0, 5));
+        assertTrue(results.stream().allMatch(BatchResult::isSuccess));
+        assertEquals(300, results.stream().mapToInt(r -> r.userCNs().size()).sum());
+    }
+
+    @Test
+    void testExecute_InterruptReturnsWithoutWaitingForBlockedWriter() throws Exception {
+        // 準備（割り込みに応答しないJNDIの読み取りのように、解放されるまで戻らない書き込み）
+        BulkMembershipEngine engine = new BulkMembershipEngine(10, 4);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger writes = new AtomicInteger();
+        AtomicReference<RuntimeException> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                engine.execute(
+                        List.of(new GroupChange("CN=G1", DirContext.ADD_ATTRIBUTE, users("u", 30), users("CN=u", 30))),
+                        (groupDn, op, userDNs) -> {
+                            writes.incrementAndGet();
+                            started.countDown();
+                            awaitUninterruptibly(release);
+                            return "write-dc1";
+                        });
+            } catch (RuntimeException e) {
+                thrown.set(e);
+            }
+        });
+        caller.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        try {
+            // メソッドの実行
+            caller.interrupt();
+            caller.join(2000);
+
+            // 検証（書き込みの完了を待たずに中断を通知する）
+            assertFalse(caller.isAlive());
+            assertInstanceOf(ActiveDirectoryException.class, thrown.get());
+        } finally {
+            release.countDown();
+        }
+
+        // 実行中だった書き込みが終わっても、次のバッチへは進まない
+        Thread.sleep(100);
+        assertEquals(1, writes.get());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
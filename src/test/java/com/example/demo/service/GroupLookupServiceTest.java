@@ -0,0 +1,241 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.DirectoryReplica;
+import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.LdapConnectionManager;
+import com.example.demo.ldap.PooledLdapContext;
+import com.example.demo.metrics.AdMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.SortControl;
+import javax.naming.ldap.SortResponseControl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * GroupLookupServiceのテストクラス
+ */
+@ExtendWith(MockitoExtension.class)
+class GroupLookupServiceTest {
+
+    private static final String USERS_DN = "CN=Users,DC=example,DC=com";
+
+    @Mock
+    private AdProperty adProperty;
+
+    @Mock
+    private LdapConnectionManager connectionManager;
+
+    @Mock
+    private DirectoryReplica replica;
+
+    @Spy
+    private RetryPolicies retryPolicies = new RetryPolicies(new AdProperty.Retry());
+
+    @Spy
+    private AdMetrics adMetrics = new AdMetrics(new SimpleMeterRegistry());
+
+    @Mock
+    private PooledLdapContext mockContext;
+
+    @InjectMocks
+    private GroupLookupService groupLookupService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        doReturn(USERS_DN).when(adProperty).getUsersDn();
+        doReturn(mockContext).when(connectionManager).getConnection(any());
+    }
+
+    @Test
+    void testListGroups_ProjectsAttributesAndFilters() throws Exception {
+        // 準備
+        BasicAttributes attributes = new BasicAttributes(true);
+        attributes.put("cn", "sales-1");
+        attributes.put("description", "Sales");
+        doReturn(results(null, group("sales-1", attributes))).when(mockContext)
+                .search(anyString(), anyString(), any(SearchControls.class));
+        GroupQuery query = GroupQuery.of("sales", "(description=S*)", List.of("description"), 10, null);
+        List<GroupEntry> groups = new ArrayList<>();
+
+        // メソッドの実行
+        String next = groupLookupService.listGroups(query, groups::add);
+
+        // 検証
+        assertNull(next);
+        assertEquals(1, groups.size());
+        assertEquals("sales-1", groups.get(0).cn());
+        assertEquals(List.of("Sales"), groups.get(0).attributes().get("description"));
+        verify(mockContext).search(eq(USERS_DN), eq("(&(objectClass=group)(cn=sales*)(description=S*))"),
+                argThat((SearchControls sc) -> List.of(sc.getReturningAttributes()).equals(List.of("cn", "description"))));
+    }
+
+    @Test
+    void testListGroups_RetryResumesAfterLastGroup() throws Exception {
+        // 準備: ソート済みの1ページ目を読み切った後、2ページ目で接続が切れる
+        Control[] firstPage = {sortResponse(0), pagedResponse(new byte[]{1})};
+        doReturn(firstPage, firstPage, new Control[]{sortResponse(0)}).when(mockContext).getResponseControls();
+        doReturn(results(null, group("a", null)), results(new CommunicationException("connection reset")))
+                .when(mockContext).search(anyString(), eq("(&(objectClass=group))"), any(SearchControls.class));
+        doReturn(results(null, group("b", null)))
+                .when(mockContext).search(anyString(), eq("(&(objectClass=group)(cn>=a)(!(cn=a)))"), any(SearchControls.class));
+        List<String> names = new ArrayList<>();
+
+        // メソッドの実行
+        String next = groupLookupService.listGroups(GroupQuery.of(null, null, null, null, null), g -> names.add(g.cn()));
+
+        // 検証: 最後のcnより後ろから検索し直す
+        assertNull(next);
+        assertEquals(List.of("a", "b"), names);
+    }
+
+    @Test
+    void testListGroups_RetryWithinFirstPageSkipsHandedOutGroups() throws Exception {
+        // 準備: ソートされたかが分かる前（1ページ目の途中）に接続が切れる
+        doReturn(results(new CommunicationException("connection reset"), group("a", null)),
+                results(null, group("a", null), group("b", null)))
+                .when(mockContext).search(anyString(), eq("(&(objectClass=group))"), any(SearchControls.class));
+        List<String> names = new ArrayList<>();
+
+        // メソッドの実行
+        String next = groupLookupService.listGroups(GroupQuery.of(null, null, null, null, null), g -> names.add(g.cn()));
+
+        // 検証: 渡した件数を読み飛ばすため、並び順に依らず重複しない
+        assertNull(next);
+        assertEquals(List.of("a", "b"), names);
+    }
+
+    @Test
+    void testListGroups_SortedPageReturnsCnCursor() throws Exception {
+        // 準備
+        doReturn(new Control[]{sortResponse(0)}).when(mockContext).getResponseControls();
+        doReturn(results(null, group("a", null), group("b", null), group("c", null))).when(mockContext)
+                .search(anyString(), anyString(), any(SearchControls.class));
+
+        // メソッドの実行
+        String next = groupLookupService.listGroups(GroupQuery.of(null, null, null, 2, null), g -> { });
+
+        // 検証: 余分な1件で続きを判定し、ソートは非クリティカルで要求する
+        GroupQuery resumed = GroupQuery.of(null, null, null, 2, next);
+        assertEquals("b", resumed.after());
+        assertEquals(0, resumed.skip());
+        verify(mockContext).search(anyString(), anyString(), argThat((SearchControls sc) -> sc.getCountLimit() == 3));
+        verify(mockContext).setRequestControls(argThat((Control[] controls) ->
+                controls[0] instanceof SortControl && !controls[0].isCritical()));
+    }
+
+    @Test
+    void testListGroups_UnsortedPageReturnsSkipCursor() throws Exception {
+        // 準備: DCがソートを断った（unwillingToPerform）
+        doReturn(new Control[]{sortResponse(53)}).when(mockContext).getResponseControls();
+        doReturn(results(null, group("c", null), group("a", null), group("b", null))).when(mockContext)
+                .search(anyString(), anyString(), any(SearchControls.class));
+        List<String> names = new ArrayList<>();
+
+        // メソッドの実行
+        String next = groupLookupService.listGroups(GroupQuery.of(null, null, null, 2, null), g -> names.add(g.cn()));
+
+        // 検証: DCが返した順に渡し、続きは読み飛ばす件数で示す
+        assertEquals(List.of("c", "a"), names);
+        GroupQuery resumed = GroupQuery.of(null, null, null, 2, next);
+        assertNull(resumed.after());
+        assertEquals(2, resumed.skip());
+    }
+
+    @Test
+    void testListGroups_ReturnsDnList() throws Exception {
+        // 準備
+        doReturn(results(null, group("a", null), group("b", null))).when(mockContext)
+                .search(anyString(), anyString(), any(SearchControls.class));
+
+        // メソッドの実行
+        List<String> groups = groupLookupService.listGroups();
+
+        // 検証
+        assertEquals(List.of("CN=a," + USERS_DN, "CN=b," + USERS_DN), groups);
+    }
+
+    /**
+     * SortResponseControl（resultCodeが0の場合はソート済み）
+     */
+    private static SortResponseControl sortResponse(int resultCode) throws IOException {
+        byte[] value = {0x30, 0x03, 0x0A, 0x01, (byte) resultCode};
+        return new SortResponseControl(SortResponseControl.OID, false, value);
+    }
+
+    private static PagedResultsResponseControl pagedResponse(byte[] cookie) throws IOException {
+        byte[] value = new byte[7 + cookie.length];
+        value[0] = 0x30;
+        value[1] = (byte) (5 + cookie.length);
+        value[2] = 0x02;
+        value[3] = 0x01;
+        value[4] = 0x00;
+        value[5] = 0x04;
+        value[6] = (byte) cookie.length;
+        System.arraycopy(cookie, 0, value, 7, cookie.length);
+        return new PagedResultsResponseControl(PagedResultsResponseControl.OID, false, value);
+    }
+
+    private static SearchResult group(String cn, BasicAttributes attributes) {
+        BasicAttributes attrs = attributes != null ? attributes : new BasicAttributes("cn", cn, true);
+        SearchResult result = new SearchResult("CN=" + cn, null, attrs);
+        result.setNameInNamespace("CN=" + cn + "," + USERS_DN);
+        return result;
+    }
+
+    /**
+     * 指定された結果を返し、errorがあれば最後にスローする検索結果
+     */
+    private static NamingEnumeration<SearchResult> results(NamingException error, SearchResult... entries) {
+        Iterator<SearchResult> iterator = List.of(entries).iterator();
+        return new NamingEnumeration<>() {
+            @Override
+            public boolean hasMore() throws NamingException {
+                if (!iterator.hasNext() && error != null) {
+                    throw error;
+                }
+                return iterator.hasNext();
+            }
+
+            @Override
+            public SearchResult next() {
+                return iterator.next();
+            }
+
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public SearchResult nextElement() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -1,15 +1,25 @@
 package com.example.demo.service;
 
+import com.example.demo.cache.DirectoryReplica;
+import com.example.demo.cache.MembershipCache;
 import com.example.demo.config.AdProperty;
+import com.example.demo.ldap.LdapConnectionManager;
+import com.example.demo.ldap.MemberRangeReader;
+import com.example.demo.ldap.PooledLdapContext;
+import com.example.demo.metrics.AdMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -27,31 +37,57 @@ class GroupManagementServiceTest {
     private AdProperty adProperty;
 
     @Mock
-    private DirContext mockContext;
+    private LdapConnectionManager connectionManager;
 
     @Mock
-    private NamingEnumeration<SearchResult> mockSearchResults;
+    private MembershipCache membershipCache;
 
     @Mock
-    private SearchResult mockSearchResult;
+    private DirectoryReplica replica;
 
-    @Mock
-    private Attributes mockAttributes;
+    @Spy
+    private MemberRangeReader memberRangeReader = new MemberRangeReader(1500, false, Runnable::run);
 
-    @Mock
-    private Attribute mockMemberAttribute;
+    @Spy
+    private RetryPolicies retryPolicies = new RetryPolicies(new AdProperty.Retry());
+
+    @Spy
+    private AdMetrics adMetrics = new AdMetrics(new SimpleMeterRegistry());
 
     @Mock
-    private NamingEnumeration<?> mockMemberEnumeration;
+    private PooledLdapContext mockContext;
 
     @InjectMocks
     private GroupManagementService groupManagementService;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         // AdPropertyのモック設定
         doReturn("CN=TestGroup,OU=Users,DC=example,DC=com").when(adProperty).getObjectDn(anyString());
         doReturn("CN=Admin,OU=Users,DC=example,DC=com").when(adProperty).getAdminPrincipal();
+        
+        // 接続プールからモックの接続を貸し出す
+        lenient().doReturn(mockContext).when(connectionManager).getConnection(any());
+    }
+
+    /**
+     * 範囲指定取得の応答（member;range=low-high）を1件返す検索結果を作成する
+     */
+    private NamingEnumeration<SearchResult> rangeResult(int low, int count, boolean last) throws NamingException {
+        BasicAttributes attributes = new BasicAttributes(true);
+        if (count > 0) {
+            String high = last ? "*" : String.valueOf(low + count - 1);
+            BasicAttribute member = new BasicAttribute("member;range=" + low + "-" + high);
+            for (int i = low; i < low + count; i++) {
+                member.add("CN=user" + (i + 1) + ",OU=Users,DC=example,DC=com");
+            }
+            attributes.put(member);
+        }
+        @SuppressWarnings("unchecked")
+        NamingEnumeration<SearchResult> results = mock(NamingEnumeration.class);
+        doReturn(true, false).when(results).hasMore();
+        doReturn(new SearchResult("CN=TestGroup", null, attributes)).when(results).next();
+        return results;
     }
 
     @Test
@@ -99,88 +135,90 @@ class GroupManagementServiceTest {
     void testGetGroupMembers_Success() throws Exception {
         // 準備
         String groupCN = "testGroup";
-        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
         List<String> expectedMembers = Arrays.asList(
             "CN=user1,OU=Users,DC=example,DC=com",
             "CN=user2,OU=Users,DC=example,DC=com"
         );
 
-        // 検索結果のモック設定
-        doReturn(true, false).when(mockSearchResults).hasMore();
-        doReturn(mockAttributes).when(mockSearchResult).getAttributes();
-        doReturn(mockMemberAttribute).when(mockAttributes).get("member");
-        doReturn(mockMemberEnumeration).when(mockMemberAttribute).getAll();
-        doReturn(true, true, false).when(mockMemberEnumeration).hasMore();
-        doReturn(
-            "CN=user1,OU=Users,DC=example,DC=com",
-            "CN=user2,OU=Users,DC=example,DC=com"
-        ).when(mockMemberEnumeration).next();
-        doReturn(mockSearchResult).when(mockSearchResults).next();
-
-        // レスポンスコントロールのモック設定（ページング終了）
-        doReturn(null).when(mockContext).getResponseControls();
+        // 検索結果のモック設定（最後の範囲）
+        doReturn(rangeResult(0, 2, true)).when(mockContext).search(anyString(), anyString(), any(SearchControls.class));
 
         // メソッドの実行
         List<String> result = groupManagementService.getGroupMembers(groupCN);
 
         // 検証
-        assertEquals(expectedMembers.size(), result.size());
-        assertTrue(result.containsAll(expectedMembers));
+        assertEquals(expectedMembers, result);
+        verify(membershipCache, times(1)).put(anyString(), eq(result), anyLong());
     }
 
     @Test
-    void testGetGroupMembers_WithPaging() throws Exception {
+    void testGetGroupMembers_CacheHit() throws Exception {
         // 準備
         String groupCN = "testGroup";
-        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
-        List<String> expectedMembers = Arrays.asList(
+        List<String> cachedMembers = Arrays.asList(
             "CN=user1,OU=Users,DC=example,DC=com",
             "CN=user2,OU=Users,DC=example,DC=com"
         );
+        doReturn(cachedMembers).when(membershipCache).get(anyString());
+
+        // メソッドの実行
+        List<String> result = groupManagementService.getGroupMembers(groupCN);
+        int count = groupManagementService.getGroupMemberCount(groupCN);
+
+        // 検証（キャッシュから返され、ADへは問い合わせない）
+        assertEquals(cachedMembers, result);
+        assertEquals(2, count);
+        verify(connectionManager, never()).getConnection(any());
+    }
+
+    @Test
+    void testStreamGroupMembers_Success() throws Exception {
+        // 準備
+        String groupCN = "testGroup";
+        doReturn(rangeResult(0, 2, true)).when(mockContext).search(anyString(), anyString(), any(SearchControls.class));
 
-        // 1ページ目の検索結果
-        doReturn(true, false).when(mockSearchResults).hasMore();
-        doReturn(mockAttributes).when(mockSearchResult).getAttributes();
-        doReturn(mockMemberAttribute).when(mockAttributes).get("member");
-        doReturn(mockMemberEnumeration).when(mockMemberAttribute).getAll();
-        doReturn(true, false).when(mockMemberEnumeration).hasMore();
-        doReturn("CN=user1,OU=Users,DC=example,DC=com").when(mockMemberEnumeration).next();
-        doReturn(mockSearchResult).when(mockSearchResults).next();
-
-        // 2ページ目の検索結果
-        doReturn(true, false).when(mockSearchResults).hasMore();
-        doReturn(true, false).when(mockMemberEnumeration).hasMore();
-        doReturn("CN=user2,OU=Users,DC=example,DC=com").when(mockMemberEnumeration).next();
-
-        // ページングコントロールのモック設定
-        PagedResultsResponseControl mockResponseControl = mock(PagedResultsResponseControl.class);
-        doReturn(new byte[0]).when(mockResponseControl).getCookie(); // 終了を示す空のcookie
-        doReturn(new Control[]{mockResponseControl}).when(mockContext).getResponseControls();
+        // メソッドの実行
+        List<String> received = new ArrayList<>();
+        int count = groupManagementService.streamGroupMembers(groupCN, received::add);
+
+        // 検証（ストリーミングした結果はキャッシュしない）
+        assertEquals(2, count);
+        assertEquals(Arrays.asList(
+            "CN=user1,OU=Users,DC=example,DC=com",
+            "CN=user2,OU=Users,DC=example,DC=com"
+        ), received);
+        verify(membershipCache, never()).put(anyString(), anyList(), anyLong());
+    }
+
+    @Test
+    void testGetGroupMembers_WithRanges() throws Exception {
+        // 準備
+        String groupCN = "testGroup";
+
+        // 1つ目の範囲（0-1499）と最後の範囲（1500-*）
+        NamingEnumeration<SearchResult> first = rangeResult(0, 1500, false);
+        NamingEnumeration<SearchResult> second = rangeResult(1500, 2, true);
+        doReturn(first, second).when(mockContext).search(anyString(), anyString(), any(SearchControls.class));
 
         // メソッドの実行
         List<String> result = groupManagementService.getGroupMembers(groupCN);
 
         // 検証
-        assertEquals(expectedMembers.size(), result.size());
-        assertTrue(result.containsAll(expectedMembers));
+        assertEquals(1502, result.size());
+        assertEquals("CN=user1,OU=Users,DC=example,DC=com", result.get(0));
+        assertEquals("CN=user1502,OU=Users,DC=example,DC=com", result.get(1501));
+        verify(mockContext, times(2)).search(anyString(), anyString(), any(SearchControls.class));
+        verify(adMetrics, times(2)).recordPage(eq("member-range"), anyLong(), eq(1), anyCollection());
     }
 
     @Test
     void testGetGroupMemberCount_Success() throws Exception {
         // 準備
         String groupCN = "testGroup";
-        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
         int expectedCount = 1500;
 
-        // 検索結果のモック設定
-        doReturn(true, false).when(mockSearchResults).hasMore();
-        doReturn(mockAttributes).when(mockSearchResult).getAttributes();
-        doReturn(mockMemberAttribute).when(mockAttributes).get("member");
-        doReturn(expectedCount).when(mockMemberAttribute).size();
-        doReturn(mockSearchResult).when(mockSearchResults).next();
-
-        // レスポンスコントロールのモック設定（ページング終了）
-        doReturn(null).when(mockContext).getResponseControls();
+        // 検索結果のモック設定（1つの範囲で全件）
+        doReturn(rangeResult(0, expectedCount, true)).when(mockContext).search(anyString(), anyString(), any(SearchControls.class));
 
         // メソッドの実行
         int result = groupManagementService.getGroupMemberCount(groupCN);
@@ -190,33 +228,23 @@ class GroupManagementServiceTest {
     }
 
     @Test
-    void testGetGroupMemberCount_WithPaging() throws Exception {
+    void testGetGroupMemberCount_WithRanges() throws Exception {
         // 準備
         String groupCN = "testGroup";
-        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
         int expectedTotalCount = 2500;
 
-        // 1ページ目の検索結果
-        doReturn(true, false).when(mockSearchResults).hasMore();
-        doReturn(mockAttributes).when(mockSearchResult).getAttributes();
-        doReturn(mockMemberAttribute).when(mockAttributes).get("member");
-        doReturn(1000).when(mockMemberAttribute).size();
-        doReturn(mockSearchResult).when(mockSearchResults).next();
-
-        // 2ページ目の検索結果
-        doReturn(true, false).when(mockSearchResults).hasMore();
-        doReturn(1500).when(mockMemberAttribute).size();
-
-        // ページングコントロールのモック設定
-        PagedResultsResponseControl mockResponseControl = mock(PagedResultsResponseControl.class);
-        doReturn(new byte[0]).when(mockResponseControl).getCookie(); // 終了を示す空のcookie
-        doReturn(new Control[]{mockResponseControl}).when(mockContext).getResponseControls();
+        // 1つ目の範囲（0-1499）と最後の範囲（1500-*）
+        NamingEnumeration<SearchResult> first = rangeResult(0, 1500, false);
+        NamingEnumeration<SearchResult> second = rangeResult(1500, 1000, true);
+        doReturn(first, second).when(mockContext).search(anyString(), anyString(), any(SearchControls.class));
 
         // メソッドの実行
         int result = groupManagementService.getGroupMemberCount(groupCN);
 
-        // 検証
+        // 検証（読み込んだ一覧はgetGroupMembersと同じくキャッシュに格納される）
         assertEquals(expectedTotalCount, result);
+        verify(membershipCache, times(1)).put(eq("CN=TestGroup,OU=Users,DC=example,DC=com"),
+            argThat(members -> members.size() == expectedTotalCount), anyLong());
     }
 
     @Test
@@ -294,16 +322,9 @@ class GroupManagementServiceTest {
     void testGetGroupMembers_EmptyGroup() throws Exception {
         // 準備
         String groupCN = "testGroup";
-        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
-
-        // 空のグループの検索結果
-        doReturn(true, false).when(mockSearchResults).hasMore();
-        doReturn(mockAttributes).when(mockSearchResult).getAttributes();
-        doReturn(null).when(mockAttributes).get("member"); // member属性が存在しない
-        doReturn(mockSearchResult).when(mockSearchResults).next();
 
-        // レスポンスコントロールのモック設定（ページング終了）
-        doReturn(null).when(mockContext).getResponseControls();
+        // 空のグループの検索結果（member属性が存在しない）
+        doReturn(rangeResult(0, 0, true)).when(mockContext).search(anyString(), anyString(), any(SearchControls.class));
 
         // メソッドの実行
         List<String> result = groupManagementService.getGroupMembers(groupCN);
@@ -317,16 +338,9 @@ class GroupManagementServiceTest {
     void testGetGroupMemberCount_EmptyGroup() throws Exception {
         // 準備
         String groupCN = "testGroup";
-        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
-
-        // 空のグループの検索結果
-        doReturn(true, false).when(mockSearchResults).hasMore();
-        doReturn(mockAttributes).when(mockSearchResult).getAttributes();
-        doReturn(null).when(mockAttributes).get("member"); // member属性が存在しない
-        doReturn(mockSearchResult).when(mockSearchResults).next();
 
-        // レスポンスコントロールのモック設定（ページング終了）
-        doReturn(null).when(mockContext).getResponseControls();
+        // 空のグループの検索結果（member属性が存在しない）
+        doReturn(rangeResult(0, 0, true)).when(mockContext).search(anyString(), anyString(), any(SearchControls.class));
 
         // メソッドの実行
         int result = groupManagementService.getGroupMemberCount(groupCN);
@@ -334,4 +348,4 @@ class GroupManagementServiceTest {
         // 検証
         assertEquals(0, result);
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
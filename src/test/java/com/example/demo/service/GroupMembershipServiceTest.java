@@ -1,18 +1,33 @@
 package com.example.demo.service;
 
+import com.example.demo.cache.DirectoryReplica;
+import com.example.demo.cache.MembershipCache;
+import com.example.demo.cache.UserDnCache;
 import com.example.demo.config.AdProperty;
+import com.example.demo.exception.ActiveDirectoryExceptionHandler;
+import com.example.demo.ldap.LdapConnectionManager;
+import com.example.demo.ldap.PooledLdapContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import javax.naming.CommunicationException;
+import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.naming.directory.*;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -28,7 +43,31 @@ class GroupMembershipServiceTest {
     private AdProperty adProperty;
 
     @Mock
-    private DirContext mockContext;
+    private LdapConnectionManager connectionManager;
+
+    @Mock
+    private MembershipCache membershipCache;
+
+    @Mock
+    private UserDnCache userDnCache;
+
+    @Mock
+    private DirectoryReplica replica;
+
+    @Spy
+    private BulkMembershipEngine bulkMembershipEngine = new BulkMembershipEngine(100, 4);
+
+    @Spy
+    private BulkOperationStats bulkOperationStats = new BulkOperationStats();
+
+    @Mock
+    private GroupManagementService groupManagementService;
+
+    @Spy
+    private RetryPolicies retryPolicies = new RetryPolicies(new AdProperty.Retry());
+
+    @Mock
+    private PooledLdapContext mockContext;
 
     @Mock
     private NamingEnumeration<SearchResult> mockSearchResults;
@@ -46,10 +85,14 @@ class GroupMembershipServiceTest {
     private GroupMembershipService groupMembershipService;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         // AdPropertyのモック設定
         doReturn("OU=Users,DC=example,DC=com").when(adProperty).getUsersDn();
         doReturn("CN=TestGroup,OU=Users,DC=example,DC=com").when(adProperty).getObjectDn(anyString());
+        
+        // 接続プールからモックの接続を貸し出す
+        lenient().doReturn(mockContext).when(connectionManager).getConnection(any());
+        lenient().doReturn(mockSearchResults).when(mockContext).search(anyString(), anyString(), any(SearchControls.class));
     }
 
     @Test
@@ -72,6 +115,36 @@ class GroupMembershipServiceTest {
         verify(mockContext, times(1)).modifyAttributes(eq(groupDN), any(ModificationItem[].class));
     }
 
+    @Test
+    void testAddUserToGroup_CachedDn() throws Exception {
+        // 準備
+        String userCN = "testUser";
+        String groupCN = "testGroup";
+        String userDN = "CN=testUser,OU=Users,DC=example,DC=com";
+        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
+        doReturn(new UserDnCache.CachedDn(userDN)).when(userDnCache).lookup(userCN);
+
+        // メソッドの実行
+        groupMembershipService.addUserToGroup(userCN, groupCN);
+
+        // 検証（DNの検索は行わない）
+        verify(mockContext, never()).search(anyString(), anyString(), any(SearchControls.class));
+        verify(mockContext, times(1)).modifyAttributes(eq(groupDN), any(ModificationItem[].class));
+        verify(membershipCache, times(1)).invalidate(groupDN);
+    }
+
+    @Test
+    void testAddUserToGroup_NegativeCachedUser() throws Exception {
+        // 準備
+        doReturn(new UserDnCache.CachedDn(null)).when(userDnCache).lookup("missingUser");
+
+        // メソッドの実行と例外の検証
+        assertThrows(NamingException.class, () -> {
+            groupMembershipService.addUserToGroup("missingUser", "testGroup");
+        });
+        verify(mockContext, never()).modifyAttributes(anyString(), any(ModificationItem[].class));
+    }
+
     @Test
     void testRemoveUserFromGroup_Success() throws Exception {
         // 準備
@@ -112,18 +185,17 @@ class GroupMembershipServiceTest {
         doReturn(mockSearchResult).when(mockSearchResults).next();
 
         // メソッドの実行
-        groupMembershipService.addMultipleUsersToGroup(userCNs, groupCN);
+        BulkOperationResult result = groupMembershipService.addMultipleUsersToGroup(userCNs, groupCN);
 
         // 検証
         verify(mockContext, times(1)).modifyAttributes(eq(groupDN), any(ModificationItem[].class));
         
-        // ログの検証
-        List<String> successLog = groupMembershipService.getSuccessLog();
-        assertEquals(3, successLog.size());
-        assertTrue(successLog.containsAll(userCNs));
-        
-        List<String> failureLog = groupMembershipService.getFailureLog();
-        assertEquals(0, failureLog.size());
+        // 結果の検証
+        assertEquals(userCNs, result.succeeded());
+        assertEquals(0, result.failed().size());
+        assertEquals(0, result.skipped().size());
+        assertEquals(1, result.batches().size());
+        assertTrue(result.isSuccess());
     }
 
     @Test
@@ -146,18 +218,17 @@ class GroupMembershipServiceTest {
         doReturn(mockSearchResult).when(mockSearchResults).next();
 
         // メソッドの実行
-        groupMembershipService.removeMultipleUsersFromGroup(userCNs, groupCN);
+        BulkOperationResult result = groupMembershipService.removeMultipleUsersFromGroup(userCNs, groupCN);
 
         // 検証
         verify(mockContext, times(1)).modifyAttributes(eq(groupDN), any(ModificationItem[].class));
         
-        // ログの検証
-        List<String> successLog = groupMembershipService.getSuccessLog();
-        assertEquals(3, successLog.size());
-        assertTrue(successLog.containsAll(userCNs));
-        
-        List<String> failureLog = groupMembershipService.getFailureLog();
-        assertEquals(0, failureLog.size());
+        // 結果の検証
+        assertEquals(userCNs, result.succeeded());
+        assertEquals(0, result.failed().size());
+        assertEquals(0, result.skipped().size());
+        assertEquals(1, result.batches().size());
+        assertTrue(result.isSuccess());
     }
 
     @Test
@@ -181,18 +252,191 @@ class GroupMembershipServiceTest {
         // modifyAttributesで例外をスロー
         doThrow(new NamingException("Test error")).when(mockContext).modifyAttributes(anyString(), any(ModificationItem[].class));
 
-        // メソッドの実行と例外の検証
-        assertThrows(NamingException.class, () -> {
-            groupMembershipService.addMultipleUsersToGroup(userCNs, groupCN);
-        });
+        // メソッドの実行
+        BulkOperationResult result = groupMembershipService.addMultipleUsersToGroup(userCNs, groupCN);
+
+        // 結果の検証（例外はスローせず、失敗したユーザーと理由を返す）
+        assertFalse(result.isSuccess());
+        assertEquals(0, result.succeeded().size());
+        assertEquals(3, result.failed().size());
+        assertEquals(userCNs, result.failed().stream().map(BulkOperationResult.UserOutcome::userCN).toList());
+        assertTrue(result.failed().get(0).reason().contains("Test error"));
+        assertEquals(1, bulkOperationStats.getFailedBatches());
+    }
 
-        // ログの検証
-        List<String> successLog = groupMembershipService.getSuccessLog();
-        assertEquals(0, successLog.size());
-        
-        List<String> failureLog = groupMembershipService.getFailureLog();
-        assertEquals(3, failureLog.size());
-        assertTrue(failureLog.containsAll(userCNs));
+    @Test
+    void testAddMultipleUsersToGroup_SkipsMissingAndDuplicateUsers() throws Exception {
+        // 準備
+        List<String> userCNs = Arrays.asList("user1", "missing", "USER1");
+        String groupCN = "testGroup";
+        doReturn(new UserDnCache.CachedDn("CN=user1,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user1");
+        doReturn(new UserDnCache.CachedDn("CN=user1,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("USER1");
+        doReturn(new UserDnCache.CachedDn(null)).when(userDnCache).lookup("missing");
+
+        // メソッドの実行
+        BulkOperationResult result = groupMembershipService.addMultipleUsersToGroup(userCNs, groupCN);
+
+        // 検証
+        assertEquals(List.of("user1"), result.succeeded());
+        assertEquals(List.of("missing", "USER1"),
+                result.skipped().stream().map(BulkOperationResult.UserOutcome::userCN).toList());
+        verify(mockContext, times(1)).modifyAttributes(anyString(), any(ModificationItem[].class));
+    }
+
+    @Test
+    void testAddUsersToGroups_ResultPerGroup() throws Exception {
+        // 準備
+        doReturn(new UserDnCache.CachedDn("CN=user1,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user1");
+        doReturn(new UserDnCache.CachedDn("CN=user2,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user2");
+        Map<String, List<String>> usersByGroup = new LinkedHashMap<>();
+        usersByGroup.put("groupA", List.of("user1", "user2"));
+        usersByGroup.put("groupB", List.of("user2"));
+
+        // メソッドの実行
+        List<BulkOperationResult> results = groupMembershipService.addUsersToGroups(usersByGroup);
+
+        // 検証
+        assertEquals(2, results.size());
+        assertEquals("CN=groupA,OU=Users,DC=example,DC=com", results.get(0).groupDn());
+        assertEquals(List.of("user1", "user2"), results.get(0).succeeded());
+        assertEquals(List.of("user2"), results.get(1).succeeded());
+        assertEquals(2, bulkOperationStats.getOperations());
+        assertEquals(3, bulkOperationStats.getSucceededUsers());
+        verify(membershipCache, times(1)).invalidate("CN=groupA,OU=Users,DC=example,DC=com");
+        verify(membershipCache, times(1)).invalidate("CN=groupB,OU=Users,DC=example,DC=com");
+    }
+
+    @Test
+    void testAddMultipleUsersToGroup_SkipsExistingMembers() throws Exception {
+        // 準備
+        doReturn(new UserDnCache.CachedDn("CN=user1,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user1");
+        doReturn(new UserDnCache.CachedDn("CN=user2,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user2");
+
+        // バッチ全体とuser1の追加はAttributeInUseExceptionで拒否される
+        doThrow(new AttributeInUseException("already a member"))
+            .doThrow(new AttributeInUseException("already a member"))
+            .doNothing()
+            .when(mockContext).modifyAttributes(anyString(), any(ModificationItem[].class));
+
+        // メソッドの実行
+        BulkOperationResult result = groupMembershipService.addMultipleUsersToGroup(List.of("user1", "user2"), "testGroup");
+
+        // 検証（バッチはリトライせず、1人ずつ適用し直す）
+        assertTrue(result.isSuccess());
+        assertEquals(List.of("user2"), result.succeeded());
+        assertEquals(List.of(new BulkOperationResult.UserOutcome("user1", "既にメンバーです")), result.skipped());
+        verify(mockContext, times(3)).modifyAttributes(anyString(), any(ModificationItem[].class));
+    }
+
+    @Test
+    void testAddMultipleUsersToGroup_RetriesIndividualFallback() throws Exception {
+        // 準備
+        doReturn(new UserDnCache.CachedDn("CN=user1,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user1");
+        doReturn(new UserDnCache.CachedDn("CN=user2,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user2");
+
+        // バッチ全体とuser1の追加は拒否され、user2の追加は1回目だけ通信エラーになる
+        doThrow(new AttributeInUseException("already a member"))
+            .doThrow(new AttributeInUseException("already a member"))
+            .doThrow(new CommunicationException("connection reset"))
+            .doNothing()
+            .when(mockContext).modifyAttributes(anyString(), any(ModificationItem[].class));
+
+        // メソッドの実行
+        BulkOperationResult result = groupMembershipService.addMultipleUsersToGroup(List.of("user1", "user2"), "testGroup");
+
+        // 検証（1人ずつの書き込みもリトライし、同時書き込み数の上限の枠内で実行する）
+        assertTrue(result.isSuccess());
+        assertEquals(List.of("user2"), result.succeeded());
+        assertEquals(List.of(new BulkOperationResult.UserOutcome("user1", "既にメンバーです")), result.skipped());
+        verify(mockContext, times(4)).modifyAttributes(anyString(), any(ModificationItem[].class));
+        verify(bulkMembershipEngine, times(2)).write(eq("CN=testGroup,OU=Users,DC=example,DC=com"),
+            eq(DirContext.ADD_ATTRIBUTE), anyList(), any());
+    }
+
+        @Test
+    void testSyncGroupMembers_AppliesOnlyDelta() throws Exception {
+        // 準備
+        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
+        doReturn(List.of(
+            "CN=user1,OU=Users,DC=example,DC=com",
+            "CN=USER2,OU=Users,DC=example,DC=com",
+            "CN=old1,OU=Users,DC=example,DC=com"
+        )).when(groupManagementService).getGroupMembers("testGroup");
+        doReturn(new UserDnCache.CachedDn("CN=user1,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user1");
+        doReturn(new UserDnCache.CachedDn("CN=user2,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user2");
+        doReturn(new UserDnCache.CachedDn("CN=user3,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user3");
+        doReturn(new UserDnCache.CachedDn(null)).when(userDnCache).lookup("missing");
+        // 一覧にないメンバーはユーザー
+        doReturn(true, false).when(mockSearchResults).hasMore();
+        doReturn(mockSearchResult).when(mockSearchResults).next();
+        doReturn("CN=old1,OU=Users,DC=example,DC=com").when(mockSearchResult).getNameInNamespace();
+
+        // メソッドの実行
+        GroupSyncResult result = groupMembershipService.syncGroupMembers("testGroup",
+                List.of("user1", "user2", "user3", "missing"));
+
+        // 検証（差分の追加1件・削除1件だけを書き込む）
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.unchanged());
+        assertEquals(List.of("user3"), result.added().succeeded());
+        assertEquals(List.of("missing"), result.added().skipped().stream().map(BulkOperationResult.UserOutcome::userCN).toList());
+        assertEquals(List.of("CN=old1,OU=Users,DC=example,DC=com"), result.removed().succeeded());
+
+        ArgumentCaptor<ModificationItem[]> mods = ArgumentCaptor.forClass(ModificationItem[].class);
+        verify(mockContext, times(2)).modifyAttributes(eq(groupDN), mods.capture());
+        assertEquals(DirContext.ADD_ATTRIBUTE, mods.getAllValues().get(0)[0].getModificationOp());
+        assertEquals(1, mods.getAllValues().get(0).length);
+        assertEquals(DirContext.REMOVE_ATTRIBUTE, mods.getAllValues().get(1)[0].getModificationOp());
+        assertEquals(1, mods.getAllValues().get(1).length);
+
+        // 現在のメンバーはキャッシュではなくADから読み直す
+        verify(membershipCache, atLeastOnce()).invalidate(groupDN);
+    }
+
+    @Test
+    void testSyncGroupMembers_KeepsNonUserMembersUnlessRequested() throws Exception {
+        // 準備: 一覧にないメンバーのうち、old1はユーザー、nestedは入れ子のグループ
+        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
+        String nestedDN = "CN=nested,OU=Groups,DC=example,DC=com";
+        doReturn(List.of(
+            "CN=user1,OU=Users,DC=example,DC=com",
+            "CN=old1,OU=Users,DC=example,DC=com",
+            nestedDN
+        )).when(groupManagementService).getGroupMembers("testGroup");
+        doReturn(new UserDnCache.CachedDn("CN=user1,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user1");
+        doReturn(true, false, true, false).when(mockSearchResults).hasMore();
+        doReturn(mockSearchResult).when(mockSearchResults).next();
+        doReturn("CN=old1,OU=Users,DC=example,DC=com").when(mockSearchResult).getNameInNamespace();
+
+        // メソッドの実行
+        GroupSyncResult kept = groupMembershipService.syncGroupMembers("testGroup", List.of("user1"));
+        GroupSyncResult removed = groupMembershipService.syncGroupMembers("testGroup", List.of("user1"), true);
+
+        // 検証: 既定では入れ子のグループを削除せずに報告し、指定した場合はユーザーとは別に削除結果を返す
+        assertEquals(List.of("CN=old1,OU=Users,DC=example,DC=com"), kept.removed().succeeded());
+        assertEquals(List.of(nestedDN), kept.retainedNonUsers());
+        assertTrue(kept.removedNonUsers().succeeded().isEmpty());
+        assertEquals(List.of(nestedDN), removed.removedNonUsers().succeeded());
+        assertTrue(removed.retainedNonUsers().isEmpty());
+        verify(mockContext, times(2)).search(eq("OU=Users,DC=example,DC=com"),
+                contains("(objectCategory=person)(objectClass=user)"), any(SearchControls.class));
+        verify(mockContext, times(3)).modifyAttributes(eq(groupDN), any(ModificationItem[].class));
+    }
+
+    @Test
+    void testSyncGroupMembers_NoChanges() throws Exception {
+        // 準備
+        doReturn(List.of("CN=user1,OU=Users,DC=example,DC=com")).when(groupManagementService).getGroupMembers("testGroup");
+        doReturn(new UserDnCache.CachedDn("CN=user1,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user1");
+
+        // メソッドの実行
+        GroupSyncResult result = groupMembershipService.syncGroupMembers("testGroup", List.of("user1"));
+
+        // 検証（同じ一覧で再実行しても書き込みは発生しない）
+        assertEquals(1, result.unchanged());
+        assertTrue(result.added().succeeded().isEmpty());
+        assertTrue(result.removed().succeeded().isEmpty());
+        verify(mockContext, never()).modifyAttributes(anyString(), any(ModificationItem[].class));
     }
 
     @Test
@@ -211,41 +455,124 @@ class GroupMembershipServiceTest {
     }
 
     @Test
-    void testClearLogs() {
+    void testBulkOperationResult_Unmodifiable() {
         // 準備
-        List<String> userCNs = Arrays.asList("user1", "user2");
-        String groupCN = "testGroup";
+        List<String> succeeded = new ArrayList<>(List.of("user1"));
+        BulkOperationResult result = new BulkOperationResult("CN=testGroup", succeeded,
+                List.of(), List.of(), List.of(), Duration.ZERO, Duration.ZERO);
+        succeeded.add("user2");
+
+        // 検証：呼び出し元のリストを変更しても影響せず、結果も変更不可であることを確認
+        assertEquals(List.of("user1"), result.succeeded());
+        assertThrows(UnsupportedOperationException.class, () -> {
+            result.succeeded().add("test");
+        });
+        assertThrows(UnsupportedOperationException.class, () -> {
+            result.failed().add(new BulkOperationResult.UserOutcome("test", "reason"));
+        });
+    }
 
-        // ログをクリア
-        groupMembershipService.clearLogs();
+    @Test
+    void testGetUserGroups_TransitiveUsesMatchingRuleInChain() throws Exception {
+        // 準備
+        String userDN = "CN=testUser,OU=Users,DC=example,DC=com";
+        String groupDN = "CN=parentGroup,OU=Users,DC=example,DC=com";
+        doReturn(new UserDnCache.CachedDn(userDN)).when(userDnCache).lookup("testUser");
+        doReturn(true, false).when(mockSearchResults).hasMore();
+        doReturn(mockSearchResult).when(mockSearchResults).next();
+        doReturn(groupDN).when(mockSearchResult).getNameInNamespace();
+
+        // メソッドの実行
+        List<String> groups = groupMembershipService.getUserGroups("testUser", true);
 
         // 検証
-        List<String> successLog = groupMembershipService.getSuccessLog();
-        List<String> failureLog = groupMembershipService.getFailureLog();
-        
-        assertEquals(0, successLog.size());
-        assertEquals(0, failureLog.size());
+        assertEquals(List.of(groupDN), groups);
+        verify(mockContext).search(eq("OU=Users,DC=example,DC=com"),
+                eq("(&(objectClass=group)(member:1.2.840.113556.1.4.1941:=" + userDN + "))"), any(SearchControls.class));
     }
 
     @Test
-    void testGetSuccessLog_Unmodifiable() {
+    void testGetUserGroups_ServedFromReplica() throws Exception {
         // 準備
-        List<String> successLog = groupMembershipService.getSuccessLog();
+        String userDN = "CN=testUser,OU=Users,DC=example,DC=com";
+        List<String> replicated = List.of("CN=testGroup,OU=Users,DC=example,DC=com");
+        doReturn(new UserDnCache.CachedDn(userDN)).when(userDnCache).lookup("testUser");
+        doReturn(Optional.of(replicated)).when(replica).getGroupsOf(userDN, false);
 
-        // 検証：変更不可のリストであることを確認
-        assertThrows(UnsupportedOperationException.class, () -> {
-            successLog.add("test");
-        });
+        // メソッドの実行
+        List<String> groups = groupMembershipService.getUserGroups("testUser", false);
+
+        // 検証（ADへは問い合わせない）
+        assertEquals(replicated, groups);
+        verify(mockContext, never()).search(anyString(), anyString(), any(SearchControls.class));
     }
 
     @Test
-    void testGetFailureLog_Unmodifiable() {
+    void testCheckMemberships_CachedMembersAndMissingUser() throws Exception {
         // 準備
-        List<String> failureLog = groupMembershipService.getFailureLog();
+        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
+        String user1DN = "CN=user1,OU=Users,DC=example,DC=com";
+        doReturn(new UserDnCache.CachedDn(user1DN)).when(userDnCache).lookup("user1");
+        doReturn(new UserDnCache.CachedDn("CN=user2,OU=Users,DC=example,DC=com")).when(userDnCache).lookup("user2");
+        doReturn(new UserDnCache.CachedDn(null)).when(userDnCache).lookup("missing");
+        doReturn(List.of(user1DN.toUpperCase())).when(membershipCache).get(groupDN);
 
-        // 検証：変更不可のリストであることを確認
-        assertThrows(UnsupportedOperationException.class, () -> {
-            failureLog.add("test");
-        });
+        // メソッドの実行
+        List<MembershipCheckResult> results = groupMembershipService.checkMemberships(List.of(
+                new MembershipPair("user1", "testGroup"),
+                new MembershipPair("missing", "testGroup"),
+                new MembershipPair("user2", "testGroup")));
+
+        // 検証（指定と同じ順で返し、ADへは問い合わせない）
+        assertEquals(List.of(
+                new MembershipCheckResult("user1", "testGroup", true, MembershipCheckResult.Source.CACHE, null),
+                new MembershipCheckResult("missing", "testGroup", null, null, "ユーザーが見つかりません"),
+                new MembershipCheckResult("user2", "testGroup", false, MembershipCheckResult.Source.CACHE, null)), results);
+        verify(mockContext, never()).search(anyString(), anyString(), any(SearchControls.class));
+        verify(groupManagementService, never()).getGroupMembers(anyString());
+    }
+
+    @Test
+    void testCheckMemberships_FewUsersSearchedByMemberFilter() throws Exception {
+        // 準備
+        String groupDN = "CN=testGroup,OU=Users,DC=example,DC=com";
+        String userDN = "CN=user1,OU=Users,DC=example,DC=com";
+        doReturn(new AdProperty.MembershipCheck()).when(adProperty).getMembershipCheck();
+        doReturn(new UserDnCache.CachedDn(userDN)).when(userDnCache).lookup("user1");
+        doReturn(true).when(mockSearchResults).hasMore();
+
+        // メソッドの実行
+        List<MembershipCheckResult> results = groupMembershipService.checkMemberships(
+                List.of(new MembershipPair("user1", "testGroup")));
+
+        // 検証（メンバー一覧は読み込まず、グループ自身を(member=DN)で検索する）
+        assertEquals(List.of(new MembershipCheckResult("user1", "testGroup", true, MembershipCheckResult.Source.SEARCH, null)),
+                results);
+        ArgumentCaptor<SearchControls> controls = ArgumentCaptor.forClass(SearchControls.class);
+        verify(mockContext).search(eq(groupDN), eq("(member=" + userDN + ")"), controls.capture());
+        assertEquals(SearchControls.OBJECT_SCOPE, controls.getValue().getSearchScope());
+        verify(groupManagementService, never()).getGroupMembers(anyString());
+    }
+
+    @Test
+    void testCheckMemberships_GroupFailureDoesNotFailBatch() throws Exception {
+        // 準備: testGroupの検索は接続プールの枯渇で失敗し、cachedGroupはキャッシュから判定できる
+        String userDN = "CN=user1,OU=Users,DC=example,DC=com";
+        doReturn(new AdProperty.MembershipCheck()).when(adProperty).getMembershipCheck();
+        doReturn(new UserDnCache.CachedDn(userDN)).when(userDnCache).lookup("user1");
+        doReturn(List.of(userDN)).when(membershipCache).get("CN=cachedGroup,OU=Users,DC=example,DC=com");
+        doThrow(ActiveDirectoryExceptionHandler.poolExhausted("read", 1000)).when(connectionManager).getConnection(any());
+
+        // メソッドの実行
+        List<MembershipCheckResult> results = groupMembershipService.checkMemberships(List.of(
+                new MembershipPair("user1", "testGroup"),
+                new MembershipPair("user1", "cachedGroup")));
+
+        // 検証（失敗したグループの組だけに理由を記録する）
+        assertNull(results.get(0).member());
+        assertNull(results.get(0).source());
+        assertTrue(results.get(0).error().startsWith("ActiveDirectoryException"));
+        assertEquals(new MembershipCheckResult("user1", "cachedGroup", true, MembershipCheckResult.Source.CACHE, null),
+                results.get(1));
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
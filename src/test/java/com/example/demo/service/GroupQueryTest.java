@@ -0,0 +1,56 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GroupQueryのテストクラス
+ */
+class GroupQueryTest {
+
+    @Test
+    void testOf_CursorResumesAfterLastCn() {
+        // 準備
+        String cursor = GroupQuery.encodeCursor("sales(1)");
+
+        // メソッドの実行
+        GroupQuery query = GroupQuery.of("sa*", null, null, null, cursor);
+
+        // 検証
+        assertEquals("sales(1)", query.after());
+        assertEquals(GroupQuery.DEFAULT_LIMIT, query.limit());
+        assertEquals("(&(objectClass=group)(cn=sa\\2a*)(cn>=sales\\281\\29)(!(cn=sales\\281\\29)))", query.toFilter());
+    }
+
+    @Test
+    void testOf_ProjectsAttributesWithoutDuplicates() {
+        // メソッドの実行
+        GroupQuery query = GroupQuery.of(null, null, List.of("cn", "description", " mail ", "description"), 10, null);
+
+        // 検証
+        assertArrayEquals(new String[]{"cn", "description", "mail"}, query.returningAttributes());
+    }
+
+    @Test
+    void testOf_RejectsInvalidParameters() {
+        // メソッドの実行・検証
+        assertThrows(IllegalArgumentException.class, () -> GroupQuery.of(null, "(cn=a))(|(cn=*)", null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> GroupQuery.of(null, "cn=a", null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> GroupQuery.of(null, null, List.of("member"), null, null));
+        assertThrows(IllegalArgumentException.class, () -> GroupQuery.of(null, null, List.of("cn)(x"), null, null));
+        assertThrows(IllegalArgumentException.class, () -> GroupQuery.of(null, null, null, GroupQuery.MAX_LIMIT + 1, null));
+        assertThrows(IllegalArgumentException.class, () -> GroupQuery.of(null, null, null, null, "!!"));
+    }
+
+    @Test
+    void testOf_AcceptsNestedFilter() {
+        // メソッドの実行
+        GroupQuery query = GroupQuery.of(null, "(|(description=a*)(mail=*))", null, null, null);
+
+        // 検証
+        assertEquals("(&(objectClass=group)(|(description=a*)(mail=*)))", query.toFilter());
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.demo.service;
+
+import com.example.demo.ldap.OperationScope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.NamingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SingleFlightのテストクラス
+ */
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 最初の呼び出し元が読み込みを始めてから、待機中の呼び出し元が揃うまで応答しない読み込み
+     */
+    private SingleFlight.Loader<String> blockingLoader(CountDownLatch started, CountDownLatch release, String value) {
+        return () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        };
+    }
+
+    /**
+     * 待機中の呼び出し元がfutureの結果を待ち始めるまで待つ
+     */
+    private void awaitShared(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.getSharedCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testConcurrentCallers_ShareOneLoad() throws Exception {
+        // 準備
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SingleFlight.Loader<String> loader = blockingLoader(started, release, "CN=result");
+
+        // メソッドの実行
+        List<Future<String>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> flight.execute("group", loader)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(() -> flight.execute("group", loader)));
+        }
+        awaitShared(4);
+        release.countDown();
+
+        // 検証
+        for (Future<String> future : futures) {
+            assertEquals("CN=result", future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(4, flight.getSharedCount());
+    }
+
+    @Test
+    void testSequentialCallers_LoadEachTime() throws Exception {
+        // メソッドの実行（完了した結果は保持しない）
+        flight.execute("group", () -> "v" + loads.incrementAndGet());
+        String second = flight.execute("group", () -> "v" + loads.incrementAndGet());
+
+        // 検証
+        assertEquals("v2", second);
+        assertEquals(0, flight.getSharedCount());
+    }
+
+    @Test
+    void testFailure_SharedWithWaiters() throws Exception {
+        // 準備
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SingleFlight.Loader<String> failing = () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new NamingException("Group not found");
+        };
+
+        // メソッドの実行
+        Future<String> leader = executor.submit(() -> flight.execute("group", failing));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> waiter = executor.submit(() -> flight.execute("group", () -> "unused"));
+        awaitShared(1);
+        release.countDown();
+
+        // 検証
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterError = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(NamingException.class, leaderError.getCause());
+        assertInstanceOf(NamingException.class, waiterError.getCause());
+    }
+
+    @Test
+    void testCancelledLeader_WaiterLoadsAgain() throws Exception {
+        // 準備：最初の呼び出し元は非同期APIのタイムアウトでキャンセルされる
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OperationScope scope = new OperationScope();
+        Future<String> leader = executor.submit(() -> {
+            scope.bind();
+            try {
+                return flight.execute("group", () -> {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new NamingException("connection closed");
+                });
+            } finally {
+                scope.unbind();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> waiter = executor.submit(() -> flight.execute("group", () -> "reloaded"));
+        awaitShared(1);
+
+        // メソッドの実行
+        scope.cancel();
+        release.countDown();
+
+        // 検証（キャンセルされた読み込みの失敗は共有せず、待機中の呼び出し元が読み込み直す）
+        assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertEquals("reloaded", waiter.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.standin;
+
+import com.example.demo.ldap.MemberRangeReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.InitialLdapContext;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InMemoryAdServerのテストクラス
+ * JNDIから接続し、ADと同じ範囲指定取得の応答が返ることを検証する
+ */
+class InMemoryAdServerTest {
+
+    private static final String BASE_DN = "DC=test,DC=local";
+    private static final String ADMIN_DN = "CN=Administrator,CN=Users,DC=test,DC=local";
+
+    private InMemoryAdServer server;
+
+    private DirContext ctx;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new InMemoryAdServer(BASE_DN, "CN=Users", ADMIN_DN, "secret", 0);
+        server.start();
+        server.addUsers(3200);
+        server.addGroup("BigGroup", 3200);
+        server.addGroup("SmallGroup", 3);
+
+        Hashtable<String, String> env = new Hashtable<>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        env.put(Context.PROVIDER_URL, "ldap://localhost:" + server.getPort());
+        env.put(Context.SECURITY_AUTHENTICATION, "simple");
+        env.put(Context.SECURITY_PRINCIPAL, ADMIN_DN);
+        env.put(Context.SECURITY_CREDENTIALS, "secret");
+        ctx = new InitialLdapContext(env, null);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ctx.close();
+        server.close();
+    }
+
+    @Test
+    void testFetchRange_ReturnsMaxValRange() throws Exception {
+        // メソッドの実行
+        MemberRangeReader.Range first = MemberRangeReader.fetchRange(ctx, groupDn("BigGroup"), 0, 4999);
+        MemberRangeReader.Range last = MemberRangeReader.fetchRange(ctx, groupDn("BigGroup"), 3000, 4499);
+
+        // 検証（要求より小さいMaxValRangeで切られる）
+        assertEquals(1500, first.values().size());
+        assertEquals(1499, first.high());
+        assertFalse(first.last());
+        assertEquals(200, last.values().size());
+        assertTrue(last.last());
+        assertEquals(server.userDn(3001), last.values().get(0));
+    }
+
+    @Test
+    void testRead_AllMembers() throws Exception {
+        // 準備
+        MemberRangeReader reader = new MemberRangeReader(1500, false, Runnable::run);
+        List<String> members = new ArrayList<>();
+
+        // メソッドの実行
+        int count = reader.read((low, high) -> MemberRangeReader.fetchRange(ctx, groupDn("BigGroup"), low, high),
+                members::add);
+
+        // 検証
+        assertEquals(3200, count);
+        assertEquals(server.userDn(1), members.get(0));
+        assertEquals(server.userDn(3200), members.get(3199));
+    }
+
+    @Test
+    void testSearch_UnrangedRequestIsCapped() throws Exception {
+        // 準備
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.OBJECT_SCOPE);
+        controls.setReturningAttributes(new String[]{"member"});
+
+        // メソッドの実行
+        NamingEnumeration<SearchResult> big = ctx.search(groupDn("BigGroup"), "(objectClass=group)", controls);
+        NamingEnumeration<SearchResult> small = ctx.search(groupDn("SmallGroup"), "(objectClass=group)", controls);
+
+        // 検証（MaxValRangeを超える場合だけ範囲付きの属性名で返る）
+        assertNotNull(big.next().getAttributes().get("member;range=0-1499"));
+        assertEquals(3, small.next().getAttributes().get("member").size());
+    }
+
+    @Test
+    void testSearch_UserByCn() throws Exception {
+        // 準備
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+
+        // メソッドの実行
+        NamingEnumeration<SearchResult> results = ctx.search(server.getUsersDn(),
+                "(&(objectClass=user)(|(cn=user000001)(cn=USER000002)))", controls);
+
+        // 検証
+        int found = 0;
+        while (results.hasMore()) {
+            results.next();
+            found++;
+        }
+        assertEquals(2, found);
+    }
+
+    private String groupDn(String cn) {
+        return "CN=" + cn + "," + server.getUsersDn();
+    }
+}
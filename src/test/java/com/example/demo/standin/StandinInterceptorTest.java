@@ -0,0 +1,108 @@
+package com.example.demo.standin;
+
+import com.example.demo.config.AdProperty;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.InitialLdapContext;
+import java.util.Hashtable;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * スタンドインのインターセプター（USNの再現、障害の注入）のテストクラス
+ */
+class StandinInterceptorTest {
+
+    private static final String BASE_DN = "DC=test,DC=local";
+    private static final String ADMIN_DN = "CN=Administrator,CN=Users,DC=test,DC=local";
+
+    private InMemoryAdServer server;
+
+    private DirContext ctx;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ctx.close();
+        server.close();
+    }
+
+    @Test
+    void testUsn_ModifyAdvancesHighestCommittedUsn() throws Exception {
+        // 準備
+        start(new UsnInterceptor("CN=NTDS Settings,CN=DC1"));
+        long before = highestCommittedUsn();
+
+        // メソッドの実行
+        ctx.modifyAttributes(groupDn("Group"), new ModificationItem[]{
+                new ModificationItem(DirContext.REPLACE_ATTRIBUTE, new BasicAttribute("description", "changed"))});
+
+        // 検証
+        long after = highestCommittedUsn();
+        assertTrue(after > before);
+        assertEquals("CN=NTDS Settings,CN=DC1",
+                ctx.getAttributes("", new String[]{"dsServiceName"}).get("dsServiceName").get());
+
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        NamingEnumeration<SearchResult> results = ctx.search(BASE_DN, "(uSNChanged>=" + after + ")", controls);
+        assertTrue(results.hasMore());
+        assertTrue(groupDn("Group").equalsIgnoreCase(results.next().getNameInNamespace()));
+        assertFalse(results.hasMore());
+    }
+
+    @Test
+    void testFaultInjection_FailsSelectedOperations() throws Exception {
+        // 準備
+        AdProperty.Standin config = new AdProperty.Standin();
+        config.setFaultRate(1.0);
+        config.setFaultResultCode(51);
+        config.setFaultOperations(List.of("modify"));
+        FaultInjectionInterceptor faults = new FaultInjectionInterceptor(config);
+        start(faults);
+
+        // メソッドの実行・検証
+        assertThrows(ServiceUnavailableException.class, () -> ctx.modifyAttributes(groupDn("Group"),
+                new ModificationItem[]{new ModificationItem(DirContext.REPLACE_ATTRIBUTE,
+                        new BasicAttribute("description", "changed"))}));
+        // 対象外の操作（bind、search）は成功する
+        Attributes group = ctx.getAttributes(groupDn("Group"), new String[]{"cn"});
+        assertEquals("Group", group.get("cn").get());
+        assertEquals(1, faults.getInjectedFaults());
+    }
+
+    private void start(InMemoryOperationInterceptor interceptor) throws Exception {
+        server = new InMemoryAdServer(BASE_DN, "CN=Users", ADMIN_DN, "secret", 0, interceptor);
+        server.start();
+        server.addUsers(3);
+        server.addGroup("Group", 3);
+
+        Hashtable<String, String> env = new Hashtable<>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        env.put(Context.PROVIDER_URL, "ldap://localhost:" + server.getPort());
+        env.put(Context.SECURITY_AUTHENTICATION, "simple");
+        env.put(Context.SECURITY_PRINCIPAL, ADMIN_DN);
+        env.put(Context.SECURITY_CREDENTIALS, "secret");
+        ctx = new InitialLdapContext(env, null);
+    }
+
+    private long highestCommittedUsn() throws Exception {
+        return Long.parseLong((String) ctx.getAttributes("", new String[]{"highestCommittedUSN"})
+                .get("highestCommittedUSN").get());
+    }
+
+    private String groupDn(String cn) {
+        return "CN=" + cn + "," + server.getUsersDn();
+    }
+}
@@ -10,6 +10,7 @@ import javax.naming.ServiceUnavailableException;
 import javax.naming.TimeLimitExceededException;
 import javax.naming.directory.AttributeInUseException;
 import javax.naming.NamingException;
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -116,7 +117,102 @@ class RetryUtilTest {
         testRetryableException(new CommunicationException("Connection failed"));
         testRetryableException(new ServiceUnavailableException("Service unavailable"));
         testRetryableException(new TimeLimitExceededException("Timeout"));
-        testRetryableException(new AttributeInUseException("Attribute in use"));
+    }
+
+    @Test
+    void testRetryOnError_AttributeInUse_NotRetried() {
+        // 準備
+        AtomicInteger callCount = new AtomicInteger(0);
+
+        // メソッドの実行と例外の検証（既にメンバーである場合はやり直しても同じ結果になる）
+        assertThrows(AttributeInUseException.class, () -> {
+            RetryUtil.retryOnError(() -> {
+                callCount.incrementAndGet();
+                throw new AttributeInUseException("Attribute in use");
+            });
+        });
+
+        // 検証
+        assertEquals(1, callCount.get());
+    }
+
+    @Test
+    void testRetryPolicy_BackoffCapGrowsExponentially() {
+        // 準備
+        RetryPolicy policy = new RetryPolicy("test", 10, Duration.ofMillis(100), Duration.ofMillis(1000),
+                Duration.ofSeconds(30), null);
+
+        // 検証（失敗ごとに倍になり、上限で頭打ちになる）
+        assertEquals(Duration.ofMillis(100), policy.backoffCap(1));
+        assertEquals(Duration.ofMillis(200), policy.backoffCap(2));
+        assertEquals(Duration.ofMillis(400), policy.backoffCap(3));
+        assertEquals(Duration.ofMillis(800), policy.backoffCap(4));
+        assertEquals(Duration.ofMillis(1000), policy.backoffCap(5));
+        assertEquals(Duration.ofMillis(1000), policy.backoffCap(30));
+    }
+
+    @Test
+    void testRetryOnError_PolicyMaxAttempts() {
+        // 準備
+        AtomicInteger callCount = new AtomicInteger(0);
+        RetryPolicy policy = new RetryPolicy("test", 5, Duration.ZERO, Duration.ZERO, Duration.ofSeconds(30), null);
+
+        // メソッドの実行と例外の検証
+        assertThrows(ActiveDirectoryException.class, () -> {
+            RetryUtil.retryOnError(policy, () -> {
+                callCount.incrementAndGet();
+                throw new CommunicationException("Connection failed");
+            });
+        });
+
+        // 検証
+        assertEquals(5, callCount.get());
+    }
+
+    @Test
+    void testRetryOnError_StopsAtDeadline() {
+        // 準備：期限が0のため、どの待機時間でも再試行しない
+        AtomicInteger callCount = new AtomicInteger(0);
+        RetryPolicy policy = new RetryPolicy("test", 10, Duration.ofSeconds(60), Duration.ofSeconds(60),
+                Duration.ZERO, null);
+
+        // メソッドの実行と例外の検証
+        long start = System.nanoTime();
+        assertThrows(ActiveDirectoryException.class, () -> {
+            RetryUtil.retryOnError(policy, () -> {
+                callCount.incrementAndGet();
+                throw new CommunicationException("Connection failed");
+            });
+        });
+
+        // 検証（期限を超えて待機しない）
+        assertEquals(1, callCount.get());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+    }
+
+    @Test
+    void testRetryOnError_StopsWhenBudgetExhausted() {
+        // 準備：再試行2回分のトークンしかない
+        RetryBudget budget = new RetryBudget(2, 0.5);
+        RetryPolicy policy = new RetryPolicy("test", 10, Duration.ZERO, Duration.ZERO, Duration.ofSeconds(30), budget);
+        AtomicInteger callCount = new AtomicInteger(0);
+
+        // メソッドの実行と例外の検証
+        assertThrows(ActiveDirectoryException.class, () -> {
+            RetryUtil.retryOnError(policy, () -> {
+                callCount.incrementAndGet();
+                throw new CommunicationException("Connection failed");
+            });
+        });
+
+        // 検証（予算を使い切った後は再試行しない）
+        assertEquals(3, callCount.get());
+        assertEquals(1, budget.getRejected());
+
+        // 成功した操作でトークンが補充される
+        RetryUtil.retryOnError(policy, () -> "success");
+        RetryUtil.retryOnError(policy, () -> "success");
+        assertEquals(1.0, budget.getTokens());
     }
 
     private void testRetryableException(Exception retryableException) {
@@ -154,9 +250,9 @@ class RetryUtilTest {
             });
         });
 
-        // 検証
+        // 検証（割り込まれた2回目の失敗で再試行をやめる）
         assertEquals("リトライが中断されました", exception.getMessage());
-        assertEquals(1, callCount.get());
+        assertEquals(2, callCount.get());
         assertTrue(Thread.currentThread().isInterrupted());
         
         // テスト後の状態をリセット
@@ -0,0 +1,60 @@
+package com.example.demo.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserListParserのテストクラス
+ */
+class UserListParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testParseJson_Array() throws Exception {
+        // メソッドの実行
+        List<String> result = UserListParser.parseJson(body("[\"user1\", \" user2 \", \"\"]"), objectMapper.getFactory());
+
+        // 検証
+        assertEquals(List.of("user1", "user2"), result);
+    }
+
+    @Test
+    void testParseJson_Object() throws Exception {
+        // メソッドの実行
+        List<String> result = UserListParser.parseJson(
+                body("{\"comment\": {\"a\": 1}, \"users\": [\"user1\", \"user2\"]}"), objectMapper.getFactory());
+
+        // 検証
+        assertEquals(List.of("user1", "user2"), result);
+    }
+
+    @Test
+    void testParseJson_Invalid() {
+        // メソッドの実行と例外の検証
+        assertThrows(IllegalArgumentException.class,
+                () -> UserListParser.parseJson(body("[1, 2]"), objectMapper.getFactory()));
+        assertThrows(IllegalArgumentException.class,
+                () -> UserListParser.parseJson(body("\"user1\""), objectMapper.getFactory()));
+    }
+
+    @Test
+    void testParseCsv() throws Exception {
+        // メソッドの実行
+        List<String> result = UserListParser.parseCsv(body("cn,mail\nuser1,u1@example.com\n\n# comment\n\"Doe, John\",x\r\nuser2\n"));
+
+        // 検証
+        assertEquals(List.of("user1", "Doe, John", "user2"), result);
+    }
+}